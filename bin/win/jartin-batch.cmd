@@ -0,0 +1 @@
+java -Djava.awt.headless=true -Djartin.stamps=stamps -Djartin.output=out -Xmx2048M -cp jartin.jar ee.joonasvali.stamps.batch.BatchMain %*
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps;
+
+import ee.joonasvali.stamps.color.PositionAwareColor;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+
+/**
+ * Stamps are kept as coverage masks: {@link BufferedImage#TYPE_BYTE_GRAY} images whose samples are the alpha the
+ * stamp paints with, not a brightness. A stamp only decides how much of the tint gets painted where, the tint is
+ * applied when the mask is painted.
+ * <p>
+ * A mask may be a view of a part of a bigger mask, as {@link BufferedImage#getSubimage} makes. Its samples start at
+ * {@link #getOffset(BufferedImage)} of the data, and its rows are {@link #getScanline(BufferedImage)} apart.
+ */
+public final class AlphaMask {
+  private static final int WHITE = 0xFFFFFF;
+
+  private AlphaMask() {
+  }
+
+  /**
+   * @param image stamp image, white is transparent and the darker a pixel, the more of the tint it paints.
+   */
+  public static BufferedImage create(BufferedImage image) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+    BufferedImage mask = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+    byte[] alpha = getData(mask);
+    for (int i = 0; i < pixels.length; i++) {
+      int rgb = pixels[i] & WHITE;
+      if (rgb != WHITE) {
+        alpha[i] = (byte) (255 - (((rgb >> 16) & 0xFF) + ((rgb >> 8) & 0xFF) + (rgb & 0xFF)) / 3);
+      }
+    }
+    return mask;
+  }
+
+  public static boolean isMask(BufferedImage image) {
+    return image.getType() == BufferedImage.TYPE_BYTE_GRAY;
+  }
+
+  /**
+   * @return the samples of the mask, a byte per pixel, row by row.
+   */
+  public static byte[] getData(BufferedImage mask) {
+    return ((DataBufferByte) mask.getRaster().getDataBuffer()).getData();
+  }
+
+  /**
+   * @return index of the first sample of the mask in its {@link #getData(BufferedImage) data}.
+   */
+  public static int getOffset(BufferedImage mask) {
+    Raster raster = mask.getRaster();
+    return raster.getDataBuffer().getOffset() - raster.getSampleModelTranslateY() * getScanline(mask) - raster.getSampleModelTranslateX();
+  }
+
+  /**
+   * @return distance between the rows of the mask in its {@link #getData(BufferedImage) data}.
+   */
+  public static int getScanline(BufferedImage mask) {
+    return ((ComponentSampleModel) mask.getSampleModel()).getScanlineStride();
+  }
+
+  /**
+   * @return gray stamp image the mask would be created from.
+   */
+  public static BufferedImage toImage(BufferedImage mask) {
+    int width = mask.getWidth();
+    int height = mask.getHeight();
+    byte[] alpha = getData(mask);
+    int offset = getOffset(mask);
+    int scanline = getScanline(mask);
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    for (int i = 0; i < height; i++) {
+      int row = offset + i * scanline;
+      for (int j = 0; j < width; j++) {
+        int gray = 255 - (alpha[row + j] & 0xFF);
+        pixels[i * width + j] = gray << 16 | gray << 8 | gray;
+      }
+    }
+    return image;
+  }
+
+  /**
+   * @return the mask painted with the color, as an ARGB image, or as a premultiplied one. Position aware colors are
+   * taken at (x, y) plus the position in the mask.
+   */
+  public static BufferedImage tint(BufferedImage mask, Color color, int x, int y, boolean premultiplied) {
+    int width = mask.getWidth();
+    int height = mask.getHeight();
+    byte[] alpha = getData(mask);
+    int offset = getOffset(mask);
+    int scanline = getScanline(mask);
+    BufferedImage image = new BufferedImage(width, height, premultiplied ? BufferedImage.TYPE_INT_ARGB_PRE : BufferedImage.TYPE_INT_ARGB);
+    int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    PositionAwareColor awareColor = color instanceof PositionAwareColor ? (PositionAwareColor) color : null;
+    int tint = color.getRGB();
+    for (int i = 0; i < height; i++) {
+      for (int j = 0; j < width; j++) {
+        int index = i * width + j;
+        int a = alpha[offset + i * scanline + j] & 0xFF;
+        if (a == 0) {
+          continue;
+        }
+        if (awareColor != null) {
+          tint = awareColor.getRGB(x + j, y + i);
+        }
+        pixels[index] = premultiplied ? premultiply(a, tint) : a << 24 | (tint & WHITE);
+      }
+    }
+    return image;
+  }
+
+  /**
+   * @return the tint with the given alpha, premultiplied.
+   */
+  static int premultiply(int a, int tint) {
+    return a << 24
+        | RasterProjection.mul8(a, (tint >> 16) & 0xFF) << 16
+        | RasterProjection.mul8(a, (tint >> 8) & 0xFF) << 8
+        | RasterProjection.mul8(a, tint & 0xFF);
+  }
+
+  /**
+   * Shrinks the mask with a box filter. Pixels beyond the edge count as transparent, so the size is rounded up.
+   */
+  public static BufferedImage shrink(BufferedImage mask, int factor) {
+    int width = mask.getWidth();
+    int height = mask.getHeight();
+    int newWidth = (width + factor - 1) / factor;
+    int newHeight = (height + factor - 1) / factor;
+    byte[] src = getData(mask);
+    int offset = getOffset(mask);
+    int scanline = getScanline(mask);
+    BufferedImage result = new BufferedImage(newWidth, newHeight, BufferedImage.TYPE_BYTE_GRAY);
+    byte[] dst = getData(result);
+    int area = factor * factor;
+    for (int y = 0; y < newHeight; y++) {
+      int endY = Math.min(y * factor + factor, height);
+      for (int x = 0; x < newWidth; x++) {
+        int endX = Math.min(x * factor + factor, width);
+        int sum = 0;
+        for (int sy = y * factor; sy < endY; sy++) {
+          int row = offset + sy * scanline;
+          for (int sx = x * factor; sx < endX; sx++) {
+            sum += src[row + sx] & 0xFF;
+          }
+        }
+        dst[y * newWidth + x] = (byte) ((sum + area / 2) / area);
+      }
+    }
+    return result;
+  }
+}
@@ -1,74 +1,171 @@
-/*
- * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
- */
-
-package ee.joonasvali.stamps;
-
-import java.awt.*;
-import java.awt.geom.AffineTransform;
-import java.awt.image.BufferedImage;
-
-public class DefaultProjection implements Projection {
-
-  private volatile BufferedImage img;
-  private volatile int x;
-  private volatile int y;
-  private volatile double scale;
-  private volatile int rotation;
-
-  public DefaultProjection(BufferedImage img) {
-    this.img = img;
-  }
-
-  public BufferedImage getImg() {
-    return img;
-  }
-
-  public void setImg(BufferedImage img) {
-    this.img = img;
-  }
-
-  public int getX() {
-    return x;
-  }
-
-  public void setX(int x) {
-    this.x = x;
-  }
-
-  public int getY() {
-    return y;
-  }
-
-  public double getScale() {
-    return scale;
-  }
-
-  public void setScale(double scale) {
-    this.scale = scale;
-  }
-
-  public void setY(int y) {
-    this.y = y;
-  }
-
-  public int getRotation() {
-    return rotation;
-  }
-
-  public void setRotation(int rotation) {
-    this.rotation = rotation;
-  }
-
-  public void paintTo(BufferedImage canvas) {
-    Graphics2D g1 = (Graphics2D)canvas.getGraphics();
-    g1.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-    g1.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-    AffineTransform at = new AffineTransform();
-    at.setToTranslation(x, y);
-    at.scale(scale, scale);
-    at.rotate(Math.toRadians(rotation), img.getWidth()/2, img.getHeight()/2);
-    g1.drawImage(img, at, null);
-  }
-}
-
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+public class DefaultProjection implements Projection {
+
+  private volatile BufferedImage img;
+  private volatile int x;
+  private volatile int y;
+  private volatile double scale;
+  private volatile int rotation;
+  private volatile SpriteCache sprites;
+  private volatile SpriteCache.Source source;
+  // Sprite picked for the current image, scale and rotation
+  private volatile Sprite sprite;
+
+  public DefaultProjection(BufferedImage img) {
+    this.img = img;
+  }
+
+  public BufferedImage getImg() {
+    return img;
+  }
+
+  public void setImg(BufferedImage img) {
+    this.img = img;
+    // The sprites are of the image it was made with
+    this.sprites = null;
+    this.sprite = null;
+  }
+
+  public int getX() {
+    return x;
+  }
+
+  public void setX(int x) {
+    this.x = x;
+  }
+
+  public int getY() {
+    return y;
+  }
+
+  public double getScale() {
+    return scale;
+  }
+
+  public void setScale(double scale) {
+    this.scale = scale;
+    this.sprite = null;
+  }
+
+  public void setY(int y) {
+    this.y = y;
+  }
+
+  public int getRotation() {
+    return rotation;
+  }
+
+  public void setRotation(int rotation) {
+    this.rotation = rotation;
+    this.sprite = null;
+  }
+
+  /**
+   * Lets the projection paint prefiltered variants of its image. Only for images shared by many projections.
+   *
+   * @param source the stamp image this projection's image is.
+   */
+  public void setSpriteCache(SpriteCache sprites, SpriteCache.Source source) {
+    this.sprites = sprites;
+    this.source = source;
+    this.sprite = null;
+  }
+
+  public void paintTo(BufferedImage canvas) {
+    paintTo(canvas, 0, 0);
+  }
+
+  public void paintTo(BufferedImage tile, int originX, int originY) {
+    Graphics2D g1 = (Graphics2D)tile.getGraphics();
+    g1.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+    g1.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+    g1.drawImage(getSource(), getTransform(originX, originY), null);
+    g1.dispose();
+  }
+
+  public Rectangle getBounds() {
+    BufferedImage source = getSource();
+    Rectangle bounds = getTransform().createTransformedShape(new Rectangle(0, 0, source.getWidth(), source.getHeight())).getBounds();
+    // Bilinear sampling can bleed into the neighbouring pixels
+    bounds.grow(1, 1);
+    return bounds;
+  }
+
+  /**
+   * @return the bounds of an image of the given size, painted without sprites at the given position, scale and
+   * rotation.
+   */
+  public static Rectangle getBounds(int width, int height, int x, int y, double scale, int rotation) {
+    AffineTransform at = new AffineTransform();
+    at.setToTranslation(x, y);
+    at.scale(scale, scale);
+    at.rotate(Math.toRadians(rotation), width/2, height/2);
+    Rectangle bounds = at.createTransformedShape(new Rectangle(0, 0, width, height)).getBounds();
+    bounds.grow(1, 1);
+    return bounds;
+  }
+
+  /**
+   * @return the image that actually gets painted: the image of this projection or a sprite derived from it.
+   */
+  protected BufferedImage getSource() {
+    Sprite sprite = getSprite();
+    return sprite == null ? img : sprite.getImage();
+  }
+
+  /**
+   * @return transform from the coordinates of {@link #getSource()} to the canvas.
+   */
+  protected AffineTransform getTransform() {
+    AffineTransform at = new AffineTransform();
+    at.setToTranslation(x, y);
+    at.scale(scale, scale);
+    Sprite sprite = getSprite();
+    if (sprite == null || sprite.isOriginal()) {
+      at.rotate(Math.toRadians(rotation), img.getWidth()/2, img.getHeight()/2);
+    } else {
+      at.translate(img.getWidth()/2, img.getHeight()/2);
+      at.scale(1 / sprite.getFactor(), 1 / sprite.getFactor());
+      at.rotate(Math.toRadians(rotation - sprite.getAngle()));
+      at.translate(-sprite.getCenterX(), -sprite.getCenterY());
+    }
+    return at;
+  }
+
+  /**
+   * @return transform from the coordinates of {@link #getSource()} to a tile with the given origin on the canvas.
+   */
+  protected AffineTransform getTransform(int originX, int originY) {
+    AffineTransform at = getTransform();
+    if (originX != 0 || originY != 0) {
+      at.preConcatenate(AffineTransform.getTranslateInstance(-originX, -originY));
+    }
+    return at;
+  }
+
+  /**
+   * @return the sprite painted in place of the image, null if no sprites are used.
+   */
+  protected Sprite getSprite() {
+    SpriteCache cache = sprites;
+    if (cache == null) {
+      return null;
+    }
+    Sprite result = sprite;
+    if (result == null) {
+      result = cache.get(source, img, scale, rotation);
+      sprite = result;
+    }
+    return result;
+  }
+}
+
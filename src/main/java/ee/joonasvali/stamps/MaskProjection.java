@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps;
+
+import ee.joonasvali.stamps.color.PositionAwareColor;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.image.BufferedImage;
+
+/**
+ * Paints a stamp mask in a color, tinting each pixel while compositing, so no tinted copy of the stamp is made.
+ * Samples the same way as {@link RasterProjection}.
+ */
+public class MaskProjection extends DefaultProjection {
+  private static final long HALF = 1L << 31;
+
+  private final Color color;
+  private final int colorX;
+  private final int colorY;
+
+  /**
+   * @param mask see {@link AlphaMask}.
+   * @param colorX position aware colors are taken at (colorX, colorY) plus the position in the mask.
+   */
+  public MaskProjection(BufferedImage mask, Color color, int colorX, int colorY) {
+    super(mask);
+    this.color = color;
+    this.colorX = colorX;
+    this.colorY = colorY;
+  }
+
+  @Override
+  public void paintTo(BufferedImage canvas, int originX, int originY) {
+    BufferedImage mask = getSource();
+    if (!RasterProjection.isSupportedCanvas(canvas)) {
+      paintTinted(canvas, originX, originY);
+      return;
+    }
+
+    AffineTransform inverse;
+    try {
+      inverse = getTransform(originX, originY).createInverse();
+    } catch (NoninvertibleTransformException e) {
+      // Zero scale, nothing to paint
+      return;
+    }
+
+    Rectangle bounds = getBounds();
+    bounds.translate(-originX, -originY);
+    bounds = bounds.intersection(new Rectangle(0, 0, canvas.getWidth(), canvas.getHeight()));
+    if (bounds.isEmpty()) {
+      return;
+    }
+
+    Sprite sprite = getSprite();
+    // Mip levels halve the mask, position aware colors are taken in the coordinates of the full mask
+    int toMask = sprite == null ? 1 : (int) Math.round(1 / sprite.getFactor());
+    composite(
+        AlphaMask.getData(mask), AlphaMask.getOffset(mask), AlphaMask.getScanline(mask), mask.getWidth(), mask.getHeight(), toMask,
+        RasterProjection.getData(canvas), canvas.getWidth(), canvas.getType() == BufferedImage.TYPE_INT_RGB,
+        bounds, inverse
+    );
+  }
+
+  /**
+   * Tints the whole mask and lets Java2D paint it, for canvases the rasterizer can't address.
+   */
+  private void paintTinted(BufferedImage canvas, int originX, int originY) {
+    DefaultProjection tinted = new DefaultProjection(AlphaMask.tint(getImg(), color, colorX, colorY, false));
+    tinted.setX(getX());
+    tinted.setY(getY());
+    tinted.setScale(getScale());
+    tinted.setRotation(getRotation());
+    tinted.paintTo(canvas, originX, originY);
+  }
+
+  private void composite(byte[] src, int srcOffset, int srcScanline, int srcWidth, int srcHeight, int toMask, int[] dst, int dstWidth, boolean opaque, Rectangle bounds, AffineTransform inverse) {
+    double m00 = inverse.getScaleX();
+    double m01 = inverse.getShearX();
+    double m02 = inverse.getTranslateX();
+    double m10 = inverse.getShearY();
+    double m11 = inverse.getScaleY();
+    double m12 = inverse.getTranslateY();
+    int maxX = srcWidth - 1;
+    int maxY = srcHeight - 1;
+    int endX = bounds.x + bounds.width;
+    int endY = bounds.y + bounds.height;
+    PositionAwareColor awareColor = color instanceof PositionAwareColor ? (PositionAwareColor) color : null;
+    int tint = color.getRGB();
+
+    for (int y = bounds.y; y < endY; y++) {
+      double centerY = y + 0.5;
+      double rowX = m01 * centerY + m02;
+      double rowY = m11 * centerY + m12;
+      int dstRow = y * dstWidth;
+
+      // Narrow the row down to the span that can map inside the source, the exact test is still done per pixel
+      double spanStart = bounds.x;
+      double spanEnd = endX;
+      if (m00 != 0) {
+        double a = -rowX / m00 - 0.5;
+        double b = (srcWidth - rowX) / m00 - 0.5;
+        spanStart = Math.max(spanStart, Math.min(a, b) - 1);
+        spanEnd = Math.min(spanEnd, Math.max(a, b) + 1);
+      }
+      if (m10 != 0) {
+        double a = -rowY / m10 - 0.5;
+        double b = (srcHeight - rowY) / m10 - 0.5;
+        spanStart = Math.max(spanStart, Math.min(a, b) - 1);
+        spanEnd = Math.min(spanEnd, Math.max(a, b) + 1);
+      }
+
+      int x = (int) spanStart;
+      if (x >= spanEnd) {
+        continue;
+      }
+      long sx = RasterProjection.toFixed(m00 * (x + 0.5) + rowX);
+      long sy = RasterProjection.toFixed(m10 * (x + 0.5) + rowY);
+      long stepX = RasterProjection.toFixed(m00);
+      long stepY = RasterProjection.toFixed(m10);
+      long limitX = (long) srcWidth << 32;
+      long limitY = (long) srcHeight << 32;
+
+      for (; x < spanEnd; x++, sx += stepX, sy += stepY) {
+        if (sx < 0 || sy < 0 || sx >= limitX || sy >= limitY) {
+          continue;
+        }
+
+        long fx = sx - HALF;
+        long fy = sy - HALF;
+        int x0 = (int) (fx >> 32);
+        int y0 = (int) (fy >> 32);
+        int wx = (int) (fx >>> 24) & 0xFF;
+        int wy = (int) (fy >>> 24) & 0xFF;
+        int x1 = Math.min(x0 + 1, maxX);
+        int y1 = Math.min(y0 + 1, maxY);
+        if (x0 < 0) {
+          x0 = 0;
+        }
+        if (y0 < 0) {
+          y0 = 0;
+        }
+
+        int row0 = srcOffset + y0 * srcScanline;
+        int row1 = srcOffset + y1 * srcScanline;
+        int a00 = src[row0 + x0] & 0xFF;
+        int a01 = src[row0 + x1] & 0xFF;
+        int a10 = src[row1 + x0] & 0xFF;
+        int a11 = src[row1 + x1] & 0xFF;
+        int a;
+        if (a00 == a01 && a00 == a10 && a00 == a11) {
+          a = a00;
+        } else {
+          int w01 = wx * (256 - wy);
+          int w10 = (256 - wx) * wy;
+          int w11 = wx * wy;
+          int w00 = 65536 - w01 - w10 - w11;
+          a = (a00 * w00 + a01 * w01 + a10 * w10 + a11 * w11 + 32768) >> 16;
+        }
+        if (a == 0) {
+          continue;
+        }
+
+        if (awareColor != null) {
+          tint = awareColor.getRGB(colorX + (int) (sx >> 32) * toMask, colorY + (int) (sy >> 32) * toMask);
+        }
+        int index = dstRow + x;
+        dst[index] = RasterProjection.blend(a,
+            RasterProjection.mul8(a, (tint >> 16) & 0xFF),
+            RasterProjection.mul8(a, (tint >> 8) & 0xFF),
+            RasterProjection.mul8(a, tint & 0xFF),
+            dst[index], opaque);
+      }
+    }
+  }
+}
@@ -1,11 +1,24 @@
-/*
- * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
- */
-
-package ee.joonasvali.stamps;
-
-import java.awt.image.BufferedImage;
-
-public interface Projection {
-  void paintTo(BufferedImage canvas);
-}
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+public interface Projection {
+  void paintTo(BufferedImage canvas);
+
+  /**
+   * Paints the part of the projection that falls on a tile of a bigger canvas.
+   *
+   * @param originX position of the top left corner of the tile on the canvas.
+   */
+  void paintTo(BufferedImage tile, int originX, int originY);
+
+  /**
+   * @return the area of the canvas this projection can touch when painted.
+   */
+  Rectangle getBounds();
+}
@@ -1,14 +1,51 @@
-/*
- * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
- */
-
-package ee.joonasvali.stamps;
-
-import java.awt.*;
-import java.awt.image.BufferedImage;
-
-public interface ProjectionFactory {
-  BufferedImage getRawProjection(BufferedImage image, Color color, int x, int y);
-  BufferedImage getRawProjection(BufferedImage image, Color color);
-  Projection getProjectionFromRaw(BufferedImage image);
-}
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+public interface ProjectionFactory {
+  /**
+   * @param mask stamp to tint, see {@link AlphaMask}.
+   * @return the mask tinted with the color, ready to be made into a projection.
+   */
+  BufferedImage getRawProjection(BufferedImage mask, Color color, int x, int y);
+  BufferedImage getRawProjection(BufferedImage mask, Color color);
+  Projection getProjectionFromRaw(BufferedImage image);
+
+  /**
+   * Same as {@link #getProjectionFromRaw(BufferedImage)}, for raw images that are reused by many projections,
+   * so images derived from them may be cached by the source.
+   */
+  default Projection getProjectionFromSharedRaw(BufferedImage image, SpriteCache.Source source) {
+    return getProjectionFromRaw(image);
+  }
+
+  /**
+   * @return true if {@link #getProjection(BufferedImage, Color, int, int)} tints while painting, so there's nothing
+   * to gain from caching tinted stamps.
+   */
+  default boolean isTintedOnComposite() {
+    return false;
+  }
+
+  /**
+   * @param mask stamp to paint, see {@link AlphaMask}. It must not change, as it's shared by the projections.
+   * @return projection of the mask in the color. Position aware colors are taken at (x, y) plus the position in the
+   * mask.
+   */
+  default Projection getProjection(BufferedImage mask, Color color, int x, int y) {
+    return getProjectionFromRaw(getRawProjection(mask, color, x, y));
+  }
+
+  /**
+   * Same as {@link #getProjection(BufferedImage, Color, int, int)}, images derived from the mask may be cached by
+   * the source.
+   */
+  default Projection getProjection(BufferedImage mask, SpriteCache.Source source, Color color, int x, int y) {
+    return getProjection(mask, color, x, y);
+  }
+}
@@ -1,100 +1,175 @@
-/*
- * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
- */
-
-package ee.joonasvali.stamps;
-
-import ee.joonasvali.stamps.color.ColorModel;
-import ee.joonasvali.stamps.color.Pallette;
-import ee.joonasvali.stamps.color.PositionAwareColorModel;
-import ee.joonasvali.stamps.query.DynamicExcludingQuery;
-import ee.joonasvali.stamps.query.PositionAwareQuery;
-import ee.joonasvali.stamps.query.Query;
-import ee.joonasvali.stamps.stamp.Stamp;
-import ee.joonasvali.stamps.stamp.StampProvider;
-
-import java.awt.*;
-import java.util.Random;
-
-/**
- * @author Joonas Vali
- */
-public class ProjectionGenerator {
-
-  public static final int OUT_OF_SIGHT_MARGIN = 150;
-  public static final double SCALE_MIN_VALUE = 0.3;
-
-  private final StampProvider stamps;
-  private final Pallette pallette;
-  private final int canvasX;
-  private final int canvasY;
-  private final Random random;
-
-  public ProjectionGenerator(int canvasX, int canvasY, StampProvider stamps, Pallette pallette, Random random) {
-    this.random = random;
-    this.stamps = stamps;
-    this.pallette = pallette;
-    this.canvasX = canvasX;
-    this.canvasY = canvasY;
-  }
-
-  public Projection generate(Query<Stamp> stampQuery, Query<ColorModel> colorModelQuery, Query<Color> colorQuery) throws InterruptedException {
-    // This is the actual place where calculation of every projection scale, rotation and position takes place
-    int x = (int) (random.nextDouble() * (canvasX + OUT_OF_SIGHT_MARGIN)) - OUT_OF_SIGHT_MARGIN;
-    int y = (int) (random.nextDouble() * (canvasY + OUT_OF_SIGHT_MARGIN)) - OUT_OF_SIGHT_MARGIN;
-    double scale = Math.max(random.nextDouble(), SCALE_MIN_VALUE);
-    double rotation = (int) (random.nextDouble() * 360);
-
-    // We provide the calculated positions for each query, so it will be position aware and can make decision based on it.
-    providePositions(stampQuery, x, y, scale, rotation);
-    providePositions(colorModelQuery, x, y, scale, rotation);
-    providePositions(colorQuery, x, y, scale, rotation);
-
-    // DynamicExcludingQuery helps us to get some other stamp if the "rarity check" fails
-    Stamp stamp = stamps.getStamp(new DynamicExcludingQuery<>(stampQuery, ob -> {
-      // Defined through stamps.properties, default = 1
-      double rarity = ob.getMetadata().getRarity();
-      return !(rarity < 1 && random.nextDouble() > rarity && rarity > 0);
-    }));
-
-
-    DefaultProjection projection;
-    ColorModel colorModel = pallette.getColor(colorModelQuery);
-    // TODO these decisions probably could be abstracted?
-    if (colorModel instanceof PositionAwareColorModel) {
-      PositionAwareColorModel mColor = (PositionAwareColorModel) colorModel;
-      projection = (DefaultProjection) stamp.getProjection(mColor.getColor(), x, y);
-      projection.setScale(scale);
-      projection.setRotation((int) rotation);
-      projection.setX(x);
-      projection.setY(y);
-    } else {
-      Color color = colorModel.getColor(colorQuery);
-      int MULTIPLIER = 2;
-      int i = (int) (Math.random() * 2 * MULTIPLIER - MULTIPLIER);
-      if (i < 0) {
-        for (; i < 0; i++)
-          color = color.brighter();
-      } else {
-        for (; i > 0; i--)
-          color = color.darker();
-      }
-
-
-      projection = (DefaultProjection) stamp.getProjection(color);
-      projection.setScale(scale);
-
-      projection.setRotation((int) rotation);
-      projection.setX(x);
-      projection.setY(y);
-    }
-
-    return projection;
-  }
-
-  private void providePositions(Query<?> query, int x, int y, double scale, double rotation) {
-    if (query instanceof PositionAwareQuery) {
-      ((PositionAwareQuery) query).provide(x, y, scale, rotation);
-    }
-  }
-}
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps;
+
+import ee.joonasvali.stamps.color.ColorModel;
+import ee.joonasvali.stamps.color.Pallette;
+import ee.joonasvali.stamps.color.PositionAwareColorModel;
+import ee.joonasvali.stamps.query.PositionAwareQuery;
+import ee.joonasvali.stamps.query.Query;
+import ee.joonasvali.stamps.stamp.Stamp;
+import ee.joonasvali.stamps.stamp.StampProvider;
+
+import java.awt.*;
+import java.util.Random;
+
+/**
+ * @author Joonas Vali
+ */
+public class ProjectionGenerator {
+
+  public static final int OUT_OF_SIGHT_MARGIN = 150;
+  public static final double SCALE_MIN_VALUE = 0.3;
+
+  private final StampProvider stamps;
+  private final Pallette pallette;
+  private final int canvasX;
+  private final int canvasY;
+  private final long seed;
+
+  /**
+   * @param seed the seed of the whole painting. Each projection draws its randomness from its own generator
+   *             derived from this seed and the projection index, so the result doesn't depend on the number of
+   *             threads or on the order in which projections get generated.
+   */
+  public ProjectionGenerator(int canvasX, int canvasY, StampProvider stamps, Pallette pallette, long seed) {
+    this.seed = seed;
+    this.stamps = stamps;
+    this.pallette = pallette;
+    this.canvasX = canvasX;
+    this.canvasY = canvasY;
+  }
+
+  public Projection generate(int index, Query<Stamp> stampQuery, Query<ColorModel> colorModelQuery, Query<Color> colorQuery) throws InterruptedException {
+    return generate(index, 0, stampQuery, colorModelQuery, colorQuery);
+  }
+
+  /**
+   * The same projection as {@link #generate(int, Query, Query, Query)} gives, placed on a draft of the canvas that
+   * is scaled by draftScale. The colors are applied to a shrunk stamp image, so a draft is a lot cheaper to paint.
+   */
+  public Projection generateDraft(int index, double draftScale, Query<Stamp> stampQuery, Query<ColorModel> colorModelQuery, Query<Color> colorQuery) throws InterruptedException {
+    return generate(index, draftScale, stampQuery, colorModelQuery, colorQuery);
+  }
+
+  /**
+   * @return the area {@link #generate(int, Query, Query, Query)} would place the projection at, found without
+   * creating the projection. It can be a pixel off from the bounds of the projection itself when a sprite gets
+   * painted instead of the stamp.
+   */
+  public Rectangle getBounds(int index, Query<Stamp> stampQuery, Query<ColorModel> colorModelQuery, Query<Color> colorQuery) throws InterruptedException {
+    Placement placement = place(new Random(seedFor(seed, index)), stampQuery, colorModelQuery, colorQuery);
+    Point size = placement.stamp.size();
+    return DefaultProjection.getBounds(size.x, size.y, placement.x, placement.y, placement.scale, (int) placement.rotation);
+  }
+
+  private Projection generate(int index, double draftScale, Query<Stamp> stampQuery, Query<ColorModel> colorModelQuery, Query<Color> colorQuery) throws InterruptedException {
+    boolean draft = draftScale > 0;
+    Random random = new Random(seedFor(seed, index));
+    Placement placement = place(random, stampQuery, colorModelQuery, colorQuery);
+    int x = placement.x;
+    int y = placement.y;
+    double scale = placement.scale;
+    double rotation = placement.rotation;
+    Stamp stamp = placement.stamp;
+    colorModelQuery = placement.colorModelQuery;
+    colorQuery = placement.colorQuery;
+
+    DefaultProjection projection;
+    ColorModel colorModel = pallette.getColor(colorModelQuery);
+    // TODO these decisions probably could be abstracted?
+    if (colorModel instanceof PositionAwareColorModel) {
+      PositionAwareColorModel mColor = (PositionAwareColorModel) colorModel;
+      if (draft) {
+        projection = (DefaultProjection) stamp.getDraftProjection(mColor.getColor(), x, y);
+        projection.setScale(scale * draftScale * Stamp.DRAFT_REDUCTION);
+      } else {
+        projection = (DefaultProjection) stamp.getProjection(mColor.getColor(), x, y);
+        projection.setScale(scale);
+      }
+      projection.setRotation((int) rotation);
+      projection.setX(draft ? (int) (x * draftScale) : x);
+      projection.setY(draft ? (int) (y * draftScale) : y);
+    } else {
+      Color color = colorModel.getColor(colorQuery);
+      int MULTIPLIER = 2;
+      int i = (int) (random.nextDouble() * 2 * MULTIPLIER - MULTIPLIER);
+      if (i < 0) {
+        for (; i < 0; i++)
+          color = color.brighter();
+      } else {
+        for (; i > 0; i--)
+          color = color.darker();
+      }
+
+
+      if (draft) {
+        projection = (DefaultProjection) stamp.getDraftProjection(color, x, y);
+        projection.setScale(scale * draftScale * Stamp.DRAFT_REDUCTION);
+      } else {
+        projection = (DefaultProjection) stamp.getProjection(color);
+        projection.setScale(scale);
+      }
+
+      projection.setRotation((int) rotation);
+      projection.setX(draft ? (int) (x * draftScale) : x);
+      projection.setY(draft ? (int) (y * draftScale) : y);
+    }
+
+    return projection;
+  }
+
+  /**
+   * The decisions made before the colors: position, scale, rotation and the stamp.
+   */
+  private Placement place(Random random, Query<Stamp> stampQuery, Query<ColorModel> colorModelQuery, Query<Color> colorQuery) throws InterruptedException {
+    Placement placement = new Placement();
+    // This is the actual place where calculation of every projection scale, rotation and position takes place
+    int x = (int) (random.nextDouble() * (canvasX + OUT_OF_SIGHT_MARGIN)) - OUT_OF_SIGHT_MARGIN;
+    int y = (int) (random.nextDouble() * (canvasY + OUT_OF_SIGHT_MARGIN)) - OUT_OF_SIGHT_MARGIN;
+    double scale = Math.max(random.nextDouble(), SCALE_MIN_VALUE);
+    double rotation = (int) (random.nextDouble() * 360);
+    placement.x = x;
+    placement.y = y;
+    placement.scale = scale;
+    placement.rotation = rotation;
+
+    // We bind the calculated positions to each query, so it will be position aware and can make decision based on it.
+    stampQuery = bind(stampQuery, x, y, scale, rotation, random);
+    placement.colorModelQuery = bind(colorModelQuery, x, y, scale, rotation, random);
+    placement.colorQuery = bind(colorQuery, x, y, scale, rotation, random);
+
+    // Rare stamps come up less often when the stamp query is a WeightedQuery, by the weights of the index
+    placement.stamp = stamps.getStamp(stampQuery);
+    return placement;
+  }
+
+  private static <T> Query<T> bind(Query<T> query, int x, int y, double scale, double rotation, Random random) {
+    if (query instanceof PositionAwareQuery) {
+      return ((PositionAwareQuery<T>) query).at(x, y, scale, rotation, random);
+    }
+    return list -> query.get(list, random);
+  }
+
+  /**
+   * SplitMix64 finalizer over the painting seed and projection index, so neighbouring indexes get unrelated seeds.
+   */
+  public static long seedFor(long seed, int index) {
+    long z = seed + (index + 1) * 0x9E3779B97F4A7C15L;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+  private static class Placement {
+    private int x;
+    private int y;
+    private double scale;
+    private double rotation;
+    private Stamp stamp;
+    private Query<ColorModel> colorModelQuery;
+    private Query<Color> colorQuery;
+  }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * Projection that paints straight into the int[] raster of the canvas instead of going through Graphics2D.
+ * Every canvas pixel whose center maps inside the stamp is inverse mapped into the stamp, sampled bilinearly
+ * and blended with src-over, in the same loop and without allocating anything per pixel.
+ * <p>
+ * Expects a premultiplied TYPE_INT_ARGB_PRE image as created by {@link RasterProjectionFactory}, other images
+ * and canvases that are not backed by a plain int[] raster are painted by Java2D.
+ */
+public class RasterProjection extends DefaultProjection {
+  private static final long HALF = 1L << 31;
+
+  public RasterProjection(BufferedImage img) {
+    super(img);
+  }
+
+  @Override
+  public void paintTo(BufferedImage canvas, int originX, int originY) {
+    BufferedImage img = getSource();
+    if (!isSupportedCanvas(canvas) || img.getType() != BufferedImage.TYPE_INT_ARGB_PRE || !isWholeRaster(img)) {
+      super.paintTo(canvas, originX, originY);
+      return;
+    }
+
+    AffineTransform inverse;
+    try {
+      inverse = getTransform(originX, originY).createInverse();
+    } catch (NoninvertibleTransformException e) {
+      // Zero scale, nothing to paint
+      return;
+    }
+
+    Rectangle bounds = getBounds();
+    bounds.translate(-originX, -originY);
+    bounds = bounds.intersection(new Rectangle(0, 0, canvas.getWidth(), canvas.getHeight()));
+    if (bounds.isEmpty()) {
+      return;
+    }
+
+    composite(
+        getData(img), img.getWidth(), img.getHeight(),
+        getData(canvas), canvas.getWidth(), canvas.getType() == BufferedImage.TYPE_INT_RGB,
+        bounds, inverse
+    );
+  }
+
+  private static void composite(int[] src, int srcWidth, int srcHeight, int[] dst, int dstWidth, boolean opaque, Rectangle bounds, AffineTransform inverse) {
+    double m00 = inverse.getScaleX();
+    double m01 = inverse.getShearX();
+    double m02 = inverse.getTranslateX();
+    double m10 = inverse.getShearY();
+    double m11 = inverse.getScaleY();
+    double m12 = inverse.getTranslateY();
+    int maxX = srcWidth - 1;
+    int maxY = srcHeight - 1;
+    int endX = bounds.x + bounds.width;
+    int endY = bounds.y + bounds.height;
+
+    for (int y = bounds.y; y < endY; y++) {
+      double centerY = y + 0.5;
+      double rowX = m01 * centerY + m02;
+      double rowY = m11 * centerY + m12;
+      int dstRow = y * dstWidth;
+
+      // Narrow the row down to the span that can map inside the source, the exact test is still done per pixel
+      double spanStart = bounds.x;
+      double spanEnd = endX;
+      if (m00 != 0) {
+        double a = -rowX / m00 - 0.5;
+        double b = (srcWidth - rowX) / m00 - 0.5;
+        spanStart = Math.max(spanStart, Math.min(a, b) - 1);
+        spanEnd = Math.min(spanEnd, Math.max(a, b) + 1);
+      }
+      if (m10 != 0) {
+        double a = -rowY / m10 - 0.5;
+        double b = (srcHeight - rowY) / m10 - 0.5;
+        spanStart = Math.max(spanStart, Math.min(a, b) - 1);
+        spanEnd = Math.min(spanEnd, Math.max(a, b) + 1);
+      }
+
+      int x = (int) spanStart;
+      if (x >= spanEnd) {
+        continue;
+      }
+      // Walk the row in 32.32 fixed point, the same way Java2D steps through the source
+      long sx = toFixed(m00 * (x + 0.5) + rowX);
+      long sy = toFixed(m10 * (x + 0.5) + rowY);
+      long stepX = toFixed(m00);
+      long stepY = toFixed(m10);
+      long limitX = (long) srcWidth << 32;
+      long limitY = (long) srcHeight << 32;
+
+      for (; x < spanEnd; x++, sx += stepX, sy += stepY) {
+        // Same coverage rule as Java2D: the pixel center must map inside the source image
+        if (sx < 0 || sy < 0 || sx >= limitX || sy >= limitY) {
+          continue;
+        }
+
+        // Sample positions are relative to source pixel centers
+        long fx = sx - HALF;
+        long fy = sy - HALF;
+        int x0 = (int) (fx >> 32);
+        int y0 = (int) (fy >> 32);
+        int wx = (int) (fx >>> 24) & 0xFF;
+        int wy = (int) (fy >>> 24) & 0xFF;
+        int x1 = Math.min(x0 + 1, maxX);
+        int y1 = Math.min(y0 + 1, maxY);
+        if (x0 < 0) {
+          x0 = 0;
+        }
+        if (y0 < 0) {
+          y0 = 0;
+        }
+
+        int p00 = src[y0 * srcWidth + x0];
+        int p01 = src[y0 * srcWidth + x1];
+        int p10 = src[y1 * srcWidth + x0];
+        int p11 = src[y1 * srcWidth + x1];
+        if ((p00 | p01 | p10 | p11) == 0) {
+          // Fully transparent neighbourhood
+          continue;
+        }
+
+        int a, r, g, b;
+        if (p00 == p01 && p00 == p10 && p00 == p11) {
+          // Flat area of the stamp, interpolation would give the same pixel
+          a = p00 >>> 24;
+          r = (p00 >> 16) & 0xFF;
+          g = (p00 >> 8) & 0xFF;
+          b = p00 & 0xFF;
+        } else {
+          int w01 = wx * (256 - wy);
+          int w10 = (256 - wx) * wy;
+          int w11 = wx * wy;
+          int w00 = 65536 - w01 - w10 - w11;
+
+          a = ((p00 >>> 24) * w00 + (p01 >>> 24) * w01 + (p10 >>> 24) * w10 + (p11 >>> 24) * w11 + 32768) >> 16;
+          r = (((p00 >> 16) & 0xFF) * w00 + ((p01 >> 16) & 0xFF) * w01 + ((p10 >> 16) & 0xFF) * w10 + ((p11 >> 16) & 0xFF) * w11 + 32768) >> 16;
+          g = (((p00 >> 8) & 0xFF) * w00 + ((p01 >> 8) & 0xFF) * w01 + ((p10 >> 8) & 0xFF) * w10 + ((p11 >> 8) & 0xFF) * w11 + 32768) >> 16;
+          b = ((p00 & 0xFF) * w00 + (p01 & 0xFF) * w01 + (p10 & 0xFF) * w10 + (p11 & 0xFF) * w11 + 32768) >> 16;
+        }
+        if (a == 0) {
+          continue;
+        }
+
+        int index = dstRow + x;
+        dst[index] = blend(a, r, g, b, dst[index], opaque);
+      }
+    }
+  }
+
+  /**
+   * Src-over of a premultiplied source onto a non-premultiplied destination pixel.
+   */
+  static int blend(int a, int r, int g, int b, int d, boolean opaque) {
+    int inverseAlpha = 255 - a;
+    int da = opaque ? 0xFF : d >>> 24;
+    if (da == 0xFF) {
+      r = Math.min(0xFF, r + mul8(inverseAlpha, (d >> 16) & 0xFF));
+      g = Math.min(0xFF, g + mul8(inverseAlpha, (d >> 8) & 0xFF));
+      b = Math.min(0xFF, b + mul8(inverseAlpha, d & 0xFF));
+      return 0xFF000000 | r << 16 | g << 8 | b;
+    }
+
+    int dstFactor = mul8(inverseAlpha, da);
+    int resultAlpha = a + dstFactor;
+    if (resultAlpha == 0) {
+      return 0;
+    }
+    r = div8(r + mul8(dstFactor, (d >> 16) & 0xFF), resultAlpha);
+    g = div8(g + mul8(dstFactor, (d >> 8) & 0xFF), resultAlpha);
+    b = div8(b + mul8(dstFactor, d & 0xFF), resultAlpha);
+    return resultAlpha << 24 | r << 16 | g << 8 | b;
+  }
+
+  static long toFixed(double value) {
+    return Math.round(value * 4294967296d);
+  }
+
+  /**
+   * @return a * b / 255, rounded
+   */
+  static int mul8(int a, int b) {
+    int t = a * b + 128;
+    return (t + (t >> 8)) >> 8;
+  }
+
+  private static int div8(int value, int alpha) {
+    return Math.min(0xFF, (value * 255 + alpha / 2) / alpha);
+  }
+
+  static boolean isSupportedCanvas(BufferedImage canvas) {
+    int type = canvas.getType();
+    return (type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_RGB) && isWholeRaster(canvas);
+  }
+
+  /**
+   * Sub-images share the data buffer of their parent, those can't be addressed as a plain array.
+   */
+  static boolean isWholeRaster(BufferedImage image) {
+    return image.getRaster().getDataBuffer().getSize() == image.getWidth() * image.getHeight();
+  }
+
+  static int[] getData(BufferedImage image) {
+    return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+  }
+}
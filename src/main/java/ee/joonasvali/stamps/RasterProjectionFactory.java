@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps;
+
+import ee.joonasvali.stamps.color.PositionAwareColor;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * Creates projections that are painted by the software rasterizer in {@link RasterProjection}.
+ * The tinted images are premultiplied, so the rasterizer can sample them without converting every pixel.
+ */
+public class RasterProjectionFactory extends DefaultProjectionFactory {
+  public RasterProjectionFactory() {
+  }
+
+  public RasterProjectionFactory(SpriteCache sprites) {
+    super(sprites);
+  }
+
+  @Override
+  public BufferedImage getRawProjection(BufferedImage mask, Color color) {
+    return AlphaMask.tint(mask, color, 0, 0, true);
+  }
+
+  @Override
+  public BufferedImage getRawProjection(BufferedImage mask, Color color, int x, int y) {
+    return AlphaMask.tint(mask, color, x, y, true);
+  }
+
+  @Override
+  public boolean isTintedOnComposite() {
+    return true;
+  }
+
+  @Override
+  public Projection getProjection(BufferedImage mask, Color color, int x, int y) {
+    return new MaskProjection(mask, color, x, y);
+  }
+
+  @Override
+  public Projection getProjection(BufferedImage mask, SpriteCache.Source source, Color color, int x, int y) {
+    MaskProjection projection = new MaskProjection(mask, color, x, y);
+    if (getSprites().isEnabled()) {
+      projection.setSpriteCache(getSprites(), source);
+    }
+    return projection;
+  }
+
+  @Override
+  protected DefaultProjection createProjection(BufferedImage image) {
+    return new RasterProjection(image);
+  }
+
+  /**
+   * @param img stamp image, rather than a mask.
+   */
+  public static BufferedImage getPremultipliedProjectionImage(BufferedImage img, Color color, int x, int y) {
+    int width = img.getWidth();
+    int height = img.getHeight();
+    int[] pixels = img.getRGB(0, 0, width, height, null, 0, width);
+    BufferedImage newImg = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+    int[] result = ((DataBufferInt) newImg.getRaster().getDataBuffer()).getData();
+    PositionAwareColor awareColor = color instanceof PositionAwareColor ? (PositionAwareColor) color : null;
+    int tint = color.getRGB();
+
+    for (int i = 0; i < height; i++) {
+      for (int j = 0; j < width; j++) {
+        int index = i * width + j;
+        int rgb = pixels[index];
+        int red = (rgb >> 16) & 0xFF;
+        int green = (rgb >> 8) & 0xFF;
+        int blue = rgb & 0xFF;
+        if (red == 255 && green == 255 && blue == 255) {
+          // Transparent, already 0
+          continue;
+        }
+        if (awareColor != null) {
+          tint = awareColor.getRGB(x + j, y + i);
+        }
+        int alpha = 255 - (red + green + blue) / 3;
+        result[index] = alpha << 24
+            | RasterProjection.mul8(alpha, (tint >> 16) & 0xFF) << 16
+            | RasterProjection.mul8(alpha, (tint >> 8) & 0xFF) << 8
+            | RasterProjection.mul8(alpha, tint & 0xFF);
+      }
+    }
+    return newImg;
+  }
+}
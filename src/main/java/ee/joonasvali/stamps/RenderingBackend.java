@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps;
+
+/**
+ * Selects how projections are painted onto the canvas. Configured by the "jartin.renderer" system property.
+ */
+public enum RenderingBackend {
+  /**
+   * Java2D Graphics2D with bilinear interpolation.
+   */
+  JAVA2D {
+    @Override
+    public ProjectionFactory createFactory() {
+      return new DefaultProjectionFactory();
+    }
+  },
+  /**
+   * Software rasterizer working directly on the int[] raster of the canvas.
+   */
+  RASTER {
+    @Override
+    public ProjectionFactory createFactory() {
+      return new RasterProjectionFactory();
+    }
+  };
+
+  public static final RenderingBackend DEFAULT = RASTER;
+
+  public abstract ProjectionFactory createFactory();
+}
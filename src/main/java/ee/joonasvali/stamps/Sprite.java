@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Image derived from a raw projection image: scaled down by {@link #getFactor()} and then rotated by
+ * {@link #getAngle()} degrees around the center of rotation of the raw image, which ends up at
+ * ({@link #getCenterX()}, {@link #getCenterY()}).
+ */
+public final class Sprite {
+  private final BufferedImage image;
+  private final double factor;
+  private final double angle;
+  private final double centerX;
+  private final double centerY;
+
+  public Sprite(BufferedImage image, double factor, double angle, double centerX, double centerY) {
+    this.image = image;
+    this.factor = factor;
+    this.angle = angle;
+    this.centerX = centerX;
+    this.centerY = centerY;
+  }
+
+  public BufferedImage getImage() {
+    return image;
+  }
+
+  public double getFactor() {
+    return factor;
+  }
+
+  public double getAngle() {
+    return angle;
+  }
+
+  public double getCenterX() {
+    return centerX;
+  }
+
+  public double getCenterY() {
+    return centerY;
+  }
+
+  /**
+   * @return true if this is the raw image itself.
+   */
+  public boolean isOriginal() {
+    return factor == 1 && angle == 0;
+  }
+}
@@ -0,0 +1,323 @@
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps;
+
+import ee.joonasvali.stamps.cache.WeightedLruCache;
+import ee.joonasvali.stamps.properties.AppProperties;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * Keeps prefiltered variants of raw projection images that are shared by many projections: a mip level of half the
+ * size, optionally rotated to a number of angle buckets. Mip levels of {@link AlphaMask alpha masks} stay masks.
+ * <p>
+ * A projection scaled below one half samples the mip level instead of skipping over source pixels. Projections are
+ * never scaled below {@link ProjectionGenerator#SCALE_MIN_VALUE}, so smaller levels would never be painted.
+ * <p>
+ * Angle buckets only apply to the tinted images Java2D paints. With angle buckets, most of the rotation is already done
+ * once per sprite, and the projection only rotates by what is left over. With 360 buckets, the integer rotations of
+ * {@link ProjectionGenerator} leave nothing to rotate. Masks are painted by {@link MaskProjection}, which samples any
+ * transform at the same cost, so they are never rotated ahead and the RASTER backend turns the buckets off.
+ * <p>
+ * The cache is bounded by the bytes of the pixels it holds, the least recently used sprites are evicted first.
+ * Configured by "jartin.sprites.budget" (megabytes, 0 turns the cache off) and "jartin.sprites.angles".
+ */
+public class SpriteCache {
+  public static final int MAX_LEVEL = 1;
+
+  private static volatile SpriteCache instance;
+
+  private final WeightedLruCache<Key, Sprite> cache;
+  private final int angleBuckets;
+
+  public static SpriteCache getInstance() {
+    SpriteCache cache = instance;
+    if (cache == null) {
+      synchronized (SpriteCache.class) {
+        cache = instance;
+        if (cache == null) {
+          AppProperties properties = AppProperties.getInstance();
+          int angleBuckets = properties.getRenderingBackend() == RenderingBackend.JAVA2D ? properties.getSpriteAngleBuckets() : 0;
+          cache = new SpriteCache(properties.getSpriteCacheBudget(), angleBuckets);
+          instance = cache;
+        }
+      }
+    }
+    return cache;
+  }
+
+  /**
+   * @param budget bytes the cached sprites may take, 0 to disable caching
+   * @param angleBuckets number of pre-rotated variants per mip level, 0 to rotate at paint time
+   */
+  public SpriteCache(long budget, int angleBuckets) {
+    if (angleBuckets < 0) {
+      throw new IllegalArgumentException("Angle buckets can't be negative: " + angleBuckets);
+    }
+    this.cache = new WeightedLruCache<>(budget, sprite -> getBytes(sprite.getImage()));
+    this.angleBuckets = angleBuckets;
+  }
+
+  public boolean isEnabled() {
+    return cache.getMaxWeight() > 0;
+  }
+
+  /**
+   * @param source the stamp image the raw image is, sprites are kept by it.
+   * @return the sprite to paint the raw image with, at the given scale and rotation.
+   */
+  public Sprite get(Source source, BufferedImage raw, double scale, int rotation) {
+    int level = getLevel(scale);
+    // Masks are sampled with the whole transform while painting, a rotated copy would save nothing
+    int bucket = AlphaMask.isMask(raw) ? 0 : getBucket(rotation);
+    if (!isEnabled() || (level == 0 && bucket == 0)) {
+      return getOriginal(raw);
+    }
+    return cache.get(new Key(source, level, bucket), key -> create(key, raw));
+  }
+
+  public void clear() {
+    cache.clear();
+  }
+
+  /**
+   * Drops the sprites of the stamp, of all of its images.
+   */
+  public void remove(long stamp) {
+    cache.removeIf(key -> key.source.stamp == stamp);
+  }
+
+  /**
+   * @return size and hit rate of the cache.
+   */
+  @Override
+  public String toString() {
+    return cache.toString();
+  }
+
+  private Sprite create(Key key, BufferedImage raw) {
+    if (key.bucket != 0) {
+      return rotate(getMip(key.source, raw, key.level), key.bucket * 360d / angleBuckets);
+    }
+    Sprite previous = getMip(key.source, raw, key.level - 1);
+    BufferedImage image = AlphaMask.isMask(raw) ? AlphaMask.shrink(previous.getImage(), 2) : downsample(previous.getImage());
+    return new Sprite(image, previous.getFactor() / 2, 0, previous.getCenterX() / 2, previous.getCenterY() / 2);
+  }
+
+  private Sprite getMip(Source source, BufferedImage raw, int level) {
+    // The raw image is kept by its stamp, or a cache of its own, for as long as it's needed
+    return level == 0 ? getOriginal(raw) : cache.get(new Key(source, level, 0), key -> create(key, raw));
+  }
+
+  /**
+   * The smallest mip level that is not smaller than the projection will be painted.
+   */
+  static int getLevel(double scale) {
+    int level = 0;
+    while (level < MAX_LEVEL && scale <= 1d / (2 << level)) {
+      level++;
+    }
+    return level;
+  }
+
+  private int getBucket(int rotation) {
+    if (angleBuckets == 0) {
+      return 0;
+    }
+    double bucketSize = 360d / angleBuckets;
+    int bucket = (int) Math.round(rotation / bucketSize) % angleBuckets;
+    return bucket < 0 ? bucket + angleBuckets : bucket;
+  }
+
+  private static Sprite getOriginal(BufferedImage raw) {
+    // Same center of rotation as DefaultProjection uses
+    return new Sprite(raw, 1, 0, raw.getWidth() / 2, raw.getHeight() / 2);
+  }
+
+  private static Sprite rotate(Sprite mip, double angle) {
+    BufferedImage image = mip.getImage();
+    double rad = Math.toRadians(angle);
+    double cos = Math.cos(rad);
+    double sin = Math.sin(rad);
+    double cx = mip.getCenterX();
+    double cy = mip.getCenterY();
+
+    double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+    double[] xs = {-cx, image.getWidth() - cx};
+    double[] ys = {-cy, image.getHeight() - cy};
+    for (double x : xs) {
+      for (double y : ys) {
+        double rx = x * cos - y * sin;
+        double ry = x * sin + y * cos;
+        minX = Math.min(minX, rx);
+        maxX = Math.max(maxX, rx);
+        minY = Math.min(minY, ry);
+        maxY = Math.max(maxY, ry);
+      }
+    }
+
+    // A pixel of margin for the bilinear filter
+    double centerX = Math.ceil(-minX) + 1;
+    double centerY = Math.ceil(-minY) + 1;
+    int width = (int) Math.ceil(centerX + maxX) + 1;
+    int height = (int) Math.ceil(centerY + maxY) + 1;
+
+    BufferedImage rotated = new BufferedImage(width, height, getDerivedType(image));
+    Graphics2D g = rotated.createGraphics();
+    g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+    AffineTransform transform = AffineTransform.getTranslateInstance(centerX, centerY);
+    transform.rotate(rad);
+    transform.translate(-cx, -cy);
+    g.drawImage(image, transform, null);
+    g.dispose();
+    return new Sprite(rotated, mip.getFactor(), angle, centerX, centerY);
+  }
+
+  /**
+   * Halves the image with a 2x2 box filter in premultiplied space. Pixels beyond the edge count as transparent.
+   */
+  static BufferedImage downsample(BufferedImage image) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int[] src = getPremultipliedPixels(image);
+    int newWidth = (width + 1) / 2;
+    int newHeight = (height + 1) / 2;
+    int[] dst = new int[newWidth * newHeight];
+
+    for (int y = 0; y < newHeight; y++) {
+      int row0 = 2 * y * width;
+      int row1 = 2 * y + 1 < height ? row0 + width : -1;
+      for (int x = 0; x < newWidth; x++) {
+        int x0 = 2 * x;
+        int x1 = x0 + 1 < width ? x0 + 1 : -1;
+        int p00 = src[row0 + x0];
+        int p01 = x1 < 0 ? 0 : src[row0 + x1];
+        int p10 = row1 < 0 ? 0 : src[row1 + x0];
+        int p11 = row1 < 0 || x1 < 0 ? 0 : src[row1 + x1];
+        dst[y * newWidth + x] = average(p00, p01, p10, p11);
+      }
+    }
+
+    BufferedImage result = new BufferedImage(newWidth, newHeight, getDerivedType(image));
+    if (result.getType() == BufferedImage.TYPE_INT_ARGB_PRE) {
+      System.arraycopy(dst, 0, ((DataBufferInt) result.getRaster().getDataBuffer()).getData(), 0, dst.length);
+    } else {
+      for (int i = 0; i < dst.length; i++) {
+        dst[i] = unpremultiply(dst[i]);
+      }
+      result.setRGB(0, 0, newWidth, newHeight, dst, 0, newWidth);
+    }
+    return result;
+  }
+
+  private static int average(int p00, int p01, int p10, int p11) {
+    int result = 0;
+    for (int shift = 0; shift < 32; shift += 8) {
+      int sum = ((p00 >>> shift) & 0xFF) + ((p01 >>> shift) & 0xFF) + ((p10 >>> shift) & 0xFF) + ((p11 >>> shift) & 0xFF);
+      result |= ((sum + 2) >> 2) << shift;
+    }
+    return result;
+  }
+
+  private static int[] getPremultipliedPixels(BufferedImage image) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    if (image.getType() == BufferedImage.TYPE_INT_ARGB_PRE && RasterProjection.isWholeRaster(image)) {
+      return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+    int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+    for (int i = 0; i < pixels.length; i++) {
+      int argb = pixels[i];
+      int a = argb >>> 24;
+      pixels[i] = a << 24
+          | RasterProjection.mul8(a, (argb >> 16) & 0xFF) << 16
+          | RasterProjection.mul8(a, (argb >> 8) & 0xFF) << 8
+          | RasterProjection.mul8(a, argb & 0xFF);
+    }
+    return pixels;
+  }
+
+  private static int unpremultiply(int argb) {
+    int a = argb >>> 24;
+    if (a == 0) {
+      return 0;
+    }
+    return a << 24
+        | Math.min(0xFF, (((argb >> 16) & 0xFF) * 255 + a / 2) / a) << 16
+        | Math.min(0xFF, (((argb >> 8) & 0xFF) * 255 + a / 2) / a) << 8
+        | Math.min(0xFF, ((argb & 0xFF) * 255 + a / 2) / a);
+  }
+
+  private static int getDerivedType(BufferedImage image) {
+    return image.getType() == BufferedImage.TYPE_INT_ARGB_PRE ? BufferedImage.TYPE_INT_ARGB_PRE : BufferedImage.TYPE_INT_ARGB;
+  }
+
+  private static long getBytes(BufferedImage image) {
+    if (AlphaMask.isMask(image)) {
+      return (long) image.getWidth() * image.getHeight();
+    }
+    return 4L * image.getWidth() * image.getHeight();
+  }
+
+  /**
+   * One image of a stamp: its mask, or the mask shrunk or tinted in some way, told apart by the variant. Sprites are
+   * kept by it rather than by the image, so a mask loaded again after the {@link ee.joonasvali.stamps.stamp.StampStore}
+   * dropped it still finds its sprites, and the dropped mask isn't held on to.
+   */
+  public static final class Source {
+    private final long stamp;
+    private final Object variant;
+
+    /**
+     * @param stamp id of the stamp, see {@link ee.joonasvali.stamps.stamp.Stamp#getId()}.
+     * @param variant equal for equal images of the stamp, such as the color the stamp was tinted with.
+     */
+    public Source(long stamp, Object variant) {
+      this.stamp = stamp;
+      this.variant = variant;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof Source)) return false;
+      Source source = (Source) o;
+      return stamp == source.stamp && variant.equals(source.variant);
+    }
+
+    @Override
+    public int hashCode() {
+      return Long.hashCode(stamp) * 31 + variant.hashCode();
+    }
+  }
+
+  private static final class Key {
+    private final Source source;
+    private final int level;
+    private final int bucket;
+
+    private Key(Source source, int level, int bucket) {
+      this.source = source;
+      this.level = level;
+      this.bucket = bucket;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof Key)) return false;
+      Key key = (Key) o;
+      return source.equals(key.source) && level == key.level && bucket == key.bucket;
+    }
+
+    @Override
+    public int hashCode() {
+      return (source.hashCode() * 31 + level) * 31 + bucket;
+    }
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps.batch;
+
+import ee.joonasvali.stamps.execution.ExecutionPolicy;
+import ee.joonasvali.stamps.properties.AppProperties;
+import ee.joonasvali.stamps.stamp.StampLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+
+/**
+ * Headless entry point, paints a batch of images straight to files. See {@link BatchOptions#USAGE}.
+ */
+public class BatchMain {
+  public static final Logger log = LoggerFactory.getLogger(BatchMain.class);
+
+  public static void main(String[] args) throws InterruptedException {
+    // Before anything touches AWT
+    if (System.getProperty("java.awt.headless") == null) {
+      System.setProperty("java.awt.headless", "true");
+    }
+
+    BatchOptions options;
+    try {
+      options = BatchOptions.parse(args);
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.println(BatchOptions.USAGE);
+      System.exit(-1);
+      return;
+    }
+    if (options.isHelp()) {
+      System.out.println(BatchOptions.USAGE);
+      return;
+    }
+
+    AppProperties properties = AppProperties.getInstance();
+    File out = options.getOut() != null ? options.getOut() : new File(properties.getOutput());
+    int failed;
+    try {
+      failed = new BatchRenderer(options, new StampLoader(properties.getStampsDir()), out).run();
+    } finally {
+      ExecutionPolicy.getInstance().shutdown();
+    }
+    if (failed > 0) {
+      log.error(failed + " images failed");
+      System.exit(-1);
+    }
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps.batch;
+
+import java.awt.*;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Command line of the batch renderer.
+ */
+public class BatchOptions {
+  public static final String USAGE = String.join(System.lineSeparator(),
+      "Usage: BatchMain [options]",
+      "  -n, --count N            number of images (default: 1, or the number of --seeds)",
+      "  -s, --size WxH[,WxH...]  image sizes, images cycle through them (default: preferences)",
+      "      --seed S             seed of the first image, the next ones get S+1, S+2, ... (default: random)",
+      "      --seeds S1,S2,...    seed of every image",
+      "  -o, --out DIR            output directory (default: jartin.output)",
+      "  -j, --concurrency K      images painted at the same time (default: 2)",
+      "      --strips             paint every image strip by strip straight into its file, for images of any height",
+      "  -h, --help               this help");
+
+  private int count = -1;
+  private List<Dimension> sizes = Collections.emptyList();
+  private long firstSeed = new Random().nextLong();
+  private List<Long> seeds = Collections.emptyList();
+  private File out;
+  private int concurrency = 2;
+  private boolean strips;
+  private boolean help;
+
+  /**
+   * @throws IllegalArgumentException if the arguments are invalid, the message says why.
+   */
+  public static BatchOptions parse(String[] args) throws IllegalArgumentException {
+    BatchOptions options = new BatchOptions();
+    for (int i = 0; i < args.length; i++) {
+      String arg = args[i];
+      switch (arg) {
+        case "-n":
+        case "--count":
+          options.count = parsePositive(arg, value(args, ++i, arg));
+          break;
+        case "-s":
+        case "--size":
+          options.sizes = parseSizes(value(args, ++i, arg));
+          break;
+        case "--seed":
+          options.firstSeed = parseLong(arg, value(args, ++i, arg));
+          break;
+        case "--seeds":
+          List<Long> seeds = new ArrayList<>();
+          for (String seed : value(args, ++i, arg).split(",")) {
+            seeds.add(parseLong(arg, seed.trim()));
+          }
+          options.seeds = seeds;
+          break;
+        case "-o":
+        case "--out":
+          options.out = new File(value(args, ++i, arg));
+          break;
+        case "-j":
+        case "--concurrency":
+          options.concurrency = parsePositive(arg, value(args, ++i, arg));
+          break;
+        case "--strips":
+          options.strips = true;
+          break;
+        case "-h":
+        case "--help":
+          options.help = true;
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown option " + arg);
+      }
+    }
+    if (options.count < 0) {
+      options.count = options.seeds.isEmpty() ? 1 : options.seeds.size();
+    }
+    return options;
+  }
+
+  public int getCount() {
+    return count;
+  }
+
+  /**
+   * @return size of the image, or null to use the size from the preferences.
+   */
+  public Dimension getSize(int image) {
+    return sizes.isEmpty() ? null : sizes.get(image % sizes.size());
+  }
+
+  public long getSeed(int image) {
+    return image < seeds.size() ? seeds.get(image) : firstSeed + image;
+  }
+
+  /**
+   * @return output directory, or null to use the configured output.
+   */
+  public File getOut() {
+    return out;
+  }
+
+  public int getConcurrency() {
+    return concurrency;
+  }
+
+  public boolean isStrips() {
+    return strips;
+  }
+
+  public boolean isHelp() {
+    return help;
+  }
+
+  private static String value(String[] args, int i, String option) {
+    if (i >= args.length) {
+      throw new IllegalArgumentException("Missing value for " + option);
+    }
+    return args[i];
+  }
+
+  private static int parsePositive(String option, String value) {
+    try {
+      int result = Integer.parseInt(value);
+      if (result > 0) {
+        return result;
+      }
+    } catch (NumberFormatException e) {
+      // Reported below
+    }
+    throw new IllegalArgumentException("Expected a positive number for " + option + ", got '" + value + "'");
+  }
+
+  private static long parseLong(String option, String value) {
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Expected a number for " + option + ", got '" + value + "'");
+    }
+  }
+
+  private static List<Dimension> parseSizes(String value) {
+    List<Dimension> sizes = new ArrayList<>();
+    for (String size : value.split(",")) {
+      String[] parts = size.trim().toLowerCase().split("x");
+      if (parts.length != 2) {
+        throw new IllegalArgumentException("Expected size as WxH, got '" + size + "'");
+      }
+      sizes.add(new Dimension(parsePositive("--size", parts[0]), parsePositive("--size", parts[1])));
+    }
+    return sizes;
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps.batch;
+
+import ee.joonasvali.stamps.canvas.MappedTileCanvas;
+import ee.joonasvali.stamps.execution.ExecutionPolicy;
+import ee.joonasvali.stamps.painting.PaintingController;
+import ee.joonasvali.stamps.painting.PaintingControllerImpl;
+import ee.joonasvali.stamps.png.PngWriter;
+import ee.joonasvali.stamps.png.SaveQueue;
+import ee.joonasvali.stamps.properties.AppProperties;
+import ee.joonasvali.stamps.query.DefaultBinaryFormulaGenerator;
+import ee.joonasvali.stamps.stamp.StampLoader;
+import ee.joonasvali.stamps.ui.Preferences;
+import ee.joonasvali.stamps.ui.ProgressListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Paints images without any UI. Several images are painted at the same time, all of them using the same,
+ * already loaded stamps. Each image has a controller of its own, so they don't share any painting state.
+ */
+public class BatchRenderer {
+  private static Logger log = LoggerFactory.getLogger(BatchRenderer.class);
+  private static final ProgressListener SILENT = new ProgressListener() {
+    @Override
+    public void setValue(int value) {
+    }
+
+    @Override
+    public void setValue(String s) {
+    }
+  };
+
+  /**
+   * Images with more pixels than this are painted onto a file backed canvas.
+   */
+  static final long TILED_PIXELS = 64L * 1024 * 1024;
+  // Rows of a tiled canvas read into the heap at a time for saving
+  private static final int SAVED_ROWS = 64;
+
+  private final BatchOptions options;
+  private final StampLoader stampPool;
+  private final File out;
+  private final SaveQueue saveQueue;
+
+  public BatchRenderer(BatchOptions options, StampLoader stampPool, File out) {
+    this.options = options;
+    this.stampPool = stampPool;
+    this.out = out;
+    // Images painted while the previous ones get saved, but not more of them waiting than there are painters
+    this.saveQueue = new SaveQueue(options.getConcurrency());
+  }
+
+  /**
+   * @return number of images that failed.
+   */
+  public int run() throws InterruptedException {
+    if (!out.isDirectory() && !out.mkdirs()) {
+      throw new IllegalArgumentException("Can't create output directory " + out);
+    }
+    stampPool.load();
+
+    ExecutorService executor = ExecutionPolicy.getInstance().newExecutor("jartin-batch", options.getConcurrency());
+    long begin = System.currentTimeMillis();
+    List<Future<CompletableFuture<File>>> images = new ArrayList<>(options.getCount());
+    for (int i = 0; i < options.getCount(); i++) {
+      int image = i;
+      images.add(executor.submit(() -> paint(image)));
+    }
+
+    int failed = 0;
+    for (Future<CompletableFuture<File>> image : images) {
+      try {
+        log.info("Saved " + image.get().get());
+      } catch (ExecutionException e) {
+        failed++;
+        log.error("Painting failed", e.getCause());
+      }
+    }
+    executor.shutdown();
+
+    double minutes = (System.currentTimeMillis() - begin) / 60000d;
+    int done = options.getCount() - failed;
+    log.info(String.format("%d images painted in %.1f s, %.2f images per minute", done, minutes * 60, done / minutes));
+    return failed;
+  }
+
+  /**
+   * @return completes once the image is saved.
+   */
+  private CompletableFuture<File> paint(int image) throws IOException, InterruptedException {
+    long seed = options.getSeed(image);
+    Preferences prefs = new Preferences();
+    Dimension size = options.getSize(image);
+    if (size != null) {
+      prefs.setWidth(size.width);
+      prefs.setHeight(size.height);
+    }
+
+    PaintingController controller = new PaintingControllerImpl(
+        new DefaultBinaryFormulaGenerator(), new DefaultBinaryFormulaGenerator(), new DefaultBinaryFormulaGenerator(),
+        stampPool, prefs
+    );
+    long begin = System.currentTimeMillis();
+    CompletableFuture<File> saved;
+    File file = new File(out, "jartin-" + seed + "-" + prefs.getWidth() + "x" + prefs.getHeight() + ".png");
+    if (options.isStrips()) {
+      if (!controller.generateImageFile(SILENT, seed, file).isPresent()) {
+        throw new IllegalStateException("Painting with seed " + seed + " was cancelled");
+      }
+      saved = CompletableFuture.completedFuture(file);
+    } else if ((long) prefs.getWidth() * prefs.getHeight() > TILED_PIXELS) {
+      Optional<MappedTileCanvas> result = controller.generateTiledImage(SILENT, seed, out);
+      if (!result.isPresent()) {
+        throw new IllegalStateException("Painting with seed " + seed + " was cancelled");
+      }
+      try (MappedTileCanvas canvas = result.get()) {
+        write(canvas, file);
+      }
+      saved = CompletableFuture.completedFuture(file);
+    } else {
+      Optional<BufferedImage> result = controller.generateImage(SILENT, seed);
+      if (!result.isPresent()) {
+        throw new IllegalStateException("Painting with seed " + seed + " was cancelled");
+      }
+      saved = saveQueue.put(result.get(), file);
+    }
+    log.info("Image " + (image + 1) + "/" + options.getCount() + " took " + (System.currentTimeMillis() - begin) + " ms");
+    return saved;
+  }
+
+  private static void write(MappedTileCanvas canvas, File file) throws IOException {
+    int width = canvas.getWidth();
+    int height = canvas.getHeight();
+    int[] rows = new int[width * SAVED_ROWS];
+    try (PngWriter png = new PngWriter(file, width, height, false, AppProperties.getInstance().getPngCompression())) {
+      for (int y = 0; y < height; y += SAVED_ROWS) {
+        int count = Math.min(SAVED_ROWS, height - y);
+        for (int r = 0; r < count; r++) {
+          canvas.getRGB(0, y + r, width, rows, r * width);
+        }
+        png.writeRows(rows, 0, width, count);
+      }
+    }
+  }
+}
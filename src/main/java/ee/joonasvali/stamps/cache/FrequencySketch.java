@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps.cache;
+
+/**
+ * Approximate count of how often each key was asked for lately, in a fixed amount of memory: a count-min sketch of
+ * small counters. Every counter is halved after a while, so keys that were popular long ago fade out. Not thread
+ * safe.
+ */
+class FrequencySketch {
+  private static final int MAX_COUNT = 15;
+  private static final int HASHES = 4;
+  private static final int[] SEEDS = {0x97CB3127, 0xB492B66F, 0x9AE16A3B, 0xC3A5C85C};
+
+  private final byte[] counters;
+  private final int mask;
+  private final int sampleSize;
+  private int additions;
+
+  /**
+   * @param width number of counters, rounded up to a power of two. A few times the number of keys the cache holds.
+   */
+  FrequencySketch(int width) {
+    int size = Integer.highestOneBit(Math.max(width, 16) - 1) << 1;
+    this.counters = new byte[size];
+    this.mask = size - 1;
+    this.sampleSize = size * 10;
+  }
+
+  void increment(Object key) {
+    int hash = spread(key.hashCode());
+    boolean added = false;
+    for (int i = 0; i < HASHES; i++) {
+      int index = index(hash, i);
+      if (counters[index] < MAX_COUNT) {
+        counters[index]++;
+        added = true;
+      }
+    }
+    if (added && ++additions >= sampleSize) {
+      age();
+    }
+  }
+
+  int frequency(Object key) {
+    int hash = spread(key.hashCode());
+    int frequency = MAX_COUNT;
+    for (int i = 0; i < HASHES; i++) {
+      frequency = Math.min(frequency, counters[index(hash, i)]);
+    }
+    return frequency;
+  }
+
+  private void age() {
+    for (int i = 0; i < counters.length; i++) {
+      counters[i] >>= 1;
+    }
+    additions /= 2;
+  }
+
+  private int index(int hash, int i) {
+    int h = (hash + SEEDS[i]) * SEEDS[i];
+    return (h ^ (h >>> 16)) & mask;
+  }
+
+  private static int spread(int hash) {
+    hash ^= hash >>> 16;
+    hash *= 0x45D9F3B;
+    return hash ^ (hash >>> 16);
+  }
+}
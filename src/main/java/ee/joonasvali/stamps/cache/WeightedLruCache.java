@@ -0,0 +1,257 @@
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps.cache;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * Cache limited by the total weight (usually bytes) of its values, evicting the least recently used values first.
+ * <p>
+ * A value is computed once, by the first thread asking for it. Other threads asking for the same key meanwhile wait
+ * for that computation instead of repeating it. The cache lock is not held while computing.
+ * <p>
+ * With admission on, the cache keeps count of how often keys are asked for, including keys it doesn't hold (as
+ * TinyLFU does). A new value then only pushes out values that are asked for less often than itself, otherwise the
+ * new value is handed out but not kept. That stops a burst of one-off values from flushing the values in steady use.
+ */
+public class WeightedLruCache<K, V> {
+  private final long maxWeight;
+  private final ToLongFunction<? super V> weigher;
+  private final LinkedHashMap<K, Entry<V>> map = new LinkedHashMap<>(64, 0.75f, true);
+  // Counters of keys asked for, null without admission
+  private final FrequencySketch sketch;
+  private long weight;
+  private long hits;
+  private long misses;
+  private long evictions;
+  private long rejections;
+
+  public WeightedLruCache(long maxWeight, ToLongFunction<? super V> weigher) {
+    this(maxWeight, weigher, 0);
+  }
+
+  /**
+   * @param admissionWidth counters kept for the admission, a few times the number of values the cache is expected
+   * to hold. 0 to keep every new value.
+   */
+  public WeightedLruCache(long maxWeight, ToLongFunction<? super V> weigher, int admissionWidth) {
+    if (maxWeight < 0) {
+      throw new IllegalArgumentException("Max weight can't be negative: " + maxWeight);
+    }
+    if (admissionWidth < 0) {
+      throw new IllegalArgumentException("Admission width can't be negative: " + admissionWidth);
+    }
+    this.maxWeight = maxWeight;
+    this.weigher = weigher;
+    this.sketch = admissionWidth > 0 ? new FrequencySketch(admissionWidth) : null;
+  }
+
+  /**
+   * @return the cached value for the key, computing it with the loader if it's not cached.
+   */
+  public V get(K key, Function<? super K, ? extends V> loader) {
+    Entry<V> entry;
+    boolean created = false;
+    synchronized (this) {
+      if (sketch != null) {
+        sketch.increment(key);
+      }
+      entry = map.get(key);
+      if (entry != null) {
+        hits++;
+      } else {
+        misses++;
+        entry = new Entry<>(new FutureTask<>(() -> loader.apply(key)));
+        map.put(key, entry);
+        created = true;
+      }
+    }
+
+    if (created) {
+      entry.task.run();
+      settle(key, entry);
+    }
+    return getUninterruptibly(entry.task);
+  }
+
+  public synchronized void clear() {
+    map.clear();
+    weight = 0;
+  }
+
+  /**
+   * Drops the values of the keys that match, values still being computed included.
+   *
+   * @return the values dropped that were computed already.
+   */
+  public synchronized List<V> removeIf(Predicate<? super K> filter) {
+    List<V> removed = new ArrayList<>();
+    Iterator<Map.Entry<K, Entry<V>>> iterator = map.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<K, Entry<V>> item = iterator.next();
+      if (filter.test(item.getKey())) {
+        Entry<V> entry = item.getValue();
+        // Values being computed aren't counted yet, and aren't settled once they are gone from the map
+        weight -= entry.weight;
+        iterator.remove();
+        if (entry.task.isDone()) {
+          try {
+            removed.add(entry.task.get());
+          } catch (InterruptedException | ExecutionException e) {
+            // Failed values weren't kept anyway
+          }
+        }
+      }
+    }
+    return removed;
+  }
+
+  public synchronized long getWeight() {
+    return weight;
+  }
+
+  public long getMaxWeight() {
+    return maxWeight;
+  }
+
+  public synchronized int size() {
+    return map.size();
+  }
+
+  /**
+   * @return number of times a value was found in the cache, or being computed for another thread.
+   */
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  /**
+   * @return number of times a value had to be computed.
+   */
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  /**
+   * @return number of values pushed out to make room for new ones.
+   */
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  /**
+   * @return number of new values not kept, as they didn't fit or were asked for less often than the values they
+   * would push out.
+   */
+  public synchronized long getRejections() {
+    return rejections;
+  }
+
+  @Override
+  public synchronized String toString() {
+    long requests = hits + misses;
+    return String.format("%d values, %d/%d MB, hits %d (%.1f%%), misses %d, evictions %d, rejections %d",
+        map.size(), weight / (1024 * 1024), maxWeight / (1024 * 1024), hits, requests == 0 ? 0d : 100d * hits / requests,
+        misses, evictions, rejections);
+  }
+
+  private synchronized void settle(K key, Entry<V> entry) {
+    if (map.get(key) != entry) {
+      // Cleared while computing
+      return;
+    }
+    V value;
+    try {
+      value = entry.task.get();
+    } catch (InterruptedException | ExecutionException e) {
+      map.remove(key);
+      return;
+    }
+    entry.weight = weigher.applyAsLong(value);
+    weight += entry.weight;
+    if (entry.weight > maxWeight) {
+      reject(key, entry);
+      return;
+    }
+
+    // Victims are picked before any is pushed out, the new value may yet be turned away
+    long excess = weight - maxWeight;
+    List<K> victims = new ArrayList<>();
+    Iterator<Map.Entry<K, Entry<V>>> iterator = map.entrySet().iterator();
+    while (excess > 0 && iterator.hasNext()) {
+      Map.Entry<K, Entry<V>> eldest = iterator.next();
+      Entry<V> victim = eldest.getValue();
+      if (victim == entry || !victim.task.isDone()) {
+        // The new value itself, or still being computed and not counted yet
+        continue;
+      }
+      if (sketch != null && sketch.frequency(key) <= sketch.frequency(eldest.getKey())) {
+        reject(key, entry);
+        return;
+      }
+      victims.add(eldest.getKey());
+      excess -= victim.weight;
+    }
+    if (excess > 0) {
+      // Nothing left to push out
+      reject(key, entry);
+      return;
+    }
+    for (K victim : victims) {
+      weight -= map.remove(victim).weight;
+      evictions++;
+    }
+  }
+
+  private void reject(K key, Entry<V> entry) {
+    map.remove(key);
+    weight -= entry.weight;
+    rejections++;
+  }
+
+  private static <V> V getUninterruptibly(FutureTask<V> task) {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          return task.get();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+          }
+          if (cause instanceof Error) {
+            throw (Error) cause;
+          }
+          throw new IllegalStateException(cause);
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private static class Entry<V> {
+    private final FutureTask<V> task;
+    private long weight;
+
+    private Entry(FutureTask<V> task) {
+      this.task = task;
+    }
+  }
+}
@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps.canvas;
+
+import ee.joonasvali.stamps.Projection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.RenderedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * ARGB canvas of square tiles kept in a memory-mapped file, for paintings too big for the heap or for a single array.
+ * <p>
+ * Tiles are keyed by their index, row by row. A tile touched by a projection is paged in to an on-heap image and
+ * painted there, the least recently painted tiles are written back to the file once the resident tiles take more
+ * than their budget. So the tiles on the heap follow the projection stream. A tile that was never painted isn't
+ * stored at all, its pixels come from the {@link TileFiller}.
+ * <p>
+ * Each row of tiles is mapped as a whole, once a tile of it is first written out. The mappings are released by
+ * {@link #close()} before the file is deleted, a file that is still mapped can't be deleted on every system.
+ * <p>
+ * Compositing is done from a single thread at a time. Reading can be done from several threads at once, once
+ * compositing is over.
+ */
+public class MappedTileCanvas implements Closeable {
+  private static final Logger log = LoggerFactory.getLogger(MappedTileCanvas.class);
+
+  /**
+   * Fills a region of a fresh canvas.
+   */
+  public interface TileFiller {
+    /**
+     * @param data destination, row r of the region starts at {@code offset + r * scanline}.
+     */
+    void fill(int[] data, int offset, int scanline, int x, int y, int width, int height);
+  }
+
+  private final int width, height;
+  private final int tileSize;
+  private final int tilesX, tilesY;
+  private final long tileBytes;
+  private final long rowBytes;
+  private final int maxResidentTiles;
+  private final TileFiller filler;
+  private final File file;
+  private final RandomAccessFile storage;
+  private final FileChannel channel;
+  // Rows of tiles, mapped when a tile of the row is first written out
+  private final MappedByteBuffer[] mappings;
+  // Tiles that have been written to the file
+  private final BitSet stored;
+  // Tiles on the heap, least recently painted first. Reordered only when painted, so reading doesn't modify it
+  private final LinkedHashMap<Integer, BufferedImage> resident = new LinkedHashMap<>();
+
+  /**
+   * @param residentBytes how much of the heap the resident tiles may take, at least one tile is resident.
+   * @param directory where to create the file, it is deleted on {@link #close()}.
+   */
+  public MappedTileCanvas(int width, int height, int tileSize, long residentBytes, File directory, TileFiller filler) throws IOException {
+    if (width <= 0 || height <= 0 || tileSize <= 0) {
+      throw new IllegalArgumentException("Invalid canvas " + width + "x" + height + " with tiles of " + tileSize);
+    }
+    this.width = width;
+    this.height = height;
+    this.tileSize = tileSize;
+    this.tilesX = (width + tileSize - 1) / tileSize;
+    this.tilesY = (height + tileSize - 1) / tileSize;
+    if ((long) tilesX * tilesY > Integer.MAX_VALUE - 8) {
+      throw new IllegalArgumentException("Too many tiles for a " + width + "x" + height + " canvas, use bigger tiles");
+    }
+    this.tileBytes = 4L * tileSize * tileSize;
+    this.rowBytes = tileBytes * tilesX;
+    if (rowBytes > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("A row of " + tilesX + " tiles of " + tileSize + " is too big to be mapped, use smaller tiles");
+    }
+    this.maxResidentTiles = (int) Math.max(residentBytes / tileBytes, 1);
+    this.filler = filler;
+    this.mappings = new MappedByteBuffer[tilesY];
+    this.stored = new BitSet(tilesX * tilesY);
+
+    file = File.createTempFile("jartin-canvas-", ".tiles", directory);
+    file.deleteOnExit();
+    storage = new RandomAccessFile(file, "rw");
+    // Sparse on most file systems, only the stored tiles take disk space
+    storage.setLength(tileBytes * tilesX * tilesY);
+    channel = storage.getChannel();
+    log.debug("Canvas " + width + "x" + height + " in " + tilesX * tilesY + " tiles, backed by " + file);
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  public int getTileSize() {
+    return tileSize;
+  }
+
+  public int getTilesX() {
+    return tilesX;
+  }
+
+  public int getTilesY() {
+    return tilesY;
+  }
+
+  public int getTileIndex(int tileX, int tileY) {
+    return tileY * tilesX + tileX;
+  }
+
+  /**
+   * Paints the projections in order. Tiles are composited in parallel, each by a single thread, so the result
+   * is the same as painting the projections one by one.
+   */
+  public void composite(List<Projection> projections, ForkJoinPool pool) throws InterruptedException {
+    Rectangle canvasBounds = new Rectangle(0, 0, width, height);
+    // Projections of each touched tile, in painter's order
+    Map<Integer, List<Projection>> tiles = new LinkedHashMap<>();
+    for (Projection projection : projections) {
+      Rectangle bounds = projection.getBounds().intersection(canvasBounds);
+      if (bounds.isEmpty()) {
+        continue;
+      }
+      int endX = (bounds.x + bounds.width - 1) / tileSize;
+      int endY = (bounds.y + bounds.height - 1) / tileSize;
+      for (int ty = bounds.y / tileSize; ty <= endY; ty++) {
+        for (int tx = bounds.x / tileSize; tx <= endX; tx++) {
+          tiles.computeIfAbsent(getTileIndex(tx, ty), index -> new ArrayList<>()).add(projection);
+        }
+      }
+    }
+
+    // At most the budget of tiles is paged in at once
+    List<Map.Entry<Integer, List<Projection>>> entries = new ArrayList<>(tiles.entrySet());
+    for (int from = 0; from < entries.size(); from += maxResidentTiles) {
+      compositeTiles(entries.subList(from, Math.min(from + maxResidentTiles, entries.size())), pool);
+      evict();
+    }
+  }
+
+  private void compositeTiles(List<Map.Entry<Integer, List<Projection>>> tiles, ForkJoinPool pool) throws InterruptedException {
+    List<Callable<BufferedImage>> tasks = new ArrayList<>(tiles.size());
+    for (Map.Entry<Integer, List<Projection>> entry : tiles) {
+      int index = entry.getKey();
+      BufferedImage tile = resident.get(index);
+      tasks.add(() -> {
+        BufferedImage image = tile == null ? pageIn(index) : tile;
+        int originX = (index % tilesX) * tileSize;
+        int originY = (index / tilesX) * tileSize;
+        for (Projection projection : entry.getValue()) {
+          projection.paintTo(image, originX, originY);
+        }
+        return image;
+      });
+    }
+
+    List<Future<BufferedImage>> results = pool.invokeAll(tasks);
+    for (int i = 0; i < results.size(); i++) {
+      int index = tiles.get(i).getKey();
+      try {
+        BufferedImage tile = results.get(i).get();
+        resident.remove(index);
+        resident.put(index, tile);
+      } catch (ExecutionException e) {
+        throw new IllegalStateException("Compositing tile " + index + " failed", e.getCause());
+      }
+    }
+  }
+
+  /**
+   * Reads ARGB pixels of row y, from x on.
+   */
+  public void getRGB(int x, int y, int length, int[] dst, int offset) {
+    int tileY = y / tileSize;
+    int rowInTile = y % tileSize;
+    int end = x + length;
+    while (x < end) {
+      int tileX = x / tileSize;
+      int column = x % tileSize;
+      int count = Math.min(tileSize - column, end - x);
+      int index = getTileIndex(tileX, tileY);
+      BufferedImage tile = resident.get(index);
+      if (tile != null) {
+        System.arraycopy(getData(tile), rowInTile * tileSize + column, dst, offset, count);
+      } else if (stored.get(index)) {
+        IntBuffer buffer = getStoredTile(index);
+        buffer.position(buffer.position() + rowInTile * tileSize + column);
+        buffer.get(dst, offset, count);
+      } else {
+        filler.fill(dst, offset, count, x, y, count, 1);
+      }
+      x += count;
+      offset += count;
+    }
+  }
+
+  /**
+   * @return the canvas as an image that reads its pixels only when asked for them, row by row if needed.
+   */
+  public RenderedImage asImage() {
+    return new MappedTileCanvasImage(this);
+  }
+
+  /**
+   * Releases the mappings and deletes the file, the canvas can't be used anymore. Nothing may read from it while it's
+   * closed.
+   */
+  @Override
+  public void close() throws IOException {
+    resident.clear();
+    for (int i = 0; i < mappings.length; i++) {
+      if (mappings[i] != null) {
+        unmap(mappings[i]);
+        mappings[i] = null;
+      }
+    }
+    channel.close();
+    storage.close();
+    if (!file.delete()) {
+      // Left for deleteOnExit
+      log.warn("Unable to delete " + file);
+    }
+  }
+
+  private BufferedImage pageIn(int index) {
+    BufferedImage tile = new BufferedImage(tileSize, tileSize, BufferedImage.TYPE_INT_ARGB);
+    int[] data = getData(tile);
+    if (stored.get(index)) {
+      getStoredTile(index).get(data);
+    } else {
+      int x = (index % tilesX) * tileSize;
+      int y = (index / tilesX) * tileSize;
+      filler.fill(data, 0, tileSize, x, y, Math.min(tileSize, width - x), Math.min(tileSize, height - y));
+    }
+    return tile;
+  }
+
+  private void evict() {
+    Iterator<Map.Entry<Integer, BufferedImage>> iterator = resident.entrySet().iterator();
+    while (resident.size() > maxResidentTiles) {
+      Map.Entry<Integer, BufferedImage> eldest = iterator.next();
+      int index = eldest.getKey();
+      getStoredTile(index).put(getData(eldest.getValue()));
+      stored.set(index);
+      iterator.remove();
+    }
+  }
+
+  /**
+   * @return pixels of the tile in the file, positioned at the first one. Tiles are mapped when they are first written
+   * out while compositing, so reading after compositing doesn't map anything.
+   */
+  private IntBuffer getStoredTile(int index) {
+    int row = index / tilesX;
+    MappedByteBuffer mapping = mappings[row];
+    if (mapping == null) {
+      try {
+        mapping = channel.map(FileChannel.MapMode.READ_WRITE, row * rowBytes, rowBytes);
+      } catch (IOException e) {
+        throw new IllegalStateException("Unable to map tile row " + row + " of " + file, e);
+      }
+      mapping.order(ByteOrder.nativeOrder());
+      mappings[row] = mapping;
+    }
+    IntBuffer tile = mapping.asIntBuffer();
+    tile.position((index % tilesX) * tileSize * tileSize);
+    return tile;
+  }
+
+  /**
+   * Releases the mapping right away instead of when it's garbage collected. There is no public API for it, so it's
+   * done the way the running Java allows, or left to the garbage collector if it allows neither.
+   */
+  private static void unmap(MappedByteBuffer mapping) {
+    try {
+      // Java 9 and later
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+      theUnsafe.setAccessible(true);
+      unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(theUnsafe.get(null), mapping);
+      return;
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      log.trace("No Unsafe.invokeCleaner", e);
+    }
+    try {
+      // Java 8
+      Method cleanerMethod = mapping.getClass().getMethod("cleaner");
+      cleanerMethod.setAccessible(true);
+      Object cleaner = cleanerMethod.invoke(mapping);
+      if (cleaner != null) {
+        cleaner.getClass().getMethod("clean").invoke(cleaner);
+      }
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      log.debug("Unable to release a mapping of the canvas, it's released when garbage collected", e);
+    }
+  }
+
+  private static int[] getData(BufferedImage tile) {
+    return ((DataBufferInt) tile.getRaster().getDataBuffer()).getData();
+  }
+}
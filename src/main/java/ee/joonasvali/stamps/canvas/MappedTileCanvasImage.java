@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps.canvas;
+
+import java.awt.*;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Vector;
+
+/**
+ * Read only {@link RenderedImage} view of a {@link MappedTileCanvas}. Pixels are read only for the requested
+ * region, so writers asking for a row at a time, like the PNG writer of ImageIO, never hold the whole image.
+ */
+class MappedTileCanvasImage implements RenderedImage {
+  private static final int[] MASKS = {0x00FF0000, 0x0000FF00, 0x000000FF, 0xFF000000};
+
+  private final MappedTileCanvas canvas;
+  private final ColorModel colorModel = ColorModel.getRGBdefault();
+
+  MappedTileCanvasImage(MappedTileCanvas canvas) {
+    this.canvas = canvas;
+  }
+
+  @Override
+  public Raster getData(Rectangle rect) {
+    Rectangle region = rect.intersection(new Rectangle(0, 0, getWidth(), getHeight()));
+    if (region.isEmpty()) {
+      throw new IllegalArgumentException("Region " + rect + " is outside of the image");
+    }
+    return read(region);
+  }
+
+  @Override
+  public Raster getData() {
+    return read(new Rectangle(0, 0, getWidth(), getHeight()));
+  }
+
+  @Override
+  public WritableRaster copyData(WritableRaster raster) {
+    if (raster == null) {
+      return read(new Rectangle(0, 0, getWidth(), getHeight()));
+    }
+    Rectangle region = raster.getBounds().intersection(new Rectangle(0, 0, getWidth(), getHeight()));
+    int[] row = new int[region.width];
+    for (int y = region.y; y < region.y + region.height; y++) {
+      canvas.getRGB(region.x, y, region.width, row, 0);
+      raster.setDataElements(region.x, y, region.width, 1, row);
+    }
+    return raster;
+  }
+
+  @Override
+  public Raster getTile(int tileX, int tileY) {
+    int tileSize = canvas.getTileSize();
+    return getData(new Rectangle(tileX * tileSize, tileY * tileSize, tileSize, tileSize));
+  }
+
+  private WritableRaster read(Rectangle region) {
+    int[] data = new int[region.width * region.height];
+    for (int y = 0; y < region.height; y++) {
+      canvas.getRGB(region.x, region.y + y, region.width, data, y * region.width);
+    }
+    SampleModel model = new SinglePixelPackedSampleModel(DataBuffer.TYPE_INT, region.width, region.height, MASKS);
+    return Raster.createWritableRaster(model, new DataBufferInt(data, data.length), new Point(region.x, region.y));
+  }
+
+  @Override
+  public Vector<RenderedImage> getSources() {
+    return null;
+  }
+
+  @Override
+  public Object getProperty(String name) {
+    return Image.UndefinedProperty;
+  }
+
+  @Override
+  public String[] getPropertyNames() {
+    return null;
+  }
+
+  @Override
+  public ColorModel getColorModel() {
+    return colorModel;
+  }
+
+  @Override
+  public SampleModel getSampleModel() {
+    int tileSize = canvas.getTileSize();
+    return new SinglePixelPackedSampleModel(DataBuffer.TYPE_INT, tileSize, tileSize, MASKS);
+  }
+
+  @Override
+  public int getWidth() {
+    return canvas.getWidth();
+  }
+
+  @Override
+  public int getHeight() {
+    return canvas.getHeight();
+  }
+
+  @Override
+  public int getMinX() {
+    return 0;
+  }
+
+  @Override
+  public int getMinY() {
+    return 0;
+  }
+
+  @Override
+  public int getNumXTiles() {
+    return canvas.getTilesX();
+  }
+
+  @Override
+  public int getNumYTiles() {
+    return canvas.getTilesY();
+  }
+
+  @Override
+  public int getMinTileX() {
+    return 0;
+  }
+
+  @Override
+  public int getMinTileY() {
+    return 0;
+  }
+
+  @Override
+  public int getTileWidth() {
+    return canvas.getTileSize();
+  }
+
+  @Override
+  public int getTileHeight() {
+    return canvas.getTileSize();
+  }
+
+  @Override
+  public int getTileGridXOffset() {
+    return 0;
+  }
+
+  @Override
+  public int getTileGridYOffset() {
+    return 0;
+  }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps.color;
+
+import java.awt.*;
+
+/**
+ * The same color on a canvas scaled by a factor: position (x, y) gets the color of (x * factor, y * factor).
+ */
+public class ScaledPositionAwareColor extends PositionAwareColor {
+  private static final long serialVersionUID = 1L;
+
+  private final PositionAwareColor color;
+  private final double factor;
+
+  public ScaledPositionAwareColor(PositionAwareColor color, double factor) {
+    super(color.getRGB());
+    this.color = color;
+    this.factor = factor;
+  }
+
+  @Override
+  public Color getColor(int x, int y) {
+    return color.getColor((int) (x * factor), (int) (y * factor));
+  }
+
+  @Override
+  public int getRGB(int x, int y) {
+    return color.getRGB((int) (x * factor), (int) (y * factor));
+  }
+
+  @Override
+  public boolean isConstantInRow() {
+    return color.isConstantInRow();
+  }
+}
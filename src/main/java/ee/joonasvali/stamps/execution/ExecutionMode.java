@@ -0,0 +1,27 @@
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps.execution;
+
+/**
+ * Selects the kind of threads Jartin works on. Configured by the "jartin.execution" system property,
+ * the number of compute threads by "jartin.threads".
+ */
+public enum ExecutionMode {
+  /**
+   * Fixed pool of platform threads for generating projections, and the same number of threads for loading stamps.
+   */
+  PLATFORM,
+  /**
+   * Work-stealing fork-join pool for generating projections and loading stamps.
+   */
+  FORK_JOIN,
+  /**
+   * Fixed pool of platform threads for generating projections, a virtual thread per task for loading stamps.
+   * Falls back to an unbounded pool of platform threads on JVMs without virtual threads.
+   */
+  VIRTUAL;
+
+  public static final ExecutionMode DEFAULT = PLATFORM;
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps.execution;
+
+import ee.joonasvali.stamps.painting.ProjectionRenderer;
+import ee.joonasvali.stamps.properties.AppProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The one place where Jartin creates its threads. Every executor is created here, so they can all be shut down
+ * together, and the number of threads Jartin takes can be limited in one place.
+ * <p>
+ * Compositing always gets a pool of its own: compositing is waited for by the thread consuming projections, while
+ * the projection producers may all be waiting for that same consumer to take their projections.
+ * <p>
+ * The producers leave their thread instead of waiting for the consumer, see {@link ProjectionRenderer}. A worker
+ * waiting on a condition makes a fork-join pool start a spare thread in its place, so waiting producers would take
+ * more threads than the parallelism.
+ */
+public final class ExecutionPolicy {
+  private static Logger log = LoggerFactory.getLogger(ExecutionPolicy.class);
+  private static final long SHUTDOWN_TIMEOUT_MS = 2000;
+
+  private static volatile ExecutionPolicy instance;
+
+  private final ExecutionMode mode;
+  private final int parallelism;
+  private final ExecutorService computeExecutor;
+  private final ForkJoinPool compositingPool;
+  private final ExecutorService ioExecutor;
+  private final List<ExecutorService> executors = new CopyOnWriteArrayList<>();
+  private volatile boolean shutdown = false;
+
+  public static ExecutionPolicy getInstance() {
+    ExecutionPolicy policy = instance;
+    if (policy == null) {
+      synchronized (ExecutionPolicy.class) {
+        policy = instance;
+        if (policy == null) {
+          AppProperties properties = AppProperties.getInstance();
+          policy = new ExecutionPolicy(properties.getExecutionMode(), properties.getThreads());
+          instance = policy;
+        }
+      }
+    }
+    return policy;
+  }
+
+  public ExecutionPolicy(ExecutionMode mode, int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+    }
+    this.mode = mode;
+    this.parallelism = parallelism;
+    this.compositingPool = register(new ForkJoinPool(parallelism, forkJoinThreadFactory("jartin-compositor-"), null, false));
+    switch (mode) {
+      case FORK_JOIN:
+        ForkJoinPool pool = register(new ForkJoinPool(parallelism, forkJoinThreadFactory("jartin-worker-"), null, true));
+        this.computeExecutor = pool;
+        this.ioExecutor = pool;
+        break;
+      case VIRTUAL:
+        this.computeExecutor = register(Executors.newFixedThreadPool(parallelism, threadFactory("jartin-worker-")));
+        this.ioExecutor = register(createVirtualThreadExecutor());
+        break;
+      default:
+        this.computeExecutor = register(Executors.newFixedThreadPool(parallelism, threadFactory("jartin-worker-")));
+        this.ioExecutor = register(Executors.newFixedThreadPool(parallelism, threadFactory("jartin-io-")));
+    }
+    log.info("Execution mode " + mode + " with " + parallelism + " threads");
+  }
+
+  public ExecutionMode getMode() {
+    return mode;
+  }
+
+  /**
+   * @return the number of threads doing CPU heavy work in parallel.
+   */
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * @return executor for CPU heavy work, such as generating projections.
+   */
+  public ExecutorService getComputeExecutor() {
+    return computeExecutor;
+  }
+
+  /**
+   * @return pool for compositing projections onto the canvas.
+   */
+  public ForkJoinPool getCompositingPool() {
+    return compositingPool;
+  }
+
+  /**
+   * @return executor for work that mostly waits on disk, such as loading stamps.
+   */
+  public ExecutorService getIoExecutor() {
+    return ioExecutor;
+  }
+
+  /**
+   * @return new executor running its tasks one at a time, in submission order. It is shut down with the policy.
+   */
+  public ExecutorService newSerialExecutor(String name) {
+    if (shutdown) {
+      throw new IllegalStateException("Execution policy is shut down");
+    }
+    return register(Executors.newSingleThreadExecutor(threadFactory(name + "-")));
+  }
+
+  /**
+   * @return new executor with a fixed number of threads, for coarse tasks like whole paintings. It is shut down
+   * with the policy.
+   */
+  public ExecutorService newExecutor(String name, int threads) {
+    if (shutdown) {
+      throw new IllegalStateException("Execution policy is shut down");
+    }
+    return register(Executors.newFixedThreadPool(threads, threadFactory(name + "-")));
+  }
+
+  /**
+   * Stops accepting new work, gives running tasks a moment to complete and then interrupts them.
+   */
+  public void shutdown() {
+    if (shutdown) {
+      return;
+    }
+    shutdown = true;
+    log.info("Shutting down executors");
+    executors.forEach(ExecutorService::shutdown);
+    long deadline = System.currentTimeMillis() + SHUTDOWN_TIMEOUT_MS;
+    try {
+      for (ExecutorService executor : executors) {
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0 || !executor.awaitTermination(remaining, TimeUnit.MILLISECONDS)) {
+          executor.shutdownNow();
+        }
+      }
+    } catch (InterruptedException e) {
+      executors.forEach(ExecutorService::shutdownNow);
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  public boolean isShutdown() {
+    return shutdown;
+  }
+
+  private <T extends ExecutorService> T register(T executor) {
+    executors.add(executor);
+    return executor;
+  }
+
+  private static ExecutorService createVirtualThreadExecutor() {
+    try {
+      Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) method.invoke(null);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      log.warn("Virtual threads are not available on this JVM, loading stamps on platform threads instead.");
+      return Executors.newCachedThreadPool(threadFactory("jartin-io-"));
+    }
+  }
+
+  private static ThreadFactory threadFactory(String prefix) {
+    AtomicInteger counter = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  private static ForkJoinPool.ForkJoinWorkerThreadFactory forkJoinThreadFactory(String prefix) {
+    AtomicInteger counter = new AtomicInteger();
+    return pool -> {
+      ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+      thread.setName(prefix + counter.incrementAndGet());
+      return thread;
+    };
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps.painting;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Splits a range of rows or columns into bands and processes them in parallel.
+ */
+final class Bands {
+  interface BandAction {
+    void run(int from, int to);
+  }
+
+  private Bands() {
+  }
+
+  /**
+   * Runs the action for consecutive bands of {@code bandSize} covering 0 until size, and waits for all of them.
+   */
+  static void run(ForkJoinPool pool, int size, int bandSize, BandAction action) throws InterruptedException {
+    List<Callable<Void>> bands = new ArrayList<>(size / bandSize + 1);
+    for (int start = 0; start < size; start += bandSize) {
+      int from = start;
+      int to = Math.min(start + bandSize, size);
+      bands.add(() -> {
+        action.run(from, to);
+        return null;
+      });
+    }
+    for (Future<Void> band : pool.invokeAll(bands)) {
+      try {
+        band.get();
+      } catch (ExecutionException e) {
+        throw new IllegalStateException("Band failed", e.getCause());
+      }
+    }
+  }
+}
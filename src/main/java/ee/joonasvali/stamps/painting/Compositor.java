@@ -0,0 +1,26 @@
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps.painting;
+
+import ee.joonasvali.stamps.Projection;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+/**
+ * Paints batches of projections onto the canvas. Projections in a batch must end up on the canvas
+ * as if they were painted one after another in the order of the list.
+ */
+public interface Compositor {
+  default void composite(List<Projection> projections, BufferedImage canvas) throws InterruptedException {
+    composite(projections, canvas, 0, 0);
+  }
+
+  /**
+   * Same as {@link #composite(List, BufferedImage)}, the canvas being a part of a bigger canvas with its top left
+   * corner at (originX, originY).
+   */
+  void composite(List<Projection> projections, BufferedImage canvas, int originX, int originY) throws InterruptedException;
+}
@@ -0,0 +1,5 @@
+package ee.joonasvali.stamps.painting;
+
+public interface IndexedSupplier<T> {
+  T get(int index) throws InterruptedException;
+}
@@ -1,5 +0,0 @@
-package ee.joonasvali.stamps.painting;
-
-public interface InterruptibleSupplier<T> {
-  T get() throws InterruptedException;
-}
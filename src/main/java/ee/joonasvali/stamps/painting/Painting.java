@@ -1,73 +1,315 @@
-/*
- * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
- */
-
-package ee.joonasvali.stamps.painting;
-
-import ee.joonasvali.stamps.Projection;
-import ee.joonasvali.stamps.color.ColorModel;
-import ee.joonasvali.stamps.color.PositionAwareColor;
-import ee.joonasvali.stamps.color.PositionAwareColorModel;
-import ee.joonasvali.stamps.query.RandomQuery;
-import ee.joonasvali.stamps.ui.ProgressCounter;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import java.awt.*;
-import java.awt.image.BufferedImage;
-
-/**
- * @author Joonas Vali
- */
-public class Painting {
-  private static final Logger log = LoggerFactory.getLogger(Painting.class);
-  private static final RandomQuery<Color> colorChooser = RandomQuery.create();
-
-  private final ProjectionRenderer renderer;
-  private final BufferedImage canvas;
-  private final int width, height;
-  private final ColorModel backgroundColorModel;
-
-  public Painting(int width, int height, ColorModel backgroundColorModel, ProjectionRenderer renderer) {
-    this.width = width;
-    this.height = height;
-    this.renderer = renderer;
-    this.backgroundColorModel = backgroundColorModel;
-    canvas = new BufferedImage(this.width, this.height, BufferedImage.TYPE_INT_ARGB);
-  }
-
-  public BufferedImage paint(ProgressCounter counter) throws InterruptedException {
-    paintBackground();
-    while (renderer.hasNext()) {
-      Projection projection = renderer.next();
-      if (Thread.currentThread().isInterrupted()) {
-        counter.clear();
-        throw new InterruptedException();
-      }
-      projection.paintTo(canvas);
-      counter.increase();
-    }
-    counter.clear();
-    return canvas;
-  }
-
-  private void paintBackground() {
-    ColorModel colorModel = backgroundColorModel;
-
-    if (colorModel instanceof PositionAwareColorModel) {
-      PositionAwareColorModel bgModel = (PositionAwareColorModel) colorModel;
-      PositionAwareColor bgColor = bgModel.getColor();
-
-      for (int i = 0; i < this.width; i++) {
-        for (int j = 0; j < this.height; j++) {
-          canvas.setRGB(i, j, bgColor.getColor(i, j).getRGB());
-        }
-      }
-    } else {
-      Graphics2D g = canvas.createGraphics();
-      Color color = colorModel.getColor(colorChooser);
-      g.setColor(color);
-      g.fill(new Rectangle(0, 0, width, height));
-    }
-  }
-}
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps.painting;
+
+import ee.joonasvali.stamps.Projection;
+import ee.joonasvali.stamps.canvas.MappedTileCanvas;
+import ee.joonasvali.stamps.color.ColorModel;
+import ee.joonasvali.stamps.color.PositionAwareColor;
+import ee.joonasvali.stamps.color.PositionAwareColorModel;
+import ee.joonasvali.stamps.execution.ExecutionPolicy;
+import ee.joonasvali.stamps.properties.AppProperties;
+import ee.joonasvali.stamps.query.RandomQuery;
+import ee.joonasvali.stamps.ui.ProgressCounter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * @author Joonas Vali
+ */
+public class Painting {
+  private static final Logger log = LoggerFactory.getLogger(Painting.class);
+  private static final RandomQuery<Color> colorChooser = RandomQuery.create();
+  /**
+   * Number of projections handed to the compositor at once. Bigger batches give the compositor more
+   * independent tiles to work on.
+   */
+  static final int COMPOSITING_BATCH_SIZE = 128;
+  /**
+   * Rows of the background filled by one task.
+   */
+  private static final int BACKGROUND_BAND_HEIGHT = 32;
+  /**
+   * The draft is cut short after this long, whatever got painted by then is shown.
+   */
+  private static final long DRAFT_TIME_BUDGET_MS = 500;
+
+  private final ProjectionRenderer renderer;
+  private final Compositor compositor;
+  /**
+   * Tiles of a file backed canvas, big enough for a tile row of it to be written out efficiently.
+   */
+  public static final int CANVAS_TILE_SIZE = 512;
+  /**
+   * Bytes a strip painted by {@link #paintStrips} should take at most, unless it's narrower than 64 rows.
+   */
+  private static final long STRIP_BYTES = 64L * 1024 * 1024;
+  private static final int MIN_STRIP_HEIGHT = 64;
+  private final int width, height;
+  private final ColorModel backgroundColorModel;
+  private final ForkJoinPool pool;
+
+  /**
+   * Receives the painting strip by strip, from the top down.
+   */
+  public interface StripSink {
+    /**
+     * @param argb rows of the strip, each row as wide as the painting. The array is reused once this returns.
+     */
+    void write(int[] argb, int rows) throws IOException;
+  }
+
+  private PreviewPublisher preview;
+  private IndexedSupplier<Projection> draftSupplier;
+  private int draftCount;
+  private double draftScale;
+
+  public Painting(int width, int height, ColorModel backgroundColorModel, ProjectionRenderer renderer) {
+    this(width, height, backgroundColorModel, renderer, new TileCompositor());
+  }
+
+  public Painting(int width, int height, ColorModel backgroundColorModel, ProjectionRenderer renderer, Compositor compositor) {
+    this.width = width;
+    this.height = height;
+    this.renderer = renderer;
+    this.compositor = compositor;
+    this.backgroundColorModel = backgroundColorModel;
+    this.pool = ExecutionPolicy.getInstance().getCompositingPool();
+  }
+
+  /**
+   * Shows the canvas to the listener while it is painted.
+   */
+  public void setPreview(PreviewListener listener, int framesPerSecond) {
+    this.preview = new PreviewPublisher(listener, width, height, framesPerSecond);
+  }
+
+  /**
+   * Paints a quick draft of the painting for the preview listener before the painting itself.
+   *
+   * @param supplier draft projections, in the coordinates of the draft.
+   * @param count number of projections in the painting.
+   * @param scale size of the draft relative to the painting.
+   */
+  public void setDraft(IndexedSupplier<Projection> supplier, int count, double scale) {
+    this.draftSupplier = supplier;
+    this.draftCount = count;
+    this.draftScale = scale;
+  }
+
+  public BufferedImage paint(ProgressCounter counter) throws InterruptedException {
+    if (preview != null && draftSupplier != null) {
+      paintDraft();
+    }
+    BufferedImage canvas = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    paintBackground(canvas, 1);
+    List<Projection> batch = new ArrayList<>(COMPOSITING_BATCH_SIZE);
+    while (renderer.hasNext()) {
+      while (batch.size() < COMPOSITING_BATCH_SIZE && renderer.hasNext()) {
+        batch.add(renderer.next());
+      }
+      if (Thread.currentThread().isInterrupted()) {
+        counter.clear();
+        throw new InterruptedException();
+      }
+      compositor.composite(batch, canvas);
+      if (preview != null) {
+        for (Projection projection : batch) {
+          preview.markDirty(projection.getBounds());
+        }
+        preview.publishIfDue(canvas);
+      }
+      for (int i = 0; i < batch.size(); i++) {
+        counter.increase();
+      }
+      batch.clear();
+    }
+    if (preview != null) {
+      preview.publish(canvas);
+    }
+    counter.clear();
+    return canvas;
+  }
+
+  /**
+   * Paints onto a canvas kept in a file in the given directory, for paintings that don't fit on the heap. The
+   * background is filled in as tiles get paged in. Nothing is previewed.
+   *
+   * @return the canvas, to be closed by the caller.
+   */
+  public MappedTileCanvas paintTiled(ProgressCounter counter, File directory) throws InterruptedException, IOException {
+    long budget = AppProperties.getInstance().getCanvasBudget();
+    MappedTileCanvas tiles = new MappedTileCanvas(width, height, CANVAS_TILE_SIZE, budget, directory, createBackgroundFiller());
+    try {
+      List<Projection> batch = new ArrayList<>(COMPOSITING_BATCH_SIZE);
+      while (renderer.hasNext()) {
+        while (batch.size() < COMPOSITING_BATCH_SIZE && renderer.hasNext()) {
+          batch.add(renderer.next());
+        }
+        if (Thread.currentThread().isInterrupted()) {
+          throw new InterruptedException();
+        }
+        tiles.composite(batch, pool);
+        for (int i = 0; i < batch.size(); i++) {
+          counter.increase();
+        }
+        batch.clear();
+      }
+    } catch (InterruptedException | RuntimeException e) {
+      counter.clear();
+      tiles.close();
+      throw e;
+    }
+    counter.clear();
+    return tiles;
+  }
+
+  /**
+   * @return height of the strips a painting of the given size should be painted in.
+   */
+  public static int getStripHeight(int width, int height) {
+    long rows = STRIP_BYTES / (4L * width);
+    return (int) Math.min(Math.max(rows, MIN_STRIP_HEIGHT), height);
+  }
+
+  /**
+   * Paints the painting one horizontal strip at a time and hands the strips over to the sink. The renderer must
+   * give the projections in the order of the plan. Only one strip is held at a time, whatever the height of the
+   * painting. Nothing is previewed.
+   */
+  public void paintStrips(ProgressCounter counter, StripPlan plan, StripSink sink) throws InterruptedException, IOException {
+    int stripHeight = plan.getStripHeight();
+    BufferedImage strip = new BufferedImage(width, stripHeight, BufferedImage.TYPE_INT_ARGB);
+    int[] data = ((DataBufferInt) strip.getRaster().getDataBuffer()).getData();
+    MappedTileCanvas.TileFiller background = createBackgroundFiller();
+    List<Projection> batch = new ArrayList<>(COMPOSITING_BATCH_SIZE);
+
+    try {
+      for (int s = 0; s < plan.getStripCount(); s++) {
+        int top = s * stripHeight;
+        int rows = Math.min(stripHeight, height - top);
+        background.fill(data, 0, width, 0, top, width, rows);
+        int remaining = plan.getCount(s);
+        while (remaining > 0) {
+          while (batch.size() < COMPOSITING_BATCH_SIZE && remaining > 0) {
+            batch.add(renderer.next());
+            remaining--;
+          }
+          if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedException();
+          }
+          compositor.composite(batch, strip, 0, top);
+          for (int i = 0; i < batch.size(); i++) {
+            counter.increase();
+          }
+          batch.clear();
+        }
+        sink.write(data, rows);
+      }
+    } finally {
+      counter.clear();
+    }
+  }
+
+  private MappedTileCanvas.TileFiller createBackgroundFiller() {
+    ColorModel colorModel = backgroundColorModel;
+    if (colorModel instanceof PositionAwareColorModel) {
+      PositionAwareColor bgColor = ((PositionAwareColorModel) colorModel).getColor();
+      return (data, offset, scanline, x, y, width, height) -> {
+        for (int row = 0; row < height; row++) {
+          int start = offset + row * scanline;
+          if (bgColor.isConstantInRow()) {
+            Arrays.fill(data, start, start + width, bgColor.getRGB(x, y + row));
+          } else {
+            bgColor.getRow(x, y + row, width, data, start);
+          }
+        }
+      };
+    }
+    int rgb = colorModel.getColor(colorChooser).getRGB();
+    return (data, offset, scanline, x, y, width, height) -> {
+      for (int row = 0; row < height; row++) {
+        int start = offset + row * scanline;
+        Arrays.fill(data, start, start + width, rgb);
+      }
+    };
+  }
+
+  /**
+   * Paints the draft serially on this thread. Meanwhile the producers are already generating the first projections.
+   */
+  private void paintDraft() throws InterruptedException {
+    long start = System.currentTimeMillis();
+    int draftWidth = Math.max((int) Math.ceil(width * draftScale), 1);
+    int draftHeight = Math.max((int) Math.ceil(height * draftScale), 1);
+    BufferedImage draft = new BufferedImage(draftWidth, draftHeight, BufferedImage.TYPE_INT_ARGB);
+    paintBackground(draft, draftScale);
+    PreviewListener listener = preview.getListener();
+
+    int i = 0;
+    for (; i < draftCount; i++) {
+      if (Thread.currentThread().isInterrupted()) {
+        throw new InterruptedException();
+      }
+      if (System.currentTimeMillis() - start > DRAFT_TIME_BUDGET_MS) {
+        break;
+      }
+      draftSupplier.get(i).paintTo(draft);
+      if (preview.nextFrame()) {
+        listener.draft(draft, draftScale);
+      }
+    }
+    listener.draft(draft, draftScale);
+    log.debug("Draft of " + i + " / " + draftCount + " projections painted in " + (System.currentTimeMillis() - start) + " ms");
+  }
+
+  /**
+   * Fills the target with the background, the target being the canvas scaled by the given factor.
+   */
+  private void paintBackground(BufferedImage target, double scale) throws InterruptedException {
+    ColorModel colorModel = backgroundColorModel;
+    int targetWidth = target.getWidth();
+    int targetHeight = target.getHeight();
+
+    if (colorModel instanceof PositionAwareColorModel) {
+      PositionAwareColorModel bgModel = (PositionAwareColorModel) colorModel;
+      PositionAwareColor bgColor = bgModel.getColor();
+      int[] data = ((DataBufferInt) target.getRaster().getDataBuffer()).getData();
+
+      // Bands of rows in parallel, each row filled in one go
+      Bands.run(pool, targetHeight, BACKGROUND_BAND_HEIGHT, (from, to) -> {
+        for (int y = from; y < to; y++) {
+          int offset = y * targetWidth;
+          int sourceY = (int) (y / scale);
+          if (bgColor.isConstantInRow()) {
+            Arrays.fill(data, offset, offset + targetWidth, bgColor.getRGB(0, sourceY));
+          } else if (scale == 1) {
+            bgColor.getRow(0, y, targetWidth, data, offset);
+          } else {
+            for (int x = 0; x < targetWidth; x++) {
+              data[offset + x] = bgColor.getRGB((int) (x / scale), sourceY);
+            }
+          }
+        }
+      });
+    } else {
+      Graphics2D g = target.createGraphics();
+      Color color = colorModel.getColor(colorChooser);
+      g.setColor(color);
+      g.fill(new Rectangle(0, 0, targetWidth, targetHeight));
+      g.dispose();
+    }
+  }
+}
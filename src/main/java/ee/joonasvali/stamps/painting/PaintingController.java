@@ -1,21 +1,47 @@
-package ee.joonasvali.stamps.painting;
-
-import ee.joonasvali.stamps.ui.Preferences;
-import ee.joonasvali.stamps.ui.ProgressListener;
-
-import java.awt.image.BufferedImage;
-import java.util.Optional;
-
-public interface PaintingController {
-  void setRetainColors(boolean retainColors);
-
-  void setRetainStamps(boolean retainStamps);
-
-  void setRetainSpine(boolean retainSpine);
-
-  void clearCaches();
-
-  Optional<BufferedImage> generateImage(ProgressListener listener);
-
-  Preferences getPrefs();
-}
+package ee.joonasvali.stamps.painting;
+
+import ee.joonasvali.stamps.canvas.MappedTileCanvas;
+import ee.joonasvali.stamps.ui.Preferences;
+import ee.joonasvali.stamps.ui.ProgressListener;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Optional;
+
+public interface PaintingController {
+  void setRetainColors(boolean retainColors);
+
+  void setRetainStamps(boolean retainStamps);
+
+  void setRetainSpine(boolean retainSpine);
+
+  void clearCaches();
+
+  /**
+   * Paints a new image, with every random decision derived from the seed. The same seed, preferences and stamps give
+   * the same image, unless parts of the previous image are retained.
+   */
+  Optional<BufferedImage> generateImage(ProgressListener listener, long seed);
+
+  /**
+   * Same as {@link #generateImage(ProgressListener, long)}, painted onto a canvas kept in a file in the given
+   * directory, so the size of the image isn't limited by the heap. The caller closes the canvas.
+   */
+  Optional<MappedTileCanvas> generateTiledImage(ProgressListener listener, long seed, File directory) throws IOException;
+
+  /**
+   * Same as {@link #generateImage(ProgressListener, long)}, painted strip by strip straight into a PNG file. Only one
+   * strip of the image is in memory at a time, so any height fits the heap.
+   *
+   * @return the file, or empty if cancelled, in which case nothing is left of the file.
+   */
+  Optional<File> generateImageFile(ProgressListener listener, long seed, File file) throws IOException;
+
+  /**
+   * @param listener shown the paintings while they are painted, null for none.
+   */
+  void setPreviewListener(PreviewListener listener);
+
+  Preferences getPrefs();
+}
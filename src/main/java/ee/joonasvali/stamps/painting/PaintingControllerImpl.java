@@ -1,288 +1,489 @@
-/*
- * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
- */
-
-package ee.joonasvali.stamps.painting;
-
-import ee.joonasvali.stamps.ProjectionGenerator;
-import ee.joonasvali.stamps.color.ColorModel;
-import ee.joonasvali.stamps.color.ColorUtil;
-import ee.joonasvali.stamps.color.GradientColorModel;
-import ee.joonasvali.stamps.color.Pallette;
-import ee.joonasvali.stamps.color.PlainColorModel;
-import ee.joonasvali.stamps.properties.AppProperties;
-import ee.joonasvali.stamps.query.BinaryFormula;
-import ee.joonasvali.stamps.query.BinaryFormulaGenerator;
-import ee.joonasvali.stamps.query.BinaryQuery;
-import ee.joonasvali.stamps.query.BinaryValue;
-import ee.joonasvali.stamps.query.Query;
-import ee.joonasvali.stamps.query.RandomQuery;
-import ee.joonasvali.stamps.query.ReversingCompoundBinaryFormula;
-import ee.joonasvali.stamps.query.XYFormulaQuery;
-import ee.joonasvali.stamps.stamp.CompositeStamps;
-import ee.joonasvali.stamps.stamp.RandomIntersectionComposerStrategy;
-import ee.joonasvali.stamps.stamp.RandomMergeComposerStrategy;
-import ee.joonasvali.stamps.stamp.Stamp;
-import ee.joonasvali.stamps.stamp.StampLoader;
-import ee.joonasvali.stamps.stamp.StampProvider;
-import ee.joonasvali.stamps.stamp.Stamps;
-import ee.joonasvali.stamps.ui.Preferences;
-import ee.joonasvali.stamps.ui.ProgressCounter;
-import ee.joonasvali.stamps.ui.ProgressListener;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import java.awt.*;
-import java.awt.image.BufferedImage;
-import java.util.ArrayList;
-import java.util.Optional;
-import java.util.Random;
-
-/**
- * @author Joonas Vali
- */
-public final class PaintingControllerImpl implements PaintingController {
-
-  public static final double CONSTANT_STAMP_COUNT_DIVIDER = 0.001d;
-  private static Logger log = LoggerFactory.getLogger(PaintingControllerImpl.class);
-  private static final double CHANCE_OF_GRADIENT_COLOR = 0.7;
-  private static RandomQuery<ColorModel> backgroundColorModelChooser = RandomQuery.create();
-
-  private final Preferences prefs = new Preferences();
-  private final BinaryFormulaGenerator colorFormulaGenerator;
-  private final BinaryFormulaGenerator stampFormulaGenerator;
-  private final BinaryFormulaGenerator colorModelFormulaGenerator;
-
-  private volatile boolean retainColors = false;
-  private volatile boolean retainStamps = false;
-  private volatile boolean retainSpine = false;
-
-  private final StampLoader stampPool = new StampLoader(AppProperties.getInstance().getStampsDir());
-  private final ProjectionRenderer projectionRenderer;
-
-  private volatile ColorModel backgroundColorModel;
-  private volatile Pallette pallette;
-  private volatile StampProvider stamps;
-
-  private volatile Query<Stamp> stampQuery;
-  private volatile Query<ColorModel> colorModelQuery;
-  private volatile Query<Color> colorQuery;
-
-  public PaintingControllerImpl(BinaryFormulaGenerator colorModelFormulaGenerator, BinaryFormulaGenerator stampFormulaGenerator, BinaryFormulaGenerator colorFormulaGenerator) {
-    this.colorModelFormulaGenerator = colorModelFormulaGenerator;
-    this.stampFormulaGenerator = stampFormulaGenerator;
-    this.colorFormulaGenerator = colorFormulaGenerator;
-    this.projectionRenderer = new ProjectionRenderer();
-    stampPool.loadStampsConcurrently();
-  }
-
-  @Override
-  public void setRetainColors(boolean retainColors) {
-    this.retainColors = retainColors;
-  }
-
-  @Override
-  public void setRetainStamps(boolean retainStamps) {
-    this.retainStamps = retainStamps;
-  }
-
-  @Override
-  public void setRetainSpine(boolean retainSpine) {
-    this.retainSpine = retainSpine;
-  }
-
-  @Override
-  public void clearCaches() {
-    log.info("Clearing Caches");
-    Stamp.clearCache();
-    stampPool.clearCaches();
-  }
-
-  /**
-   * @return Image or null if cancelled
-   */
-  @Override
-  public synchronized Optional<BufferedImage> generateImage(ProgressListener listener) {
-    Backup backup = new Backup(pallette, stamps, stampQuery, colorModelQuery, colorQuery);
-
-    long startTime = System.currentTimeMillis();
-    log.info("Starting generating a new image");
-    int x = prefs.getWidth();
-    int y = prefs.getHeight();
-
-    boolean showSpine = prefs.isSpineMode();
-    int projections = 0;
-
-    ProgressCounter counter = new ProgressCounter(listener, projections);
-    stamps = createStamps(counter);
-
-    if (!showSpine) {
-      projections = ((int)(x * y * CONSTANT_STAMP_COUNT_DIVIDER * prefs.getStampCountMultiplier()));
-      projections = adaptProjectionsToStampsSizes(projections, stamps);
-      counter.setProjections(projections);
-      log.info("Number of projections: " + projections);
-    }
-
-    if (pallette == null || !retainColors) {
-      pallette = new Pallette(generateColorModels(new Random()));
-      backgroundColorModel = pallette.getColor(backgroundColorModelChooser);
-    } else {
-      log.debug("Skip generating color models");
-    }
-
-    ProjectionGenerator gen = new ProjectionGenerator(x, y, stamps, pallette, new Random());
-
-
-    if (stampQuery == null || colorModelQuery == null || colorQuery == null || !retainSpine) {
-      stampQuery = generateXYFormulaQuery(stampFormulaGenerator);
-      colorModelQuery = generateXYFormulaQuery(colorModelFormulaGenerator);
-      colorQuery = generateXYFormulaQuery(colorFormulaGenerator);
-    }
-
-    if (!showSpine) {
-      try {
-        log.info("Start painting.");
-        projectionRenderer.start(() -> gen.generate(stampQuery, colorModelQuery, colorQuery), projections, counter);
-        Painting painting = new Painting(x, y, backgroundColorModel, projectionRenderer);
-
-        BufferedImage result = painting.paint(counter);
-        long endTime = System.currentTimeMillis();
-        log.info("Generating new image completed. Total time: " + (endTime - startTime) + " ms");
-        return Optional.of(result);
-      }
-      catch (InterruptedException e) {
-        log.info("No image available. Painting cancelled.");
-        projectionRenderer.cancel();
-        counter.clear();
-        backup.revert();
-        return Optional.empty();
-      }
-    } else {
-      log.warn("SPINE MODE!");
-      return Optional.of(paintLines(colorModelQuery));
-    }
-  }
-
-  private int adaptProjectionsToStampsSizes(int projections, StampProvider stamps) {
-    int defaultSize = 150;
-    int defArea = defaultSize * defaultSize;
-    double projectionsTemp = projections;
-    double affection = ((double)1 / (double)stamps.size()) * projections;
-    for (Stamp stamp : stamps.getStamps()) {
-      Point size = stamp.size();
-      int area = size.x * size.y;
-      double multiplier = (double)defArea / (double)area;
-      double a = (multiplier - 1) * affection * stamp.getMetadata().getRarity();
-      projectionsTemp += a;
-    }
-    // Just in case limit the number of projections to 3 times the original count.
-    return (int) Math.min(projectionsTemp, projections * 3);
-  }
-
-  private StampProvider createStamps(ProgressCounter counter) {
-    if (stamps == null || !retainStamps) {
-      log.info("Generating stamps");
-      Stamps loadedStamps = stampPool.getStamps(prefs.getStampGroupsCount(), prefs.getStampsPerGroup(), RandomQuery.create(), RandomQuery.create(), false, counter);
-      // TODO, this composite thing should be more dynamic. (What's the number 10?)
-      CompositeStamps compositeStamps = new CompositeStamps(loadedStamps, new RandomIntersectionComposerStrategy((int) (Math.random() * 10)));
-      compositeStamps = new CompositeStamps(compositeStamps, new RandomMergeComposerStrategy((int) (Math.random() * 10)));
-      return compositeStamps;
-    } else {
-      log.debug("Skip generating stamps");
-      return stamps;
-    }
-  }
-
-
-  private <T> Query<T> generateXYFormulaQuery(BinaryFormulaGenerator generator) {
-    ReversingCompoundBinaryFormula formula = new ReversingCompoundBinaryFormula(generator.generate(prefs));
-    return new XYFormulaQuery(new RandomQuery<T>(), new BinaryQuery<T>(Math.random()), formula);
-  }
-
-  private java.util.List<ColorModel> generateColorModels(Random random) {
-    log.info("Generating color models");
-    int colors = prefs.getNumberOfColors();
-    java.util.List<ColorModel> colorModels = new ArrayList<>(colors);
-
-    for (int i = 0; i < colors; i++) {
-      if (Math.random() < CHANCE_OF_GRADIENT_COLOR) {
-        colorModels.add(new GradientColorModel(ColorUtil.getRandomColor(random), ColorUtil.getRandomColor(random), prefs.getHeight(), prefs.getWidth()));
-      } else {
-        colorModels.add(new PlainColorModel(ColorUtil.getRandomColor(random)));
-      }
-    }
-    return colorModels;
-  }
-
-  @Override
-  public Preferences getPrefs() {
-    return prefs;
-  }
-
-  private BufferedImage paintLines(Query<?> q) {
-    BufferedImage image = new BufferedImage(getPrefs().getWidth(), getPrefs().getHeight(), BufferedImage.TYPE_INT_RGB);
-    if (!(q instanceof XYFormulaQuery)) {
-      log.error("Invalid query for paintLines");
-      System.exit(-1);
-    }
-
-    BinaryFormula formula = ((XYFormulaQuery) q).getFormula();
-
-    for (int i = 0; i < image.getWidth(); i++) {
-      for (int j = 0; j < image.getHeight(); j++) {
-        Color color = formula.get(i, j).equals(BinaryValue.ONE) ? Color.GRAY : Color.DARK_GRAY;
-        image.setRGB(i, j, color.getRGB());
-      }
-    }
-
-    return image;
-
-  }
-
-
-  private class Backup {
-    private Pallette pallette;
-    private StampProvider stamps;
-    private Query<Stamp> stampQuery;
-    private Query<ColorModel> colorModelQuery;
-    private Query<Color> colorQuery;
-
-    public Backup(Pallette pallette, StampProvider stamps, Query<Stamp> stampQuery, Query<ColorModel> colorModelQuery, Query<Color> colorQuery) {
-      this.pallette = pallette;
-      this.stamps = stamps;
-      this.stampQuery = stampQuery;
-      this.colorModelQuery = colorModelQuery;
-      this.colorQuery = colorQuery;
-    }
-
-    private Pallette getPallette() {
-      return pallette;
-    }
-
-    private StampProvider getStamps() {
-      return stamps;
-    }
-
-    private Query<Stamp> getStampQuery() {
-      return stampQuery;
-    }
-
-    private Query<ColorModel> getColorModelQuery() {
-      return colorModelQuery;
-    }
-
-    private Query<Color> getColorQuery() {
-      return colorQuery;
-    }
-
-    public void revert() {
-      log.info("Reverting data from backup");
-      PaintingControllerImpl.this.colorQuery = colorQuery;
-      PaintingControllerImpl.this.stamps = stamps;
-      PaintingControllerImpl.this.pallette = pallette;
-      PaintingControllerImpl.this.colorModelQuery = colorModelQuery;
-      PaintingControllerImpl.this.stampQuery = stampQuery;
-    }
-  }
-}
-
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps.painting;
+
+import ee.joonasvali.stamps.ProjectionGenerator;
+import ee.joonasvali.stamps.SpriteCache;
+import ee.joonasvali.stamps.canvas.MappedTileCanvas;
+import ee.joonasvali.stamps.color.ColorModel;
+import ee.joonasvali.stamps.color.ColorUtil;
+import ee.joonasvali.stamps.execution.ExecutionPolicy;
+import ee.joonasvali.stamps.color.GradientColorModel;
+import ee.joonasvali.stamps.color.Pallette;
+import ee.joonasvali.stamps.color.PlainColorModel;
+import ee.joonasvali.stamps.png.PngWriter;
+import ee.joonasvali.stamps.properties.AppProperties;
+import ee.joonasvali.stamps.query.BinaryFormula;
+import ee.joonasvali.stamps.query.BinaryFormulaGenerator;
+import ee.joonasvali.stamps.query.CompiledBinaryFormula;
+import ee.joonasvali.stamps.query.BinaryQuery;
+import ee.joonasvali.stamps.query.BinaryValue;
+import ee.joonasvali.stamps.query.Query;
+import ee.joonasvali.stamps.query.RandomQuery;
+import ee.joonasvali.stamps.query.ReversingCompoundBinaryFormula;
+import ee.joonasvali.stamps.query.WeightedQuery;
+import ee.joonasvali.stamps.query.XYFormulaQuery;
+import ee.joonasvali.stamps.stamp.CompositeCache;
+import ee.joonasvali.stamps.stamp.CompositeStamps;
+import ee.joonasvali.stamps.stamp.RandomIntersectionComposerStrategy;
+import ee.joonasvali.stamps.stamp.RandomMergeComposerStrategy;
+import ee.joonasvali.stamps.stamp.RenderCache;
+import ee.joonasvali.stamps.stamp.Stamp;
+import ee.joonasvali.stamps.stamp.StampIndex;
+import ee.joonasvali.stamps.stamp.StampLoader;
+import ee.joonasvali.stamps.stamp.StampStore;
+import ee.joonasvali.stamps.stamp.StampProvider;
+import ee.joonasvali.stamps.stamp.Stamps;
+import ee.joonasvali.stamps.ui.Preferences;
+import ee.joonasvali.stamps.ui.ProgressCounter;
+import ee.joonasvali.stamps.ui.ProgressListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Optional;
+import java.util.Random;
+
+/**
+ * @author Joonas Vali
+ */
+public final class PaintingControllerImpl implements PaintingController {
+
+  public static final double CONSTANT_STAMP_COUNT_DIVIDER = 0.001d;
+  private static Logger log = LoggerFactory.getLogger(PaintingControllerImpl.class);
+  private static final double CHANCE_OF_GRADIENT_COLOR = 0.7;
+  // Columns of the spine painted by one task
+  private static final int SPINE_BAND_WIDTH = 16;
+  private static RandomQuery<ColorModel> backgroundColorModelChooser = RandomQuery.create();
+  // Each stage draws from a generator of its own, so retaining one stage doesn't change the others
+  private static final int STAMPS_STAGE = -1;
+  private static final int COLORS_STAGE = -2;
+  private static final int SPINE_STAGE = -3;
+  // Size of the preview draft relative to the painting
+  private static final double DRAFT_SCALE = 0.25;
+
+  private final Preferences prefs;
+  private final BinaryFormulaGenerator colorFormulaGenerator;
+  private final BinaryFormulaGenerator stampFormulaGenerator;
+  private final BinaryFormulaGenerator colorModelFormulaGenerator;
+
+  private volatile boolean retainColors = false;
+  private volatile boolean retainStamps = false;
+  private volatile boolean retainSpine = false;
+
+  private final StampLoader stampPool;
+  private final ProjectionRenderer projectionRenderer;
+
+  private volatile ColorModel backgroundColorModel;
+  private volatile Pallette pallette;
+  private volatile StampProvider stamps;
+  private volatile PreviewListener previewListener;
+
+  private volatile Query<Stamp> stampQuery;
+  private volatile Query<ColorModel> colorModelQuery;
+  private volatile Query<Color> colorQuery;
+
+  public PaintingControllerImpl(BinaryFormulaGenerator colorModelFormulaGenerator, BinaryFormulaGenerator stampFormulaGenerator, BinaryFormulaGenerator colorFormulaGenerator) {
+    this(colorModelFormulaGenerator, stampFormulaGenerator, colorFormulaGenerator, new StampLoader(AppProperties.getInstance().getStampsDir()), new Preferences());
+    stampPool.loadStampsConcurrently();
+  }
+
+  /**
+   * @param stampPool stamps to paint with, can be shared by several controllers painting at the same time.
+   */
+  public PaintingControllerImpl(BinaryFormulaGenerator colorModelFormulaGenerator, BinaryFormulaGenerator stampFormulaGenerator, BinaryFormulaGenerator colorFormulaGenerator, StampLoader stampPool, Preferences prefs) {
+    this.colorModelFormulaGenerator = colorModelFormulaGenerator;
+    this.stampFormulaGenerator = stampFormulaGenerator;
+    this.colorFormulaGenerator = colorFormulaGenerator;
+    this.stampPool = stampPool;
+    this.prefs = prefs;
+    this.projectionRenderer = new ProjectionRenderer();
+  }
+
+  @Override
+  public void setRetainColors(boolean retainColors) {
+    this.retainColors = retainColors;
+  }
+
+  @Override
+  public void setRetainStamps(boolean retainStamps) {
+    this.retainStamps = retainStamps;
+  }
+
+  @Override
+  public void setRetainSpine(boolean retainSpine) {
+    this.retainSpine = retainSpine;
+  }
+
+  @Override
+  public void setPreviewListener(PreviewListener listener) {
+    this.previewListener = listener;
+  }
+
+  @Override
+  public void clearCaches() {
+    log.info("Clearing Caches");
+    Stamp.clearCache();
+    stampPool.clearCaches();
+    SpriteCache.getInstance().clear();
+    RenderCache.getInstance().clear();
+    StampStore.getInstance().clear();
+    CompositeCache.getInstance().clear();
+  }
+
+  /**
+   * @return Image or null if cancelled
+   */
+  @Override
+  public synchronized Optional<BufferedImage> generateImage(ProgressListener listener, long seed) {
+    boolean showSpine = prefs.isSpineMode();
+    Generation generation = prepare(listener, seed, !showSpine);
+
+    if (!showSpine) {
+      try {
+        Painting painting = generation.start();
+        PreviewListener preview = previewListener;
+        AppProperties properties = AppProperties.getInstance();
+        if (preview != null && properties.getPreviewFramesPerSecond() > 0) {
+          painting.setPreview(preview, properties.getPreviewFramesPerSecond());
+          if (properties.isPreviewDraft()) {
+            ProjectionGenerator gen = generation.gen;
+            painting.setDraft(index -> gen.generateDraft(index, DRAFT_SCALE, stampQuery, colorModelQuery, colorQuery), generation.projections, DRAFT_SCALE);
+          }
+        }
+
+        BufferedImage result = painting.paint(generation.counter);
+        generation.completed();
+        return Optional.of(result);
+      }
+      catch (InterruptedException e) {
+        generation.cancelled();
+        return Optional.empty();
+      }
+    } else {
+      log.warn("SPINE MODE!");
+      try {
+        return Optional.of(paintLines(colorModelQuery));
+      } catch (InterruptedException e) {
+        log.info("No image available. Painting cancelled.");
+        return Optional.empty();
+      }
+    }
+  }
+
+  @Override
+  public synchronized Optional<MappedTileCanvas> generateTiledImage(ProgressListener listener, long seed, File directory) throws IOException {
+    if (prefs.isSpineMode()) {
+      log.warn("Spine mode is not available for tiled images, painting the image instead.");
+    }
+    Generation generation = prepare(listener, seed, true);
+    try {
+      MappedTileCanvas result = generation.start().paintTiled(generation.counter, directory);
+      generation.completed();
+      return Optional.of(result);
+    } catch (InterruptedException e) {
+      generation.cancelled();
+      return Optional.empty();
+    } catch (IOException | RuntimeException e) {
+      projectionRenderer.cancel();
+      generation.backup.revert();
+      throw e;
+    }
+  }
+
+  @Override
+  public synchronized Optional<File> generateImageFile(ProgressListener listener, long seed, File file) throws IOException {
+    if (prefs.isSpineMode()) {
+      log.warn("Spine mode is not available for image files, painting the image instead.");
+    }
+    Generation generation = prepare(listener, seed, true);
+    int width = prefs.getWidth();
+    int height = prefs.getHeight();
+    try (PngWriter png = new PngWriter(file, width, height, false, AppProperties.getInstance().getPngCompression())) {
+      ProjectionGenerator gen = generation.gen;
+      StripPlan plan = StripPlan.create(width, height, Painting.getStripHeight(width, height), generation.projections,
+          index -> gen.getBounds(index, stampQuery, colorModelQuery, colorQuery));
+      log.info("Painting " + plan.getStripCount() + " strips of " + plan.getStripHeight() + " rows, " + plan.size() + " projections");
+      generation.counter.setProjections(plan.size());
+      generation.start(plan).paintStrips(generation.counter, plan, (argb, rows) -> png.writeRows(argb, 0, width, rows));
+      generation.completed();
+    } catch (InterruptedException e) {
+      generation.cancelled();
+      deletePartial(file);
+      return Optional.empty();
+    } catch (IOException | RuntimeException e) {
+      projectionRenderer.cancel();
+      generation.backup.revert();
+      deletePartial(file);
+      throw e;
+    }
+    return Optional.of(file);
+  }
+
+  private static void deletePartial(File file) {
+    if (file.exists() && !file.delete()) {
+      log.warn("Unable to delete partially written " + file);
+    }
+  }
+
+  /**
+   * Generates whatever is not retained from the previous image.
+   *
+   * @param countProjections false if no projections are going to be painted.
+   */
+  private Generation prepare(ProgressListener listener, long seed, boolean countProjections) {
+    Backup backup = new Backup(pallette, stamps, stampQuery, colorModelQuery, colorQuery);
+
+    long startTime = System.currentTimeMillis();
+    log.info("Starting generating a new image, seed: " + seed);
+    int x = prefs.getWidth();
+    int y = prefs.getHeight();
+
+    int projections = 0;
+
+    ProgressCounter counter = new ProgressCounter(listener, projections);
+    stamps = createStamps(counter, stageRandom(seed, STAMPS_STAGE));
+
+    if (countProjections) {
+      projections = ((int)((double) x * y * CONSTANT_STAMP_COUNT_DIVIDER * prefs.getStampCountMultiplier()));
+      projections = adaptProjectionsToStampsSizes(projections, stamps);
+      counter.setProjections(projections);
+      log.info("Number of projections: " + projections);
+    }
+
+    if (pallette == null || !retainColors) {
+      Random random = stageRandom(seed, COLORS_STAGE);
+      pallette = new Pallette(generateColorModels(random));
+      backgroundColorModel = pallette.getColor(list -> backgroundColorModelChooser.get(list, random));
+    } else {
+      log.debug("Skip generating color models");
+    }
+
+    ProjectionGenerator gen = new ProjectionGenerator(x, y, stamps, pallette, seed);
+
+
+    if (stampQuery == null || colorModelQuery == null || colorQuery == null || !retainSpine) {
+      Random random = stageRandom(seed, SPINE_STAGE);
+      stampQuery = generateXYFormulaQuery(stampFormulaGenerator, random, new WeightedQuery<>());
+      colorModelQuery = generateXYFormulaQuery(colorModelFormulaGenerator, random, new RandomQuery<>());
+      colorQuery = generateXYFormulaQuery(colorFormulaGenerator, random, new RandomQuery<>());
+    }
+    return new Generation(backup, counter, gen, projections, startTime);
+  }
+
+  private int adaptProjectionsToStampsSizes(int projections, StampProvider stamps) {
+    int defaultSize = 150;
+    int defArea = defaultSize * defaultSize;
+    double projectionsTemp = projections;
+    StampIndex index = stamps.getIndex();
+    double affection = ((double)1 / (double)index.size()) * projections;
+    int[] areas = index.getAreas();
+    double[] rarities = index.getRarities();
+    for (int id = 0; id < index.size(); id++) {
+      double multiplier = (double)defArea / (double)areas[id];
+      double a = (multiplier - 1) * affection * rarities[id];
+      projectionsTemp += a;
+    }
+    // Just in case limit the number of projections to 3 times the original count.
+    return (int) Math.min(projectionsTemp, projections * 3);
+  }
+
+  private static Random stageRandom(long seed, int stage) {
+    return new Random(ProjectionGenerator.seedFor(seed, stage));
+  }
+
+  private StampProvider createStamps(ProgressCounter counter, Random random) {
+    if (stamps == null || !retainStamps) {
+      log.info("Generating stamps");
+      Stamps loadedStamps = stampPool.getStamps(prefs.getStampGroupsCount(), prefs.getStampsPerGroup(), RandomQuery.create(), RandomQuery.create(), false, counter, random);
+      // TODO, this composite thing should be more dynamic. (What's the number 10?)
+      CompositeStamps compositeStamps = new CompositeStamps(loadedStamps, new RandomIntersectionComposerStrategy((int) (random.nextDouble() * 10)), random);
+      compositeStamps = new CompositeStamps(compositeStamps, new RandomMergeComposerStrategy((int) (random.nextDouble() * 10)), random);
+      return compositeStamps;
+    } else {
+      log.debug("Skip generating stamps");
+      return stamps;
+    }
+  }
+
+
+  private <T> Query<T> generateXYFormulaQuery(BinaryFormulaGenerator generator, Random random, Query<T> query) {
+    ReversingCompoundBinaryFormula formula = new ReversingCompoundBinaryFormula(generator.generate(prefs, random));
+    // Covers every column a projection can be placed at
+    BinaryFormula compiled = CompiledBinaryFormula.compile(formula, -ProjectionGenerator.OUT_OF_SIGHT_MARGIN, prefs.getWidth());
+    return new XYFormulaQuery<>(query, new BinaryQuery<T>(random.nextDouble()), compiled);
+  }
+
+  private java.util.List<ColorModel> generateColorModels(Random random) {
+    log.info("Generating color models");
+    int colors = prefs.getNumberOfColors();
+    java.util.List<ColorModel> colorModels = new ArrayList<>(colors);
+
+    for (int i = 0; i < colors; i++) {
+      if (random.nextDouble() < CHANCE_OF_GRADIENT_COLOR) {
+        colorModels.add(new GradientColorModel(ColorUtil.getRandomColor(random), ColorUtil.getRandomColor(random), prefs.getHeight(), prefs.getWidth()));
+      } else {
+        colorModels.add(new PlainColorModel(ColorUtil.getRandomColor(random)));
+      }
+    }
+    return colorModels;
+  }
+
+  @Override
+  public Preferences getPrefs() {
+    return prefs;
+  }
+
+  private BufferedImage paintLines(Query<?> q) throws InterruptedException {
+    BufferedImage image = new BufferedImage(getPrefs().getWidth(), getPrefs().getHeight(), BufferedImage.TYPE_INT_RGB);
+    if (!(q instanceof XYFormulaQuery)) {
+      log.error("Invalid query for paintLines");
+      System.exit(-1);
+    }
+
+    BinaryFormula formula = ((XYFormulaQuery) q).getFormula();
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int[] data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    int one = Color.GRAY.getRGB();
+    int zero = Color.DARK_GRAY.getRGB();
+
+    // Columns in parallel, each column filled span by span between its crossings
+    Bands.run(ExecutionPolicy.getInstance().getCompositingPool(), width, SPINE_BAND_WIDTH, (from, to) -> {
+      for (int x = from; x < to; x++) {
+        int[] crossings = formula.getCrossings(x);
+        if (crossings == null) {
+          for (int y = 0; y < height; y++) {
+            data[y * width + x] = formula.get(x, y).equals(BinaryValue.ONE) ? one : zero;
+          }
+          continue;
+        }
+        boolean isOne = false;
+        int k = 0;
+        int y = 0;
+        while (true) {
+          while (k < crossings.length && crossings[k] <= y) {
+            isOne = !isOne;
+            k++;
+          }
+          if (y >= height) {
+            break;
+          }
+          int end = k < crossings.length ? Math.min(crossings[k], height) : height;
+          int rgb = isOne ? one : zero;
+          for (; y < end; y++) {
+            data[y * width + x] = rgb;
+          }
+        }
+      }
+    });
+
+    return image;
+  }
+
+
+  /**
+   * One image being generated.
+   */
+  private class Generation {
+    private final Backup backup;
+    private final ProgressCounter counter;
+    private final ProjectionGenerator gen;
+    private final int projections;
+    private final long startTime;
+
+    private Generation(Backup backup, ProgressCounter counter, ProjectionGenerator gen, int projections, long startTime) {
+      this.backup = backup;
+      this.counter = counter;
+      this.gen = gen;
+      this.projections = projections;
+      this.startTime = startTime;
+    }
+
+    private Painting start() {
+      log.info("Start painting.");
+      projectionRenderer.start(index -> gen.generate(index, stampQuery, colorModelQuery, colorQuery), projections, counter);
+      return new Painting(prefs.getWidth(), prefs.getHeight(), backgroundColorModel, projectionRenderer);
+    }
+
+    /**
+     * Same as {@link #start()}, with the projections handed out in the order of the plan.
+     */
+    private Painting start(StripPlan plan) {
+      log.info("Start painting.");
+      projectionRenderer.start(position -> gen.generate(plan.getIndex(position), stampQuery, colorModelQuery, colorQuery), plan.size(), counter);
+      return new Painting(prefs.getWidth(), prefs.getHeight(), backgroundColorModel, projectionRenderer);
+    }
+
+    private void completed() {
+      long endTime = System.currentTimeMillis();
+      log.info("Generating new image completed. Total time: " + (endTime - startTime) + " ms");
+      log.info("Render cache: " + RenderCache.getInstance());
+      log.info("Sprite cache: " + SpriteCache.getInstance());
+      log.info("Composite stamp cache: " + CompositeCache.getInstance());
+      if (AppProperties.getInstance().isLazyLoading()) {
+        log.info("Stamp store: " + StampStore.getInstance());
+      }
+    }
+
+    private void cancelled() {
+      log.info("No image available. Painting cancelled.");
+      projectionRenderer.cancel();
+      counter.clear();
+      backup.revert();
+    }
+  }
+
+  private class Backup {
+    private Pallette pallette;
+    private StampProvider stamps;
+    private Query<Stamp> stampQuery;
+    private Query<ColorModel> colorModelQuery;
+    private Query<Color> colorQuery;
+
+    public Backup(Pallette pallette, StampProvider stamps, Query<Stamp> stampQuery, Query<ColorModel> colorModelQuery, Query<Color> colorQuery) {
+      this.pallette = pallette;
+      this.stamps = stamps;
+      this.stampQuery = stampQuery;
+      this.colorModelQuery = colorModelQuery;
+      this.colorQuery = colorQuery;
+    }
+
+    private Pallette getPallette() {
+      return pallette;
+    }
+
+    private StampProvider getStamps() {
+      return stamps;
+    }
+
+    private Query<Stamp> getStampQuery() {
+      return stampQuery;
+    }
+
+    private Query<ColorModel> getColorModelQuery() {
+      return colorModelQuery;
+    }
+
+    private Query<Color> getColorQuery() {
+      return colorQuery;
+    }
+
+    public void revert() {
+      log.info("Reverting data from backup");
+      PaintingControllerImpl.this.colorQuery = colorQuery;
+      PaintingControllerImpl.this.stamps = stamps;
+      PaintingControllerImpl.this.pallette = pallette;
+      PaintingControllerImpl.this.colorModelQuery = colorModelQuery;
+      PaintingControllerImpl.this.stampQuery = stampQuery;
+    }
+  }
+}
+
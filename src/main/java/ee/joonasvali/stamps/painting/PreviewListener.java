@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps.painting;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+/**
+ * Receives the painting while it is being painted. Both methods are called from the painting thread and must return
+ * quickly: hand the work over to the EDT and coalesce, never wait for it.
+ */
+public interface PreviewListener {
+  /**
+   * A low resolution draft of the whole painting, painted before the painting itself.
+   *
+   * @param draft the draft, it can still be painted into after the call.
+   * @param scale size of the draft relative to the painting.
+   */
+  void draft(BufferedImage draft, double scale);
+
+  /**
+   * Regions of the canvas that have changed since the previous update. Called at most at the preview frame rate.
+   *
+   * @param canvas the canvas itself, not a copy. It keeps being painted into and must not be modified.
+   * @param dirty changed regions, in canvas coordinates.
+   */
+  void update(BufferedImage canvas, List<Rectangle> dirty);
+}
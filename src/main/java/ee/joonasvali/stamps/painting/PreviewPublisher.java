@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps.painting;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the tiles touched by composited projections and hands them to the {@link PreviewListener} at a bounded
+ * frame rate. Nothing is copied, the listener reads the dirty regions straight from the canvas. Only used from the
+ * painting thread.
+ */
+class PreviewPublisher {
+  static final int TILE_SIZE = 64;
+
+  private final PreviewListener listener;
+  private final long frameInterval;
+  private final int width, height;
+  private final int tilesX, tilesY;
+  private final BitSet dirty;
+  private long lastFrame;
+
+  PreviewPublisher(PreviewListener listener, int width, int height, int framesPerSecond) {
+    this.listener = listener;
+    this.frameInterval = TimeUnit.SECONDS.toNanos(1) / Math.max(framesPerSecond, 1);
+    this.width = width;
+    this.height = height;
+    this.tilesX = (width + TILE_SIZE - 1) / TILE_SIZE;
+    this.tilesY = (height + TILE_SIZE - 1) / TILE_SIZE;
+    this.dirty = new BitSet(tilesX * tilesY);
+    this.lastFrame = System.nanoTime();
+  }
+
+  PreviewListener getListener() {
+    return listener;
+  }
+
+  /**
+   * @return true if a frame is due, the frame counts as started then.
+   */
+  boolean nextFrame() {
+    long now = System.nanoTime();
+    if (now - lastFrame < frameInterval) {
+      return false;
+    }
+    lastFrame = now;
+    return true;
+  }
+
+  void markDirty(Rectangle bounds) {
+    Rectangle visible = bounds.intersection(new Rectangle(0, 0, width, height));
+    if (visible.isEmpty()) {
+      return;
+    }
+    int fromX = visible.x / TILE_SIZE;
+    int toX = (visible.x + visible.width - 1) / TILE_SIZE;
+    int toY = (visible.y + visible.height - 1) / TILE_SIZE;
+    for (int ty = visible.y / TILE_SIZE; ty <= toY; ty++) {
+      dirty.set(ty * tilesX + fromX, ty * tilesX + toX + 1);
+    }
+  }
+
+  /**
+   * Publishes the dirty tiles if a frame is due.
+   */
+  void publishIfDue(BufferedImage canvas) {
+    if (nextFrame()) {
+      publish(canvas);
+    }
+  }
+
+  void publish(BufferedImage canvas) {
+    if (dirty.isEmpty()) {
+      return;
+    }
+    // Runs of dirty tiles in a row become one region
+    List<Rectangle> regions = new ArrayList<>();
+    for (int ty = 0; ty < tilesY; ty++) {
+      int rowStart = ty * tilesX;
+      int rowEnd = rowStart + tilesX;
+      int from = dirty.nextSetBit(rowStart);
+      while (from >= 0 && from < rowEnd) {
+        int to = Math.min(dirty.nextClearBit(from), rowEnd);
+        int x = (from - rowStart) * TILE_SIZE;
+        int y = ty * TILE_SIZE;
+        regions.add(new Rectangle(x, y, Math.min((to - rowStart) * TILE_SIZE, width) - x, Math.min(TILE_SIZE, height - y)));
+        from = dirty.nextSetBit(to);
+      }
+    }
+    dirty.clear();
+    listener.update(canvas, regions);
+  }
+}
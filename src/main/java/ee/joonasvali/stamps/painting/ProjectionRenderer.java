@@ -1,65 +1,150 @@
-package ee.joonasvali.stamps.painting;
-
-import ee.joonasvali.stamps.Projection;
-import ee.joonasvali.stamps.ui.ProgressCounter;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import java.util.ArrayList;
-import java.util.NoSuchElementException;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.atomic.AtomicInteger;
-
-public class ProjectionRenderer {
-  private static final int NUMBER_OF_PROJECTIONS_TO_PREPARE = 10;
-  private static Logger log = LoggerFactory.getLogger(ProjectionRenderer.class);
-  private static final int AVAILABLE_PROCESSORS = Runtime.getRuntime().availableProcessors();
-  private static ExecutorService multiThreadExecutor = Executors.newFixedThreadPool(AVAILABLE_PROCESSORS);
-  private ArrayList<Future> futures;
-  private final ArrayBlockingQueue<Projection> projections = new ArrayBlockingQueue<>(NUMBER_OF_PROJECTIONS_TO_PREPARE);
-  private final AtomicInteger remainingInQueue = new AtomicInteger();
-
-  public void start(InterruptibleSupplier<Projection> projectionSupplier, int projectionCount, ProgressCounter counter) {
-    remainingInQueue.set(projectionCount);
-
-    Runnable internalRunnable = () -> {
-      try {
-        projections.put(projectionSupplier.get());
-        remainingInQueue.decrementAndGet();
-      } catch (InterruptedException e) {
-        log.info("Projection interrupted.");
-      } finally {
-        counter.increase();
-      }
-    };
-
-    futures = new ArrayList<>(projectionCount);
-    for (int i = 0; i < projectionCount; i++) {
-      futures.add(multiThreadExecutor.submit(internalRunnable));
-    }
-  }
-
-  public void cancel() {
-    for(Future future : futures) {
-      if(!future.isDone() && !future.isCancelled()) {
-        future.cancel(true);
-      }
-    }
-    log.info("Rendering cancelled.");
-    futures.clear();
-  }
-
-  public boolean hasNext() {
-    return remainingInQueue.get() > 0 || projections.size() > 0;
-  }
-
-  public Projection next() throws InterruptedException {
-    if (!hasNext()) {
-      throw new NoSuchElementException();
-    }
-    return projections.take();
-  }
-}
+package ee.joonasvali.stamps.painting;
+
+import ee.joonasvali.stamps.Projection;
+import ee.joonasvali.stamps.execution.ExecutionPolicy;
+import ee.joonasvali.stamps.ui.ProgressCounter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ProjectionRenderer {
+  private static final int NUMBER_OF_PROJECTIONS_TO_PREPARE = Painting.COMPOSITING_BATCH_SIZE;
+  private static Logger log = LoggerFactory.getLogger(ProjectionRenderer.class);
+  // Indexes claimed by a producer at once. Small, so the producers stay close to the consumer.
+  private static final int CHUNK_SIZE = 4;
+  private volatile ReorderBuffer<Projection> projections;
+  private int projectionCount;
+  private int taken;
+  private final ExecutorService executor;
+  private final int parallelism;
+
+  public ProjectionRenderer() {
+    this(ExecutionPolicy.getInstance());
+  }
+
+  public ProjectionRenderer(ExecutionPolicy policy) {
+    this.executor = policy.getComputeExecutor();
+    this.parallelism = policy.getParallelism();
+  }
+
+  /**
+   * Starts generating projections 0 until projectionCount - 1 in parallel. They are handed out by {@link #next()}
+   * in index order, regardless of the order in which they got generated.
+   *
+   * A fixed number of producers claim small chunks of indexes until all are taken. A producer that gets too far
+   * ahead of the consumer keeps its projection and leaves the thread, and is run again once the consumer has caught
+   * up. The producer owning the next index to be consumed never has to wait, since every producer goes through its
+   * chunk in order.
+   * <p>
+   * No thread waits for the consumer, so a fork-join pool doesn't start threads to make up for blocked ones, and the
+   * threads taken stay at the parallelism of the pool.
+   */
+  public void start(IndexedSupplier<Projection> projectionSupplier, int projectionCount, ProgressCounter counter) {
+    ReorderBuffer<Projection> buffer = new ReorderBuffer<>(NUMBER_OF_PROJECTIONS_TO_PREPARE);
+    this.projections = buffer;
+    this.projectionCount = projectionCount;
+    this.taken = 0;
+
+    AtomicInteger nextChunk = new AtomicInteger();
+    int producers = Math.min(parallelism, (projectionCount + CHUNK_SIZE - 1) / CHUNK_SIZE);
+    for (int i = 0; i < producers; i++) {
+      executor.execute(new Producer(buffer, projectionSupplier, projectionCount, nextChunk, counter));
+    }
+  }
+
+  /**
+   * Stops the producers. They check for it before every projection, and the ones waiting for the consumer are released.
+   */
+  public void cancel() {
+    ReorderBuffer<Projection> buffer = projections;
+    if (buffer != null) {
+      buffer.close();
+    }
+    log.info("Rendering cancelled.");
+  }
+
+  public boolean hasNext() {
+    return taken < projectionCount;
+  }
+
+  public Projection next() throws InterruptedException {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    Projection projection = projections.take();
+    taken++;
+    return projection;
+  }
+
+  /**
+   * Claims chunks of indexes and offers their projections to the buffer until all indexes are taken. Run again by the
+   * consumer when an offer didn't fit, with the projection it kept.
+   */
+  private final class Producer implements Runnable {
+    private final ReorderBuffer<Projection> buffer;
+    private final IndexedSupplier<Projection> supplier;
+    private final int projectionCount;
+    private final AtomicInteger nextChunk;
+    private final ProgressCounter counter;
+    private int index;
+    private int end;
+    // Generated but didn't fit in the buffer yet
+    private Projection pending;
+
+    private Producer(ReorderBuffer<Projection> buffer, IndexedSupplier<Projection> supplier, int projectionCount, AtomicInteger nextChunk, ProgressCounter counter) {
+      this.buffer = buffer;
+      this.supplier = supplier;
+      this.projectionCount = projectionCount;
+      this.nextChunk = nextChunk;
+      this.counter = counter;
+    }
+
+    @Override
+    public void run() {
+      while (!buffer.isClosed()) {
+        if (pending == null) {
+          if (index == end) {
+            int start = nextChunk.getAndAdd(CHUNK_SIZE);
+            if (start >= projectionCount) {
+              return;
+            }
+            index = start;
+            end = Math.min(start + CHUNK_SIZE, projectionCount);
+          }
+          try {
+            pending = supplier.get(index);
+          } catch (InterruptedException e) {
+            log.info("Projection interrupted.");
+            return;
+          } catch (RuntimeException | Error e) {
+            // Errors too, like running out of heap, or the consumer would wait for the projection forever
+            log.error("Projection " + index + " failed.", e);
+            buffer.fail(e);
+            return;
+          } finally {
+            counter.increase();
+          }
+        }
+        if (!buffer.offer(index, pending, this::resume)) {
+          // Run again by the consumer once the projection fits, maybe before this returns
+          return;
+        }
+        pending = null;
+        index++;
+      }
+    }
+
+    private void resume() {
+      try {
+        executor.execute(this);
+      } catch (RejectedExecutionException e) {
+        // Shut down, the consumer would wait for the projection forever
+        buffer.fail(e);
+      }
+    }
+  }
+}
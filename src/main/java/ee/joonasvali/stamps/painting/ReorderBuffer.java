@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps.painting;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded buffer that accepts sequence numbered elements in any order and hands them out strictly in sequence.
+ * A producer that is too far ahead of the consumer blocks until the consumer catches up, or with
+ * {@link #offer(int, Object, Runnable)} keeps its element and is called back once the consumer has caught up. So at
+ * most {@code capacity} elements are ever held.
+ */
+public class ReorderBuffer<T> {
+  private final Object[] slots;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition headAvailable = lock.newCondition();
+  private final Condition spaceAvailable = lock.newCondition();
+
+  private int next = 0;
+  private volatile boolean closed = false;
+  private Throwable failure;
+  // Callbacks of offers that didn't fit yet, by index
+  private final Map<Integer, Runnable> waiting = new HashMap<>();
+
+  public ReorderBuffer(int capacity) {
+    if (capacity < 1) throw new IllegalArgumentException("capacity must be positive: " + capacity);
+    this.slots = new Object[capacity];
+  }
+
+  /**
+   * Stores the element with the given sequence number. Blocks while the index is not within {@code capacity} of
+   * the next element to be taken. Elements put after {@link #close()} are dropped.
+   */
+  public void put(int index, T element) throws InterruptedException {
+    if (element == null) throw new NullPointerException();
+    lock.lockInterruptibly();
+    try {
+      if (index < next) throw new IllegalStateException("Index " + index + " already taken");
+      while (!closed && index >= next + slots.length) {
+        spaceAvailable.await();
+      }
+      if (closed) return;
+      store(index, element);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Stores the element with the given sequence number if the index is within {@code capacity} of the next element to
+   * be taken. Doesn't wait for it otherwise: the element is left to the caller, and {@code onSpace} is run by the
+   * consumer once the element fits, to offer it again. Elements offered after {@link #close()} are dropped.
+   *
+   * @return false if the element didn't fit and has to be offered again once {@code onSpace} is run.
+   */
+  public boolean offer(int index, T element, Runnable onSpace) {
+    if (element == null) throw new NullPointerException();
+    lock.lock();
+    try {
+      if (index < next) throw new IllegalStateException("Index " + index + " already taken");
+      if (closed) return true;
+      if (index >= next + slots.length) {
+        waiting.put(index, onSpace);
+        return false;
+      }
+      store(index, element);
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void store(int index, T element) {
+    int slot = index % slots.length;
+    if (slots[slot] != null) throw new IllegalStateException("Index " + index + " already present");
+    slots[slot] = element;
+    if (index == next) {
+      headAvailable.signalAll();
+    }
+  }
+
+  /**
+   * @return the element with the next sequence number, waiting for it to arrive if necessary.
+   * @throws IllegalStateException if a producer failed or the buffer was closed.
+   */
+  @SuppressWarnings("unchecked")
+  public T take() throws InterruptedException {
+    T element;
+    Runnable onSpace;
+    lock.lockInterruptibly();
+    try {
+      int slot = next % slots.length;
+      while (slots[slot] == null) {
+        if (failure != null) throw new IllegalStateException("Producer failed", failure);
+        if (closed) throw new IllegalStateException("Buffer closed");
+        headAvailable.await();
+      }
+      element = (T) slots[slot];
+      slots[slot] = null;
+      next++;
+      spaceAvailable.signalAll();
+      // The only index that fits now and didn't before
+      onSpace = waiting.remove(next + slots.length - 1);
+    } finally {
+      lock.unlock();
+    }
+    if (onSpace != null) {
+      onSpace.run();
+    }
+    return element;
+  }
+
+  /**
+   * Makes the consumer fail instead of waiting for an element that will never arrive, and closes the buffer.
+   */
+  public void fail(Throwable cause) {
+    lock.lock();
+    try {
+      if (failure == null) failure = cause;
+      close();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public boolean isClosed() {
+    return closed;
+  }
+
+  /**
+   * Releases everyone waiting on this buffer and drops all held and future elements.
+   */
+  public void close() {
+    lock.lock();
+    try {
+      closed = true;
+      for (int i = 0; i < slots.length; i++) {
+        slots[i] = null;
+      }
+      waiting.clear();
+      headAvailable.signalAll();
+      spaceAvailable.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+}
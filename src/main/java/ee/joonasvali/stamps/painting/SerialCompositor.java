@@ -0,0 +1,19 @@
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps.painting;
+
+import ee.joonasvali.stamps.Projection;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+public class SerialCompositor implements Compositor {
+  @Override
+  public void composite(List<Projection> projections, BufferedImage canvas, int originX, int originY) {
+    for (Projection projection : projections) {
+      projection.paintTo(canvas, originX, originY);
+    }
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps.painting;
+
+import java.awt.*;
+import java.util.Arrays;
+
+/**
+ * Which projections each horizontal strip of a painting needs, in painter's order. A projection crossing the border
+ * of two strips is needed by both and gets generated for both, so nothing has to be kept from one strip to the next.
+ */
+public class StripPlan {
+  /**
+   * Pixels a projection can paint past its bounds: a sprite is resampled from a shrunk or rotated image, and can
+   * reach a pixel further than the stamp would.
+   */
+  static final int SPRITE_MARGIN = 1;
+  private final int stripHeight;
+  private final int[] order;
+  private final int[] stripStart;
+
+  private StripPlan(int stripHeight, int[] order, int[] stripStart) {
+    this.stripHeight = stripHeight;
+    this.order = order;
+    this.stripStart = stripStart;
+  }
+
+  /**
+   * @param bounds area each projection can paint when painted without sprites, projections outside of the canvas are
+   * left out.
+   */
+  public static StripPlan create(int width, int height, int stripHeight, int projections, IndexedSupplier<Rectangle> bounds) throws InterruptedException {
+    int strips = (height + stripHeight - 1) / stripHeight;
+    int[] first = new int[projections];
+    int[] last = new int[projections];
+    int[] counts = new int[strips];
+    Rectangle canvas = new Rectangle(0, 0, width, height);
+    for (int i = 0; i < projections; i++) {
+      if (Thread.currentThread().isInterrupted()) {
+        throw new InterruptedException();
+      }
+      Rectangle painted = new Rectangle(bounds.get(i));
+      painted.grow(SPRITE_MARGIN, SPRITE_MARGIN);
+      Rectangle visible = painted.intersection(canvas);
+      if (visible.isEmpty()) {
+        first[i] = -1;
+        continue;
+      }
+      first[i] = visible.y / stripHeight;
+      last[i] = (visible.y + visible.height - 1) / stripHeight;
+      for (int strip = first[i]; strip <= last[i]; strip++) {
+        counts[strip]++;
+      }
+    }
+
+    int[] stripStart = new int[strips + 1];
+    for (int strip = 0; strip < strips; strip++) {
+      stripStart[strip + 1] = stripStart[strip] + counts[strip];
+    }
+    int[] order = new int[stripStart[strips]];
+    int[] next = Arrays.copyOf(stripStart, strips);
+    for (int i = 0; i < projections; i++) {
+      if (first[i] < 0) {
+        continue;
+      }
+      for (int strip = first[i]; strip <= last[i]; strip++) {
+        order[next[strip]++] = i;
+      }
+    }
+    return new StripPlan(stripHeight, order, stripStart);
+  }
+
+  public int getStripHeight() {
+    return stripHeight;
+  }
+
+  public int getStripCount() {
+    return stripStart.length - 1;
+  }
+
+  /**
+   * @return number of projections the strip needs.
+   */
+  public int getCount(int strip) {
+    return stripStart[strip + 1] - stripStart[strip];
+  }
+
+  /**
+   * @return number of projections all the strips need together.
+   */
+  public int size() {
+    return order.length;
+  }
+
+  /**
+   * @return index of the projection at the given position of the plan. Positions go strip by strip, inside a strip
+   * in the order the projections are painted.
+   */
+  public int getIndex(int position) {
+    return order[position];
+  }
+}
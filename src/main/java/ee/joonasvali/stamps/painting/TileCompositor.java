@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps.painting;
+
+import ee.joonasvali.stamps.Projection;
+import ee.joonasvali.stamps.execution.ExecutionPolicy;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Bins the bounding box of every projection into square canvas tiles and composites on a fork-join pool.
+ * <p>
+ * Inside a tile the painter's order of the batch is strict: a projection is painted only after every earlier
+ * projection sharing a tile with it is done. Projections that have no tiles in common are painted in parallel.
+ * Since a projection is always painted whole by a single thread, the result is the same, pixel for pixel,
+ * as painting the batch serially.
+ */
+public class TileCompositor implements Compositor {
+  public static final int DEFAULT_TILE_SIZE = 128;
+
+  private final int tileSize;
+  private final ForkJoinPool pool;
+
+  private BufferedImage binnedCanvas;
+  private int tilesX;
+  private int tilesY;
+  private int[] lastInTile;
+
+  public TileCompositor() {
+    this(DEFAULT_TILE_SIZE, ExecutionPolicy.getInstance().getCompositingPool());
+  }
+
+  public TileCompositor(int tileSize, ForkJoinPool pool) {
+    if (tileSize <= 0) {
+      throw new IllegalArgumentException("Tile size must be positive: " + tileSize);
+    }
+    this.tileSize = tileSize;
+    this.pool = pool;
+  }
+
+  @Override
+  public void composite(List<Projection> projections, BufferedImage canvas, int originX, int originY) throws InterruptedException {
+    prepareTiles(canvas);
+    Arrays.fill(lastInTile, -1);
+    Rectangle canvasBounds = new Rectangle(0, 0, canvas.getWidth(), canvas.getHeight());
+
+    Node[] nodes = new Node[projections.size()];
+    int[] lastPredecessor = new int[projections.size()];
+    Arrays.fill(lastPredecessor, -1);
+    for (int i = 0; i < nodes.length; i++) {
+      Node node = new Node(projections.get(i));
+      nodes[i] = node;
+      Rectangle bounds = node.projection.getBounds();
+      bounds.translate(-originX, -originY);
+      bounds = bounds.intersection(canvasBounds);
+      if (bounds.isEmpty()) {
+        // Nothing would end up on canvas
+        continue;
+      }
+      int startX = bounds.x / tileSize;
+      int startY = bounds.y / tileSize;
+      int endX = (bounds.x + bounds.width - 1) / tileSize;
+      int endY = (bounds.y + bounds.height - 1) / tileSize;
+      for (int ty = startY; ty <= endY; ty++) {
+        for (int tx = startX; tx <= endX; tx++) {
+          int tile = ty * tilesX + tx;
+          int previous = lastInTile[tile];
+          // lastPredecessor makes sure the same dependency is not counted twice
+          if (previous >= 0 && lastPredecessor[previous] != i) {
+            lastPredecessor[previous] = i;
+            nodes[previous].addSuccessor(i);
+            node.pending.incrementAndGet();
+          }
+          lastInTile[tile] = i;
+        }
+      }
+    }
+
+    // Collect the independent projections before submitting anything, running tasks release their successors
+    int[] ready = new int[nodes.length];
+    int readyCount = 0;
+    for (int i = 0; i < nodes.length; i++) {
+      if (nodes[i].pending.get() == 0) {
+        ready[readyCount++] = i;
+      }
+    }
+    Batch batch = new Batch(nodes, canvas, originX, originY);
+    for (int i = 0; i < readyCount; i++) {
+      pool.execute(batch.task(ready[i]));
+    }
+    batch.done.await();
+
+    Throwable failure = batch.failure.get();
+    if (failure != null) {
+      throw new IllegalStateException("Compositing projection failed", failure);
+    }
+  }
+
+  private void prepareTiles(BufferedImage canvas) {
+    if (binnedCanvas == canvas) {
+      return;
+    }
+    binnedCanvas = canvas;
+    tilesX = (canvas.getWidth() + tileSize - 1) / tileSize;
+    tilesY = (canvas.getHeight() + tileSize - 1) / tileSize;
+    lastInTile = new int[tilesX * tilesY];
+  }
+
+  private class Batch {
+    private final Node[] nodes;
+    private final BufferedImage canvas;
+    private final int originX, originY;
+    private final CountDownLatch done;
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    private Batch(Node[] nodes, BufferedImage canvas, int originX, int originY) {
+      this.nodes = nodes;
+      this.canvas = canvas;
+      this.originX = originX;
+      this.originY = originY;
+      this.done = new CountDownLatch(nodes.length);
+    }
+
+    private Runnable task(int index) {
+      return () -> {
+        Node node = nodes[index];
+        try {
+          if (failure.get() == null) {
+            node.projection.paintTo(canvas, originX, originY);
+          }
+        } catch (Throwable e) {
+          failure.compareAndSet(null, e);
+        } finally {
+          // Successors are released even after a failure, otherwise the batch would never finish
+          for (int i = 0; i < node.successorCount; i++) {
+            int successor = node.successors[i];
+            if (nodes[successor].pending.decrementAndGet() == 0) {
+              pool.execute(task(successor));
+            }
+          }
+          done.countDown();
+        }
+      };
+    }
+  }
+
+  private static class Node {
+    private final Projection projection;
+    private final AtomicInteger pending = new AtomicInteger();
+    private int[] successors = new int[4];
+    private int successorCount;
+
+    private Node(Projection projection) {
+      this.projection = projection;
+    }
+
+    private void addSuccessor(int index) {
+      if (successorCount == successors.length) {
+        successors = Arrays.copyOf(successors, successorCount * 2);
+      }
+      successors[successorCount++] = index;
+    }
+  }
+}
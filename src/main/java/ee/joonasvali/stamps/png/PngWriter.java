@@ -0,0 +1,369 @@
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps.png;
+
+import ee.joonasvali.stamps.execution.ExecutionPolicy;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a PNG file row by row, so the image never has to be in memory as a whole. Rows are given as ARGB ints and
+ * written as 8 bit RGB or RGBA, every row with the Paeth filter.
+ *
+ * The rows are compressed in parallel the way pigz does it: they are cut into blocks that are deflated independently,
+ * each block primed with the end of the block before it, and flushed to a byte boundary so the blocks can simply be
+ * written one after the other. Every block goes into an IDAT chunk of its own.
+ */
+public class PngWriter implements Closeable {
+  private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+  private static final byte[] IDAT = {'I', 'D', 'A', 'T'};
+  private static final byte[] IEND = {'I', 'E', 'N', 'D'};
+  private static final byte FILTER_PAETH = 4;
+  // Filtered bytes deflated by one task
+  private static final int BLOCK_SIZE = 128 * 1024;
+  // Deflate can't look further back than this, so it's all of the previous block worth priming with
+  private static final int DICTIONARY_SIZE = 32 * 1024;
+  private static final int ADLER_BASE = 65521;
+
+  private final FileChannel channel;
+  private final ForkJoinPool pool;
+  private final int width, height;
+  private final int bytesPerPixel;
+  private final int rowBytes;
+  private final int compressionLevel;
+  private byte[] previous;
+  private byte[] dictionary;
+  private long adler = 1;
+  private int rows;
+  private boolean closed;
+
+  /**
+   * Compresses on the compositing pool of the execution policy.
+   *
+   * @see #PngWriter(File, int, int, boolean, int, ForkJoinPool)
+   */
+  public PngWriter(File file, int width, int height, boolean alpha, int compressionLevel) throws IOException {
+    this(file, width, height, alpha, compressionLevel, ExecutionPolicy.getInstance().getCompositingPool());
+  }
+
+  /**
+   * @param alpha false to leave the alpha channel out, for opaque images.
+   * @param compressionLevel deflate level, from {@link Deflater#NO_COMPRESSION} to {@link Deflater#BEST_COMPRESSION}.
+   * @param pool compresses the blocks.
+   */
+  public PngWriter(File file, int width, int height, boolean alpha, int compressionLevel, ForkJoinPool pool) throws IOException {
+    if (width <= 0 || height <= 0) {
+      throw new IllegalArgumentException("Invalid image size " + width + "x" + height);
+    }
+    if (compressionLevel < Deflater.NO_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+      throw new IllegalArgumentException("Invalid compression level " + compressionLevel);
+    }
+    this.width = width;
+    this.height = height;
+    this.pool = pool;
+    this.compressionLevel = compressionLevel;
+    this.bytesPerPixel = alpha ? 4 : 3;
+    long rowBytes = (long) width * bytesPerPixel + 1;
+    if (rowBytes > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Image is too wide: " + width);
+    }
+    this.rowBytes = (int) rowBytes;
+    this.previous = new byte[this.rowBytes];
+    channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+    write(ByteBuffer.wrap(SIGNATURE));
+    ByteBuffer header = ByteBuffer.allocate(13);
+    header.putInt(width).putInt(height);
+    header.put((byte) 8);
+    header.put((byte) (alpha ? 6 : 2));
+    // Deflate, adaptive filtering, no interlace
+    header.put((byte) 0).put((byte) 0).put((byte) 0);
+    writeChunk(new byte[]{'I', 'H', 'D', 'R'}, header.array(), 13);
+    writeChunk(IDAT, zlibHeader(compressionLevel), 2);
+  }
+
+  /**
+   * Writes the next rows of the image. Returns once the rows are written, so the array can be reused right after.
+   *
+   * @param argb row r starts at {@code offset + r * scanline}.
+   */
+  public void writeRows(int[] argb, int offset, int scanline, int count) throws IOException {
+    if (rows + count > height) {
+      throw new IllegalStateException("Image has only " + height + " rows");
+    }
+    int rowsPerBlock = Math.max(1, BLOCK_SIZE / rowBytes);
+    // A few blocks per thread at a time, so the threads keep busy while the memory stays small
+    int blocksAtOnce = pool.getParallelism() * 2;
+    int row = 0;
+    while (row < count) {
+      List<Block> blocks = new ArrayList<>(blocksAtOnce);
+      for (int i = 0; i < blocksAtOnce && row < count; i++) {
+        int blockRows = Math.min(rowsPerBlock, count - row);
+        blocks.add(new Block(argb, offset, scanline, row, blockRows));
+        row += blockRows;
+      }
+      blocks.get(0).previous = previous;
+
+      List<Callable<Void>> filters = new ArrayList<>(blocks.size());
+      for (Block block : blocks) {
+        filters.add(() -> {
+          block.filter();
+          return null;
+        });
+      }
+      run(filters);
+
+      List<Callable<Void>> deflates = new ArrayList<>(blocks.size());
+      byte[] blockDictionary = dictionary;
+      for (Block block : blocks) {
+        byte[] primer = blockDictionary;
+        deflates.add(() -> {
+          block.deflate(primer);
+          return null;
+        });
+        blockDictionary = block.tail();
+      }
+      run(deflates);
+
+      for (Block block : blocks) {
+        adler = combineAdler(adler, block.adler, block.filtered.length);
+        write(block.chunk);
+      }
+      Block last = blocks.get(blocks.size() - 1);
+      previous = last.lastRow;
+      dictionary = blockDictionary;
+    }
+    rows += count;
+  }
+
+  /**
+   * Finishes the file. The image must be complete by then.
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      if (rows != height) {
+        throw new IllegalStateException("Only " + rows + " rows of " + height + " were written");
+      }
+      // The last, empty deflate block and the checksum of the zlib stream
+      Deflater deflater = new Deflater(compressionLevel, true);
+      ByteBuffer end = ByteBuffer.allocate(64);
+      try {
+        deflater.finish();
+        byte[] buffer = new byte[32];
+        while (!deflater.finished()) {
+          end.put(buffer, 0, deflater.deflate(buffer));
+        }
+      } finally {
+        deflater.end();
+      }
+      end.putInt((int) adler);
+      writeChunk(IDAT, end.array(), end.position());
+      writeChunk(IEND, new byte[0], 0);
+    } finally {
+      channel.close();
+    }
+  }
+
+  private void run(List<Callable<Void>> tasks) throws IOException {
+    try {
+      for (Future<Void> future : pool.invokeAll(tasks)) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while compressing", e);
+    } catch (ExecutionException e) {
+      throw new IOException("Compressing failed", e.getCause());
+    }
+  }
+
+  private static byte[] zlibHeader(int compressionLevel) {
+    // 32K window, the compression level as zlib would report it, check bits making the header a multiple of 31
+    if (compressionLevel <= 1) {
+      return new byte[]{0x78, 0x01};
+    } else if (compressionLevel <= 5) {
+      return new byte[]{0x78, 0x5E};
+    } else if (compressionLevel == 6) {
+      return new byte[]{0x78, (byte) 0x9C};
+    }
+    return new byte[]{0x78, (byte) 0xDA};
+  }
+
+  /**
+   * @return Adler-32 of two pieces of data, from the checksums of the pieces, as zlib's adler32_combine.
+   */
+  private static long combineAdler(long adler1, long adler2, long length2) {
+    long remainder = length2 % ADLER_BASE;
+    long sum1 = adler1 & 0xFFFF;
+    long sum2 = (remainder * sum1) % ADLER_BASE;
+    sum1 += (adler2 & 0xFFFF) + ADLER_BASE - 1;
+    sum2 += ((adler1 >> 16) & 0xFFFF) + ((adler2 >> 16) & 0xFFFF) + ADLER_BASE - remainder;
+    if (sum1 >= ADLER_BASE) sum1 -= ADLER_BASE;
+    if (sum1 >= ADLER_BASE) sum1 -= ADLER_BASE;
+    if (sum2 >= (ADLER_BASE << 1)) sum2 -= (ADLER_BASE << 1);
+    if (sum2 >= ADLER_BASE) sum2 -= ADLER_BASE;
+    return sum1 | (sum2 << 16);
+  }
+
+  private static int paeth(int a, int b, int c) {
+    int p = a + b - c;
+    int pa = Math.abs(p - a);
+    int pb = Math.abs(p - b);
+    int pc = Math.abs(p - c);
+    if (pa <= pb && pa <= pc) {
+      return a;
+    }
+    return pb <= pc ? b : c;
+  }
+
+  private void writeChunk(byte[] type, byte[] data, int length) throws IOException {
+    ByteBuffer chunk = ByteBuffer.allocate(length + 12);
+    chunk.putInt(length);
+    chunk.put(type);
+    chunk.put(data, 0, length);
+    CRC32 crc = new CRC32();
+    crc.update(chunk.array(), 4, length + 4);
+    chunk.putInt((int) crc.getValue());
+    chunk.flip();
+    write(chunk);
+  }
+
+  private void write(ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  /**
+   * Rows compressed by one task.
+   */
+  private class Block {
+    private final int[] argb;
+    private final int offset;
+    private final int scanline;
+    private final int firstRow;
+    private final int count;
+    // Unfiltered row above the first row, null if it's in argb
+    private byte[] previous;
+    private byte[] filtered;
+    private byte[] lastRow;
+    private long adler;
+    // Complete IDAT chunk, ready to be written
+    private ByteBuffer chunk;
+
+    private Block(int[] argb, int offset, int scanline, int firstRow, int count) {
+      this.argb = argb;
+      this.offset = offset;
+      this.scanline = scanline;
+      this.firstRow = firstRow;
+      this.count = count;
+    }
+
+    private void filter() {
+      filtered = new byte[count * rowBytes];
+      byte[] above = previous;
+      if (above == null) {
+        above = new byte[rowBytes];
+        toBytes(firstRow - 1, above);
+      }
+      byte[] current = new byte[rowBytes];
+      for (int r = 0; r < count; r++) {
+        toBytes(firstRow + r, current);
+        int start = r * rowBytes;
+        filtered[start] = FILTER_PAETH;
+        for (int i = 1; i < rowBytes; i++) {
+          int a = i > bytesPerPixel ? current[i - bytesPerPixel] & 0xFF : 0;
+          int b = above[i] & 0xFF;
+          int c = i > bytesPerPixel ? above[i - bytesPerPixel] & 0xFF : 0;
+          filtered[start + i] = (byte) (current[i] - paeth(a, b, c));
+        }
+        byte[] swap = above;
+        above = current;
+        current = swap;
+      }
+      lastRow = above;
+      Adler32 checksum = new Adler32();
+      checksum.update(filtered, 0, filtered.length);
+      adler = checksum.getValue();
+    }
+
+    /**
+     * @return the end of the filtered data, to prime the next block with.
+     */
+    private byte[] tail() {
+      int length = Math.min(DICTIONARY_SIZE, filtered.length);
+      byte[] tail = new byte[length];
+      System.arraycopy(filtered, filtered.length - length, tail, 0, length);
+      return tail;
+    }
+
+    private void deflate(byte[] dictionary) {
+      Deflater deflater = new Deflater(compressionLevel, true);
+      try {
+        if (dictionary != null) {
+          deflater.setDictionary(dictionary);
+        }
+        deflater.setInput(filtered);
+        // Room for the chunk header in front and the CRC at the end
+        byte[] out = new byte[filtered.length / 2 + 64];
+        int length = 8;
+        while (true) {
+          length += deflater.deflate(out, length, out.length - length - 4, Deflater.SYNC_FLUSH);
+          if (length < out.length - 4) {
+            break;
+          }
+          byte[] grown = new byte[out.length * 2];
+          System.arraycopy(out, 0, grown, 0, length);
+          out = grown;
+        }
+        int dataLength = length - 8;
+        ByteBuffer buffer = ByteBuffer.wrap(out, 0, length + 4);
+        buffer.putInt(dataLength);
+        buffer.put(IDAT);
+        CRC32 crc = new CRC32();
+        crc.update(out, 4, dataLength + 4);
+        buffer.position(length);
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+        chunk = buffer;
+      } finally {
+        deflater.end();
+      }
+    }
+
+    private void toBytes(int row, byte[] bytes) {
+      int start = offset + row * scanline;
+      int i = 1;
+      for (int x = 0; x < width; x++) {
+        int pixel = argb[start + x];
+        bytes[i++] = (byte) (pixel >> 16);
+        bytes[i++] = (byte) (pixel >> 8);
+        bytes[i++] = (byte) pixel;
+        if (bytesPerPixel == 4) {
+          bytes[i++] = (byte) (pixel >>> 24);
+        }
+      }
+    }
+  }
+}
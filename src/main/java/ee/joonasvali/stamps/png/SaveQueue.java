@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps.png;
+
+import ee.joonasvali.stamps.execution.ExecutionPolicy;
+import ee.joonasvali.stamps.properties.AppProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Saves images as PNG files one after another on a thread of its own, so whoever painted the image can go on right
+ * away. Each image is compressed in parallel by {@link PngWriter}. At most a fixed number of images wait to be saved,
+ * as each of them holds on to its pixels until then.
+ */
+public class SaveQueue {
+  private static Logger log = LoggerFactory.getLogger(SaveQueue.class);
+  // Rows converted to ARGB at a time, for images not stored as ints
+  private static final int CONVERTED_ROWS = 64;
+
+  private final ExecutorService executor;
+  private final Semaphore room;
+  private final int compressionLevel;
+
+  /**
+   * @param capacity images that may be waiting or being saved at the same time.
+   */
+  public SaveQueue(int capacity) {
+    this(capacity, AppProperties.getInstance().getPngCompression());
+  }
+
+  public SaveQueue(int capacity, int compressionLevel) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+    }
+    this.executor = ExecutionPolicy.getInstance().newSerialExecutor("jartin-save");
+    this.room = new Semaphore(capacity);
+    this.compressionLevel = compressionLevel;
+  }
+
+  /**
+   * Queues the image unless the queue is full. The image must not change until it's saved.
+   *
+   * @return completes with the file once it's saved, or null if the queue is full.
+   */
+  public CompletableFuture<File> offer(BufferedImage image, File file) {
+    if (!room.tryAcquire()) {
+      return null;
+    }
+    return submit(image, file);
+  }
+
+  /**
+   * Queues the image, waiting for room if the queue is full. The image must not change until it's saved.
+   *
+   * @return completes with the file once it's saved.
+   */
+  public CompletableFuture<File> put(BufferedImage image, File file) throws InterruptedException {
+    room.acquire();
+    return submit(image, file);
+  }
+
+  private CompletableFuture<File> submit(BufferedImage image, File file) {
+    CompletableFuture<File> result = new CompletableFuture<>();
+    try {
+      executor.execute(() -> {
+        try {
+          long begin = System.currentTimeMillis();
+          write(image, file, compressionLevel);
+          log.debug("Saved " + file + " in " + (System.currentTimeMillis() - begin) + " ms");
+          result.complete(file);
+        } catch (IOException | RuntimeException e) {
+          if (file.exists() && !file.delete()) {
+            log.warn("Unable to delete partially written " + file);
+          }
+          result.completeExceptionally(e);
+        } finally {
+          room.release();
+        }
+      });
+    } catch (RuntimeException e) {
+      room.release();
+      throw e;
+    }
+    return result;
+  }
+
+  /**
+   * Writes the image on the calling thread. Opaque images are written without the alpha channel.
+   */
+  public static void write(BufferedImage image, File file, int compressionLevel) throws IOException {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int type = image.getType();
+    if (type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_RGB) {
+      int[] data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+      // Not a part of a bigger image
+      if (data.length == width * height) {
+        boolean alpha = type == BufferedImage.TYPE_INT_ARGB && !isOpaque(data);
+        try (PngWriter png = new PngWriter(file, width, height, alpha, compressionLevel)) {
+          png.writeRows(data, 0, width, height);
+        }
+        return;
+      }
+    }
+    boolean alpha = image.getColorModel().hasAlpha();
+    try (PngWriter png = new PngWriter(file, width, height, alpha, compressionLevel)) {
+      int[] rows = new int[width * CONVERTED_ROWS];
+      for (int y = 0; y < height; y += CONVERTED_ROWS) {
+        int count = Math.min(CONVERTED_ROWS, height - y);
+        image.getRGB(0, y, width, count, rows, 0, width);
+        png.writeRows(rows, 0, width, count);
+      }
+    }
+  }
+
+  private static boolean isOpaque(int[] argb) {
+    for (int i = 0; i < argb.length; i++) {
+      if ((argb[i] >>> 24) != 0xFF) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -1,107 +1,434 @@
-/*
- * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
- */
-
-package ee.joonasvali.stamps.properties;
-
-import ee.joonasvali.stamps.code.Util;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import java.io.File;
-import java.io.IOException;
-import java.util.function.Consumer;
-
-/**
- * @author Joonas Vali
- */
-public class AppProperties {
-  private static Logger logger = LoggerFactory.getLogger(AppProperties.class);
-  private volatile String outputPath;
-  private volatile String stampsDirPath;
-  private boolean lazyLoading;
-  private volatile File stampsDir;
-
-  private final static AppProperties properties = new AppProperties();
-
-  public static AppProperties getInstance() {
-    return properties;
-  }
-
-  private AppProperties() {
-    loadString("jartin.stamps", this::setStampsDirPath);
-    loadString("jartin.output", this::setOutput);
-    loadBoolean("jartin.stamps.lazyloading", this::setLazyLoading);
-
-    if (outputPath == null) {
-      outputPath = System.getProperty("user.home") + File.separator + "jartin" + File.separator + "out";
-    }
-
-    File file = new File(outputPath);
-    if (file.isFile()) {
-      logger.error("Output path '" + file + "' must be a folder!");
-      System.exit(-1);
-    }
-
-    if (!file.exists()) {
-      file.mkdirs();
-    }
-
-    try {
-      if (stampsDirPath != null) {
-        stampsDir = new File(stampsDirPath).getCanonicalFile();
-      } else {
-        stampsDir = new File(Util.getUserDir(), "stamps").getCanonicalFile();
-      }
-    } catch (IOException ex) {
-      logger.error("Unable to convert stamps directory to canonical path.", ex);
-      logger.error("stampsDirPath = " + stampsDirPath);
-      logger.error("user dir / stamps = " +  new File(Util.getUserDir(), "stamps"));
-    }
-
-    if (!stampsDir.exists()) {
-      logger.error("Stampdir '" + stampsDir + "' must be existing folder!");
-      System.exit(-1);
-    }
-
-    logger.info("Stamps loaded from " + stampsDir);
-    logger.info("Jartin output is " + outputPath);
-    logger.info("Using lazy loading for stamps: " + lazyLoading);
-  }
-
-  private void loadBoolean(String key, Consumer<Boolean> setter) {
-    Boolean value = Boolean.parseBoolean(System.getProperty(key));
-
-    setter.accept(value);
-  }
-
-  private void loadString(String key, Consumer<String> setter) {
-    String value = System.getProperty(key);
-    setter.accept(value);
-  }
-
-  private void setOutput(String outputPath) {
-    this.outputPath = outputPath;
-  }
-
-  public String getOutput() {
-    return outputPath;
-  }
-
-  public File getStampsDir() {
-    return stampsDir;
-  }
-
-  private void setStampsDirPath(String stampsDirPath) {
-    this.stampsDirPath = stampsDirPath;
-  }
-
-  public boolean isLazyLoading() {
-    return lazyLoading;
-  }
-
-  public void setLazyLoading(boolean lazyLoading) {
-    this.lazyLoading = lazyLoading;
-  }
-}
-
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps.properties;
+
+import ee.joonasvali.stamps.RenderingBackend;
+import ee.joonasvali.stamps.code.Util;
+import ee.joonasvali.stamps.execution.ExecutionMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.function.Consumer;
+import java.util.zip.Deflater;
+
+/**
+ * @author Joonas Vali
+ */
+public class AppProperties {
+  private static Logger logger = LoggerFactory.getLogger(AppProperties.class);
+  private volatile String outputPath;
+  private volatile String stampsDirPath;
+  private boolean lazyLoading;
+  private volatile long stampBudget = Math.min(256L * 1024 * 1024, Runtime.getRuntime().maxMemory() / 8);
+  private volatile File stampsDir;
+  private volatile File stampSnapshotDir = new File(System.getProperty("user.home") + File.separator + "jartin" + File.separator + "cache");
+  private volatile RenderingBackend renderingBackend = RenderingBackend.DEFAULT;
+  private volatile ExecutionMode executionMode = ExecutionMode.DEFAULT;
+  private volatile int threads = Runtime.getRuntime().availableProcessors();
+  private volatile long spriteCacheBudget = 64L * 1024 * 1024;
+  private volatile long renderCacheBudget = Math.min(512L * 1024 * 1024, Runtime.getRuntime().maxMemory() / 4);
+  private volatile long compositeCacheBudget = 64L * 1024 * 1024;
+  private volatile boolean stampWatching = false;
+  private volatile int spriteAngleBuckets = 0;
+  private volatile int previewFramesPerSecond = 10;
+  private volatile boolean previewDraft = true;
+  private volatile long canvasBudget = Math.min(256L * 1024 * 1024, Runtime.getRuntime().maxMemory() / 8);
+  // The level zlib uses by default
+  private volatile int pngCompression = 6;
+
+  private final static AppProperties properties = new AppProperties();
+
+  public static AppProperties getInstance() {
+    return properties;
+  }
+
+  private AppProperties() {
+    loadString("jartin.stamps", this::setStampsDirPath);
+    loadString("jartin.output", this::setOutput);
+    loadBoolean("jartin.stamps.lazyloading", this::setLazyLoading);
+    loadString("jartin.stamps.snapshot", this::setStampSnapshotDir);
+    loadString("jartin.stamps.budget", this::setStampBudget);
+    loadString("jartin.renderer", this::setRenderingBackend);
+    loadString("jartin.execution", this::setExecutionMode);
+    loadString("jartin.threads", this::setThreads);
+    loadString("jartin.sprites.budget", this::setSpriteCacheBudget);
+    loadString("jartin.sprites.angles", this::setSpriteAngleBuckets);
+    loadString("jartin.renders.budget", this::setRenderCacheBudget);
+    loadString("jartin.composites.budget", this::setCompositeCacheBudget);
+    loadString("jartin.stamps.watch", this::setStampWatching);
+    loadString("jartin.preview.fps", this::setPreviewFramesPerSecond);
+    loadString("jartin.preview.draft", this::setPreviewDraft);
+    loadString("jartin.canvas.budget", this::setCanvasBudget);
+    loadString("jartin.png.compression", this::setPngCompression);
+
+    if (outputPath == null) {
+      outputPath = System.getProperty("user.home") + File.separator + "jartin" + File.separator + "out";
+    }
+
+    File file = new File(outputPath);
+    if (file.isFile()) {
+      logger.error("Output path '" + file + "' must be a folder!");
+      System.exit(-1);
+    }
+
+    if (!file.exists()) {
+      file.mkdirs();
+    }
+
+    try {
+      if (stampsDirPath != null) {
+        stampsDir = new File(stampsDirPath).getCanonicalFile();
+      } else {
+        stampsDir = new File(Util.getUserDir(), "stamps").getCanonicalFile();
+      }
+    } catch (IOException ex) {
+      logger.error("Unable to convert stamps directory to canonical path.", ex);
+      logger.error("stampsDirPath = " + stampsDirPath);
+      logger.error("user dir / stamps = " +  new File(Util.getUserDir(), "stamps"));
+    }
+
+    if (!stampsDir.exists()) {
+      logger.error("Stampdir '" + stampsDir + "' must be existing folder!");
+      System.exit(-1);
+    }
+
+    logger.info("Stamps loaded from " + stampsDir);
+    logger.info("Jartin output is " + outputPath);
+    logger.info("Using lazy loading for stamps: " + lazyLoading + (lazyLoading ? ", budget: " + (stampBudget / (1024 * 1024)) + " MB" : ""));
+    logger.info("Stamp snapshot folder: " + (stampSnapshotDir == null ? "off" : stampSnapshotDir));
+    logger.info("Rendering backend: " + renderingBackend);
+    logger.info("Execution mode: " + executionMode + ", threads: " + threads);
+    logger.info("Sprite cache: " + (spriteCacheBudget / (1024 * 1024)) + " MB, angle buckets: " + spriteAngleBuckets);
+    if (spriteAngleBuckets > 0 && renderingBackend != RenderingBackend.JAVA2D) {
+      logger.warn("Sprite angle buckets only apply to the " + RenderingBackend.JAVA2D + " rendering backend, ignoring them");
+    }
+    logger.info("Render cache: " + (renderCacheBudget / (1024 * 1024)) + " MB");
+    logger.info("Composite stamp cache: " + (compositeCacheBudget / (1024 * 1024)) + " MB");
+    logger.info("Watching stamps for changes: " + stampWatching);
+    logger.info("Preview: " + previewFramesPerSecond + " fps, draft: " + previewDraft);
+    logger.info("Tiled canvas budget: " + (canvasBudget / (1024 * 1024)) + " MB");
+    logger.info("PNG compression level: " + getPngCompression());
+  }
+
+  private void loadBoolean(String key, Consumer<Boolean> setter) {
+    Boolean value = Boolean.parseBoolean(System.getProperty(key));
+
+    setter.accept(value);
+  }
+
+  private void loadString(String key, Consumer<String> setter) {
+    String value = System.getProperty(key);
+    setter.accept(value);
+  }
+
+  private void setOutput(String outputPath) {
+    this.outputPath = outputPath;
+  }
+
+  public String getOutput() {
+    return outputPath;
+  }
+
+  public File getStampsDir() {
+    return stampsDir;
+  }
+
+  private void setStampsDirPath(String stampsDirPath) {
+    this.stampsDirPath = stampsDirPath;
+  }
+
+  public boolean isLazyLoading() {
+    return lazyLoading;
+  }
+
+  public void setLazyLoading(boolean lazyLoading) {
+    this.lazyLoading = lazyLoading;
+  }
+
+  /**
+   * @return bytes the stamp masks loaded with lazy loading may take.
+   */
+  public long getStampBudget() {
+    return stampBudget;
+  }
+
+  private void setStampBudget(String megabytes) {
+    if (megabytes == null) {
+      return;
+    }
+    try {
+      long parsed = Long.parseLong(megabytes.trim());
+      if (parsed <= 0) {
+        throw new NumberFormatException();
+      }
+      stampBudget = parsed * 1024 * 1024;
+    } catch (NumberFormatException e) {
+      logger.error("Invalid stamp budget '" + megabytes + "' MB, using " + (stampBudget / (1024 * 1024)));
+    }
+  }
+
+  /**
+   * @return folder the preprocessed stamps are kept in between runs, null if they aren't kept.
+   */
+  public File getStampSnapshotDir() {
+    return stampSnapshotDir;
+  }
+
+  private void setStampSnapshotDir(String path) {
+    if (path == null) {
+      return;
+    }
+    if (path.trim().equalsIgnoreCase("off")) {
+      stampSnapshotDir = null;
+    } else {
+      stampSnapshotDir = new File(path.trim());
+    }
+  }
+
+  public RenderingBackend getRenderingBackend() {
+    return renderingBackend;
+  }
+
+  private void setRenderingBackend(String name) {
+    if (name == null) {
+      return;
+    }
+    try {
+      renderingBackend = RenderingBackend.valueOf(name.trim().toUpperCase());
+    } catch (IllegalArgumentException e) {
+      logger.error("Unknown rendering backend '" + name + "', using " + RenderingBackend.DEFAULT);
+    }
+  }
+
+  public ExecutionMode getExecutionMode() {
+    return executionMode;
+  }
+
+  private void setExecutionMode(String name) {
+    if (name == null) {
+      return;
+    }
+    try {
+      executionMode = ExecutionMode.valueOf(name.trim().toUpperCase().replace('-', '_'));
+    } catch (IllegalArgumentException e) {
+      logger.error("Unknown execution mode '" + name + "', using " + ExecutionMode.DEFAULT);
+    }
+  }
+
+  /**
+   * @return the number of threads doing CPU heavy work, by default the number of available processors.
+   */
+  public int getThreads() {
+    return threads;
+  }
+
+  private void setThreads(String value) {
+    if (value == null) {
+      return;
+    }
+    try {
+      int parsed = Integer.parseInt(value.trim());
+      if (parsed < 1) {
+        throw new NumberFormatException();
+      }
+      threads = parsed;
+    } catch (NumberFormatException e) {
+      logger.error("Invalid number of threads '" + value + "', using " + threads);
+    }
+  }
+
+  /**
+   * @return bytes the sprite cache may take, 0 if sprites are not cached.
+   */
+  public long getSpriteCacheBudget() {
+    return spriteCacheBudget;
+  }
+
+  private void setSpriteCacheBudget(String megabytes) {
+    if (megabytes == null) {
+      return;
+    }
+    try {
+      long parsed = Long.parseLong(megabytes.trim());
+      if (parsed < 0) {
+        throw new NumberFormatException();
+      }
+      spriteCacheBudget = parsed * 1024 * 1024;
+    } catch (NumberFormatException e) {
+      logger.error("Invalid sprite cache budget '" + megabytes + "' MB, using " + (spriteCacheBudget / (1024 * 1024)));
+    }
+  }
+
+  /**
+   * @return bytes the stamps tinted with plain colors may take, 0 if they are not cached.
+   */
+  public long getRenderCacheBudget() {
+    return renderCacheBudget;
+  }
+
+  private void setRenderCacheBudget(String megabytes) {
+    if (megabytes == null) {
+      return;
+    }
+    try {
+      long parsed = Long.parseLong(megabytes.trim());
+      if (parsed < 0) {
+        throw new NumberFormatException();
+      }
+      renderCacheBudget = parsed * 1024 * 1024;
+    } catch (NumberFormatException e) {
+      logger.error("Invalid render cache budget '" + megabytes + "' MB, using " + (renderCacheBudget / (1024 * 1024)));
+    }
+  }
+
+  /**
+   * @return bytes the composite stamps kept between paintings may take, 0 if they are not kept.
+   */
+  public long getCompositeCacheBudget() {
+    return compositeCacheBudget;
+  }
+
+  private void setCompositeCacheBudget(String megabytes) {
+    if (megabytes == null) {
+      return;
+    }
+    try {
+      long parsed = Long.parseLong(megabytes.trim());
+      if (parsed < 0) {
+        throw new NumberFormatException();
+      }
+      compositeCacheBudget = parsed * 1024 * 1024;
+    } catch (NumberFormatException e) {
+      logger.error("Invalid composite stamp cache budget '" + megabytes + "' MB, using " + (compositeCacheBudget / (1024 * 1024)));
+    }
+  }
+
+  /**
+   * @return number of pre-rotated sprites per mip level, 0 if sprites are rotated when painted. Only used by the
+   * {@link RenderingBackend#JAVA2D} backend.
+   */
+  public int getSpriteAngleBuckets() {
+    return spriteAngleBuckets;
+  }
+
+  private void setSpriteAngleBuckets(String value) {
+    if (value == null) {
+      return;
+    }
+    try {
+      int parsed = Integer.parseInt(value.trim());
+      if (parsed < 0 || parsed > 360) {
+        throw new NumberFormatException();
+      }
+      spriteAngleBuckets = parsed;
+    } catch (NumberFormatException e) {
+      logger.error("Invalid number of sprite angle buckets '" + value + "', using " + spriteAngleBuckets);
+    }
+  }
+
+  /**
+   * @return how many times per second the painting in progress is shown, 0 if it is only shown when finished.
+   */
+  public int getPreviewFramesPerSecond() {
+    return previewFramesPerSecond;
+  }
+
+  private void setPreviewFramesPerSecond(String value) {
+    if (value == null) {
+      return;
+    }
+    try {
+      int parsed = Integer.parseInt(value.trim());
+      if (parsed < 0 || parsed > 60) {
+        throw new NumberFormatException();
+      }
+      previewFramesPerSecond = parsed;
+    } catch (NumberFormatException e) {
+      logger.error("Invalid preview frame rate '" + value + "', using " + previewFramesPerSecond);
+    }
+  }
+
+  /**
+   * @return whether changes to the stamps folder are taken in while running.
+   */
+  public boolean isStampWatching() {
+    return stampWatching;
+  }
+
+  private void setStampWatching(String value) {
+    if (value != null) {
+      stampWatching = Boolean.parseBoolean(value.trim());
+    }
+  }
+
+  /**
+   * @return true if a low resolution draft is shown before the painting in progress.
+   */
+  public boolean isPreviewDraft() {
+    return previewDraft;
+  }
+
+  private void setPreviewDraft(String value) {
+    if (value != null) {
+      previewDraft = Boolean.parseBoolean(value.trim());
+    }
+  }
+
+  /**
+   * @return bytes of heap the tiles of a file backed canvas may take.
+   */
+  public long getCanvasBudget() {
+    return canvasBudget;
+  }
+
+  private void setCanvasBudget(String megabytes) {
+    if (megabytes == null) {
+      return;
+    }
+    try {
+      long parsed = Long.parseLong(megabytes.trim());
+      if (parsed <= 0) {
+        throw new NumberFormatException();
+      }
+      canvasBudget = parsed * 1024 * 1024;
+    } catch (NumberFormatException e) {
+      logger.error("Invalid tiled canvas budget '" + megabytes + "' MB, using " + (canvasBudget / (1024 * 1024)));
+    }
+  }
+
+  /**
+   * @return deflate level images are saved with, from 0 for no compression to 9 for the smallest files. 1 is the
+   * fastest level that still compresses.
+   */
+  public int getPngCompression() {
+    return pngCompression;
+  }
+
+  private void setPngCompression(String value) {
+    if (value == null) {
+      return;
+    }
+    String level = value.trim().toLowerCase();
+    if (level.equals("fast")) {
+      pngCompression = Deflater.BEST_SPEED;
+      return;
+    }
+    if (level.equals("best")) {
+      pngCompression = Deflater.BEST_COMPRESSION;
+      return;
+    }
+    try {
+      int parsed = Integer.parseInt(level);
+      if (parsed < Deflater.NO_COMPRESSION || parsed > Deflater.BEST_COMPRESSION) {
+        throw new NumberFormatException();
+      }
+      pngCompression = parsed;
+    } catch (NumberFormatException e) {
+      logger.error("Invalid PNG compression level '" + value + "', using " + getPngCompression());
+    }
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+package ee.joonasvali.stamps.query;
+
+import java.util.List;
+import java.util.Random;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Picks elements of a fixed list at random, each with a chance proportional to its weight, in constant time: one
+ * column of the table is picked evenly, then either the element of the column or its alias (Walker's alias method,
+ * built as described by Vose).
+ */
+public final class AliasTable<T> {
+  private final Object[] elements;
+  // Chance of the element of a column being picked over its alias
+  private final double[] chance;
+  private final int[] alias;
+
+  /**
+   * @param weigher weights of the elements, negative and non finite weights count as 0. If all the weights are 0, the
+   *                elements are picked evenly.
+   * @throws IllegalArgumentException if the list is empty
+   */
+  public AliasTable(List<T> list, ToDoubleFunction<? super T> weigher) {
+    this(list, weigh(list, weigher));
+  }
+
+  /**
+   * Same as {@link #AliasTable(List, ToDoubleFunction)}, with the weights of the elements by position.
+   *
+   * @param weights as many as there are elements, the table keeps its own copy.
+   */
+  public AliasTable(List<T> list, double[] weights) {
+    int n = list.size();
+    if (n == 0) throw new IllegalArgumentException("provided list empty");
+    if (weights.length != n) {
+      throw new IllegalArgumentException(weights.length + " weights for " + n + " elements");
+    }
+    elements = list.toArray();
+    chance = new double[n];
+    alias = new int[n];
+
+    weights = weights.clone();
+    double total = 0;
+    for (int i = 0; i < n; i++) {
+      double weight = weights[i];
+      weights[i] = weight > 0 && weight < Double.POSITIVE_INFINITY ? weight : 0;
+      total += weights[i];
+    }
+
+    // Columns below and above the average weight, the small ones get topped up by the large ones
+    int[] small = new int[n];
+    int[] large = new int[n];
+    int smallCount = 0;
+    int largeCount = 0;
+    for (int i = 0; i < n; i++) {
+      weights[i] = total > 0 ? weights[i] * n / total : 1;
+      if (weights[i] < 1) {
+        small[smallCount++] = i;
+      } else {
+        large[largeCount++] = i;
+      }
+    }
+    while (smallCount > 0 && largeCount > 0) {
+      int less = small[--smallCount];
+      int more = large[--largeCount];
+      chance[less] = weights[less];
+      alias[less] = more;
+      weights[more] = (weights[more] + weights[less]) - 1;
+      if (weights[more] < 1) {
+        small[smallCount++] = more;
+      } else {
+        large[largeCount++] = more;
+      }
+    }
+    // Whatever is left is full up to rounding errors
+    while (largeCount > 0) {
+      chance[large[--largeCount]] = 1;
+    }
+    while (smallCount > 0) {
+      chance[small[--smallCount]] = 1;
+    }
+  }
+
+  private static <T> double[] weigh(List<T> list, ToDoubleFunction<? super T> weigher) {
+    double[] weights = new double[list.size()];
+    int i = 0;
+    for (T element : list) {
+      weights[i++] = weigher.applyAsDouble(element);
+    }
+    return weights;
+  }
+
+  @SuppressWarnings("unchecked")
+  public T get(Random random) {
+    int column = random.nextInt(elements.length);
+    return (T) elements[random.nextDouble() < chance[column] ? column : alias[column]];
+  }
+
+  public int size() {
+    return elements.length;
+  }
+}
@@ -1,12 +1,22 @@
-/*
- * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
- */
-
-package ee.joonasvali.stamps.query;
-
-/**
- * @author Joonas Vali
- */
-public interface BinaryFormula {
-  public abstract BinaryValue get(int x, int y);
-}
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps.query;
+
+/**
+ * @author Joonas Vali
+ */
+public interface BinaryFormula {
+  public abstract BinaryValue get(int x, int y);
+
+  /**
+   * Describes column x at once: the value is ZERO at the top of the column and flips at every row in the
+   * returned array, in ascending order. Rows can repeat and be outside of the canvas.
+   *
+   * @return the rows where the value flips, or null if the formula can only be evaluated pixel by pixel.
+   */
+  public default int[] getCrossings(int x) {
+    return null;
+  }
+}
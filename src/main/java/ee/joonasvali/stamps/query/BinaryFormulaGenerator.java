@@ -1,14 +1,23 @@
-/*
- * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
- */
-
-package ee.joonasvali.stamps.query;
-
-import ee.joonasvali.stamps.ui.Preferences;
-
-/**
- * @author Joonas Vali
- */
-public interface BinaryFormulaGenerator {
-  public BinaryFormula generate(Preferences preferences);
-}
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps.query;
+
+import ee.joonasvali.stamps.ui.Preferences;
+
+import java.util.Random;
+
+/**
+ * @author Joonas Vali
+ */
+public interface BinaryFormulaGenerator {
+  public BinaryFormula generate(Preferences preferences);
+
+  /**
+   * Same as {@link #generate(Preferences)}, with the random decisions taken from the given source.
+   */
+  public default BinaryFormula generate(Preferences preferences, Random random) {
+    return generate(preferences);
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps.query;
+
+import java.util.Arrays;
+
+/**
+ * Formula with the crossings of a range of columns computed up front (see {@link BinaryFormula#getCrossings(int)}).
+ * A value is then a binary search in the crossings of its column, instead of evaluating the source formula.
+ * Columns outside of the range are left to the source formula.
+ */
+public class CompiledBinaryFormula implements BinaryFormula {
+  private final BinaryFormula source;
+  private final int fromX;
+  private final int toX;
+  // Crossings of column fromX + i are crossings[offsets[i]] until crossings[offsets[i + 1]]
+  private final int[] offsets;
+  private final int[] crossings;
+
+  private CompiledBinaryFormula(BinaryFormula source, int fromX, int toX, int[] offsets, int[] crossings) {
+    this.source = source;
+    this.fromX = fromX;
+    this.toX = toX;
+    this.offsets = offsets;
+    this.crossings = crossings;
+  }
+
+  /**
+   * @return the compiled formula for columns fromX (inclusive) to toX (exclusive), or the formula itself if
+   * its columns can't be described by crossings.
+   */
+  public static BinaryFormula compile(BinaryFormula formula, int fromX, int toX) {
+    if (formula instanceof CompiledBinaryFormula || toX <= fromX) {
+      return formula;
+    }
+    int columns = toX - fromX;
+    int[][] perColumn = new int[columns][];
+    int total = 0;
+    for (int i = 0; i < columns; i++) {
+      perColumn[i] = formula.getCrossings(fromX + i);
+      if (perColumn[i] == null) {
+        return formula;
+      }
+      total += perColumn[i].length;
+    }
+
+    int[] offsets = new int[columns + 1];
+    int[] crossings = new int[total];
+    for (int i = 0; i < columns; i++) {
+      System.arraycopy(perColumn[i], 0, crossings, offsets[i], perColumn[i].length);
+      offsets[i + 1] = offsets[i] + perColumn[i].length;
+    }
+    return new CompiledBinaryFormula(formula, fromX, toX, offsets, crossings);
+  }
+
+  @Override
+  public BinaryValue get(int x, int y) {
+    if (x < fromX || x >= toX) {
+      return source.get(x, y);
+    }
+    int column = x - fromX;
+    int from = offsets[column];
+    int to = offsets[column + 1];
+    // Number of crossings at or above row y
+    int low = from;
+    int high = to;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (crossings[mid] <= y) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return ((low - from) & 1) == 1 ? BinaryValue.ONE : BinaryValue.ZERO;
+  }
+
+  @Override
+  public int[] getCrossings(int x) {
+    if (x < fromX || x >= toX) {
+      return source.getCrossings(x);
+    }
+    int column = x - fromX;
+    return Arrays.copyOfRange(crossings, offsets[column], offsets[column + 1]);
+  }
+}
@@ -1,56 +1,140 @@
-/*
- * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
- */
-
-package ee.joonasvali.stamps.query;
-
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
-
-/**
- * @author Joonas Vali
- */
-public class ExcludingQuery<T> implements Query<T> {
-  private Set<T> exclude;
-  private Query<T> query;
-
-  public ExcludingQuery(Query<T> stampQuery, Collection<T> excluded) {
-    this.exclude = new HashSet<>(excluded);
-    this.query = stampQuery;
-  }
-
-  /**
-   *
-   * @param list list of candidates
-   * @return one of the elements that is not excluded. In case all of the elements in provided
-   * list are excluded, we return one of the excluded elements as a fallback strategy.
-   */
-  @Override
-  public T get(List<T> list) {
-    if (list.isEmpty()) throw new RuntimeException("provided list empty");
-    List<T> candidates = new ArrayList<>(list.size());
-    for (T ob : list) {
-      if (!exclude.contains(ob)) {
-        candidates.add(ob);
-      }
-    }
-    if(candidates.size() > 0) {
-      return query.get(candidates);
-    } else {
-      // fall back
-      return query.get(list);
-    }
-  }
-
-  /**
-   *
-   * @param ob excludes the added object
-   * @return true if object was not yet excluded
-   */
-  public boolean addExclusion(T ob) {
-    return exclude.add(ob);
-  }
-}
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps.query;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * @author Joonas Vali
+ *
+ * Picks among the candidates that are not excluded. Exclusions are positions in the list of candidates, kept in an
+ * {@link ExclusionSet}, so the same list must be asked about until the query is {@link #reset(int)}. An
+ * {@link IndexQuery} picks among the remaining candidates by their count, other queries get a view of them, neither
+ * copies the list.
+ * Not thread safe, the exclusions are the state of one caller.
+ */
+public class ExcludingQuery<T> implements Query<T>, IndexQuery {
+  private final ExclusionSet excluded = new ExclusionSet(0);
+  private final Query<T> query;
+
+  public ExcludingQuery(Query<T> query) {
+    this.query = query;
+  }
+
+  /**
+   *
+   * @param list list of candidates
+   * @return one of the elements that is not excluded. In case all of the elements in provided
+   * list are excluded, we return one of the excluded elements as a fallback strategy.
+   */
+  @Override
+  public T get(List<T> list) {
+    return get(list, ThreadLocalRandom.current());
+  }
+
+  @Override
+  public T get(List<T> list, Random random) {
+    if (list.isEmpty()) throw new RuntimeException("provided list empty");
+    prepare(list.size());
+    if (excluded.remaining() == 0) {
+      // fall back
+      return query.get(list, random);
+    }
+    if (query instanceof IndexQuery) {
+      return list.get(excluded.select(((IndexQuery) query).getIndex(excluded.remaining(), random)));
+    }
+    return query.get(new Candidates(list), random);
+  }
+
+  /**
+   * @return position of one of the elements that is not excluded, any position if all of them are.
+   */
+  public int getIndex(List<T> list, Random random) {
+    if (list.isEmpty()) throw new RuntimeException("provided list empty");
+    if (query instanceof IndexQuery) {
+      return getIndex(list.size(), random);
+    }
+    prepare(list.size());
+    boolean fallback = excluded.remaining() == 0;
+    T picked = query.get(fallback ? list : new Candidates(list), random);
+    for (int position = 0; position < list.size(); position++) {
+      if ((fallback || !excluded.isExcluded(position)) && list.get(position) == picked) {
+        return position;
+      }
+    }
+    throw new IllegalStateException(query + " picked " + picked + ", which is not a candidate");
+  }
+
+  /**
+   * @return position of one of the candidates that is not excluded, any position if all of them are.
+   * @throws IllegalStateException if the query is not an {@link IndexQuery}
+   */
+  @Override
+  public int getIndex(int size, Random random) {
+    if (!(query instanceof IndexQuery)) throw new IllegalStateException(query + " can't pick by position");
+    if (size == 0) throw new RuntimeException("provided list empty");
+    prepare(size);
+    IndexQuery indexQuery = (IndexQuery) query;
+    if (excluded.remaining() == 0) {
+      // fall back
+      return indexQuery.getIndex(size, random);
+    }
+    return excluded.select(indexQuery.getIndex(excluded.remaining(), random));
+  }
+
+  /**
+   *
+   * @param position excludes the candidate at the position
+   * @return true if the candidate was not yet excluded
+   */
+  public boolean addExclusion(int position) {
+    return excluded.exclude(position);
+  }
+
+  /**
+   * @return number of candidates not excluded, in a list of the size asked about last.
+   */
+  public int remaining() {
+    return excluded.remaining();
+  }
+
+  /**
+   * Drops the exclusions, to pick from a list of the given size.
+   */
+  public void reset(int size) {
+    excluded.reset(size);
+  }
+
+  private void prepare(int size) {
+    if (excluded.size() != size) {
+      // A list of another size, its positions mean nothing here
+      excluded.reset(size);
+    }
+  }
+
+  /**
+   * The candidates not excluded, in their order in the list.
+   */
+  private final class Candidates extends AbstractList<T> {
+    private final List<T> list;
+
+    private Candidates(List<T> list) {
+      this.list = list;
+    }
+
+    @Override
+    public T get(int index) {
+      return list.get(excluded.select(index));
+    }
+
+    @Override
+    public int size() {
+      return excluded.remaining();
+    }
+  }
+}
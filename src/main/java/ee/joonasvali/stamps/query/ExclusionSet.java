@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+package ee.joonasvali.stamps.query;
+
+import java.util.Arrays;
+
+/**
+ * Positions 0 to size - 1 of a list of candidates, some of them excluded, kept as bits. The positions left can be
+ * counted up to a position (rank) and found by their count (select) without going through the candidates one by one.
+ * The set can be reset and used again for another list without creating a new one.
+ */
+public final class ExclusionSet {
+  private long[] words = new long[0];
+  private int size;
+  private int remaining;
+
+  public ExclusionSet(int size) {
+    reset(size);
+  }
+
+  /**
+   * Clears all the exclusions for a list of the given size.
+   */
+  public void reset(int size) {
+    if (size < 0) throw new IllegalArgumentException("Size can't be " + size);
+    int count = (size + 63) >>> 6;
+    if (words.length < count) {
+      words = new long[count];
+    } else {
+      Arrays.fill(words, 0, count, 0);
+    }
+    this.size = size;
+    this.remaining = size;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return number of positions not excluded.
+   */
+  public int remaining() {
+    return remaining;
+  }
+
+  /**
+   * @return true if the position was not excluded yet.
+   */
+  public boolean exclude(int position) {
+    checkPosition(position);
+    long bit = 1L << position;
+    long word = words[position >>> 6];
+    if ((word & bit) != 0) {
+      return false;
+    }
+    words[position >>> 6] = word | bit;
+    remaining--;
+    return true;
+  }
+
+  public boolean isExcluded(int position) {
+    checkPosition(position);
+    return (words[position >>> 6] & (1L << position)) != 0;
+  }
+
+  /**
+   * @return number of positions before the given one that are not excluded.
+   */
+  public int rank(int position) {
+    if (position < 0 || position > size) throw new IndexOutOfBoundsException("Position " + position + ", size " + size);
+    int count = 0;
+    int word = position >>> 6;
+    for (int i = 0; i < word; i++) {
+      count += 64 - Long.bitCount(words[i]);
+    }
+    int bits = position & 63;
+    if (bits > 0) {
+      count += bits - Long.bitCount(words[word] & ((1L << bits) - 1));
+    }
+    return count;
+  }
+
+  /**
+   * @param rank 0 to {@link #remaining()} - 1
+   * @return the position that is preceded by the given number of positions not excluded, and is not excluded itself.
+   */
+  public int select(int rank) {
+    if (rank < 0 || rank >= remaining) throw new IndexOutOfBoundsException("Rank " + rank + ", remaining " + remaining);
+    for (int i = 0; ; i++) {
+      long free = ~words[i];
+      int count = Long.bitCount(free);
+      if (rank < count) {
+        // Drop the lowest free bits up to the wanted one, the positions past the size are never reached
+        for (; rank > 0; rank--) {
+          free &= free - 1;
+        }
+        return (i << 6) + Long.numberOfTrailingZeros(free);
+      }
+      rank -= count;
+    }
+  }
+
+  private void checkPosition(int position) {
+    if (position < 0 || position >= size) throw new IndexOutOfBoundsException("Position " + position + ", size " + size);
+  }
+}
@@ -1,12 +1,20 @@
-/*
- * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
- */
-
-package ee.joonasvali.stamps.query;
-
-/**
- * @author Joonas Vali
- */
-public interface DynamicExcludingQueryCondition<T> {
-  boolean check(T ob);
-}
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+package ee.joonasvali.stamps.query;
+
+import java.util.Random;
+
+/**
+ * A query that decides by position alone, so it can pick among candidates that are not in a list of their own, like
+ * the ones left in an {@link ExcludingQuery}.
+ */
+public interface IndexQuery {
+  /**
+   * @param size number of candidates
+   * @param random source of randomness
+   * @return position of one of the candidates, 0 to size - 1.
+   * @throws RuntimeException if size is 0
+   */
+  int getIndex(int size, Random random);
+}
@@ -1,20 +1,35 @@
-/*
- * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
- */
-
-package ee.joonasvali.stamps.query;
-
-import java.util.List;
-
-/**
- * @author Joonas Vali
- */
-public interface Query<T> {
-  /**
-   *
-   * @param list the list of candidates
-   * @return always return one of the elements from the list.
-   * @throws RuntimeException if list is empty
-   */
-  public T get(List<T> list);
-}
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps.query;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * @author Joonas Vali
+ */
+public interface Query<T> {
+  /**
+   * Random decisions are taken from a source that can't be reproduced, paintings use {@link #get(List, Random)}.
+   *
+   * @param list the list of candidates
+   * @return always return one of the elements from the list.
+   * @throws RuntimeException if list is empty
+   */
+  public T get(List<T> list);
+
+  /**
+   * Same as {@link #get(List)}, but queries that make random decisions take them from the given source,
+   * so the result can be reproduced.
+   *
+   * @param list the list of candidates
+   * @param random source of randomness
+   * @return always return one of the elements from the list.
+   * @throws RuntimeException if list is empty
+   */
+  public default T get(List<T> list, Random random) {
+    return get(list);
+  }
+}
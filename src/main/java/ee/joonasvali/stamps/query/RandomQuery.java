@@ -1,23 +1,37 @@
-/*
- * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
- */
-
-package ee.joonasvali.stamps.query;
-
-import java.util.List;
-
-/**
- * @author Joonas Vali
- */
-public class RandomQuery<T> implements Query<T> {
-
-  public static <A> RandomQuery<A> create() {
-    return new RandomQuery<>();
-  }
-
-  @Override
-  public T get(List<T> list) {
-    if (list.isEmpty()) throw new RuntimeException("provided list empty");
-    return list.get((int) (Math.random() * list.size()));
-  }
-}
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps.query;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * @author Joonas Vali
+ */
+public class RandomQuery<T> implements Query<T>, IndexQuery {
+
+  public static <A> RandomQuery<A> create() {
+    return new RandomQuery<>();
+  }
+
+  @Override
+  public T get(List<T> list) {
+    if (list.isEmpty()) throw new RuntimeException("provided list empty");
+    return get(list, ThreadLocalRandom.current());
+  }
+
+  @Override
+  public T get(List<T> list, Random random) {
+    if (list.isEmpty()) throw new RuntimeException("provided list empty");
+    return list.get(random.nextInt(list.size()));
+  }
+
+  @Override
+  public int getIndex(int size, Random random) {
+    if (size == 0) throw new RuntimeException("provided list empty");
+    return random.nextInt(size);
+  }
+}
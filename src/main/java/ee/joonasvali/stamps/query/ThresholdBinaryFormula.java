@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps.query;
+
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * ONE below the curve given by the threshold function (rows greater than the threshold), ZERO above it.
+ * Each column crosses the threshold once, so the formula can be described column by column.
+ */
+public class ThresholdBinaryFormula implements BinaryFormula {
+  private final IntToDoubleFunction threshold;
+
+  public ThresholdBinaryFormula(IntToDoubleFunction threshold) {
+    this.threshold = threshold;
+  }
+
+  @Override
+  public BinaryValue get(int x, int y) {
+    return y > threshold.applyAsDouble(x) ? BinaryValue.ONE : BinaryValue.ZERO;
+  }
+
+  @Override
+  public int[] getCrossings(int x) {
+    double value = threshold.applyAsDouble(x);
+    if (Double.isNaN(value)) {
+      // No row is greater than NaN, the column is ZERO all the way
+      return new int[0];
+    }
+    // The first row greater than the threshold, kept away from the int limits
+    double first = Math.floor(value) + 1;
+    int row = (int) Math.max(Integer.MIN_VALUE / 2, Math.min(Integer.MAX_VALUE / 2, first));
+    return new int[]{row};
+  }
+}
@@ -0,0 +1,20 @@
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+package ee.joonasvali.stamps.query;
+
+import java.util.List;
+
+/**
+ * A list that knows the weight of each of its elements, for a {@link WeightedQuery}. The weights don't change, and a
+ * {@link #subList(int, int) part} of the list is a weighted list too, with the weights of its elements.
+ */
+public interface WeightedList<T> extends List<T> {
+  /**
+   * @return weight of the element at the position.
+   */
+  double getWeight(int index);
+
+  @Override
+  WeightedList<T> subList(int fromIndex, int toIndex);
+}
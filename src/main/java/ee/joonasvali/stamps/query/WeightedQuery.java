@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+package ee.joonasvali.stamps.query;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Picks elements at random, each with a chance proportional to its weight. An {@link AliasTable} is built for each
+ * list the query is asked about and kept for the next time the same list instance comes, so after the first time a
+ * pick takes constant time and creates no objects. The lists must not change, the weights are read only once.
+ * <p>
+ * A {@link WeightedList} is weighed by its own weights rather than by the weigher.
+ */
+public class WeightedQuery<T> implements Query<T> {
+  // Tables of the lists seen lately, replaced as a whole when a list is added
+  private static final int MAX_TABLES = 8;
+  private final ToDoubleFunction<? super T> weigher;
+  private volatile Entry<T>[] entries;
+
+  /**
+   * Picks by the weights of {@link WeightedList}s, evenly from other lists.
+   */
+  public WeightedQuery() {
+    this(element -> 1);
+  }
+
+  @SuppressWarnings("unchecked")
+  public WeightedQuery(ToDoubleFunction<? super T> weigher) {
+    this.weigher = weigher;
+    this.entries = (Entry<T>[]) new Entry<?>[0];
+  }
+
+  @Override
+  public T get(List<T> list) {
+    return get(list, ThreadLocalRandom.current());
+  }
+
+  @Override
+  public T get(List<T> list, Random random) {
+    if (list.isEmpty()) throw new RuntimeException("provided list empty");
+    return getTable(list).get(random);
+  }
+
+  private AliasTable<T> getTable(List<T> list) {
+    Entry<T>[] current = entries;
+    for (Entry<T> entry : current) {
+      if (entry.list == list) {
+        return entry.table;
+      }
+    }
+    // Racing threads build equal tables, no need to lock
+    AliasTable<T> table = list instanceof WeightedList ? new AliasTable<>(list, getWeights((WeightedList<T>) list)) : new AliasTable<>(list, weigher);
+    @SuppressWarnings("unchecked")
+    Entry<T>[] added = (Entry<T>[]) new Entry<?>[Math.min(current.length + 1, MAX_TABLES)];
+    added[0] = new Entry<>(list, table);
+    System.arraycopy(current, 0, added, 1, added.length - 1);
+    entries = added;
+    return table;
+  }
+
+  private static double[] getWeights(WeightedList<?> list) {
+    double[] weights = new double[list.size()];
+    for (int i = 0; i < weights.length; i++) {
+      weights[i] = list.getWeight(i);
+    }
+    return weights;
+  }
+
+  private static final class Entry<T> {
+    private final List<T> list;
+    private final AliasTable<T> table;
+
+    private Entry(List<T> list, AliasTable<T> table) {
+      this.list = list;
+      this.table = table;
+    }
+  }
+}
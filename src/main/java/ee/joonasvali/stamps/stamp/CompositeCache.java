@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+package ee.joonasvali.stamps.stamp;
+
+import ee.joonasvali.stamps.cache.WeightedLruCache;
+import ee.joonasvali.stamps.properties.AppProperties;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Composite stamps kept from one painting to the next, a few variants for each pair of source stamps. Limited by the
+ * bytes the composites take. A composite that couldn't be made is remembered as well, so it isn't tried again.
+ */
+public class CompositeCache {
+  // What a failed composite is counted as
+  private static final long FAILED_BYTES = 64;
+
+  private static volatile CompositeCache instance;
+
+  private final WeightedLruCache<Key, Optional<Stamp>> cache;
+
+  public static CompositeCache getInstance() {
+    CompositeCache cache = instance;
+    if (cache == null) {
+      synchronized (CompositeCache.class) {
+        cache = instance;
+        if (cache == null) {
+          cache = new CompositeCache(AppProperties.getInstance().getCompositeCacheBudget());
+          instance = cache;
+        }
+      }
+    }
+    return cache;
+  }
+
+  /**
+   * @param budget bytes the masks of the composites may take, 0 to disable caching
+   */
+  public CompositeCache(long budget) {
+    this.cache = new WeightedLruCache<>(budget, CompositeCache::getBytes);
+  }
+
+  /**
+   * @param strategy the strategy making the composite.
+   * @param variant tells apart the composites of the same pair, the composite must depend on nothing else.
+   * @return the composite of the stamps, made if it's not cached, empty if it can't be made.
+   */
+  public Optional<Stamp> get(Class<?> strategy, Stamp s1, Stamp s2, int variant, Supplier<Optional<Stamp>> create) {
+    if (cache.getMaxWeight() == 0) {
+      return create.get();
+    }
+    return cache.get(new Key(strategy, s1.getId(), s2.getId(), variant), key -> create.get());
+  }
+
+  public void clear() {
+    cache.clear();
+  }
+
+  /**
+   * Drops the composites made of the stamp.
+   *
+   * @return the composites dropped.
+   */
+  public List<Stamp> remove(long stamp) {
+    List<Stamp> removed = new ArrayList<>();
+    for (Optional<Stamp> composite : cache.removeIf(key -> key.s1 == stamp || key.s2 == stamp)) {
+      composite.ifPresent(removed::add);
+    }
+    return removed;
+  }
+
+  /**
+   * @return size and hit rate of the cache.
+   */
+  @Override
+  public String toString() {
+    return cache.toString();
+  }
+
+  private static long getBytes(Optional<Stamp> composite) {
+    if (!composite.isPresent()) {
+      return FAILED_BYTES;
+    }
+    Point size = composite.get().size();
+    return (long) size.x * size.y;
+  }
+
+  private static final class Key {
+    private final Class<?> strategy;
+    private final long s1;
+    private final long s2;
+    private final int variant;
+
+    private Key(Class<?> strategy, long s1, long s2, int variant) {
+      this.strategy = strategy;
+      this.s1 = s1;
+      this.s2 = s2;
+      this.variant = variant;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof Key)) return false;
+      Key key = (Key) o;
+      return strategy == key.strategy && s1 == key.s1 && s2 == key.s2 && variant == key.variant;
+    }
+
+    @Override
+    public int hashCode() {
+      return ((strategy.hashCode() * 31 + Long.hashCode(s1)) * 31 + Long.hashCode(s2)) * 31 + variant;
+    }
+  }
+}
@@ -1,38 +1,31 @@
-/*
- * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
- */
-
-package ee.joonasvali.stamps.stamp;
-
-import ee.joonasvali.stamps.query.Query;
-
-import java.util.List;
-
-/**
- * @author Joonas Vali
- */
-public class CompositeStamps implements StampProvider {
-  private final List<Stamp> list;
-
-  public CompositeStamps(StampProvider stamps, StampComposerStrategy strategy) {
-    list = stamps.getStamps();
-    Stamps composites = strategy.compose(stamps);
-    list.addAll(composites.getStamps());
-  }
-
-  @Override
-  public Stamp getStamp(Query<Stamp> q) {
-    return q.get(list);
-  }
-
-  @Override
-  public List<Stamp> getStamps() {
-    return list;
-  }
-
-  @Override
-  public int size() {
-    return list.size();
-  }
-}
-
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps.stamp;
+
+import java.util.Random;
+
+/**
+ * @author Joonas Vali
+ */
+public class CompositeStamps implements StampProvider {
+  private final StampIndex index;
+
+  public CompositeStamps(StampProvider stamps, StampComposerStrategy strategy) {
+    this(stamps, strategy, new Random());
+  }
+
+  /**
+   * The stamps of the provider, as they are now, followed by the composites made of them.
+   */
+  public CompositeStamps(StampProvider stamps, StampComposerStrategy strategy, Random random) {
+    StampIndex original = stamps.getIndex();
+    index = original.with(strategy.compose(original, random).getIndex());
+  }
+
+  @Override
+  public StampIndex getIndex() {
+    return index;
+  }
+}
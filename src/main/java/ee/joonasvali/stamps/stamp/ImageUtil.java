@@ -1,45 +1,86 @@
-/*
- * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
- */
-
-package ee.joonasvali.stamps.stamp;
-
-import java.awt.*;
-import java.awt.image.BufferedImage;
-
-/**
- * @author Joonas Vali
- */
-public class ImageUtil {
-  public static BufferedImage trim(BufferedImage image, Color croppedColor) throws IllegalArgumentException {
-    int startX = -1, startY = -1, endX = -1, endY = -1;
-    int color = croppedColor.getRGB();
-    for (int x = 0; x < image.getWidth(); x++) {
-      for (int y = 0; y < image.getHeight(); y++) {
-        if(image.getRGB(x, y) != color) {
-          //
-          if(startX == -1 || startX > x) {
-            startX = x;
-          }
-          if(startY == -1 || startY > y) {
-            startY = y;
-          }
-
-          endX = Math.max(x, endX);
-          endY = Math.max(y, endY);
-        }
-      }
-    }
-
-    if(endX <= startX || endY <= startY) {
-      throw new IllegalArgumentException("Image is empty when trimmed");
-    }
-    BufferedImage img = image.getSubimage(startX, startY, endX - startX, endY - startY); //fill in the corners of the desired crop location here
-    BufferedImage copyOfImage = new BufferedImage(img.getWidth(), img.getHeight(), BufferedImage.TYPE_INT_RGB);
-    Graphics2D g = copyOfImage.createGraphics();
-    g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-    g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-    g.drawImage(img, 0, 0, null);
-    return copyOfImage;
-  }
-}
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps.stamp;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author Joonas Vali
+ */
+public class ImageUtil {
+  // Readers are costly to look up and create, up to one idle reader per processor is kept for each file suffix.
+  // Threads loading beyond that, as virtual threads may, dispose the readers they create
+  private static final int IDLE_READERS = Runtime.getRuntime().availableProcessors();
+  private static final ConcurrentHashMap<String, BlockingQueue<ImageReader>> readers = new ConcurrentHashMap<>();
+
+  /**
+   * Same as {@link ImageIO#read(File)}, reusing an idle image reader.
+   *
+   * @return the image, null if there is no reader for the file.
+   */
+  public static BufferedImage read(File file) throws IOException {
+    String name = file.getName();
+    String suffix = name.substring(name.lastIndexOf('.') + 1).toLowerCase();
+    BlockingQueue<ImageReader> idle = readers.computeIfAbsent(suffix, key -> new ArrayBlockingQueue<>(IDLE_READERS));
+    ImageReader reader = idle.poll();
+    if (reader == null) {
+      reader = createReader(suffix);
+    }
+    if (reader == null) {
+      return ImageIO.read(file);
+    }
+    try (ImageInputStream stream = ImageIO.createImageInputStream(file)) {
+      if (stream == null) {
+        throw new IOException("Can't open " + file);
+      }
+      reader.setInput(stream, true, true);
+      return reader.read(0);
+    } finally {
+      reader.setInput(null);
+      if (!idle.offer(reader)) {
+        reader.dispose();
+      }
+    }
+  }
+
+  /**
+   * @return number of idle image readers kept for files with the suffix, at most one per processor.
+   */
+  public static int getIdleReaders(String suffix) {
+    BlockingQueue<ImageReader> idle = readers.get(suffix.toLowerCase());
+    return idle == null ? 0 : idle.size();
+  }
+
+  private static ImageReader createReader(String suffix) {
+    Iterator<ImageReader> readers = ImageIO.getImageReadersBySuffix(suffix);
+    return readers.hasNext() ? readers.next() : null;
+  }
+
+  public static BufferedImage trim(BufferedImage image, Color croppedColor) throws IllegalArgumentException {
+    Rectangle bounds = RasterKernels.getBounds(image, croppedColor.getRGB());
+    if (bounds == null || bounds.width <= 1 || bounds.height <= 1) {
+      throw new IllegalArgumentException("Image is empty when trimmed");
+    }
+    // The last column and row of the bounds are cut off, stamps have always been trimmed this way
+    int startX = bounds.x, startY = bounds.y, endX = bounds.x + bounds.width - 1, endY = bounds.y + bounds.height - 1;
+    BufferedImage img = image.getSubimage(startX, startY, endX - startX, endY - startY); //fill in the corners of the desired crop location here
+    BufferedImage copyOfImage = new BufferedImage(img.getWidth(), img.getHeight(), BufferedImage.TYPE_INT_RGB);
+    Graphics2D g = copyOfImage.createGraphics();
+    g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+    g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+    g.drawImage(img, 0, 0, null);
+    return copyOfImage;
+  }
+}
@@ -1,52 +1,109 @@
-/*
- * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
- */
-
-package ee.joonasvali.stamps.stamp;
-
-import ee.joonasvali.stamps.query.RandomQuery;
-
-import java.awt.image.BufferedImage;
-import java.util.ArrayList;
-import java.util.List;
-
-/**
- * @author Joonas Vali
- */
-public abstract class NumberedRandomComposerStrategy implements StampComposerStrategy {
-  private final int count;
-
-  public NumberedRandomComposerStrategy(int count) {
-    this.count = count;
-  }
-
-  @Override
-  public Stamps compose(StampProvider stamps) {
-    RandomQuery<Stamp> q = new RandomQuery<>();
-    List<Stamp> composites = new ArrayList<>(count);
-    for(int i = 0; i < count; i++) {
-      Stamp s1 = stamps.getStamp(q);
-      Stamp s2 = stamps.getStamp(q);
-      try {
-        composites.add(create(s1, s2));
-      } catch (CompositeStampCreationException e) {
-        continue;
-      }
-    }
-    return new Stamps(composites);
-  }
-
-  protected abstract Stamp create(Stamp s1, Stamp s2) throws CompositeStampCreationException;
-
-
-  protected BufferedImage createMaxBufferedImage(Stamp s1, Stamp s2) {
-    BufferedImage image1 = s1.getImg();
-    BufferedImage image2 = s2.getImg();
-
-    int width = Math.max(image1.getWidth(), image2.getWidth() );
-    int height = Math.max(image1.getHeight(), image2.getHeight() );
-    int maxDimension = (int) Math.sqrt(Math.pow(width, 2) + Math.pow(height, 2));
-
-    return new BufferedImage(maxDimension, maxDimension, BufferedImage.TYPE_INT_RGB);
-  }
-}
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps.stamp;
+
+import ee.joonasvali.stamps.ProjectionGenerator;
+import ee.joonasvali.stamps.execution.ExecutionPolicy;
+import ee.joonasvali.stamps.query.RandomQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+
+/**
+ * @author Joonas Vali
+ */
+public abstract class NumberedRandomComposerStrategy implements StampComposerStrategy {
+  /**
+   * Number of different composites made of one pair of stamps.
+   */
+  public static final int VARIANTS = 4;
+  private static final Logger log = LoggerFactory.getLogger(NumberedRandomComposerStrategy.class);
+  private final int count;
+
+  public NumberedRandomComposerStrategy(int count) {
+    this.count = count;
+  }
+
+  @Override
+  public Stamps compose(StampProvider stamps) {
+    return compose(stamps, new Random());
+  }
+
+  /**
+   * Picks the pairs of stamps first, then makes the composites in parallel. The composites of a pair are drawn from
+   * {@link #VARIANTS} variants, each made with a random seeded by the pair and the variant only, so they can be
+   * cached across paintings and the same random picks the same composites whether they were cached or not.
+   */
+  @Override
+  public Stamps compose(StampProvider stamps, Random random) {
+    return compose(stamps, random, CompositeCache.getInstance());
+  }
+
+  /**
+   * Same as {@link #compose(StampProvider, Random)}, with the composites kept in the given cache.
+   */
+  public Stamps compose(StampProvider stamps, Random random, CompositeCache cache) {
+    RandomQuery<Stamp> q = new RandomQuery<>();
+    ExecutorService executor = ExecutionPolicy.getInstance().getComputeExecutor();
+    List<FutureTask<Optional<Stamp>>> tasks = new ArrayList<>(count);
+    for(int i = 0; i < count; i++) {
+      Stamp s1 = stamps.getStamp(list -> q.get(list, random));
+      Stamp s2 = stamps.getStamp(list -> q.get(list, random));
+      int variant = random.nextInt(VARIANTS);
+      FutureTask<Optional<Stamp>> task = new FutureTask<>(() -> cache.get(getClass(), s1, s2, variant, () -> createVariant(s1, s2, variant)));
+      tasks.add(task);
+      executor.execute(task);
+    }
+
+    List<Stamp> composites = new ArrayList<>(count);
+    for (FutureTask<Optional<Stamp>> task : tasks) {
+      // The calling thread may be one of the executor's own, it makes the composites not started yet itself
+      task.run();
+      try {
+        task.get().ifPresent(composites::add);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      } catch (ExecutionException e) {
+        log.error("Can't create composite stamp", e.getCause());
+      }
+    }
+    return new Stamps(composites);
+  }
+
+  private Optional<Stamp> createVariant(Stamp s1, Stamp s2, int variant) {
+    long seed = ProjectionGenerator.seedFor(ProjectionGenerator.seedFor(s1.getSeed(), variant) + s2.getSeed(), getClass().getName().hashCode());
+    try {
+      Stamp composite = create(s1, s2, new Random(seed));
+      composite.setSeed(seed);
+      return Optional.of(composite);
+    } catch (CompositeStampCreationException e) {
+      return Optional.empty();
+    }
+  }
+
+  protected abstract Stamp create(Stamp s1, Stamp s2, Random random) throws CompositeStampCreationException;
+
+
+  protected BufferedImage createMaxBufferedImage(Stamp s1, Stamp s2) {
+    Point size1 = s1.size();
+    Point size2 = s2.size();
+
+    int width = Math.max(size1.x, size2.x);
+    int height = Math.max(size1.y, size2.y);
+    int maxDimension = (int) Math.sqrt(Math.pow(width, 2) + Math.pow(height, 2));
+
+    return new BufferedImage(maxDimension, maxDimension, BufferedImage.TYPE_INT_RGB);
+  }
+}
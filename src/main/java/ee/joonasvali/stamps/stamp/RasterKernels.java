@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+package ee.joonasvali.stamps.stamp;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * Bulk operations on the pixels of int images, row by row straight on the backing arrays, for making and trimming
+ * stamps.
+ */
+public final class RasterKernels {
+  // Rows read at a time from images not backed by an int array
+  private static final int ROWS = 64;
+
+  private RasterKernels() {
+  }
+
+  /**
+   * @return the pixels of an int image the size of its raster, such as a new TYPE_INT_RGB image.
+   */
+  public static int[] getData(BufferedImage image) {
+    return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+  }
+
+  /**
+   * @return true if {@link #getData(BufferedImage)} can be used on the image.
+   */
+  public static boolean isIntRaster(BufferedImage image) {
+    int type = image.getType();
+    return (type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_ARGB_PRE)
+        && image.getRaster().getDataBuffer().getSize() == image.getWidth() * image.getHeight();
+  }
+
+  /**
+   * @return the bits of the pixels of the int image that hold its color. The alpha byte of TYPE_INT_RGB pixels is
+   * undefined, Java2D may or may not set it.
+   */
+  public static int getColorBits(BufferedImage image) {
+    return image.getType() == BufferedImage.TYPE_INT_RGB ? 0xFFFFFF : 0xFFFFFFFF;
+  }
+
+  public static void fill(int[] data, int pixel) {
+    Arrays.fill(data, pixel);
+  }
+
+  /**
+   * Where both a and b have a pixel other than the background, puts the greater of the two into the destination.
+   * The other destination pixels are left as they are.
+   *
+   * @param bits see {@link #getColorBits(BufferedImage)}, pixels are compared by these bits only.
+   */
+  public static void intersect(int[] a, int[] b, int[] dst, int background, int bits) {
+    background &= bits;
+    for (int i = 0; i < dst.length; i++) {
+      int pa = a[i] & bits;
+      int pb = b[i] & bits;
+      if (pa != background && pb != background) {
+        dst[i] = Math.max(pa, pb);
+      }
+    }
+  }
+
+  /**
+   * @param background as an ARGB color.
+   * @return the smallest rectangle holding every pixel of the image other than the background, null if there are none.
+   */
+  public static Rectangle getBounds(BufferedImage image, int background) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    if (isIntRaster(image)) {
+      return getBounds(getData(image), 0, width, width, height, background, getColorBits(image));
+    }
+    // Converted a few rows at a time, the same way getRGB would convert each pixel
+    int[] rows = new int[width * Math.min(ROWS, height)];
+    Rectangle bounds = null;
+    for (int y = 0; y < height; y += ROWS) {
+      int count = Math.min(ROWS, height - y);
+      getRGB(image, y, count, rows);
+      Rectangle part = getBounds(rows, 0, width, width, count, background, 0xFFFFFFFF);
+      if (part != null) {
+        part.translate(0, y);
+        bounds = bounds == null ? part : bounds.union(part);
+      }
+    }
+    return bounds;
+  }
+
+  /**
+   * Same as {@link BufferedImage#getRGB(int, int, int, int, int[], int, int)} for whole rows, without converting each
+   * pixel through the color model for the 3 byte BGR images JPEGs are decoded to.
+   */
+  private static void getRGB(BufferedImage image, int y, int count, int[] rows) {
+    int width = image.getWidth();
+    if (image.getType() != BufferedImage.TYPE_3BYTE_BGR || image.getRaster().getDataBuffer().getSize() != 3 * width * image.getHeight()) {
+      image.getRGB(0, y, width, count, rows, 0, width);
+      return;
+    }
+    byte[] data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+    int end = width * count;
+    for (int i = 0, j = 3 * width * y; i < end; i++, j += 3) {
+      rows[i] = 0xFF000000 | (data[j + 2] & 0xFF) << 16 | (data[j + 1] & 0xFF) << 8 | (data[j] & 0xFF);
+    }
+  }
+
+  /**
+   * @param scanline row r starts at {@code offset + r * scanline}.
+   * @param bits see {@link #getColorBits(BufferedImage)}, pixels are compared by these bits only.
+   * @return the smallest rectangle holding every pixel other than the background, null if there are none.
+   */
+  public static Rectangle getBounds(int[] data, int offset, int scanline, int width, int height, int background, int bits) {
+    background &= bits;
+    int minX = width;
+    int maxX = -1;
+    int minY = -1;
+    int maxY = -1;
+    for (int y = 0; y < height; y++) {
+      int row = offset + y * scanline;
+      int first = -1;
+      for (int x = 0; x < width; x++) {
+        if ((data[row + x] & bits) != background) {
+          first = x;
+          break;
+        }
+      }
+      if (first < 0) {
+        continue;
+      }
+      if (minY < 0) {
+        minY = y;
+      }
+      maxY = y;
+      minX = Math.min(minX, first);
+      // Only the part right of what's known already is left to search
+      for (int x = width - 1; x > maxX; x--) {
+        if ((data[row + x] & bits) != background) {
+          maxX = x;
+          break;
+        }
+      }
+      maxX = Math.max(maxX, first);
+    }
+    if (minY < 0) {
+      return null;
+    }
+    return new Rectangle(minX, minY, maxX - minX + 1, maxY - minY + 1);
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps.stamp;
+
+import ee.joonasvali.stamps.cache.WeightedLruCache;
+import ee.joonasvali.stamps.properties.AppProperties;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.function.Supplier;
+
+/**
+ * Stamps tinted with plain colors, shared by all the stamps and kept from one painting to the next. Limited by the
+ * bytes the images take, the tints used most often stay.
+ */
+public class RenderCache {
+  // Counters per cached tint for the admission, and the size of a tint the count of tints is guessed from
+  private static final int ADMISSION_COUNTERS_PER_TINT = 8;
+  private static final long TYPICAL_TINT_BYTES = 4L * 300 * 300;
+
+  private static volatile RenderCache instance;
+
+  private final WeightedLruCache<Key, BufferedImage> cache;
+
+  public static RenderCache getInstance() {
+    RenderCache cache = instance;
+    if (cache == null) {
+      synchronized (RenderCache.class) {
+        cache = instance;
+        if (cache == null) {
+          cache = new RenderCache(AppProperties.getInstance().getRenderCacheBudget());
+          instance = cache;
+        }
+      }
+    }
+    return cache;
+  }
+
+  /**
+   * @param budget bytes the tinted stamps may take, 0 to disable caching
+   */
+  public RenderCache(long budget) {
+    int tints = (int) Math.min(budget / TYPICAL_TINT_BYTES + 1, Integer.MAX_VALUE / ADMISSION_COUNTERS_PER_TINT);
+    this.cache = new WeightedLruCache<>(budget, RenderCache::getBytes, tints * ADMISSION_COUNTERS_PER_TINT);
+  }
+
+  /**
+   * @param stamp {@link Stamp#getId()} of the stamp tinted.
+   * @return the stamp tinted with the color, rendered if it's not cached.
+   */
+  public BufferedImage get(long stamp, Color color, Supplier<BufferedImage> render) {
+    if (cache.getMaxWeight() == 0) {
+      return render.get();
+    }
+    return cache.get(new Key(stamp, color), key -> render.get());
+  }
+
+  public void clear() {
+    cache.clear();
+  }
+
+  /**
+   * Drops the tints of the stamp.
+   */
+  public void remove(long stamp) {
+    cache.removeIf(key -> key.stamp == stamp);
+  }
+
+  /**
+   * @return size and hit rate of the cache.
+   */
+  @Override
+  public String toString() {
+    return cache.toString();
+  }
+
+  private static long getBytes(BufferedImage image) {
+    return 4L * image.getWidth() * image.getHeight();
+  }
+
+  /**
+   * Stamps are identified by id rather than referenced, so a cached tint doesn't keep its stamp in memory.
+   */
+  private static final class Key {
+    private final long stamp;
+    private final Color color;
+
+    private Key(long stamp, Color color) {
+      this.stamp = stamp;
+      this.color = color;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof Key)) return false;
+      Key key = (Key) o;
+      return stamp == key.stamp && color.equals(key.color);
+    }
+
+    @Override
+    public int hashCode() {
+      return Long.hashCode(stamp) * 31 + color.hashCode();
+    }
+  }
+}
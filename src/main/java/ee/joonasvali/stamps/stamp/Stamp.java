@@ -1,174 +1,311 @@
-/*
- * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
- */
-
-package ee.joonasvali.stamps.stamp;
-
-import ee.joonasvali.stamps.DefaultProjectionFactory;
-import ee.joonasvali.stamps.Projection;
-import ee.joonasvali.stamps.ProjectionFactory;
-import ee.joonasvali.stamps.code.ThreadSafe;
-import ee.joonasvali.stamps.properties.AppProperties;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import javax.imageio.ImageIO;
-import java.awt.*;
-import java.awt.image.BufferedImage;
-import java.awt.image.ColorModel;
-import java.awt.image.WritableRaster;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
-import java.util.concurrent.FutureTask;
-
-
-public class Stamp {
-  public static final Logger log = LoggerFactory.getLogger(Stamp.class);
-  private volatile StampGroupMetadata metadata = new StampGroupMetadata();
-  private volatile BufferedImage img = null;
-  private final ConcurrentHashMap<Color, Future<BufferedImage>> renders = new ConcurrentHashMap<>();
-  private final ProjectionFactory factory = DEFAULT_FACTORY;
-
-  private static final ProjectionFactory DEFAULT_FACTORY = new DefaultProjectionFactory();
-  private static final ConcurrentHashMap<String, Future<Stamp>> cache = new ConcurrentHashMap<>();
-  private final Loader loader;
-
-  public Stamp(BufferedImage image) {
-    this.img = image;
-    loader = null;
-  }
-
-  public void setMetadata(StampGroupMetadata metadata) {
-    this.metadata = metadata;
-  }
-
-  public StampGroupMetadata getMetadata() {
-    return metadata;
-  }
-
-  @ThreadSafe
-  public static Stamp getInstance(File file) throws IllegalArgumentException {
-    String path = null;
-    try {
-      path = file.getCanonicalPath();
-    } catch (IOException e) {
-      log.error("IOException for file: " + file, e);
-      System.exit(-1);
-    }
-    Future<Stamp> stamp = cache.get(path);
-
-    if (stamp == null) {
-      Callable<Stamp> stampInitialization = () -> {
-        Stamp result = new Stamp(file);
-        if (!AppProperties.getInstance().isLazyLoading()) {
-          result.loader.load();
-        }
-        return result;
-      };
-
-      FutureTask<Stamp> st = new FutureTask<>(stampInitialization);
-      stamp = cache.putIfAbsent(path, st);
-      if (stamp == null) {
-        stamp = st;
-        st.run();
-      }
-    }
-    try {
-      return stamp.get();
-    } catch (InterruptedException | ExecutionException e) {
-      log.error(e.getMessage(), e);
-      System.exit(-1);
-      // Satisfy compiler;
-      return null;
-    }
-  }
-
-  private Stamp(File file) throws IllegalArgumentException {
-    loader = new Loader(file);
-  }
-
-  public Projection getProjection(Color color, int x, int y) {
-    return factory.getProjectionFromRaw(factory.getRawProjection(img, color, x, y));
-  }
-
-  @ThreadSafe
-  public Projection getProjection(Color color) throws InterruptedException {
-    lazyLoad();
-    Future<BufferedImage> image = renders.get(color);
-    if (image == null) {
-      Callable<BufferedImage> callable = () -> factory.getRawProjection(img, color);
-      FutureTask<BufferedImage> ft = new FutureTask<>(callable);
-      image = renders.putIfAbsent(color, ft);
-      if (image == null) {
-        image = ft;
-        ft.run();
-      }
-    }
-
-    try {
-      return factory.getProjectionFromRaw(image.get());
-    } catch (ExecutionException e) {
-      log.error("Something went wrong", e);
-      System.exit(-1);
-      return null;
-    }
-  }
-
-  private void lazyLoad() {
-    if (AppProperties.getInstance().isLazyLoading() && img == null) {
-      loader.load();
-    }
-  }
-
-  public static void clearCache() {
-    cache.clear();
-  }
-
-  public BufferedImage getImg() {
-    lazyLoad();
-    return deepCopy(img);
-  }
-
-  public Point size() {
-    return new Point(img.getWidth(), img.getHeight());
-  }
-
-  private static BufferedImage deepCopy(BufferedImage bi) {
-    ColorModel cm = bi.getColorModel();
-    boolean isAlphaPremultiplied = cm.isAlphaPremultiplied();
-    WritableRaster raster = bi.copyData(null);
-    return new BufferedImage(cm, raster, isAlphaPremultiplied, null);
-  }
-
-  public void clearRenderCache() {
-    renders.clear();
-    // We clear the img to reload it when it is actually needed
-    if (AppProperties.getInstance().isLazyLoading()) {
-      img = null;
-    }
-  }
-
-  class Loader {
-    private File file;
-
-    Loader(File file) {
-      this.file = file;
-    }
-
-    private void load() throws IllegalArgumentException{
-      try (FileInputStream stream = new FileInputStream(file)) {
-        img = ImageUtil.trim(ImageIO.read(stream), Color.WHITE);
-      } catch (IOException e) {
-        log.error("IOException for image " + file, e);
-        System.exit(-1);
-      } catch (Exception e) {
-        log.error("Exception for image " + file, e);
-      }
-    }
-  }
-}
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps.stamp;
+
+import ee.joonasvali.stamps.AlphaMask;
+import ee.joonasvali.stamps.Projection;
+import ee.joonasvali.stamps.ProjectionFactory;
+import ee.joonasvali.stamps.ProjectionGenerator;
+import ee.joonasvali.stamps.SpriteCache;
+import ee.joonasvali.stamps.code.ThreadSafe;
+import ee.joonasvali.stamps.color.PositionAwareColor;
+import ee.joonasvali.stamps.color.ScaledPositionAwareColor;
+import ee.joonasvali.stamps.properties.AppProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+public class Stamp {
+  /**
+   * Draft projections are tinted from the stamp mask shrunk by this factor.
+   */
+  public static final int DRAFT_REDUCTION = 4;
+  public static final Logger log = LoggerFactory.getLogger(Stamp.class);
+  private volatile StampGroupMetadata metadata = new StampGroupMetadata();
+  // The stamp is kept as an alpha mask, see AlphaMask. Null with lazy loading, the StampStore keeps it then
+  private volatile BufferedImage mask = null;
+  // Known before the mask is loaded, if the stamp snapshot has it
+  private volatile Point size;
+  private volatile BufferedImage draftMask = null;
+  private final ProjectionFactory factory = DEFAULT_FACTORY;
+  // Identifies the tints of this stamp in the render cache
+  private final long id = NEXT_ID.getAndIncrement();
+  // Same for the same stamp on every run, unlike the id
+  private volatile long seed;
+
+  private static final ProjectionFactory DEFAULT_FACTORY = AppProperties.getInstance().getRenderingBackend().createFactory();
+  private static final AtomicLong NEXT_ID = new AtomicLong();
+  private static final ConcurrentHashMap<String, Future<Stamp>> cache = new ConcurrentHashMap<>();
+  private final Loader loader;
+
+  public Stamp(BufferedImage image) {
+    this.mask = AlphaMask.create(image);
+    loader = null;
+  }
+
+  public void setMetadata(StampGroupMetadata metadata) {
+    this.metadata = metadata;
+  }
+
+  public StampGroupMetadata getMetadata() {
+    return metadata;
+  }
+
+  /**
+   * @return the stamp of the image, loaded once and shared.
+   * @throws IllegalArgumentException if the image can't be loaded, such as one removed or caught half written.
+   */
+  @ThreadSafe
+  public static Stamp getInstance(File file) throws IllegalArgumentException {
+    return getInstance(file, StampSnapshot.getInstance());
+  }
+
+  /**
+   * Same as {@link #getInstance(File)}, with the mask taken from and kept in the given snapshot.
+   */
+  @ThreadSafe
+  public static Stamp getInstance(File file, StampSnapshot snapshot) throws IllegalArgumentException {
+    String path;
+    try {
+      path = file.getCanonicalPath();
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Can't resolve stamp " + file, e);
+    }
+    Future<Stamp> stamp = cache.get(path);
+
+    if (stamp == null) {
+      Callable<Stamp> stampInitialization = () -> {
+        Stamp result = new Stamp(file, snapshot);
+        if (!AppProperties.getInstance().isLazyLoading()) {
+          result.mask = result.loader.read();
+          if (result.mask == null) {
+            throw new IllegalArgumentException("Can't load stamp " + file);
+          }
+        }
+        return result;
+      };
+
+      FutureTask<Stamp> st = new FutureTask<>(stampInitialization);
+      stamp = cache.putIfAbsent(path, st);
+      if (stamp == null) {
+        stamp = st;
+        st.run();
+      }
+    }
+    try {
+      return stamp.get();
+    } catch (ExecutionException e) {
+      // Tried again if asked again, the image may have been caught half written
+      cache.remove(path, stamp);
+      Throwable cause = e.getCause();
+      throw cause instanceof IllegalArgumentException ? (IllegalArgumentException) cause : new IllegalArgumentException("Can't load stamp " + file, cause);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalArgumentException("Interrupted while loading stamp " + file, e);
+    }
+  }
+
+  private Stamp(File file, StampSnapshot snapshot) throws IllegalArgumentException {
+    loader = new Loader(file, snapshot);
+    size = snapshot.getSize(file);
+    File group = file.getParentFile();
+    seed = ProjectionGenerator.seedFor((group == null ? "" : group.getName() + "/").hashCode(), file.getName().hashCode());
+  }
+
+  public Projection getProjection(Color color, int x, int y) {
+    // Sprites of the mask are told apart by how much it was shrunk, those of tinted stamps by the color
+    return factory.getProjection(getMask(), new SpriteCache.Source(id, 1), color, x, y);
+  }
+
+  /**
+   * A cheap projection for a draft painting: the stamp mask is shrunk by {@link #DRAFT_REDUCTION} before it gets
+   * tinted, and nothing is cached. Position (x, y) and the color are in the coordinates of the full painting, the
+   * projection must be placed and scaled by the caller.
+   */
+  @ThreadSafe
+  public Projection getDraftProjection(Color color, int x, int y) {
+    BufferedImage draft = getDraftMask();
+    if (color instanceof PositionAwareColor) {
+      color = new ScaledPositionAwareColor((PositionAwareColor) color, DRAFT_REDUCTION);
+    }
+    return factory.getProjection(draft, new SpriteCache.Source(id, DRAFT_REDUCTION), color, x / DRAFT_REDUCTION, y / DRAFT_REDUCTION);
+  }
+
+  private BufferedImage getDraftMask() {
+    BufferedImage draft = draftMask;
+    if (draft == null) {
+      // Racing threads create equal masks, no need to lock
+      draft = AlphaMask.shrink(getMask(), DRAFT_REDUCTION);
+      draftMask = draft;
+    }
+    return draft;
+  }
+
+  /**
+   * Backends that tint while painting share the mask itself. For the others, stamps tinted with plain colors are
+   * shared through the {@link RenderCache}.
+   */
+  @ThreadSafe
+  public Projection getProjection(Color color) throws InterruptedException {
+    BufferedImage source = getMask();
+    if (factory.isTintedOnComposite()) {
+      return factory.getProjection(source, new SpriteCache.Source(id, 1), color, 0, 0);
+    }
+    BufferedImage image = RenderCache.getInstance().get(id, color, () -> factory.getRawProjection(source, color));
+    return factory.getProjectionFromSharedRaw(image, new SpriteCache.Source(id, color));
+  }
+
+  public long getId() {
+    return id;
+  }
+
+  /**
+   * @return a number telling the stamp apart from others, the same on every run. Derived from the file name, or
+   * from the seed a composite stamp was made with.
+   */
+  public long getSeed() {
+    return seed;
+  }
+
+  void setSeed(long seed) {
+    this.seed = seed;
+  }
+
+  /**
+   * @return the mask, from the {@link StampStore} with lazy loading, where it may have to be loaded first.
+   */
+  @ThreadSafe
+  BufferedImage getMask() {
+    BufferedImage result = mask;
+    if (result == null && loader != null && AppProperties.getInstance().isLazyLoading()) {
+      result = StampStore.getInstance().get(this);
+    }
+    return result;
+  }
+
+  /**
+   * Loads the mask from the stamp image, for the {@link StampStore}.
+   *
+   * @throws IllegalStateException if the image can't be loaded.
+   */
+  BufferedImage load() {
+    BufferedImage result = loader.read();
+    if (result == null) {
+      throw new IllegalStateException("Can't load stamp " + loader.file);
+    }
+    return result;
+  }
+
+  public static void clearCache() {
+    cache.clear();
+  }
+
+  /**
+   * Forgets the stamps of the image, or of all the images in the folder, so the next {@link #getInstance(File)} loads
+   * them again as new stamps. What was made of the old stamps is dropped from the caches; paintings still using them
+   * get it made again.
+   */
+  @ThreadSafe
+  public static void forget(File file) {
+    String path;
+    try {
+      path = file.getCanonicalPath();
+    } catch (IOException e) {
+      log.error("IOException for file: " + file, e);
+      return;
+    }
+    String folder = path + File.separator;
+    cache.forEach((key, stamp) -> {
+      if ((key.equals(path) || key.startsWith(folder)) && cache.remove(key, stamp) && stamp.isDone()) {
+        try {
+          stamp.get().invalidate();
+        } catch (InterruptedException | ExecutionException e) {
+          // Never loaded, nothing was made of it
+        }
+      }
+    });
+  }
+
+  /**
+   * Drops what the caches made of the stamp: its tints, sprites and the composites made of it, theirs too. With lazy
+   * loading the mask is left in the {@link StampStore}, a painting still using the stamp may need it.
+   */
+  void invalidate() {
+    RenderCache.getInstance().remove(id);
+    SpriteCache.getInstance().remove(id);
+    draftMask = null;
+    for (Stamp composite : CompositeCache.getInstance().remove(id)) {
+      composite.invalidate();
+    }
+  }
+
+  /**
+   * @return the stamp as a gray image on white, as it was loaded less any colors.
+   */
+  public BufferedImage getImg() {
+    return AlphaMask.toImage(getMask());
+  }
+
+  @ThreadSafe
+  public Point size() {
+    Point known = size;
+    if (known == null) {
+      BufferedImage current = getMask();
+      known = new Point(current.getWidth(), current.getHeight());
+      size = known;
+    }
+    return new Point(known);
+  }
+
+  /**
+   * Drops the masks derived from the stamp mask. Its tints in the {@link RenderCache} and, with lazy loading, the mask
+   * in the {@link StampStore} are left for the caches to evict.
+   */
+  public void clearRenderCache() {
+    draftMask = null;
+  }
+
+  class Loader {
+    private File file;
+    private final StampSnapshot snapshot;
+
+    Loader(File file, StampSnapshot snapshot) {
+      this.file = file;
+      this.snapshot = snapshot;
+    }
+
+    /**
+     * @return the mask, null if the image couldn't be loaded.
+     */
+    private BufferedImage read() throws IllegalArgumentException{
+      BufferedImage stored = snapshot.get(file);
+      if (stored != null) {
+        return stored;
+      }
+      try {
+        BufferedImage decoded = AlphaMask.create(ImageUtil.trim(ImageUtil.read(file), Color.WHITE));
+        snapshot.put(file, decoded);
+        return decoded;
+      } catch (IOException e) {
+        // Removed or still being written, the stamp is left out
+        log.error("Unable to read image " + file + ": " + e.getMessage());
+      } catch (Exception e) {
+        log.error("Exception for image " + file, e);
+      }
+      return null;
+    }
+  }
+}
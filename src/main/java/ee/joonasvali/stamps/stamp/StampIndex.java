@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+package ee.joonasvali.stamps.stamp;
+
+import ee.joonasvali.stamps.query.Query;
+import ee.joonasvali.stamps.query.WeightedList;
+
+import java.awt.*;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * An immutable set of stamps, each known by its position in it, its id. The index is shared by the threads painting
+ * with it as it is, a changed set of stamps is a new index.
+ * <p>
+ * Besides the stamps the index has arrays of their rarities, weights and areas by id. The arrays are shared too and
+ * must not be changed. Ids are positions in this index only, {@link Stamp#getId()} is what tells stamps apart in the
+ * caches.
+ * <p>
+ * The list of the stamps is a {@link WeightedList}, a {@link ee.joonasvali.stamps.query.WeightedQuery} picks from it
+ * and its parts by the weights of the index, whatever happens to the metadata of the stamps later.
+ */
+public final class StampIndex implements StampProvider {
+  public static final StampIndex EMPTY = new StampIndex(new Stamp[0]);
+
+  private final Stamp[] stamps;
+  private final List<Stamp> list;
+  private final double[] rarities;
+  private final double[] weights;
+  // Found when first asked for, a lazily loaded stamp may have to be loaded to know its size
+  private volatile int[] areas;
+
+  public StampIndex(Collection<? extends Stamp> stamps) {
+    this(stamps.toArray(new Stamp[0]));
+  }
+
+  private StampIndex(Stamp[] stamps) {
+    this.stamps = stamps;
+    this.list = new Entries(0, stamps.length);
+    this.rarities = new double[stamps.length];
+    this.weights = new double[stamps.length];
+    for (int id = 0; id < stamps.length; id++) {
+      double rarity = stamps[id].getMetadata().getRarity();
+      rarities[id] = rarity;
+      weights[id] = rarity > 0 && rarity < 1 ? rarity : 1;
+    }
+  }
+
+  /**
+   * @return a new index with the stamps of this one followed by the stamps of the other, ids of this one stay the same.
+   */
+  public StampIndex with(StampIndex other) {
+    if (other.stamps.length == 0) {
+      return this;
+    }
+    Stamp[] joined = Arrays.copyOf(stamps, stamps.length + other.stamps.length);
+    System.arraycopy(other.stamps, 0, joined, stamps.length, other.stamps.length);
+    return new StampIndex(joined);
+  }
+
+  @Override
+  public StampIndex getIndex() {
+    return this;
+  }
+
+  @Override
+  public Stamp getStamp(Query<Stamp> q) {
+    return q.get(list);
+  }
+
+  /**
+   * @return the stamps in the order of their ids, the same unmodifiable list every time.
+   */
+  @Override
+  public List<Stamp> getStamps() {
+    return list;
+  }
+
+  @Override
+  public int size() {
+    return stamps.length;
+  }
+
+  public Stamp get(int id) {
+    return stamps[id];
+  }
+
+  /**
+   * @return rarity of each stamp by id, as it was when the index was made.
+   */
+  public double[] getRarities() {
+    return rarities;
+  }
+
+  /**
+   * @return weight of each stamp by id, the chance of it being picked relative to the others: its rarity, defined
+   * through stamps.properties, if that is between 0 and 1, otherwise 1.
+   */
+  public double[] getWeights() {
+    return weights;
+  }
+
+  /**
+   * @return area of each stamp by id, in pixels.
+   */
+  public int[] getAreas() {
+    int[] result = areas;
+    if (result == null) {
+      // Racing threads find equal areas, no need to lock
+      result = new int[stamps.length];
+      for (int id = 0; id < stamps.length; id++) {
+        Point size = stamps[id].size();
+        result[id] = size.x * size.y;
+      }
+      areas = result;
+    }
+    return result;
+  }
+
+  /**
+   * The stamps from one id up to another, weighed by the weights of the index.
+   */
+  private final class Entries extends AbstractList<Stamp> implements WeightedList<Stamp>, RandomAccess {
+    private final int from;
+    private final int to;
+
+    private Entries(int from, int to) {
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    public Stamp get(int index) {
+      return stamps[from + checkIndex(index)];
+    }
+
+    @Override
+    public double getWeight(int index) {
+      return weights[from + checkIndex(index)];
+    }
+
+    @Override
+    public int size() {
+      return to - from;
+    }
+
+    @Override
+    public WeightedList<Stamp> subList(int fromIndex, int toIndex) {
+      if (fromIndex < 0 || toIndex > size() || fromIndex > toIndex) {
+        throw new IndexOutOfBoundsException("Sublist " + fromIndex + ".." + toIndex + " of " + size());
+      }
+      return new Entries(from + fromIndex, from + toIndex);
+    }
+
+    private int checkIndex(int index) {
+      if (index < 0 || index >= size()) {
+        throw new IndexOutOfBoundsException("Index " + index + " of " + size());
+      }
+      return index;
+    }
+  }
+}
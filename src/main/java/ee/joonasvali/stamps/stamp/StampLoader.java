@@ -1,155 +1,337 @@
-/*
- * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
- */
-
-package ee.joonasvali.stamps.stamp;
-
-import ee.joonasvali.stamps.properties.MetadataReader;
-import ee.joonasvali.stamps.query.Query;
-import ee.joonasvali.stamps.query.RandomQuery;
-import ee.joonasvali.stamps.ui.ProgressCounter;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import java.io.File;
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-
-/**
- * @author Joonas Vali
- */
-public class StampLoader {
-  public static final Logger log = LoggerFactory.getLogger(StampLoader.class);
-  public static final String STAMPS_PROPERTIES = "stamps.properties";
-  private final ExecutorService bootExecutor = Executors.newSingleThreadExecutor();
-
-  private final File mainfolder;
-  private final ArrayList<Stamps> stampsGroups;
-  private volatile boolean loaded = false;
-
-  public StampLoader(File mainfolder) {
-    if (!mainfolder.exists() || !mainfolder.isDirectory())
-      throw new IllegalArgumentException("Folder " + mainfolder + " must be dir");
-    this.mainfolder = mainfolder;
-    this.stampsGroups = new ArrayList<>();
-  }
-
-  public void loadStampsConcurrently() {
-    if (!bootExecutor.isShutdown()) {
-      bootExecutor.execute(() -> {
-        loadStamps();
-        bootExecutor.shutdown();
-      });
-    }
-  }
-
-  private synchronized void loadStamps() {
-    if (loaded) {
-      return;
-    }
-    long begin = System.currentTimeMillis();
-    log.info("Starting to load stamps.");
-    MetadataReader reader = new MetadataReader();
-    File[] files = mainfolder.listFiles((dir, name) -> dir.isDirectory());
-    stampsGroups.ensureCapacity(files.length);
-    for (File dir : files) {
-      Stamps stamps = new Stamps(dir);
-      stampsGroups.add(stamps);
-
-      File props = new File(dir, STAMPS_PROPERTIES);
-      if (props.isFile()) {
-        try {
-          StampGroupMetadata metadata = reader.loadMetadata(props);
-          stamps.setMetadata(metadata);
-        } catch (IOException e) {
-          log.error(e.getMessage(), e);
-        }
-      }
-    }
-    loaded = true;
-    long time = System.currentTimeMillis() - begin;
-    log.info("Stamps loaded in " + time + "ms.");
-  }
-
-  /**
-   * @param groups
-   * @param stampsPerGroup
-   * @param groupQuery
-   * @param stampQuery
-   * @param fillGroups
-   * @return
-   */
-  public Stamps getStamps(int groups, int stampsPerGroup, Query<Stamps> groupQuery, Query<Stamp> stampQuery, boolean fillGroups, ProgressCounter listener) {
-    init(listener);
-    boolean remove = true;
-    if (groupQuery instanceof RandomQuery) {
-      groupQuery = getRandomRemovingQuery();
-      remove = false;
-    }
-    LinkedList<Stamps> copy = new LinkedList<>(stampsGroups);
-    List<Stamps> picked = new ArrayList<>(groups);
-    for (int i = 0; i < groups; i++) {
-      if (copy.isEmpty()) {
-        log.error("Ran out of stamp groups at index " + (i + 1) + ", before could pick " + groups);
-        return flatten(picked, stampsPerGroup, stampQuery, fillGroups);
-      }
-
-      Stamps s = groupQuery.get(copy);
-      if (remove) {
-        copy.remove(s);
-      }
-      picked.add(s);
-    }
-    return flatten(picked, stampsPerGroup, stampQuery, fillGroups);
-  }
-
-  private void init(ProgressCounter listener) {
-    if (!loaded) {
-      if (listener != null) {
-        listener.setValue("Loading stamps...");
-      }
-      loadStamps();
-
-      if (listener != null) {
-        listener.clear();
-      }
-    }
-  }
-
-  private Stamps flatten(List<Stamps> picked, int stampsPerGroup, Query<Stamp> stampQuery, boolean fillGroups) {
-    List<Stamp> flat = new ArrayList<>(100);
-    picked.stream().forEach(s -> flat.addAll(getStamps(s.getStamps(), stampsPerGroup, stampQuery, fillGroups)));
-    return new Stamps(flat);
-  }
-
-  private Collection<? extends Stamp> getStamps(List<Stamp> stamps, int stampsPerGroup, Query<Stamp> stampQuery, boolean fillGroups) {
-    if (!fillGroups) {
-      if (stampsPerGroup >= stamps.size()) {
-        return stamps;
-      }
-    }
-    List<Stamp> result = new ArrayList<>(stampsPerGroup);
-    for (int i = 0; i < stampsPerGroup; i++) {
-      result.add(stampQuery.get(stamps));
-    }
-    return result;
-  }
-
-
-  private Query<Stamps> getRandomRemovingQuery() {
-    return list -> {
-      int i = (int) (Math.random() * list.size());
-      return list.remove(i);
-    };
-  }
-
-  public void clearCaches() {
-    init(null);
-    stampsGroups.forEach(s -> s.getStamps().forEach(Stamp::clearRenderCache));
-  }
-}
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps.stamp;
+
+import ee.joonasvali.stamps.execution.ExecutionPolicy;
+import ee.joonasvali.stamps.properties.AppProperties;
+import ee.joonasvali.stamps.properties.MetadataReader;
+import ee.joonasvali.stamps.query.ExcludingQuery;
+import ee.joonasvali.stamps.query.Query;
+import ee.joonasvali.stamps.ui.ProgressCounter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * @author Joonas Vali
+ */
+public class StampLoader {
+  public static final Logger log = LoggerFactory.getLogger(StampLoader.class);
+  public static final String STAMPS_PROPERTIES = "stamps.properties";
+
+  private final File mainfolder;
+  // Replaced as a whole, never changed
+  private volatile List<Stamps> stampsGroups = Collections.emptyList();
+  private final ExecutionPolicy policy;
+  private final StampSnapshot snapshot;
+  private final ExecutorService ioExecutor;
+  private volatile boolean loaded = false;
+  private final AtomicInteger loadingGroups = new AtomicInteger();
+  // Groups listed again by reloads and not loaded yet, the snapshot is saved once they all are
+  private final AtomicInteger reloadingGroups = new AtomicInteger();
+  private volatile long loadingBegin;
+  private StampWatcher watcher;
+
+  public StampLoader(File mainfolder) {
+    this(mainfolder, ExecutionPolicy.getInstance());
+  }
+
+  public StampLoader(File mainfolder, ExecutionPolicy policy) {
+    this(mainfolder, policy, StampSnapshot.getInstance());
+  }
+
+  /**
+   * @param snapshot where the masks of the stamps are taken from and kept.
+   */
+  public StampLoader(File mainfolder, ExecutionPolicy policy, StampSnapshot snapshot) {
+    this.policy = policy;
+    this.snapshot = snapshot;
+    this.ioExecutor = policy.getIoExecutor();
+    if (!mainfolder.exists() || !mainfolder.isDirectory())
+      throw new IllegalArgumentException("Folder " + mainfolder + " must be dir");
+    this.mainfolder = mainfolder;
+  }
+
+  public void loadStampsConcurrently() {
+    if (!loaded) {
+      ioExecutor.execute(this::loadStamps);
+    }
+  }
+
+  /**
+   * Lists the stamp groups in the calling thread, unless they are listed already. Their stamps are loaded in parallel
+   * on the IO executor, a painting waits only for the groups it picks.
+   */
+  public void load() {
+    loadStamps();
+  }
+
+  private synchronized void loadStamps() {
+    if (loaded) {
+      return;
+    }
+    loadingBegin = System.currentTimeMillis();
+    log.info("Starting to load stamps.");
+    MetadataReader reader = new MetadataReader();
+    File[] files = listGroups();
+    List<Stamps> groups = new ArrayList<>(files.length);
+    loadingGroups.set(files.length);
+    for (File dir : files) {
+      groups.add(createGroup(dir, reader, this::groupLoaded));
+    }
+    stampsGroups = Collections.unmodifiableList(groups);
+    loaded = true;
+    log.info(files.length + " stamp groups listed in " + (System.currentTimeMillis() - loadingBegin) + "ms.");
+    if (AppProperties.getInstance().isStampWatching()) {
+      watch();
+    }
+  }
+
+  /**
+   * Takes in what changed in the stamps folder since it was loaded. Stamp images changed or removed are forgotten, see
+   * {@link Stamp#forget(File)}, and the groups they are in are listed again, with the stamps that didn't change kept
+   * as they are. The groups are replaced all at once, paintings that have picked their stamps keep them.
+   *
+   * @param changed files and folders added, changed or removed, or the stamps folder itself if anything may have.
+   */
+  public synchronized void reload(Collection<File> changed) {
+    if (!loaded) {
+      // Loading sees it all
+      return;
+    }
+    long begin = System.currentTimeMillis();
+    boolean all = changed.contains(mainfolder);
+    Set<File> affected = new HashSet<>();
+    for (File file : changed) {
+      File parent = file.getParentFile();
+      if (mainfolder.equals(parent)) {
+        affected.add(file);
+      } else if (parent != null && mainfolder.equals(parent.getParentFile())) {
+        affected.add(parent);
+        Stamp.forget(file);
+      }
+    }
+    if (all) {
+      Stamp.forget(mainfolder);
+    }
+
+    Map<File, Stamps> current = new HashMap<>();
+    for (Stamps group : stampsGroups) {
+      current.put(group.getFolder(), group);
+    }
+    MetadataReader reader = new MetadataReader();
+    File[] files = listGroups();
+    List<Stamps> groups = new ArrayList<>(files.length);
+    int listed = 0;
+    for (File dir : files) {
+      Stamps group = current.remove(dir);
+      if (group == null || all || affected.contains(dir)) {
+        reloadingGroups.incrementAndGet();
+        group = createGroup(dir, reader, this::groupReloaded);
+        listed++;
+      }
+      groups.add(group);
+    }
+    for (File removed : current.keySet()) {
+      Stamp.forget(removed);
+    }
+    stampsGroups = Collections.unmodifiableList(groups);
+    log.info("Stamps reloaded, " + listed + " groups listed again and " + current.size() + " removed in " + (System.currentTimeMillis() - begin) + "ms.");
+  }
+
+  /**
+   * @return the stamp groups as they are now, replaced as a whole by each reload. Their stamps may still be loading.
+   */
+  public List<Stamps> getGroups() {
+    return stampsGroups;
+  }
+
+  /**
+   * Starts taking in changes to the stamps folder as they are made, see {@link #reload(Collection)}.
+   */
+  public synchronized void watch() {
+    if (watcher != null) {
+      return;
+    }
+    try {
+      watcher = new StampWatcher(mainfolder, this::reload);
+      watcher.start(policy);
+      log.info("Watching " + mainfolder + " for changed stamps.");
+    } catch (IOException e) {
+      log.warn("Unable to watch " + mainfolder + " for changed stamps: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Stops taking in changes to the stamps folder, see {@link #watch()}.
+   */
+  public synchronized void stopWatching() {
+    if (watcher == null) {
+      return;
+    }
+    try {
+      watcher.close();
+      log.info("Stopped watching " + mainfolder + " for changed stamps.");
+    } catch (IOException e) {
+      log.warn("Unable to stop watching " + mainfolder + ": " + e.getMessage());
+    }
+    watcher = null;
+  }
+
+  private File[] listGroups() {
+    File[] files = mainfolder.listFiles(File::isDirectory);
+    if (files == null) {
+      return new File[0];
+    }
+    Arrays.sort(files);
+    return files;
+  }
+
+  private Stamps createGroup(File dir, MetadataReader reader, Consumer<Stamps> loaded) {
+    Stamps stamps = new Stamps(dir, ioExecutor, loaded, snapshot);
+    File props = new File(dir, STAMPS_PROPERTIES);
+    if (props.isFile()) {
+      try {
+        StampGroupMetadata metadata = reader.loadMetadata(props);
+        stamps.setMetadata(metadata);
+      } catch (IOException e) {
+        log.error(e.getMessage(), e);
+      }
+    }
+    return stamps;
+  }
+
+  private void groupReloaded(Stamps group) {
+    log.info("Stamp group " + group.getFolder().getName() + " reloaded.");
+    // One save for a burst of changes, rather than one for each group
+    if (reloadingGroups.decrementAndGet() == 0) {
+      snapshot.save();
+    }
+  }
+
+  private void groupLoaded(Stamps group) {
+    long time = System.currentTimeMillis() - loadingBegin;
+    log.info("Stamp group " + group.getFolder().getName() + " loaded at " + time + "ms.");
+    if (loadingGroups.decrementAndGet() == 0) {
+      snapshot.save();
+      log.info("Stamps loaded in " + (System.currentTimeMillis() - loadingBegin) + "ms.");
+    }
+  }
+
+  /**
+   * @param groups
+   * @param stampsPerGroup
+   * @param groupQuery
+   * @param stampQuery
+   * @param fillGroups
+   * @return
+   */
+  public Stamps getStamps(int groups, int stampsPerGroup, Query<Stamps> groupQuery, Query<Stamp> stampQuery, boolean fillGroups, ProgressCounter listener) {
+    return getStamps(groups, stampsPerGroup, groupQuery, stampQuery, fillGroups, listener, new Random());
+  }
+
+  /**
+   * Same as {@link #getStamps(int, int, Query, Query, boolean, ProgressCounter)}, with the random decisions
+   * of the queries taken from the given source.
+   */
+  public Stamps getStamps(int groups, int stampsPerGroup, Query<Stamps> groupQuery, Query<Stamp> stampQuery, boolean fillGroups, ProgressCounter listener, Random random) {
+    init(listener);
+    Query<Stamp> originalStampQuery = stampQuery;
+    stampQuery = list -> originalStampQuery.get(list, random);
+    List<Stamps> groupsNow = stampsGroups;
+    // Each group is picked once
+    ExcludingQuery<Stamps> unpicked = new ExcludingQuery<>(groupQuery);
+    unpicked.reset(groupsNow.size());
+    List<Stamps> picked = new ArrayList<>(groups);
+    for (int i = 0; i < groups; i++) {
+      if (unpicked.remaining() == 0) {
+        log.error("Ran out of stamp groups at index " + (i + 1) + ", before could pick " + groups);
+        awaitGroups(picked, listener);
+        return flatten(picked, stampsPerGroup, stampQuery, fillGroups);
+      }
+
+      int index = unpicked.getIndex(groupsNow, random);
+      unpicked.addExclusion(index);
+      picked.add(groupsNow.get(index));
+    }
+    awaitGroups(picked, listener);
+    return flatten(picked, stampsPerGroup, stampQuery, fillGroups);
+  }
+
+  private void awaitGroups(List<Stamps> picked, ProgressCounter listener) {
+    for (int i = 0; i < picked.size(); i++) {
+      Stamps group = picked.get(i);
+      if (!group.isLoaded() && listener != null) {
+        listener.setValue("Loading stamps " + group.getFolder().getName() + " (" + (i + 1) + "/" + picked.size() + ")...");
+      }
+      group.size();
+    }
+    if (listener != null) {
+      listener.clear();
+    }
+  }
+
+  private void init(ProgressCounter listener) {
+    if (!loaded) {
+      if (listener != null) {
+        listener.setValue("Loading stamps...");
+      }
+      loadStamps();
+
+      if (listener != null) {
+        listener.clear();
+      }
+    }
+  }
+
+  private Stamps flatten(List<Stamps> picked, int stampsPerGroup, Query<Stamp> stampQuery, boolean fillGroups) {
+    List<Stamp> flat = new ArrayList<>(picked.size() * stampsPerGroup);
+    for (Stamps group : picked) {
+      addStamps(flat, group.getStamps(), stampsPerGroup, stampQuery, fillGroups);
+    }
+    if (AppProperties.getInstance().isLazyLoading()) {
+      // Loaded while the painting is being set up, rather than by the renderers
+      StampStore.getInstance().prefetch(new LinkedHashSet<>(flat), ioExecutor);
+    }
+    return new Stamps(flat);
+  }
+
+  private void addStamps(List<Stamp> flat, List<Stamp> stamps, int stampsPerGroup, Query<Stamp> stampQuery, boolean fillGroups) {
+    if (!fillGroups) {
+      if (stampsPerGroup >= stamps.size()) {
+        flat.addAll(stamps);
+        return;
+      }
+    }
+    for (int i = 0; i < stampsPerGroup; i++) {
+      flat.add(stampQuery.get(stamps));
+    }
+  }
+
+
+  public void clearCaches() {
+    init(null);
+    // Groups still loading have nothing to clear yet
+    stampsGroups.stream().filter(Stamps::isLoaded).forEach(s -> s.getStamps().forEach(Stamp::clearRenderCache));
+    // Stamps loaded lazily since the start are kept for the next one
+    snapshot.save();
+  }
+}
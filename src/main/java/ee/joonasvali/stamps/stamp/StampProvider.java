@@ -1,18 +1,37 @@
-/*
- * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
- */
-
-package ee.joonasvali.stamps.stamp;
-
-import ee.joonasvali.stamps.query.Query;
-
-import java.util.List;
-
-/**
- * @author Joonas Vali
- */
-public interface StampProvider {
-  Stamp getStamp(Query<Stamp> q);
-  List<Stamp> getStamps();
-  int size();
-}
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps.stamp;
+
+import ee.joonasvali.stamps.query.Query;
+
+import java.util.List;
+
+/**
+ * @author Joonas Vali
+ *
+ * Stamps to paint with. Everything is answered from a {@link StampIndex}, which can be held on to and shared between
+ * threads; a provider whose stamps change hands out a new index rather than changing the one it gave out.
+ */
+public interface StampProvider {
+  /**
+   * @return the stamps as they are now.
+   */
+  StampIndex getIndex();
+
+  default Stamp getStamp(Query<Stamp> q) {
+    return getIndex().getStamp(q);
+  }
+
+  /**
+   * @return the stamps as they are now, an unmodifiable list.
+   */
+  default List<Stamp> getStamps() {
+    return getIndex().getStamps();
+  }
+
+  default int size() {
+    return getIndex().size();
+  }
+}
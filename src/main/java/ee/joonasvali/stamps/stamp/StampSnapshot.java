@@ -0,0 +1,333 @@
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+package ee.joonasvali.stamps.stamp;
+
+import ee.joonasvali.stamps.AlphaMask;
+import ee.joonasvali.stamps.code.ThreadSafe;
+import ee.joonasvali.stamps.properties.AppProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stamp masks as they are after loading, trimmed and converted, kept in a file so the next start doesn't have to
+ * decode the stamp images again.
+ * <p>
+ * The file is memory-mapped when opened, a stamp is copied out of it if its image still has the same path, size and
+ * modification time. Stamps decoded in this run are added by {@link #save()}, which writes a new file with all the
+ * stamps that are still up to date and reads it in place of the old one. Each folder of stamps has its own files.
+ * <p>
+ * Configured by "jartin.stamps.snapshot", the folder to keep the files in or "off".
+ */
+public class StampSnapshot {
+  private static final Logger log = LoggerFactory.getLogger(StampSnapshot.class);
+  private static final int MAGIC = 0x4A534E50;
+  // Bump when the file layout or the way masks are made changes
+  private static final int VERSION = 1;
+  private static final String SUFFIX = ".snapshot";
+  private static volatile StampSnapshot instance;
+
+  private final File directory;
+  // Names of the files of this folder of stamps start with it
+  private final String prefix;
+  // The file read last, replaced as a whole by each save
+  private volatile Contents contents = Contents.EMPTY;
+  // Stamps decoded in this run and not saved yet, by path
+  private final ConcurrentHashMap<String, Entry> decoded = new ConcurrentHashMap<>();
+
+  @ThreadSafe
+  public static StampSnapshot getInstance() {
+    if (instance == null) {
+      synchronized (StampSnapshot.class) {
+        if (instance == null) {
+          AppProperties properties = AppProperties.getInstance();
+          instance = new StampSnapshot(properties.getStampSnapshotDir(), properties.getStampsDir());
+        }
+      }
+    }
+    return instance;
+  }
+
+  /**
+   * @param directory where to keep the files, null to keep nothing.
+   * @param stampsDir the folder of stamps the file is for.
+   */
+  public StampSnapshot(File directory, File stampsDir) {
+    this.directory = directory;
+    this.prefix = "stamps-" + Integer.toHexString(stampsDir.getPath().hashCode());
+    File file = findLatest();
+    if (file != null) {
+      try {
+        contents = open(file);
+        log.info("Stamp snapshot " + file + " has " + contents.entries.size() + " stamps");
+      } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+        log.warn("Ignoring the stamp snapshot " + file + ": " + e.getMessage());
+      }
+    }
+  }
+
+  public boolean isEnabled() {
+    return directory != null;
+  }
+
+  /**
+   * @return the mask of the stamp image, null if the snapshot has no up to date mask of it.
+   */
+  @ThreadSafe
+  public BufferedImage get(File image) {
+    Contents current = contents;
+    Entry entry = current.entries.get(image.getPath());
+    if (entry == null || !entry.isUpToDate(image)) {
+      return null;
+    }
+    BufferedImage mask = new BufferedImage(entry.width, entry.height, BufferedImage.TYPE_BYTE_GRAY);
+    ByteBuffer data = current.mapping.duplicate();
+    data.position(entry.offset);
+    data.get(AlphaMask.getData(mask));
+    return mask;
+  }
+
+  /**
+   * @return size of the mask of the stamp image, null if the snapshot has no up to date mask of it.
+   */
+  @ThreadSafe
+  public Point getSize(File image) {
+    Entry entry = contents.entries.get(image.getPath());
+    if (entry == null || !entry.isUpToDate(image)) {
+      return null;
+    }
+    return new Point(entry.width, entry.height);
+  }
+
+  /**
+   * Remembers the mask decoded from the image, to be stored by the next {@link #save()}.
+   */
+  @ThreadSafe
+  public void put(File image, BufferedImage mask) {
+    if (isEnabled()) {
+      decoded.put(image.getPath(), new Entry(image.length(), image.lastModified(), mask));
+    }
+  }
+
+  /**
+   * Writes a new file if stamps were decoded since the last save, with them and the stamps of the last file. Stamps
+   * whose images have changed or are gone are left out. The new file is read in place of the last one.
+   * <p>
+   * Each save is a file of its own, the file in use stays mapped and can't be replaced on every system. Older files
+   * are deleted once they can be.
+   */
+  public synchronized void save() {
+    if (!isEnabled() || decoded.isEmpty()) {
+      return;
+    }
+    Map<String, Entry> saved = new HashMap<>(decoded);
+    Map<String, Entry> entries = new HashMap<>(saved);
+    Contents current = contents;
+    for (Map.Entry<String, Entry> entry : current.entries.entrySet()) {
+      if (!entries.containsKey(entry.getKey()) && entry.getValue().isUpToDate(new File(entry.getKey()))) {
+        entries.put(entry.getKey(), entry.getValue());
+      }
+    }
+
+    long begin = System.currentTimeMillis();
+    File temp = null;
+    try {
+      if (!directory.isDirectory() && !directory.mkdirs()) {
+        throw new IOException("Can't create folder " + directory);
+      }
+      temp = File.createTempFile("stamps-", ".tmp", directory);
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+        write(out, entries, current.mapping);
+      }
+      File file = newFile(current.file);
+      Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+      temp = null;
+      contents = open(file);
+      // Stamps decoded while this was written are left for the next save
+      saved.forEach(decoded::remove);
+      log.info("Saved " + entries.size() + " stamps to " + file + " in " + (System.currentTimeMillis() - begin) + "ms");
+      deleteOlderThan(file);
+    } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+      log.warn("Unable to save the stamp snapshot in " + directory + ": " + e.getMessage());
+      if (temp != null) {
+        temp.delete();
+      }
+    }
+  }
+
+  /**
+   * @return the file of the last save, null if there is none.
+   */
+  private File findLatest() {
+    File[] files = listFiles();
+    File latest = null;
+    for (File file : files) {
+      if (latest == null || getSequence(file) > getSequence(latest)) {
+        latest = file;
+      }
+    }
+    return latest;
+  }
+
+  private File newFile(File last) {
+    long sequence = last == null ? 0 : getSequence(last) + 1;
+    return new File(directory, prefix + "-" + sequence + SUFFIX);
+  }
+
+  private void deleteOlderThan(File file) {
+    long sequence = getSequence(file);
+    for (File old : listFiles()) {
+      if (getSequence(old) < sequence && !old.delete()) {
+        // Still mapped by this or another process, deleted by a later save
+        log.debug("Unable to delete the old stamp snapshot " + old);
+      }
+    }
+  }
+
+  private File[] listFiles() {
+    if (directory == null) {
+      return new File[0];
+    }
+    File[] files = directory.listFiles((dir, name) -> name.startsWith(prefix + "-") && name.endsWith(SUFFIX) && getSequence(new File(dir, name)) >= 0);
+    return files == null ? new File[0] : files;
+  }
+
+  /**
+   * @return number of the save the file is from, -1 if it's not a snapshot file.
+   */
+  private long getSequence(File file) {
+    String name = file.getName();
+    try {
+      return Long.parseLong(name.substring(prefix.length() + 1, name.length() - SUFFIX.length()));
+    } catch (NumberFormatException | IndexOutOfBoundsException e) {
+      return -1;
+    }
+  }
+
+  private static Contents open(File file) throws IOException {
+    try (RandomAccessFile storage = new RandomAccessFile(file, "r")) {
+      // The mapping stays valid after the channel is closed
+      ByteBuffer buffer = storage.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, storage.length());
+      return new Contents(file, buffer, readIndex(buffer));
+    }
+  }
+
+  private static void write(DataOutputStream out, Map<String, Entry> entries, ByteBuffer mapping) throws IOException {
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeInt(entries.size());
+    byte[] copy = new byte[0];
+    for (Map.Entry<String, Entry> item : entries.entrySet()) {
+      Entry entry = item.getValue();
+      byte[] path = item.getKey().getBytes(StandardCharsets.UTF_8);
+      out.writeInt(path.length);
+      out.write(path);
+      out.writeLong(entry.length);
+      out.writeLong(entry.modified);
+      out.writeInt(entry.width);
+      out.writeInt(entry.height);
+      if (entry.mask != null) {
+        out.write(AlphaMask.getData(entry.mask));
+      } else {
+        int size = entry.width * entry.height;
+        if (copy.length < size) {
+          copy = new byte[size];
+        }
+        ByteBuffer data = mapping.duplicate();
+        data.position(entry.offset);
+        data.get(copy, 0, size);
+        out.write(copy, 0, size);
+      }
+    }
+  }
+
+  private static Map<String, Entry> readIndex(ByteBuffer buffer) {
+    ByteBuffer in = buffer.duplicate();
+    if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+      throw new IllegalArgumentException("not a snapshot of this version");
+    }
+    int count = in.getInt();
+    Map<String, Entry> entries = new HashMap<>(count * 2);
+    for (int i = 0; i < count; i++) {
+      byte[] path = new byte[in.getInt()];
+      in.get(path);
+      long length = in.getLong();
+      long modified = in.getLong();
+      int width = in.getInt();
+      int height = in.getInt();
+      if (width <= 0 || height <= 0 || (long) width * height > in.remaining()) {
+        throw new IllegalArgumentException("truncated at stamp " + i);
+      }
+      entries.put(new String(path, StandardCharsets.UTF_8), new Entry(length, modified, width, height, in.position()));
+      in.position(in.position() + width * height);
+    }
+    return entries;
+  }
+
+  /**
+   * A snapshot file, mapped, with the stamps in it by path.
+   */
+  private static final class Contents {
+    private static final Contents EMPTY = new Contents(null, null, Collections.emptyMap());
+    private final File file;
+    private final ByteBuffer mapping;
+    private final Map<String, Entry> entries;
+
+    private Contents(File file, ByteBuffer mapping, Map<String, Entry> entries) {
+      this.file = file;
+      this.mapping = mapping;
+      this.entries = entries;
+    }
+  }
+
+  private static final class Entry {
+    private final long length;
+    private final long modified;
+    private final int width;
+    private final int height;
+    // Either the mask decoded in this run, or where the mask is in the mapping
+    private final BufferedImage mask;
+    private final int offset;
+
+    private Entry(long length, long modified, BufferedImage mask) {
+      this.length = length;
+      this.modified = modified;
+      this.width = mask.getWidth();
+      this.height = mask.getHeight();
+      this.mask = mask;
+      this.offset = -1;
+    }
+
+    private Entry(long length, long modified, int width, int height, int offset) {
+      this.length = length;
+      this.modified = modified;
+      this.width = width;
+      this.height = height;
+      this.mask = null;
+      this.offset = offset;
+    }
+
+    private boolean isUpToDate(File image) {
+      return image.length() == length && image.lastModified() == modified;
+    }
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+package ee.joonasvali.stamps.stamp;
+
+import ee.joonasvali.stamps.cache.WeightedLruCache;
+import ee.joonasvali.stamps.code.ThreadSafe;
+import ee.joonasvali.stamps.properties.AppProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.util.Collection;
+import java.util.concurrent.Executor;
+
+/**
+ * Stamp masks loaded on demand, for lazy loading. Stamps themselves keep only what's known about them without the
+ * mask, the masks are kept here, limited by the bytes they take, the least recently used ones are dropped first.
+ * <p>
+ * A mask is loaded once however many threads ask for it at the same time. The stamps a painting picked are
+ * {@link #prefetch(Collection, Executor) prefetched} before it starts, so painting doesn't wait on the disk unless the
+ * budget is too small for the stamps of one painting. Then a mask asked for less often than the masks it would push
+ * out isn't kept, so the stamps in steady use stay rather than all of them taking turns being loaded again.
+ * <p>
+ * Configured by "jartin.stamps.budget", in megabytes.
+ */
+public class StampStore {
+  private static final Logger log = LoggerFactory.getLogger(StampStore.class);
+  // Counters per mask for the admission, and the size of a mask the count of masks is guessed from
+  private static final int ADMISSION_COUNTERS_PER_MASK = 8;
+  private static final long TYPICAL_MASK_BYTES = 300 * 300;
+  // A painting picks stamps in the hundreds, they are counted whether they fit in the budget or not
+  private static final int MIN_COUNTED_MASKS = 256;
+  private static volatile StampStore instance;
+
+  private final WeightedLruCache<Long, BufferedImage> cache;
+
+  @ThreadSafe
+  public static StampStore getInstance() {
+    StampStore store = instance;
+    if (store == null) {
+      synchronized (StampStore.class) {
+        store = instance;
+        if (store == null) {
+          store = new StampStore(AppProperties.getInstance().getStampBudget());
+          instance = store;
+        }
+      }
+    }
+    return store;
+  }
+
+  /**
+   * @param budget bytes the loaded masks may take.
+   */
+  public StampStore(long budget) {
+    int masks = (int) Math.min(Math.max(budget / TYPICAL_MASK_BYTES, MIN_COUNTED_MASKS), Integer.MAX_VALUE / ADMISSION_COUNTERS_PER_MASK);
+    this.cache = new WeightedLruCache<>(budget, mask -> (long) mask.getWidth() * mask.getHeight(), masks * ADMISSION_COUNTERS_PER_MASK);
+  }
+
+  /**
+   * @return the mask of the stamp, loaded if it's not in the store.
+   * @throws IllegalStateException if the stamp image can't be loaded.
+   */
+  @ThreadSafe
+  public BufferedImage get(Stamp stamp) {
+    return cache.get(stamp.getId(), id -> stamp.load());
+  }
+
+  /**
+   * Starts loading the masks of the stamps on the executor, unless they are in the store already.
+   */
+  public void prefetch(Collection<Stamp> stamps, Executor executor) {
+    for (Stamp stamp : stamps) {
+      executor.execute(() -> {
+        try {
+          get(stamp);
+        } catch (RuntimeException e) {
+          // Reported again to whoever needs the stamp
+          log.debug("Prefetching a stamp failed", e);
+        }
+      });
+    }
+  }
+
+  /**
+   * @return number of masks loaded into the store, or loaded and not kept.
+   */
+  public long getLoads() {
+    return cache.getMisses();
+  }
+
+  public void clear() {
+    cache.clear();
+  }
+
+  /**
+   * @return size and hit rate of the store.
+   */
+  @Override
+  public String toString() {
+    return cache.toString();
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+package ee.joonasvali.stamps.stamp;
+
+import ee.joonasvali.stamps.execution.ExecutionPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Watches the stamps folder and the stamp groups in it. Changes are handed to the listener once nothing has changed for
+ * {@link #QUIET_MILLIS}, so a stamp pack being copied in is taken in at once, after its files are written.
+ * <p>
+ * The listener gets the files and folders added, changed or removed, or the stamps folder itself if changes were lost.
+ */
+public class StampWatcher implements Closeable {
+  private static final Logger log = LoggerFactory.getLogger(StampWatcher.class);
+  public static final long QUIET_MILLIS = 1000;
+
+  private final Path folder;
+  private final WatchService service;
+  private final Consumer<Set<File>> listener;
+  private ExecutorService executor;
+
+  public StampWatcher(File folder, Consumer<Set<File>> listener) throws IOException {
+    this.folder = folder.toPath();
+    this.listener = listener;
+    this.service = this.folder.getFileSystem().newWatchService();
+    register(this.folder);
+    File[] groups = folder.listFiles(File::isDirectory);
+    if (groups != null) {
+      for (File group : groups) {
+        register(group.toPath());
+      }
+    }
+  }
+
+  /**
+   * Starts watching on an executor of its own from the policy.
+   */
+  public synchronized void start(ExecutionPolicy policy) {
+    if (executor == null) {
+      executor = policy.newSerialExecutor("jartin-stamp-watcher");
+      executor.execute(this::run);
+    }
+  }
+
+  /**
+   * Stops watching, changes not handed to the listener yet are dropped.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    service.close();
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
+  private void register(Path dir) throws IOException {
+    dir.register(service, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+  }
+
+  private void run() {
+    try {
+      while (true) {
+        Set<File> changed = new LinkedHashSet<>();
+        WatchKey key = service.take();
+        do {
+          collect(key, changed);
+          key = service.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS);
+        } while (key != null);
+        try {
+          listener.accept(changed);
+        } catch (RuntimeException e) {
+          log.error("Unable to take in the changed stamps " + changed, e);
+        }
+      }
+    } catch (InterruptedException | ClosedWatchServiceException e) {
+      log.debug("Stopped watching " + folder);
+    }
+  }
+
+  private void collect(WatchKey key, Set<File> changed) {
+    Path dir = (Path) key.watchable();
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind() == OVERFLOW) {
+        changed.add(folder.toFile());
+        continue;
+      }
+      Path path = dir.resolve((Path) event.context());
+      changed.add(path.toFile());
+      if (event.kind() == ENTRY_CREATE && dir.equals(folder) && Files.isDirectory(path)) {
+        // A new group, the files it got before this are taken in with the group
+        try {
+          register(path);
+        } catch (IOException e) {
+          log.warn("Unable to watch " + path + ": " + e.getMessage());
+        }
+      }
+    }
+    key.reset();
+  }
+}
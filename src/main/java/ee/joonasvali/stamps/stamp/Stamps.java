@@ -1,69 +1,150 @@
-/*
- * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
- */
-
-package ee.joonasvali.stamps.stamp;
-
-import ee.joonasvali.stamps.query.Query;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import java.io.File;
-import java.util.ArrayList;
-import java.util.List;
-
-/**
- * @author Joonas Vali
- */
-public class Stamps implements StampProvider {
-  public static final Logger log = LoggerFactory.getLogger(Stamps.class);
-  private final File folder;
-  private volatile ArrayList<Stamp> stamps;
-
-  public Stamps(File folder) {
-    if (!folder.exists() || !folder.isDirectory()) throw new IllegalArgumentException("Folder must be dir");
-    this.folder = folder;
-    loadStamps();
-  }
-
-  public Stamps(List<Stamp> stamps) {
-    this.folder = null;
-    this.stamps = new ArrayList<>(stamps);
-  }
-
-  private void loadStamps() {
-    File[] files = folder.listFiles((dir, name) -> name.toLowerCase().endsWith("png") || name.toLowerCase().endsWith("jpg"));
-    stamps = new ArrayList<>(files.length);
-    for (File file : files) {
-      try {
-        load(file);
-      } catch(IllegalArgumentException e) {
-        log.error("Can't load Stamp from file " + file + " cause: '" + e.getMessage() + "'", e);
-      }
-    }
-  }
-
-  private void load(File file) throws IllegalArgumentException {
-    stamps.add(Stamp.getInstance(file));
-  }
-
-  @Override
-  public Stamp getStamp(Query<Stamp> q) {
-    return q.get(stamps);
-  }
-
-
-  public List<Stamp> getStamps() {
-    return new ArrayList<>(stamps);
-  }
-
-  @Override
-  public int size() {
-    return stamps.size();
-  }
-
-  public void setMetadata(StampGroupMetadata metadata) {
-    stamps.forEach(s -> s.setMetadata(metadata));
-  }
-
-}
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps.stamp;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * @author Joonas Vali
+ */
+public class Stamps implements StampProvider {
+  public static final Logger log = LoggerFactory.getLogger(Stamps.class);
+  private final File folder;
+  private volatile StampIndex index;
+  // Stamps being loaded, in the order of their files, until they are all done
+  private List<FutureTask<Stamp>> pending;
+  private StampGroupMetadata metadata;
+
+  public Stamps(File folder) {
+    this(folder, Runnable::run, null);
+  }
+
+  /**
+   * Starts loading the stamps of the folder on the executor, each stamp as a task of its own. Anything asking for
+   * the stamps waits until they are all loaded, loading the ones not yet started itself.
+   *
+   * @param loaded called once all the stamps are loaded, may be null.
+   */
+  public Stamps(File folder, Executor executor, Consumer<Stamps> loaded) {
+    this(folder, executor, loaded, StampSnapshot.getInstance());
+  }
+
+  /**
+   * Same as {@link #Stamps(File, Executor, Consumer)}, with the masks taken from and kept in the given snapshot.
+   */
+  public Stamps(File folder, Executor executor, Consumer<Stamps> loaded, StampSnapshot snapshot) {
+    if (!folder.exists() || !folder.isDirectory()) throw new IllegalArgumentException("Folder must be dir");
+    this.folder = folder;
+    File[] files = folder.listFiles((dir, name) -> name.toLowerCase().endsWith("png") || name.toLowerCase().endsWith("jpg"));
+    // Same order on every run, so seeded paintings pick the same stamps
+    Arrays.sort(files);
+    pending = new ArrayList<>(files.length);
+    for (File file : files) {
+      pending.add(new FutureTask<>(() -> Stamp.getInstance(file, snapshot)));
+    }
+    AtomicInteger remaining = new AtomicInteger(files.length);
+    if (loaded != null && files.length == 0) {
+      loaded.accept(this);
+    }
+    for (FutureTask<Stamp> task : new ArrayList<>(pending)) {
+      executor.execute(() -> {
+        task.run();
+        if (remaining.decrementAndGet() == 0 && loaded != null) {
+          loaded.accept(this);
+        }
+      });
+    }
+  }
+
+  public Stamps(List<Stamp> stamps) {
+    this.folder = null;
+    this.index = new StampIndex(stamps);
+  }
+
+  /**
+   * @return the folder the stamps are loaded from, null if the group wasn't loaded from a folder.
+   */
+  public File getFolder() {
+    return folder;
+  }
+
+  /**
+   * @return true if the stamps are loaded, so asking for them doesn't block.
+   */
+  public boolean isLoaded() {
+    if (index != null) {
+      return true;
+    }
+    synchronized (this) {
+      return index != null || pending.stream().allMatch(FutureTask::isDone);
+    }
+  }
+
+  /**
+   * @return the stamps, waiting until they are loaded.
+   */
+  @Override
+  public StampIndex getIndex() {
+    StampIndex result = index;
+    if (result != null) {
+      return result;
+    }
+    synchronized (this) {
+      if (index == null) {
+        List<Stamp> loaded = new ArrayList<>(pending.size());
+        boolean interrupted = false;
+        for (FutureTask<Stamp> task : pending) {
+          // Does nothing if the executor got to it already
+          task.run();
+          while (true) {
+            try {
+              loaded.add(task.get());
+              break;
+            } catch (InterruptedException e) {
+              // Stamps load quickly, the group is finished before the interrupt is passed on
+              interrupted = true;
+            } catch (ExecutionException e) {
+              log.error("Can't load Stamp in " + folder + " cause: '" + e.getCause().getMessage() + "'", e.getCause());
+              break;
+            }
+          }
+        }
+        if (interrupted) {
+          Thread.currentThread().interrupt();
+        }
+        if (metadata != null) {
+          loaded.forEach(s -> s.setMetadata(metadata));
+        }
+        pending = null;
+        index = new StampIndex(loaded);
+      }
+      return index;
+    }
+  }
+
+  /**
+   * Sets the metadata of the stamps. If they are loaded, the index is replaced by one with the new rarities, painting
+   * that already has the old one keeps it.
+   */
+  public synchronized void setMetadata(StampGroupMetadata metadata) {
+    this.metadata = metadata;
+    if (index != null) {
+      index.getStamps().forEach(s -> s.setMetadata(metadata));
+      index = new StampIndex(index.getStamps());
+    }
+  }
+
+}
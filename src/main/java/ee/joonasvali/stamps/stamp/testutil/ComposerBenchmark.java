@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+package ee.joonasvali.stamps.stamp.testutil;
+
+import ee.joonasvali.stamps.properties.AppProperties;
+import ee.joonasvali.stamps.stamp.CompositeStampCreationException;
+import ee.joonasvali.stamps.stamp.ImageUtil;
+import ee.joonasvali.stamps.stamp.RandomIntersectionComposerStrategy;
+import ee.joonasvali.stamps.stamp.Stamp;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Times trimming the bundled stamps and making intersection composites of them, with the raster kernels against the
+ * pixel by pixel code they replaced, and checks both give the same images. Run with -Djartin.stamps pointing to
+ * the stamps folder.
+ */
+public class ComposerBenchmark {
+  private static final int ROUNDS = 3;
+  private static final int COMPOSITES = 200;
+
+  public static void main(String[] args) throws IOException, CompositeStampCreationException {
+    List<BufferedImage> images = new ArrayList<>();
+    File[] groups = AppProperties.getInstance().getStampsDir().listFiles(File::isDirectory);
+    Arrays.sort(groups);
+    for (File group : groups) {
+      File[] files = group.listFiles((dir, name) -> name.toLowerCase().endsWith("png") || name.toLowerCase().endsWith("jpg"));
+      Arrays.sort(files);
+      for (File file : files) {
+        images.add(ImageUtil.read(file));
+      }
+    }
+    System.out.println("Stamps: " + images.size());
+
+    for (BufferedImage image : images) {
+      BufferedImage expected = trimPerPixel(image, Color.WHITE);
+      BufferedImage actual = ImageUtil.trim(image, Color.WHITE);
+      if (!isEqual(expected, actual)) {
+        throw new IllegalStateException("Trimmed stamps differ");
+      }
+    }
+    for (int round = 0; round < ROUNDS; round++) {
+      long begin = System.nanoTime();
+      for (BufferedImage image : images) {
+        trimPerPixel(image, Color.WHITE);
+      }
+      long perPixel = System.nanoTime() - begin;
+      begin = System.nanoTime();
+      for (BufferedImage image : images) {
+        ImageUtil.trim(image, Color.WHITE);
+      }
+      long kernels = System.nanoTime() - begin;
+      print("Trim", perPixel, kernels);
+    }
+
+    List<Stamp> stamps = new ArrayList<>(images.size());
+    for (BufferedImage image : images) {
+      stamps.add(new Stamp(ImageUtil.trim(image, Color.WHITE)));
+    }
+    RandomIntersectionComposerStrategy strategy = new RandomIntersectionComposerStrategy(1);
+    for (int round = 0; round < ROUNDS; round++) {
+      Random pairs = new Random(round);
+      long perPixel = 0;
+      long kernels = 0;
+      for (int i = 0; i < COMPOSITES; i++) {
+        Stamp s1 = stamps.get(pairs.nextInt(stamps.size()));
+        Stamp s2 = stamps.get(pairs.nextInt(stamps.size()));
+        long seed = pairs.nextLong();
+        long begin = System.nanoTime();
+        BufferedImage expected = intersectPerPixel(s1, s2, new Random(seed));
+        perPixel += System.nanoTime() - begin;
+        begin = System.nanoTime();
+        BufferedImage actual;
+        try {
+          actual = strategy.create(s1, s2, new Random(seed)).getImg();
+        } catch (CompositeStampCreationException e) {
+          actual = null;
+        }
+        kernels += System.nanoTime() - begin;
+        if (expected != null && actual != null && !isEqual(new Stamp(expected).getImg(), actual)) {
+          throw new IllegalStateException("Composites differ");
+        }
+      }
+      print("Intersection composites", perPixel, kernels);
+    }
+  }
+
+  private static void print(String name, long perPixel, long kernels) {
+    System.out.printf("%s: per pixel %d ms, kernels %d ms, %.1fx%n", name, perPixel / 1000000, kernels / 1000000, (double) perPixel / kernels);
+  }
+
+  private static boolean isEqual(BufferedImage a, BufferedImage b) {
+    if (a.getWidth() != b.getWidth() || a.getHeight() != b.getHeight()) {
+      return false;
+    }
+    int[] pa = a.getRGB(0, 0, a.getWidth(), a.getHeight(), null, 0, a.getWidth());
+    int[] pb = b.getRGB(0, 0, b.getWidth(), b.getHeight(), null, 0, b.getWidth());
+    return Arrays.equals(pa, pb);
+  }
+
+  // The code the kernels replaced, as it was
+
+  private static BufferedImage trimPerPixel(BufferedImage image, Color croppedColor) {
+    int startX = -1, startY = -1, endX = -1, endY = -1;
+    int color = croppedColor.getRGB();
+    for (int x = 0; x < image.getWidth(); x++) {
+      for (int y = 0; y < image.getHeight(); y++) {
+        if (image.getRGB(x, y) != color) {
+          if (startX == -1 || startX > x) {
+            startX = x;
+          }
+          if (startY == -1 || startY > y) {
+            startY = y;
+          }
+          endX = Math.max(x, endX);
+          endY = Math.max(y, endY);
+        }
+      }
+    }
+    if (endX <= startX || endY <= startY) {
+      throw new IllegalArgumentException("Image is empty when trimmed");
+    }
+    BufferedImage img = image.getSubimage(startX, startY, endX - startX, endY - startY);
+    BufferedImage copyOfImage = new BufferedImage(img.getWidth(), img.getHeight(), BufferedImage.TYPE_INT_RGB);
+    Graphics2D g = copyOfImage.createGraphics();
+    g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+    g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+    g.drawImage(img, 0, 0, null);
+    return copyOfImage;
+  }
+
+  /**
+   * @return the composite, null if it's empty.
+   */
+  private static BufferedImage intersectPerPixel(Stamp s1, Stamp s2, Random random) {
+    BufferedImage image1 = s1.getImg();
+    BufferedImage image2 = s2.getImg();
+    int width = Math.max(image1.getWidth(), image2.getWidth());
+    int height = Math.max(image1.getHeight(), image2.getHeight());
+    int maxDimension = (int) Math.sqrt(Math.pow(width, 2) + Math.pow(height, 2));
+
+    BufferedImage image = fillWhite(new BufferedImage(maxDimension, maxDimension, BufferedImage.TYPE_INT_RGB));
+    BufferedImage image1Transformed = fillWhite(new BufferedImage(maxDimension, maxDimension, BufferedImage.TYPE_INT_RGB));
+    BufferedImage image2Transformed = fillWhite(new BufferedImage(maxDimension, maxDimension, BufferedImage.TYPE_INT_RGB));
+    transform(image1, image1Transformed, Math.toRadians(random.nextDouble() * 360), maxDimension, maxDimension);
+    transform(image2, image2Transformed, Math.toRadians(random.nextDouble() * 360), maxDimension, maxDimension);
+
+    int white = Color.WHITE.getRGB();
+    for (int x = 0; x < image.getWidth(); x++) {
+      for (int y = 0; y < image.getHeight(); y++) {
+        int color1 = image1Transformed.getRGB(x, y);
+        int color2 = image2Transformed.getRGB(x, y);
+        if (color1 == white || color2 == white) {
+          continue;
+        }
+        image.setRGB(x, y, Math.max(color1, color2));
+      }
+    }
+    try {
+      return trimPerPixel(image, Color.WHITE);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  private static BufferedImage fillWhite(BufferedImage img) {
+    for (int i = 0; i < img.getWidth(); i++) {
+      for (int j = 0; j < img.getWidth(); j++) {
+        img.setRGB(i, j, Color.WHITE.getRGB());
+      }
+    }
+    return img;
+  }
+
+  private static void transform(BufferedImage image, BufferedImage imageTransformed, double rotation, int totalWidth, int totalHeight) {
+    Graphics2D g = (Graphics2D) imageTransformed.getGraphics();
+    g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+    g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+    AffineTransform transform = new AffineTransform();
+    transform.setToTranslation(totalWidth / 2d - image.getWidth() / 2d, totalHeight / 2d - image.getHeight() / 2d);
+    transform.rotate(rotation, image.getWidth() / 2, image.getHeight() / 2);
+    g.drawImage(image, transform, null);
+    g.dispose();
+  }
+}
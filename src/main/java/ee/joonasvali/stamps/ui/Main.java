@@ -1,149 +1,215 @@
-/*
- * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
- */
-
-package ee.joonasvali.stamps.ui;
-
-import ee.joonasvali.stamps.code.Util;
-import ee.joonasvali.stamps.meta.Metadata;
-import ee.joonasvali.stamps.painting.PaintingControllerImpl;
-import ee.joonasvali.stamps.properties.AppProperties;
-import ee.joonasvali.stamps.query.DefaultBinaryFormulaGenerator;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import javax.imageio.ImageIO;
-import javax.swing.*;
-import java.awt.*;
-import java.awt.event.ActionListener;
-import java.awt.image.BufferedImage;
-import java.io.File;
-import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
-import java.util.function.Consumer;
-
-public class Main {
-  public static final Logger log = LoggerFactory.getLogger(Main.class);
-
-  private volatile JFrame frame;
-  private volatile PaintingUI ui;
-  private volatile AppProperties properties = AppProperties.getInstance();
-
-  public static void main(String[] args) throws InvocationTargetException, InterruptedException {
-    SwingUtilities.invokeAndWait(() -> new Main().run());
-  }
-
-  private void run() {
-
-    frame = new JFrame("(C) " + Metadata.INSTANCE.getName() + " " + Metadata.INSTANCE.getVersion() + " by " + Metadata.INSTANCE.AUTHOR + " " + Metadata.INSTANCE.getYear());
-
-    JPanel panel = new JPanel(new BorderLayout());
-    frame.getContentPane().add(panel);
-
-
-    JProgressBar progressBar = new JProgressBar(SwingConstants.HORIZONTAL, 0, 100);
-    progressBar.setStringPainted(true);
-    ProgressBarUpdateUtility progressUtility = new ProgressBarUpdateUtility(progressBar);
-
-    ui = new PaintingUI(new PaintingControllerImpl(new DefaultBinaryFormulaGenerator(), new DefaultBinaryFormulaGenerator(), new DefaultBinaryFormulaGenerator()), progressUtility);
-    JScrollPane scrollPane = new JScrollPane(ui, ScrollPaneConstants.VERTICAL_SCROLLBAR_AS_NEEDED, ScrollPaneConstants.HORIZONTAL_SCROLLBAR_AS_NEEDED);
-    HandScrollListener scrollListener = new HandScrollListener(ui);
-    scrollPane.getViewport().addMouseMotionListener(scrollListener);
-    scrollPane.getViewport().addMouseListener(scrollListener);
-
-    panel.add(scrollPane, BorderLayout.CENTER);
-    frame.setFocusable(true);
-    frame.setAutoRequestFocus(true);
-
-
-
-    JPanel controlPanel = new JPanel(new FlowLayout());
-    JButton settings = new JButton("Preferences");
-    controlPanel.add(settings);
-    JCheckBox box1 = new JCheckBox("Reuse color", false);
-    JCheckBox box2 = new JCheckBox("Reuse brushes", false);
-    JCheckBox box3 = new JCheckBox("Reuse spine", false);
-
-    box1.addActionListener(getBoxActionListener(box1, ui::setRetainColors));
-    box2.addActionListener(getBoxActionListener(box2, ui::setRetainStamps));
-    box3.addActionListener(getBoxActionListener(box3, ui::setRetainSpine));
-
-    settings.addActionListener(s -> openSettings());
-
-    controlPanel.add(box1);
-    controlPanel.add(new JSeparator(JSeparator.VERTICAL));
-    controlPanel.add(box2);
-    controlPanel.add(new JSeparator(JSeparator.VERTICAL));
-    controlPanel.add(box3);
-
-    JButton generate = new JButton("Generate");
-
-    generate.addActionListener(
-        s -> {
-          if (!ui.isExecuting()) {
-            // On button press:
-            generate.setText("Cancel");
-            ui.generate(() -> {
-              // After generation:
-              Util.assertEDT();
-              ui.commitImage();
-              progressUtility.setValue(0);
-              scrollPane.revalidate();
-              generate.setText("Generate");
-            });
-          } else {
-            ui.cancel(() -> generate.setText("Generate"));
-          }
-        }
-    );
-
-    controlPanel.add(generate);
-    controlPanel.add(progressBar);
-
-    JButton save = new JButton("Save");
-    save.addActionListener(s -> save());
-    controlPanel.add(save);
-
-
-    panel.add(controlPanel, BorderLayout.NORTH);
-    frame.pack();
-    frame.setSize(new Dimension(800, 600));
-    frame.setVisible(true);
-    frame.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
-  }
-
-  private void save() {
-    try {
-      BufferedImage bi = ui.getLastImage();
-      String name = System.currentTimeMillis() + ".png";
-      File outputfile = new File(properties.getOutput() + File.separator + name);
-      ImageIO.write(bi, "png", outputfile);
-      JOptionPane.showMessageDialog(frame, "File saved to " + outputfile.getAbsolutePath());
-    } catch (IOException e) {
-      log.error(e.getMessage(), e);
-    }
-  }
-
-  private void openSettings() {
-    JFrame frame = new JFrame("Preferences");
-    PreferencesPanel panel = new PreferencesPanel(ui.getPrefs(), s -> frame.dispose());
-
-    frame.getContentPane().add(panel);
-    frame.setVisible(true);
-    frame.pack();
-
-  }
-
-  private ActionListener getStampsActionListener(JCheckBox box2) {
-    return s -> ui.setRetainStamps(box2.isSelected());
-  }
-
-  private ActionListener getColorActionListener(JCheckBox box1) {
-    return s -> ui.setRetainColors(box1.isSelected());
-  }
-
-  private ActionListener getBoxActionListener(JCheckBox box, Consumer<Boolean> method) {
-    return s -> method.accept(box.isSelected());
-  }
-
-}
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps.ui;
+
+import ee.joonasvali.stamps.code.Util;
+import ee.joonasvali.stamps.execution.ExecutionPolicy;
+import ee.joonasvali.stamps.meta.Metadata;
+import ee.joonasvali.stamps.painting.PaintingControllerImpl;
+import ee.joonasvali.stamps.png.SaveQueue;
+import ee.joonasvali.stamps.properties.AppProperties;
+import ee.joonasvali.stamps.query.DefaultBinaryFormulaGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionListener;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+public class Main {
+  public static final Logger log = LoggerFactory.getLogger(Main.class);
+  // Images being saved at most, each one holds on to its pixels until saved
+  private static final int SAVE_QUEUE_CAPACITY = 3;
+
+  private volatile JFrame frame;
+  private volatile PaintingUI ui;
+  private volatile AppProperties properties = AppProperties.getInstance();
+  private final SaveQueue saveQueue = new SaveQueue(SAVE_QUEUE_CAPACITY);
+  // Seeds of the paintings no seed was typed for
+  private final Random seeds = new Random();
+
+  public static void main(String[] args) throws InvocationTargetException, InterruptedException {
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> ExecutionPolicy.getInstance().shutdown()));
+    SwingUtilities.invokeAndWait(() -> new Main().run());
+  }
+
+  private void run() {
+
+    frame = new JFrame("(C) " + Metadata.INSTANCE.getName() + " " + Metadata.INSTANCE.getVersion() + " by " + Metadata.INSTANCE.AUTHOR + " " + Metadata.INSTANCE.getYear());
+
+    JPanel panel = new JPanel(new BorderLayout());
+    frame.getContentPane().add(panel);
+
+
+    JProgressBar progressBar = new JProgressBar(SwingConstants.HORIZONTAL, 0, 100);
+    progressBar.setStringPainted(true);
+    ProgressBarUpdateUtility progressUtility = new ProgressBarUpdateUtility(progressBar);
+
+    ui = new PaintingUI(new PaintingControllerImpl(new DefaultBinaryFormulaGenerator(), new DefaultBinaryFormulaGenerator(), new DefaultBinaryFormulaGenerator()), progressUtility);
+    JScrollPane scrollPane = new JScrollPane(ui, ScrollPaneConstants.VERTICAL_SCROLLBAR_AS_NEEDED, ScrollPaneConstants.HORIZONTAL_SCROLLBAR_AS_NEEDED);
+    HandScrollListener scrollListener = new HandScrollListener(ui);
+    scrollPane.getViewport().addMouseMotionListener(scrollListener);
+    scrollPane.getViewport().addMouseListener(scrollListener);
+
+    panel.add(scrollPane, BorderLayout.CENTER);
+    frame.setFocusable(true);
+    frame.setAutoRequestFocus(true);
+
+
+
+    JPanel controlPanel = new JPanel(new FlowLayout());
+    JButton settings = new JButton("Preferences");
+    controlPanel.add(settings);
+    JCheckBox box1 = new JCheckBox("Reuse color", false);
+    JCheckBox box2 = new JCheckBox("Reuse brushes", false);
+    JCheckBox box3 = new JCheckBox("Reuse spine", false);
+
+    box1.addActionListener(getBoxActionListener(box1, ui::setRetainColors));
+    box2.addActionListener(getBoxActionListener(box2, ui::setRetainStamps));
+    box3.addActionListener(getBoxActionListener(box3, ui::setRetainSpine));
+
+    settings.addActionListener(s -> openSettings());
+
+    controlPanel.add(box1);
+    controlPanel.add(new JSeparator(JSeparator.VERTICAL));
+    controlPanel.add(box2);
+    controlPanel.add(new JSeparator(JSeparator.VERTICAL));
+    controlPanel.add(box3);
+
+    JTextField seedField = new JTextField(14);
+    seedField.setToolTipText("Seed of the next painting, the same seed paints the same image again. Empty for a random seed.");
+    JTextField paintedSeed = new JTextField(14);
+    paintedSeed.setEditable(false);
+    paintedSeed.setToolTipText("Seed of the painting shown");
+    controlPanel.add(new JLabel("Seed"));
+    controlPanel.add(seedField);
+
+    JButton generate = new JButton("Generate");
+
+    generate.addActionListener(
+        s -> {
+          if (!ui.isExecuting()) {
+            Long seed = getSeed(seedField);
+            if (seed == null) {
+              return;
+            }
+            // On button press:
+            generate.setText("Cancel");
+            ui.generate(seed, () -> {
+              // After generation:
+              Util.assertEDT();
+              ui.commitImage();
+              paintedSeed.setText(Long.toString(seed));
+              progressUtility.setValue(0);
+              scrollPane.revalidate();
+              generate.setText("Generate");
+            });
+          } else {
+            ui.cancel(() -> generate.setText("Generate"));
+          }
+        }
+    );
+
+    controlPanel.add(generate);
+    controlPanel.add(paintedSeed);
+    controlPanel.add(progressBar);
+
+    JButton save = new JButton("Save");
+    save.addActionListener(s -> save());
+    controlPanel.add(save);
+
+    JButton paintToFile = new JButton("Paint to file");
+    paintToFile.addActionListener(
+        s -> {
+          if (!ui.isExecuting()) {
+            Long seed = getSeed(seedField);
+            if (seed == null) {
+              return;
+            }
+            // Cancelled by the generate button
+            generate.setText("Cancel");
+            File outputfile = new File(properties.getOutput() + File.separator + System.currentTimeMillis() + ".png");
+            ui.generateFile(seed, outputfile, file -> {
+              progressUtility.setValue(0);
+              generate.setText("Generate");
+              file.ifPresent(f -> JOptionPane.showMessageDialog(frame, "File saved to " + f.getAbsolutePath() + ", seed " + seed));
+            });
+          }
+        }
+    );
+    controlPanel.add(paintToFile);
+
+
+    panel.add(controlPanel, BorderLayout.NORTH);
+    frame.pack();
+    frame.setSize(new Dimension(800, 600));
+    frame.setVisible(true);
+    frame.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
+  }
+
+  private void save() {
+    BufferedImage bi = ui.getLastImage();
+    String name = System.currentTimeMillis() + ".png";
+    File outputfile = new File(properties.getOutput() + File.separator + name);
+    CompletableFuture<File> saved = saveQueue.offer(bi, outputfile);
+    if (saved == null) {
+      JOptionPane.showMessageDialog(frame, "Still saving the previous images, try again in a moment.");
+      return;
+    }
+    saved.whenComplete((file, e) -> SwingUtilities.invokeLater(() -> {
+      if (e == null) {
+        JOptionPane.showMessageDialog(frame, "File saved to " + file.getAbsolutePath());
+      } else {
+        log.error(e.getMessage(), e);
+        JOptionPane.showMessageDialog(frame, "Unable to save " + outputfile.getAbsolutePath() + ": " + e.getMessage(), "Save failed", JOptionPane.ERROR_MESSAGE);
+      }
+    }));
+  }
+
+  /**
+   * @return the seed typed in the field, a random one if the field is empty, null if it's not a number.
+   */
+  private Long getSeed(JTextField field) {
+    String text = field.getText().trim();
+    if (text.isEmpty()) {
+      return seeds.nextLong();
+    }
+    try {
+      return Long.parseLong(text);
+    } catch (NumberFormatException e) {
+      JOptionPane.showMessageDialog(frame, "Seed must be a whole number, or empty for a random seed: " + text, "Invalid seed", JOptionPane.ERROR_MESSAGE);
+      return null;
+    }
+  }
+
+  private void openSettings() {
+    JFrame frame = new JFrame("Preferences");
+    PreferencesPanel panel = new PreferencesPanel(ui.getPrefs(), s -> frame.dispose());
+
+    frame.getContentPane().add(panel);
+    frame.setVisible(true);
+    frame.pack();
+
+  }
+
+  private ActionListener getStampsActionListener(JCheckBox box2) {
+    return s -> ui.setRetainStamps(box2.isSelected());
+  }
+
+  private ActionListener getColorActionListener(JCheckBox box1) {
+    return s -> ui.setRetainColors(box1.isSelected());
+  }
+
+  private ActionListener getBoxActionListener(JCheckBox box, Consumer<Boolean> method) {
+    return s -> method.accept(box.isSelected());
+  }
+
+}
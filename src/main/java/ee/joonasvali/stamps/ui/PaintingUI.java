@@ -1,144 +1,294 @@
-/*
- * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
- */
-
-package ee.joonasvali.stamps.ui;
-
-import ee.joonasvali.stamps.code.Util;
-import ee.joonasvali.stamps.meta.Metadata;
-import ee.joonasvali.stamps.painting.PaintingController;
-import ee.joonasvali.stamps.properties.AppProperties;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import javax.swing.*;
-import java.awt.*;
-import java.awt.image.BufferedImage;
-import java.util.Optional;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-
-/**
- * @author Joonas Vali
- */
-public class PaintingUI extends JPanel {
-
-  public static final int DATA_MARGIN_FROM_EDGE = 50;
-  public static Logger log = LoggerFactory.getLogger(PaintingUI.class);
-
-  private final ExecutorService generalGeneratorExecutor = Executors.newSingleThreadExecutor();
-  private final ProgressListener progressListener;
-  private final PaintingController controller;
-  private volatile BufferedImage lastImage;
-  private volatile Future executingTask;
-  private volatile boolean isEmptyImage = true;
-
-  public PaintingUI(PaintingController controller, ProgressListener listener) {
-    this.progressListener = listener;
-    this.controller = controller;
-    initEmpty();
-    this.add(new JLabel(new ImageIcon(lastImage)));
-  }
-
-
-
-  private void initEmpty() {
-    log.debug("Start initializing PaintingUI");
-    lastImage = new BufferedImage(getPrefs().getWidth(), getPrefs().getHeight(), BufferedImage.TYPE_INT_RGB);
-    Graphics2D g = (Graphics2D) lastImage.getGraphics();
-    g.setColor(Color.LIGHT_GRAY);
-    int max = (int) (Runtime.getRuntime().maxMemory() / (1024 * 1024));
-    String rating = "OK";
-    if (max < 800) {
-      rating = "low";
-    } else if (max < 1000) {
-      rating = "could use more";
-    }
-
-    Increaser inc = new Increaser(35, 15);
-    int processors = Runtime.getRuntime().availableProcessors();
-    g.drawString(Metadata.INSTANCE.getName() + " " + Metadata.INSTANCE.getVersion(), DATA_MARGIN_FROM_EDGE, inc.getNext());
-    g.drawString("Image size set to " + getPrefs().getWidth() + " : " + getPrefs().getHeight(), DATA_MARGIN_FROM_EDGE, inc.getNext());
-    g.drawString("Total memory available to Java VM: " + max + " MB " + "(" + rating + ")", DATA_MARGIN_FROM_EDGE, inc.getNext());
-    g.drawString("OS Architecture: " + System.getProperty("os.arch"), DATA_MARGIN_FROM_EDGE, inc.getNext());
-    g.drawString("JVM Bits: " + System.getProperty("sun.arch.data.model"), DATA_MARGIN_FROM_EDGE, inc.getNext());
-
-
-    g.drawString("Number of processors available to Java VM: " + processors, DATA_MARGIN_FROM_EDGE, inc.getNext());
-    if(AppProperties.getInstance().isLazyLoading()) {
-      g.drawString("Using lazy loading for stamps (Slower but conserves memory).", DATA_MARGIN_FROM_EDGE, inc.getNext());
-    }
-    g.drawString("Press \"Generate\" to generate your first image.", DATA_MARGIN_FROM_EDGE, inc.getNext());
-    log.debug("Stop initializing PaintingUI");
-  }
-
-  public BufferedImage getLastImage() {
-    return lastImage;
-  }
-
-  public void setRetainColors(boolean retainColors) {
-    controller.setRetainColors(retainColors);
-  }
-
-  public void setRetainStamps(boolean retainStamps) {
-    controller.setRetainStamps(retainStamps);
-  }
-
-  public void setRetainSpine(boolean retainSpine) {
-    controller.setRetainSpine(retainSpine);
-  }
-
-  public void generate(final Runnable after) {
-    executingTask = generalGeneratorExecutor.submit(() -> {
-      if (!isEmptyImage) {
-        controller.clearCaches();
-      }
-      Optional<BufferedImage> image = controller.generateImage(progressListener);
-      if (image.isPresent()) {
-        lastImage = image.get();
-        isEmptyImage = false;
-      }
-      SwingUtilities.invokeLater(after);
-      executingTask = null;
-
-    });
-  }
-
-  public void commitImage() {
-    Util.assertEDT();
-    PaintingUI.this.removeAll();
-    PaintingUI.this.add(new JLabel(new ImageIcon(lastImage)));
-  }
-
-  public Preferences getPrefs() {
-    return controller.getPrefs();
-  }
-
-  public boolean isExecuting() {
-    return executingTask != null;
-  }
-
-  public void cancel(final Runnable after) {
-    Future task = executingTask;
-    if (task != null) {
-      task.cancel(true);
-      after.run();
-    }
-  }
-
-  private class Increaser {
-    private int count;
-    private int step;
-
-    private Increaser(int initialCount, int step) {
-      this.count = initialCount;
-      this.step = step;
-    }
-
-    public int getNext() {
-      count += step;
-      return count;
-    }
-  }
-}
+/*
+ * Copyright (c) 2015, Jartin. All rights reserved. This application is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser General Public License as published by the Free Software Foundation; This application is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details. Do not remove this header.
+ */
+
+package ee.joonasvali.stamps.ui;
+
+import ee.joonasvali.stamps.code.Util;
+import ee.joonasvali.stamps.execution.ExecutionPolicy;
+import ee.joonasvali.stamps.meta.Metadata;
+import ee.joonasvali.stamps.painting.PaintingController;
+import ee.joonasvali.stamps.painting.PreviewListener;
+import ee.joonasvali.stamps.properties.AppProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * @author Joonas Vali
+ */
+public class PaintingUI extends JPanel {
+
+  public static final int DATA_MARGIN_FROM_EDGE = 50;
+  public static Logger log = LoggerFactory.getLogger(PaintingUI.class);
+
+  private final ExecutorService generalGeneratorExecutor = ExecutionPolicy.getInstance().newSerialExecutor("jartin-generator");
+  private final ProgressListener progressListener;
+  private final PaintingController controller;
+  private volatile BufferedImage lastImage;
+  private volatile Future executingTask;
+  private volatile Preview preview;
+
+  public PaintingUI(PaintingController controller, ProgressListener listener) {
+    this.progressListener = listener;
+    this.controller = controller;
+    initEmpty();
+    this.add(new JLabel(new ImageIcon(lastImage)));
+  }
+
+
+
+  private void initEmpty() {
+    log.debug("Start initializing PaintingUI");
+    lastImage = new BufferedImage(getPrefs().getWidth(), getPrefs().getHeight(), BufferedImage.TYPE_INT_RGB);
+    Graphics2D g = (Graphics2D) lastImage.getGraphics();
+    g.setColor(Color.LIGHT_GRAY);
+    int max = (int) (Runtime.getRuntime().maxMemory() / (1024 * 1024));
+    String rating = "OK";
+    if (max < 800) {
+      rating = "low";
+    } else if (max < 1000) {
+      rating = "could use more";
+    }
+
+    Increaser inc = new Increaser(35, 15);
+    int processors = Runtime.getRuntime().availableProcessors();
+    ExecutionPolicy policy = ExecutionPolicy.getInstance();
+    g.drawString(Metadata.INSTANCE.getName() + " " + Metadata.INSTANCE.getVersion(), DATA_MARGIN_FROM_EDGE, inc.getNext());
+    g.drawString("Image size set to " + getPrefs().getWidth() + " : " + getPrefs().getHeight(), DATA_MARGIN_FROM_EDGE, inc.getNext());
+    g.drawString("Total memory available to Java VM: " + max + " MB " + "(" + rating + ")", DATA_MARGIN_FROM_EDGE, inc.getNext());
+    g.drawString("OS Architecture: " + System.getProperty("os.arch"), DATA_MARGIN_FROM_EDGE, inc.getNext());
+    g.drawString("JVM Bits: " + System.getProperty("sun.arch.data.model"), DATA_MARGIN_FROM_EDGE, inc.getNext());
+
+
+    g.drawString("Number of processors available to Java VM: " + processors, DATA_MARGIN_FROM_EDGE, inc.getNext());
+    g.drawString("Rendering threads: " + policy.getParallelism() + " (" + policy.getMode() + ")", DATA_MARGIN_FROM_EDGE, inc.getNext());
+    if(AppProperties.getInstance().isLazyLoading()) {
+      g.drawString("Using lazy loading for stamps (Slower but conserves memory).", DATA_MARGIN_FROM_EDGE, inc.getNext());
+    }
+    g.drawString("Press \"Generate\" to generate your first image.", DATA_MARGIN_FROM_EDGE, inc.getNext());
+    log.debug("Stop initializing PaintingUI");
+  }
+
+  public BufferedImage getLastImage() {
+    return lastImage;
+  }
+
+  public void setRetainColors(boolean retainColors) {
+    controller.setRetainColors(retainColors);
+  }
+
+  public void setRetainStamps(boolean retainStamps) {
+    controller.setRetainStamps(retainStamps);
+  }
+
+  public void setRetainSpine(boolean retainSpine) {
+    controller.setRetainSpine(retainSpine);
+  }
+
+  /**
+   * @param seed every random decision of the painting is derived from it.
+   */
+  public void generate(long seed, final Runnable after) {
+    executingTask = generalGeneratorExecutor.submit(() -> {
+      Preview preview = new Preview();
+      this.preview = preview;
+      controller.setPreviewListener(preview);
+      Optional<BufferedImage> image = controller.generateImage(progressListener, seed);
+      if (image.isPresent()) {
+        lastImage = image.get();
+      }
+      SwingUtilities.invokeLater(after);
+      executingTask = null;
+
+    });
+  }
+
+  /**
+   * Paints a new image straight into a file without showing it, so it can be bigger than what fits the heap.
+   *
+   * @param seed every random decision of the painting is derived from it.
+   * @param after called on the EDT with the file, or empty if cancelled or failed.
+   */
+  public void generateFile(long seed, File file, final Consumer<Optional<File>> after) {
+    executingTask = generalGeneratorExecutor.submit(() -> {
+      Optional<File> result;
+      try {
+        result = controller.generateImageFile(progressListener, seed, file);
+      } catch (IOException e) {
+        log.error("Unable to paint to " + file, e);
+        result = Optional.empty();
+      }
+      Optional<File> painted = result;
+      SwingUtilities.invokeLater(() -> after.accept(painted));
+      executingTask = null;
+    });
+  }
+
+  public void commitImage() {
+    Util.assertEDT();
+    Preview preview = this.preview;
+    if (preview != null) {
+      preview.close();
+      this.preview = null;
+    }
+    PaintingUI.this.removeAll();
+    PaintingUI.this.add(new JLabel(new ImageIcon(lastImage)));
+  }
+
+  public Preferences getPrefs() {
+    return controller.getPrefs();
+  }
+
+  public boolean isExecuting() {
+    return executingTask != null;
+  }
+
+  public void cancel(final Runnable after) {
+    Future task = executingTask;
+    if (task != null) {
+      task.cancel(true);
+      after.run();
+    }
+  }
+
+  /**
+   * Shows the painting in progress. Updates from the painting thread are merged while one is waiting for the EDT, so
+   * the EDT never falls behind and the painting thread never waits for it. Each changed region is painted on its own,
+   * projections scattered over a big canvas don't repaint everything between them.
+   */
+  private class Preview implements PreviewListener {
+    // Regions waiting for the EDT before they are merged into one
+    private static final int MAX_PENDING_REGIONS = 256;
+    private final Object lock = new Object();
+    // Guarded by lock
+    private Icon pendingIcon;
+    // Null to paint the icon whole
+    private List<Rectangle> pendingDirty;
+    private boolean queued;
+    // Painting thread only
+    private ImageIcon canvasIcon;
+    // EDT only
+    private JLabel label;
+    private boolean closed;
+
+    @Override
+    public void draft(BufferedImage draft, double scale) {
+      int width = (int) Math.round(draft.getWidth() / scale);
+      int height = (int) Math.round(draft.getHeight() / scale);
+      post(new ImageIcon(draft) {
+        @Override
+        public int getIconWidth() {
+          return width;
+        }
+
+        @Override
+        public int getIconHeight() {
+          return height;
+        }
+
+        @Override
+        public synchronized void paintIcon(Component c, Graphics g, int x, int y) {
+          g.drawImage(draft, x, y, width, height, null);
+        }
+      }, null);
+    }
+
+    @Override
+    public void update(BufferedImage canvas, List<Rectangle> dirty) {
+      if (canvasIcon == null || canvasIcon.getImage() != canvas) {
+        canvasIcon = new ImageIcon(canvas);
+      }
+      post(canvasIcon, dirty);
+    }
+
+    private void post(Icon icon, List<Rectangle> dirty) {
+      synchronized (lock) {
+        if (icon != pendingIcon) {
+          // A new icon gets painted whole
+          pendingIcon = icon;
+          pendingDirty = null;
+        } else if (dirty != null) {
+          if (pendingDirty == null) {
+            pendingDirty = new ArrayList<>(dirty);
+          } else {
+            pendingDirty.addAll(dirty);
+          }
+          if (pendingDirty.size() > MAX_PENDING_REGIONS) {
+            // The EDT is falling behind, it catches up with one region
+            Rectangle union = new Rectangle(pendingDirty.get(0));
+            pendingDirty.forEach(union::add);
+            pendingDirty = new ArrayList<>(Collections.singletonList(union));
+          }
+        }
+        if (queued) {
+          return;
+        }
+        queued = true;
+      }
+      SwingUtilities.invokeLater(this::show);
+    }
+
+    private void show() {
+      Icon icon;
+      List<Rectangle> dirty;
+      synchronized (lock) {
+        icon = pendingIcon;
+        dirty = pendingDirty;
+        pendingDirty = null;
+        queued = false;
+      }
+      if (closed) {
+        return;
+      }
+      if (label == null) {
+        label = new JLabel(icon);
+        PaintingUI.this.removeAll();
+        PaintingUI.this.add(label);
+        PaintingUI.this.revalidate();
+        PaintingUI.this.repaint();
+      } else if (label.getIcon() != icon) {
+        label.setIcon(icon);
+      } else if (dirty != null) {
+        // The icon is centered in the label
+        int offsetX = (label.getWidth() - icon.getIconWidth()) / 2;
+        int offsetY = (label.getHeight() - icon.getIconHeight()) / 2;
+        // Painted right away, the repaint manager would merge the regions into one
+        for (Rectangle region : dirty) {
+          label.paintImmediately(region.x + offsetX, region.y + offsetY, region.width, region.height);
+        }
+      }
+    }
+
+    private void close() {
+      closed = true;
+    }
+  }
+
+  private class Increaser {
+    private int count;
+    private int step;
+
+    private Increaser(int initialCount, int step) {
+      this.count = initialCount;
+      this.step = step;
+    }
+
+    public int getNext() {
+      count += step;
+      return count;
+    }
+  }
+}
@@ -0,0 +1,65 @@
+package ee.joonasvali.stamps.tests;
+
+import ee.joonasvali.stamps.query.AliasTable;
+import ee.joonasvali.stamps.query.BinaryQuery;
+import ee.joonasvali.stamps.query.BinaryValue;
+import ee.joonasvali.stamps.query.WeightedQuery;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class AliasTableTest {
+  private static final int PICKS = 200000;
+
+  @Test
+  public void testPicksInProportionToWeight() {
+    List<Double> weights = Arrays.asList(1d, 0.5, 0.25, 0d, 0.25, 3d);
+    AliasTable<Double> table = new AliasTable<>(weights, Double::doubleValue);
+    int[] counts = new int[weights.size()];
+    Random random = new Random(11);
+    for (int i = 0; i < PICKS; i++) {
+      // The weights repeat, count picks by identity
+      Double picked = table.get(random);
+      for (int j = 0; j < weights.size(); j++) {
+        if (weights.get(j) == picked) {
+          counts[j]++;
+          break;
+        }
+      }
+    }
+    Assert.assertEquals(0, counts[3]);
+    for (int j = 0; j < weights.size(); j++) {
+      double expected = PICKS * weights.get(j) / 5d;
+      Assert.assertEquals("Picks of " + j, expected, counts[j], PICKS * 0.01);
+    }
+  }
+
+  @Test
+  public void testPicksEvenlyWithoutWeights() {
+    AliasTable<Integer> table = new AliasTable<>(Arrays.asList(1, 2, 3, 4), i -> 0);
+    int[] counts = new int[5];
+    Random random = new Random(12);
+    for (int i = 0; i < PICKS; i++) {
+      counts[table.get(random)]++;
+    }
+    for (int j = 1; j <= 4; j++) {
+      Assert.assertEquals(PICKS / 4d, counts[j], PICKS * 0.01);
+    }
+  }
+
+  @Test
+  public void testWeightedQueryStaysInRegion() {
+    List<Integer> list = Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+    BinaryQuery<Integer> q = new BinaryQuery<>(0.3); // Divide to [1, 2, 3] and [4, ...]
+    WeightedQuery<Integer> weighted = new WeightedQuery<>(i -> i == 2 ? 0 : 1);
+    Random random = new Random(13);
+    for (int i = 0; i < 1000; i++) {
+      int zero = q.get(list, BinaryValue.ZERO, weighted, random);
+      Assert.assertTrue(zero == 1 || zero == 3);
+      Assert.assertTrue(q.get(list, BinaryValue.ONE, weighted, random) >= 4);
+    }
+  }
+}
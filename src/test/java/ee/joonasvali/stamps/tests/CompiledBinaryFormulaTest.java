@@ -0,0 +1,57 @@
+package ee.joonasvali.stamps.tests;
+
+import ee.joonasvali.stamps.query.BinaryFormula;
+import ee.joonasvali.stamps.query.CompiledBinaryFormula;
+import ee.joonasvali.stamps.query.ReversingCompoundBinaryFormula;
+import ee.joonasvali.stamps.query.ThresholdBinaryFormula;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class CompiledBinaryFormulaTest {
+
+  @Test
+  public void testCompiledMatchesSource() {
+    Random random = new Random(3);
+    for (int round = 0; round < 20; round++) {
+      // Same shape of formula as DefaultBinaryFormulaGenerator, nested the same way as the painting controller does
+      BinaryFormula[] waves = new BinaryFormula[random.nextInt(3) + 1];
+      for (int i = 0; i < waves.length; i++) {
+        double wavelength = random.nextDouble() * 2 + 1;
+        double offset = random.nextDouble() * Math.PI;
+        int slope = random.nextInt(200);
+        int n = random.nextInt(300);
+        waves[i] = new ThresholdBinaryFormula(x -> Math.sin(Math.toRadians(x / wavelength) + offset) * slope + n);
+      }
+      BinaryFormula source = new ReversingCompoundBinaryFormula(new ReversingCompoundBinaryFormula(waves));
+      BinaryFormula compiled = CompiledBinaryFormula.compile(source, -50, 400);
+
+      for (int x = -100; x < 450; x += 3) {
+        for (int y = -50; y < 600; y++) {
+          Assert.assertEquals("Value at " + x + ":" + y, source.get(x, y), compiled.get(x, y));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testNaNThresholdHasNoCrossings() {
+    // DefaultBinaryFormulaGenerator divides by a wavelength of 0 on narrow canvases
+    double wavelength = 0;
+    BinaryFormula source = new ThresholdBinaryFormula(x -> Math.sin(Math.toRadians(x / wavelength)) * 100);
+    BinaryFormula compiled = CompiledBinaryFormula.compile(source, -10, 10);
+    Assert.assertEquals(0, compiled.getCrossings(0).length);
+    for (int x = -10; x < 10; x++) {
+      for (int y = -50; y < 50; y++) {
+        Assert.assertEquals("Value at " + x + ":" + y, source.get(x, y), compiled.get(x, y));
+      }
+    }
+  }
+
+  @Test
+  public void testFormulaWithoutCrossingsIsNotCompiled() {
+    BinaryFormula formula = (x, y) -> null;
+    Assert.assertSame(formula, CompiledBinaryFormula.compile(formula, 0, 100));
+  }
+}
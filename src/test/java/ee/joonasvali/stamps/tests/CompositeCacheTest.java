@@ -0,0 +1,51 @@
+package ee.joonasvali.stamps.tests;
+
+import ee.joonasvali.stamps.stamp.CompositeCache;
+import ee.joonasvali.stamps.stamp.NumberedRandomComposerStrategy;
+import ee.joonasvali.stamps.stamp.RandomIntersectionComposerStrategy;
+import ee.joonasvali.stamps.stamp.RandomMergeComposerStrategy;
+import ee.joonasvali.stamps.stamp.Stamp;
+import ee.joonasvali.stamps.stamp.Stamps;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class CompositeCacheTest {
+
+  @Test
+  public void testCachedCompositesMatchFreshOnes() {
+    Random random = new Random(17);
+    List<Stamp> sources = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      sources.add(new Stamp(ImageFixtures.createStamp(random, 30 + i * 7, 50 - i * 5)));
+    }
+    Stamps stamps = new Stamps(sources);
+
+    for (NumberedRandomComposerStrategy strategy : new NumberedRandomComposerStrategy[]{new RandomIntersectionComposerStrategy(12), new RandomMergeComposerStrategy(12)}) {
+      CompositeCache warm = new CompositeCache(64 << 20);
+      List<Stamp> first = strategy.compose(stamps, new Random(5), warm).getStamps();
+      List<Stamp> cached = strategy.compose(stamps, new Random(5), warm).getStamps();
+      List<Stamp> fresh = strategy.compose(stamps, new Random(5), new CompositeCache(0)).getStamps();
+
+      // The second painting gets the very same composites from the cache
+      Assert.assertEquals(first, cached);
+      Assert.assertFalse(fresh.isEmpty());
+      Assert.assertEquals(fresh.size(), cached.size());
+      for (int i = 0; i < fresh.size(); i++) {
+        assertSameImage(fresh.get(i).getImg(), cached.get(i).getImg());
+      }
+    }
+  }
+
+  private static void assertSameImage(BufferedImage expected, BufferedImage actual) {
+    Assert.assertEquals(expected.getWidth(), actual.getWidth());
+    Assert.assertEquals(expected.getHeight(), actual.getHeight());
+    int width = expected.getWidth();
+    int height = expected.getHeight();
+    Assert.assertArrayEquals(expected.getRGB(0, 0, width, height, null, 0, width), actual.getRGB(0, 0, width, height, null, 0, width));
+  }
+}
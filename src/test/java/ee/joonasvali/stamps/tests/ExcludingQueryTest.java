@@ -0,0 +1,102 @@
+package ee.joonasvali.stamps.tests;
+
+import ee.joonasvali.stamps.query.ExcludingQuery;
+import ee.joonasvali.stamps.query.ExclusionSet;
+import ee.joonasvali.stamps.query.Query;
+import ee.joonasvali.stamps.query.RandomQuery;
+import ee.joonasvali.stamps.query.WeightedQuery;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class ExcludingQueryTest {
+
+  @Test
+  public void testRankAndSelectMatchTheRemainingPositions() {
+    Random random = new Random(21);
+    ExclusionSet set = new ExclusionSet(0);
+    for (int size : new int[]{1, 63, 64, 65, 200, 130}) {
+      set.reset(size);
+      List<Integer> remaining = new ArrayList<>();
+      for (int position = 0; position < size; position++) {
+        if (random.nextInt(3) == 0) {
+          Assert.assertTrue(set.exclude(position));
+          Assert.assertFalse(set.exclude(position));
+        } else {
+          remaining.add(position);
+        }
+      }
+      Assert.assertEquals(remaining.size(), set.remaining());
+      for (int rank = 0; rank < remaining.size(); rank++) {
+        int position = remaining.get(rank);
+        Assert.assertEquals(position, set.select(rank));
+        Assert.assertEquals(rank, set.rank(position));
+        Assert.assertFalse(set.isExcluded(position));
+      }
+      Assert.assertEquals(remaining.size(), set.rank(size));
+    }
+  }
+
+  @Test
+  public void testSameSeedPicksTheSame() {
+    List<Integer> list = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      list.add(i);
+    }
+    Assert.assertEquals(pick(new RandomQuery<>(), list, 3), pick(new RandomQuery<>(), list, 3));
+    Assert.assertEquals(pick(new WeightedQuery<>(Integer::doubleValue), list, 3), pick(new WeightedQuery<>(Integer::doubleValue), list, 3));
+    Assert.assertNotEquals(pick(new RandomQuery<>(), list, 3), pick(new RandomQuery<>(), list, 4));
+  }
+
+  @Test
+  public void testPicksOnlyCandidatesLeft() {
+    List<String> list = Arrays.asList("a", "b", "c", "d", "e");
+    ExcludingQuery<String> random = new ExcludingQuery<>(new RandomQuery<>());
+    ExcludingQuery<String> last = new ExcludingQuery<>(candidates -> candidates.get(candidates.size() - 1));
+    for (ExcludingQuery<String> query : Arrays.asList(random, last)) {
+      query.reset(list.size());
+      query.addExclusion(1);
+      query.addExclusion(4);
+      Random r = new Random(22);
+      for (int i = 0; i < 100; i++) {
+        int index = query.getIndex(list, r);
+        Assert.assertTrue(index == 0 || index == 2 || index == 3);
+        Assert.assertNotEquals("b", query.get(list, r));
+      }
+    }
+    Assert.assertEquals(3, last.getIndex(list, new Random(23)));
+  }
+
+  @Test
+  public void testFallsBackWhenAllAreExcluded() {
+    List<String> list = Arrays.asList("a", "b");
+    ExcludingQuery<String> query = new ExcludingQuery<>(new RandomQuery<>());
+    query.reset(list.size());
+    query.addExclusion(0);
+    query.addExclusion(1);
+    Assert.assertEquals(0, query.remaining());
+    Assert.assertTrue(list.contains(query.get(list, new Random(24))));
+  }
+
+  /**
+   * @return elements picked one by one, each excluded once picked, with decisions taken from the seed.
+   */
+  private static List<Integer> pick(Query<Integer> query, List<Integer> list, long seed) {
+    Random random = new Random(seed);
+    ExcludingQuery<Integer> excluding = new ExcludingQuery<>(query);
+    excluding.reset(list.size());
+    List<Integer> picked = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      int position = excluding.getIndex(list, random);
+      excluding.addExclusion(position);
+      picked.add(list.get(position));
+      // Picks from what is left as well, not just positions
+      picked.add(excluding.get(list, random));
+    }
+    return picked;
+  }
+}
@@ -0,0 +1,89 @@
+package ee.joonasvali.stamps.tests;
+
+import ee.joonasvali.stamps.DefaultProjection;
+import org.junit.Assert;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * Images, projections and pixel comparisons shared by the tests that paint.
+ */
+final class ImageFixtures {
+  static final int WIDTH = 700;
+  static final int HEIGHT = 500;
+
+  private ImageFixtures() {
+  }
+
+  /**
+   * @return stamp of gray noise.
+   */
+  static BufferedImage createStamp(Random random, int width, int height) {
+    BufferedImage stamp = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        int gray = random.nextInt(256);
+        stamp.setRGB(x, y, new Color(gray, gray, gray).getRGB());
+      }
+    }
+    return stamp;
+  }
+
+  /**
+   * @return dark gray canvas of {@link #WIDTH} x {@link #HEIGHT}.
+   */
+  static BufferedImage createCanvas() {
+    BufferedImage canvas = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+    Graphics2D g = canvas.createGraphics();
+    g.setColor(Color.DARK_GRAY);
+    g.fillRect(0, 0, WIDTH, HEIGHT);
+    g.dispose();
+    return canvas;
+  }
+
+  /**
+   * Places the projections all at the same spot somewhere on the canvas of {@link #createCanvas()}, partly off it at
+   * times.
+   */
+  static void place(Random random, DefaultProjection... projections) {
+    int x = random.nextInt(WIDTH + 150) - 150;
+    int y = random.nextInt(HEIGHT + 150) - 150;
+    double scale = Math.max(random.nextDouble(), 0.3);
+    int rotation = random.nextInt(360);
+    for (DefaultProjection projection : projections) {
+      projection.setX(x);
+      projection.setY(y);
+      projection.setScale(scale);
+      projection.setRotation(rotation);
+    }
+  }
+
+  /**
+   * Fails if any pixel differs by more than the maximum in any channel.
+   *
+   * @return number of pixels that differ by more than the small difference in any channel.
+   */
+  static int countDifferentPixels(BufferedImage expected, BufferedImage actual, int maxDifference, int smallDifference) {
+    int different = 0;
+    for (int y = 0; y < actual.getHeight(); y++) {
+      for (int x = 0; x < actual.getWidth(); x++) {
+        int difference = maxChannelDifference(expected.getRGB(x, y), actual.getRGB(x, y));
+        Assert.assertTrue("Pixel at " + x + ":" + y + " differs by " + difference, difference <= maxDifference);
+        if (difference > smallDifference) {
+          different++;
+        }
+      }
+    }
+    return different;
+  }
+
+  static int maxChannelDifference(int expected, int actual) {
+    int max = 0;
+    for (int shift = 0; shift < 32; shift += 8) {
+      max = Math.max(max, Math.abs(((expected >> shift) & 0xFF) - ((actual >> shift) & 0xFF)));
+    }
+    return max;
+  }
+}
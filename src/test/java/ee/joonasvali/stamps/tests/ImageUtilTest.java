@@ -0,0 +1,49 @@
+package ee.joonasvali.stamps.tests;
+
+import ee.joonasvali.stamps.stamp.ImageUtil;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ImageUtilTest {
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void testIdleReadersStayWithinLimit() throws Exception {
+    // A suffix of its own, so readers kept by other tests don't count
+    File file = temp.newFile("stamp.gif");
+    BufferedImage image = ImageFixtures.createStamp(new Random(1), 40, 30);
+    Assert.assertTrue(ImageIO.write(image, "gif", file));
+
+    int limit = Runtime.getRuntime().availableProcessors();
+    // Many more threads reading at once than readers are kept
+    ExecutorService executor = Executors.newFixedThreadPool(limit * 4 + 4);
+    try {
+      List<Future<BufferedImage>> reads = new ArrayList<>();
+      for (int i = 0; i < 200; i++) {
+        reads.add(executor.submit(() -> ImageUtil.read(file)));
+      }
+      for (Future<BufferedImage> read : reads) {
+        BufferedImage result = read.get();
+        Assert.assertEquals(40, result.getWidth());
+        Assert.assertEquals(30, result.getHeight());
+      }
+    } finally {
+      executor.shutdown();
+    }
+    int idle = ImageUtil.getIdleReaders("gif");
+    Assert.assertTrue("Idle readers " + idle, idle >= 1 && idle <= limit);
+  }
+}
@@ -0,0 +1,78 @@
+package ee.joonasvali.stamps.tests;
+
+import ee.joonasvali.stamps.Projection;
+import ee.joonasvali.stamps.RasterProjection;
+import ee.joonasvali.stamps.RasterProjectionFactory;
+import ee.joonasvali.stamps.canvas.MappedTileCanvas;
+import ee.joonasvali.stamps.painting.SerialCompositor;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class MappedTileCanvasTest {
+  private static final int TILE_SIZE = 64;
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void testTilesMatchCanvasPixelForPixel() throws InterruptedException, IOException {
+    List<Projection> projections = createProjections(new Random(11), 300);
+
+    BufferedImage expected = ImageFixtures.createCanvas();
+    new SerialCompositor().composite(projections, expected);
+
+    int background = Color.DARK_GRAY.getRGB();
+    MappedTileCanvas.TileFiller filler = (data, offset, scanline, x, y, width, height) -> {
+      for (int row = 0; row < height; row++) {
+        Arrays.fill(data, offset + row * scanline, offset + row * scanline + width, background);
+      }
+    };
+    File directory = temp.newFolder();
+    // Room for a few tiles only, so most of them get written out and paged in again
+    long residentBytes = 4L * 4 * TILE_SIZE * TILE_SIZE;
+    try (MappedTileCanvas canvas = new MappedTileCanvas(expected.getWidth(), expected.getHeight(), TILE_SIZE, residentBytes, directory, filler)) {
+      ForkJoinPool pool = new ForkJoinPool(4);
+      try {
+        for (int i = 0; i < projections.size(); i += 70) {
+          canvas.composite(projections.subList(i, Math.min(i + 70, projections.size())), pool);
+        }
+      } finally {
+        pool.shutdown();
+      }
+
+      int[] row = new int[expected.getWidth()];
+      for (int y = 0; y < expected.getHeight(); y++) {
+        canvas.getRGB(0, y, row.length, row, 0);
+        for (int x = 0; x < row.length; x++) {
+          Assert.assertEquals("Pixel at " + x + ":" + y, expected.getRGB(x, y), row[x]);
+        }
+      }
+    }
+    // The mappings are released, so the file can be deleted on any system
+    Assert.assertArrayEquals(new String[0], directory.list());
+  }
+
+  private static List<Projection> createProjections(Random random, int count) {
+    BufferedImage stamp = ImageFixtures.createStamp(random, 120, 90);
+    List<Projection> projections = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      Color color = new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256));
+      RasterProjection projection = new RasterProjection(RasterProjectionFactory.getPremultipliedProjectionImage(stamp, color, 0, 0));
+      ImageFixtures.place(random, projection);
+      projections.add(projection);
+    }
+    return projections;
+  }
+}
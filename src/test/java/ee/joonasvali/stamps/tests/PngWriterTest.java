@@ -0,0 +1,57 @@
+package ee.joonasvali.stamps.tests;
+
+import ee.joonasvali.stamps.png.PngWriter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+public class PngWriterTest {
+  private static final int WIDTH = 1001;
+  private static final int HEIGHT = 397;
+
+  @Test
+  public void testOpaqueImageReadsBack() throws IOException {
+    assertReadsBack(false);
+  }
+
+  @Test
+  public void testTransparentImageReadsBack() throws IOException {
+    assertReadsBack(true);
+  }
+
+  private void assertReadsBack(boolean alpha) throws IOException {
+    Random random = new Random(3);
+    int[] argb = new int[WIDTH * HEIGHT];
+    for (int i = 0; i < argb.length; i++) {
+      // Runs of the same color next to noise, so the filter has something to do
+      argb[i] = i % 7 < 4 && i > 0 ? argb[i - 1] : random.nextInt();
+      if (!alpha) {
+        argb[i] |= 0xFF000000;
+      }
+    }
+
+    File file = File.createTempFile("jartin-test", ".png");
+    file.deleteOnExit();
+    try (PngWriter writer = new PngWriter(file, WIDTH, HEIGHT, alpha, Deflater.BEST_SPEED)) {
+      // Uneven strips of several blocks each, the same way the painting hands them over
+      for (int y = 0; y < HEIGHT; y += 150) {
+        writer.writeRows(argb, y * WIDTH, WIDTH, Math.min(150, HEIGHT - y));
+      }
+    }
+
+    BufferedImage image = ImageIO.read(file);
+    Assert.assertEquals(WIDTH, image.getWidth());
+    Assert.assertEquals(HEIGHT, image.getHeight());
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        Assert.assertEquals("Pixel at " + x + ":" + y, argb[y * WIDTH + x], image.getRGB(x, y));
+      }
+    }
+  }
+}
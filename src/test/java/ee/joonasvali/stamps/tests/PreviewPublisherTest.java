@@ -0,0 +1,125 @@
+package ee.joonasvali.stamps.tests;
+
+import ee.joonasvali.stamps.Projection;
+import ee.joonasvali.stamps.color.PlainColorModel;
+import ee.joonasvali.stamps.execution.ExecutionMode;
+import ee.joonasvali.stamps.execution.ExecutionPolicy;
+import ee.joonasvali.stamps.painting.Painting;
+import ee.joonasvali.stamps.painting.PreviewListener;
+import ee.joonasvali.stamps.painting.ProjectionRenderer;
+import ee.joonasvali.stamps.ui.ProgressCounter;
+import ee.joonasvali.stamps.ui.ProgressListener;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class PreviewPublisherTest {
+  // Five columns of 64 pixel tiles, the last one 44 wide, and four rows, the last one 8 high
+  private static final int WIDTH = 300;
+  private static final int HEIGHT = 200;
+
+  private ExecutionPolicy policy;
+
+  @Before
+  public void setUp() {
+    policy = new ExecutionPolicy(ExecutionMode.PLATFORM, 2);
+  }
+
+  @After
+  public void tearDown() {
+    policy.shutdown();
+  }
+
+  @Test
+  public void testDirtyTilesMergeIntoRunsPerRow() throws InterruptedException {
+    List<List<Rectangle>> updates = paint(
+        new Rectangle(10, 10, 20, 20),
+        // Touches the next two tiles of the first row, a run with the first tile
+        new Rectangle(70, 10, 60, 10),
+        // Tiles of the third row with a clean tile between them
+        new Rectangle(5, 130, 10, 10),
+        new Rectangle(200, 140, 10, 10),
+        // Off the canvas
+        new Rectangle(-50, -50, 10, 10),
+        // Cut by the edges of the canvas, the last tiles of the last two rows
+        new Rectangle(280, 190, 50, 50));
+
+    Assert.assertEquals(1, updates.size());
+    Assert.assertEquals(Arrays.asList(
+        new Rectangle(0, 0, 192, 64),
+        new Rectangle(0, 128, 64, 64),
+        new Rectangle(192, 128, 108, 64),
+        new Rectangle(256, 192, 44, 8)), updates.get(0));
+  }
+
+  @Test
+  public void testNothingPaintedPublishesNothing() throws InterruptedException {
+    Assert.assertEquals(0, paint(new Rectangle(WIDTH, 0, 10, 10)).size());
+  }
+
+  /**
+   * @return the regions of each preview update while painting projections with the given bounds.
+   */
+  private List<List<Rectangle>> paint(Rectangle... bounds) throws InterruptedException {
+    List<List<Rectangle>> updates = new ArrayList<>();
+    ProjectionRenderer renderer = new ProjectionRenderer(policy);
+    renderer.start(index -> new Bounds(bounds[index]), bounds.length, createCounter());
+    Painting painting = new Painting(WIDTH, HEIGHT, new PlainColorModel(Color.DARK_GRAY), renderer);
+    // Slow enough that only the last frame is published
+    painting.setPreview(new PreviewListener() {
+      @Override
+      public void draft(BufferedImage draft, double scale) {
+      }
+
+      @Override
+      public void update(BufferedImage canvas, List<Rectangle> dirty) {
+        updates.add(new ArrayList<>(dirty));
+      }
+    }, 1);
+    painting.paint(createCounter());
+    return updates;
+  }
+
+  private static ProgressCounter createCounter() {
+    return new ProgressCounter(new ProgressListener() {
+      @Override
+      public void setValue(int value) {
+      }
+
+      @Override
+      public void setValue(String s) {
+      }
+    }, 1);
+  }
+
+  /**
+   * Paints nothing, only its bounds matter.
+   */
+  private static class Bounds implements Projection {
+    private final Rectangle bounds;
+
+    private Bounds(Rectangle bounds) {
+      this.bounds = bounds;
+    }
+
+    @Override
+    public void paintTo(BufferedImage canvas) {
+    }
+
+    @Override
+    public void paintTo(BufferedImage tile, int originX, int originY) {
+    }
+
+    @Override
+    public Rectangle getBounds() {
+      return new Rectangle(bounds);
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package ee.joonasvali.stamps.tests;
+
+import ee.joonasvali.stamps.DefaultProjection;
+import ee.joonasvali.stamps.Projection;
+import ee.joonasvali.stamps.execution.ExecutionMode;
+import ee.joonasvali.stamps.execution.ExecutionPolicy;
+import ee.joonasvali.stamps.painting.ProjectionRenderer;
+import ee.joonasvali.stamps.ui.ProgressCounter;
+import ee.joonasvali.stamps.ui.ProgressListener;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+
+public class ProjectionRendererTest {
+  private static final int COUNT = 3000;
+  private static final int PARALLELISM = 3;
+
+  @Test
+  public void testForkJoinPoolKeepsItsParallelism() throws InterruptedException {
+    ExecutionPolicy policy = new ExecutionPolicy(ExecutionMode.FORK_JOIN, PARALLELISM);
+    try {
+      ForkJoinPool pool = (ForkJoinPool) policy.getComputeExecutor();
+      BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+      Projection[] projections = new Projection[COUNT];
+      for (int i = 0; i < COUNT; i++) {
+        projections[i] = new DefaultProjection(image);
+      }
+      ProjectionRenderer renderer = new ProjectionRenderer(policy);
+      renderer.start(index -> projections[index], COUNT, createCounter());
+
+      int largest = 0;
+      for (int i = 0; i < COUNT; i++) {
+        // A slow consumer, the producers are ahead of it most of the time
+        if (i % 100 == 0) {
+          Thread.sleep(5);
+        }
+        Assert.assertSame(projections[i], renderer.next());
+        largest = Math.max(largest, pool.getPoolSize());
+      }
+      Assert.assertFalse(renderer.hasNext());
+      Assert.assertTrue("Pool grew to " + largest + " threads", largest <= PARALLELISM);
+    } finally {
+      policy.shutdown();
+    }
+  }
+
+  private static ProgressCounter createCounter() {
+    return new ProgressCounter(new ProgressListener() {
+      @Override
+      public void setValue(int value) {
+      }
+
+      @Override
+      public void setValue(String s) {
+      }
+    }, COUNT);
+  }
+}
@@ -0,0 +1,45 @@
+package ee.joonasvali.stamps.tests;
+
+import ee.joonasvali.stamps.stamp.RasterKernels;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+public class RasterKernelsTest {
+
+  @Test
+  public void testBoundsOfEveryImageType() {
+    int[] types = {BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_BYTE_GRAY};
+    for (int type : types) {
+      BufferedImage image = new BufferedImage(90, 150, type);
+      Graphics2D g = image.createGraphics();
+      g.setColor(Color.WHITE);
+      g.fillRect(0, 0, 90, 150);
+      g.setColor(Color.GRAY);
+      g.fillRect(30, 100, 5, 1);
+      g.fillRect(12, 70, 1, 3);
+      g.dispose();
+      Assert.assertEquals("Type " + type, new Rectangle(12, 70, 23, 31), RasterKernels.getBounds(image, Color.WHITE.getRGB()));
+    }
+  }
+
+  @Test
+  public void testBoundsOfEmptyImage() {
+    BufferedImage image = new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB);
+    RasterKernels.fill(RasterKernels.getData(image), Color.WHITE.getRGB());
+    Assert.assertNull(RasterKernels.getBounds(image, Color.WHITE.getRGB()));
+  }
+
+  @Test
+  public void testIntersectKeepsTheGreaterWhereBothCover() {
+    int white = 0xFFFFFFFF;
+    // Alpha bits are ignored, as for TYPE_INT_RGB
+    int[] a = {0xFFFFFF, 0x101010, 0xFF808080, 0x202020};
+    int[] b = {0x101010, white, 0x404040, 0x909090};
+    int[] dst = {white, white, white, white};
+    RasterKernels.intersect(a, b, dst, white, 0xFFFFFF);
+    Assert.assertArrayEquals(new int[]{white, white, 0x808080, 0x909090}, dst);
+  }
+}
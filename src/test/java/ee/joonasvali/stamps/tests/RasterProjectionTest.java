@@ -0,0 +1,106 @@
+package ee.joonasvali.stamps.tests;
+
+import ee.joonasvali.stamps.AlphaMask;
+import ee.joonasvali.stamps.DefaultProjection;
+import ee.joonasvali.stamps.DefaultProjectionFactory;
+import ee.joonasvali.stamps.MaskProjection;
+import ee.joonasvali.stamps.RasterProjection;
+import ee.joonasvali.stamps.RasterProjectionFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * Compares the software rasterizer against Java2D.
+ */
+public class RasterProjectionTest {
+  private static final int WIDTH = ImageFixtures.WIDTH;
+  private static final int HEIGHT = ImageFixtures.HEIGHT;
+  private static final int MAX_CHANNEL_DIFFERENCE = 8;
+  private static final double MAX_DIFFERENT_PIXELS = 0.005;
+  // Tinting after interpolating rounds differently than interpolating tinted pixels, off by a little more often
+  private static final double MAX_ROUNDED_PIXELS = 0.03;
+
+  @Test
+  public void testMatchesJava2DOnOpaqueCanvas() {
+    assertMatchesJava2D(false);
+  }
+
+  @Test
+  public void testMatchesJava2DOnTransparentCanvas() {
+    assertMatchesJava2D(true);
+  }
+
+  @Test
+  public void testFallsBackToJava2DForSubImages() {
+    Random random = new Random(1);
+    BufferedImage stamp = ImageFixtures.createStamp(random, 40, 30);
+    BufferedImage tinted = RasterProjectionFactory.getPremultipliedProjectionImage(stamp, Color.RED, 0, 0);
+
+    BufferedImage expected = ImageFixtures.createCanvas();
+    BufferedImage actual = ImageFixtures.createCanvas();
+    RasterProjection projection = new RasterProjection(tinted);
+    projection.setX(10);
+    projection.setY(20);
+    projection.setScale(0.8);
+    projection.setRotation(30);
+    projection.paintTo(expected);
+    projection.paintTo(actual.getSubimage(0, 0, 300, 300));
+
+    Assert.assertTrue(countDifferentPixels(expected, actual) < 300 * 300 * MAX_DIFFERENT_PIXELS);
+  }
+
+  @Test
+  public void testMaskMatchesTintedImage() {
+    Random random = new Random(3);
+    BufferedImage stamp = ImageFixtures.createStamp(random, 120, 90);
+    BufferedImage mask = AlphaMask.create(stamp);
+    BufferedImage tinted = ImageFixtures.createCanvas();
+    BufferedImage masked = ImageFixtures.createCanvas();
+
+    for (int i = 0; i < 200; i++) {
+      Color color = new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256));
+      DefaultProjection expected = new RasterProjection(RasterProjectionFactory.getPremultipliedProjectionImage(stamp, color, 0, 0));
+      DefaultProjection actual = new MaskProjection(mask, color, 0, 0);
+      ImageFixtures.place(random, expected, actual);
+      expected.paintTo(tinted);
+      actual.paintTo(masked);
+    }
+
+    int different = countDifferentPixels(tinted, masked);
+    Assert.assertTrue("Too many different pixels: " + different, different < WIDTH * HEIGHT * MAX_ROUNDED_PIXELS);
+  }
+
+  private void assertMatchesJava2D(boolean transparent) {
+    Random random = new Random(7);
+    BufferedImage stamp = ImageFixtures.createStamp(random, 120, 90);
+    BufferedImage java2d = createCanvas(transparent);
+    BufferedImage raster = createCanvas(transparent);
+
+    for (int i = 0; i < 200; i++) {
+      Color color = new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256));
+      DefaultProjection expected = new DefaultProjection(DefaultProjectionFactory.getRawProjectionImage(stamp, color));
+      DefaultProjection actual = new RasterProjection(RasterProjectionFactory.getPremultipliedProjectionImage(stamp, color, 0, 0));
+      ImageFixtures.place(random, expected, actual);
+      expected.paintTo(java2d);
+      actual.paintTo(raster);
+    }
+
+    int different = countDifferentPixels(java2d, raster);
+    Assert.assertTrue("Too many different pixels: " + different, different < WIDTH * HEIGHT * MAX_DIFFERENT_PIXELS);
+  }
+
+  /**
+   * @return number of pixels that differ by more than one in any channel
+   */
+  private static int countDifferentPixels(BufferedImage expected, BufferedImage actual) {
+    return ImageFixtures.countDifferentPixels(expected, actual, MAX_CHANNEL_DIFFERENCE, 1);
+  }
+
+  private static BufferedImage createCanvas(boolean transparent) {
+    return transparent ? new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB) : ImageFixtures.createCanvas();
+  }
+}
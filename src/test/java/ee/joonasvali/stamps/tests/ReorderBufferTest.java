@@ -0,0 +1,73 @@
+package ee.joonasvali.stamps.tests;
+
+import ee.joonasvali.stamps.painting.ReorderBuffer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class ReorderBufferTest {
+
+  @Test
+  public void testElementsAreTakenInIndexOrder() throws InterruptedException {
+    int count = 2000;
+    ReorderBuffer<Integer> buffer = new ReorderBuffer<>(16);
+    List<Integer> indexes = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      indexes.add(i);
+    }
+    // Shuffle only within small windows, like threads finishing out of order
+    Random random = new Random(7);
+    for (int i = 0; i < count; i += 8) {
+      Collections.shuffle(indexes.subList(i, Math.min(i + 8, count)), random);
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    for (Integer index : indexes) {
+      executor.submit(() -> {
+        buffer.put(index, index);
+        return null;
+      });
+    }
+
+    for (int i = 0; i < count; i++) {
+      Assert.assertEquals(i, (int) buffer.take());
+    }
+    executor.shutdown();
+    Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testOfferRunsCallbackOnceElementFits() throws InterruptedException {
+    ReorderBuffer<Integer> buffer = new ReorderBuffer<>(2);
+    int[] called = new int[1];
+    Assert.assertTrue(buffer.offer(1, 1, () -> called[0]++));
+    Assert.assertFalse(buffer.offer(3, 3, () -> called[0]++));
+    Assert.assertTrue(buffer.offer(0, 0, () -> called[0]++));
+
+    Assert.assertEquals(0, (int) buffer.take());
+    // Index 3 doesn't fit until 1 is taken too
+    Assert.assertEquals(0, called[0]);
+    Assert.assertEquals(1, (int) buffer.take());
+    Assert.assertEquals(1, called[0]);
+    Assert.assertTrue(buffer.offer(3, 3, () -> called[0]++));
+    Assert.assertTrue(buffer.offer(2, 2, () -> called[0]++));
+    Assert.assertEquals(2, (int) buffer.take());
+    Assert.assertEquals(3, (int) buffer.take());
+    Assert.assertEquals(1, called[0]);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testFailureReachesConsumer() throws InterruptedException {
+    ReorderBuffer<Integer> buffer = new ReorderBuffer<>(4);
+    buffer.put(1, 1);
+    buffer.fail(new RuntimeException("test"));
+    buffer.take();
+  }
+}
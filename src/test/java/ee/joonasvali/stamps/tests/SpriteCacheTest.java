@@ -0,0 +1,165 @@
+package ee.joonasvali.stamps.tests;
+
+import ee.joonasvali.stamps.DefaultProjection;
+import ee.joonasvali.stamps.ProjectionGenerator;
+import ee.joonasvali.stamps.RasterProjection;
+import ee.joonasvali.stamps.RasterProjectionFactory;
+import ee.joonasvali.stamps.Sprite;
+import ee.joonasvali.stamps.SpriteCache;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * Compares projections painted from sprites against the same projections painted from their raw images.
+ */
+public class SpriteCacheTest {
+  private static final int WIDTH = ImageFixtures.WIDTH;
+  private static final int HEIGHT = ImageFixtures.HEIGHT;
+  // Sprites are filtered differently than the raw image is sampled, most of all on the edges of the stamps
+  private static final int MAX_CHANNEL_DIFFERENCE = 64;
+  private static final int SMALL_DIFFERENCE = 8;
+  private static final double MAX_DIFFERENT_PIXELS = 0.006;
+  private static final SpriteCache.Source SOURCE = new SpriteCache.Source(1, 1);
+
+  @Test
+  public void testCachedMatchesUncached() {
+    for (int angleBuckets : new int[]{0, 16, 360}) {
+      Random random = new Random(11);
+      BufferedImage stamp = createSmoothStamp(121, 91);
+      BufferedImage uncached = ImageFixtures.createCanvas();
+      BufferedImage cached = ImageFixtures.createCanvas();
+      SpriteCache sprites = new SpriteCache(64 << 20, angleBuckets);
+
+      for (int i = 0; i < 200; i++) {
+        Color color = new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256));
+        BufferedImage tinted = RasterProjectionFactory.getPremultipliedProjectionImage(stamp, color, 0, 0);
+        DefaultProjection expected = new RasterProjection(tinted);
+        DefaultProjection actual = new RasterProjection(tinted);
+        actual.setSpriteCache(sprites, new SpriteCache.Source(i, color));
+        int x = random.nextInt(WIDTH + 150) - 150;
+        int y = random.nextInt(HEIGHT + 150) - 150;
+        double scale = Math.max(random.nextDouble(), ProjectionGenerator.SCALE_MIN_VALUE);
+        int rotation = random.nextInt(1080) - 540;
+        for (DefaultProjection projection : new DefaultProjection[]{expected, actual}) {
+          projection.setX(x);
+          projection.setY(y);
+          projection.setScale(scale);
+          projection.setRotation(rotation);
+        }
+        expected.paintTo(uncached);
+        actual.paintTo(cached);
+      }
+      int different = ImageFixtures.countDifferentPixels(uncached, cached, MAX_CHANNEL_DIFFERENCE, SMALL_DIFFERENCE);
+      Assert.assertTrue("Too many different pixels with " + angleBuckets + " buckets: " + different, different < WIDTH * HEIGHT * MAX_DIFFERENT_PIXELS);
+    }
+  }
+
+  @Test
+  public void testDownsamplesOddSizesInPremultipliedSpace() {
+    BufferedImage raw = new BufferedImage(5, 3, BufferedImage.TYPE_INT_ARGB);
+    for (int y = 0; y < 3; y++) {
+      raw.setRGB(0, y, 0xFFFF0000);
+      for (int x = 1; x < 4; x++) {
+        // Transparent white, averaging it without premultiplying would turn the red pink
+        raw.setRGB(x, y, 0x00FFFFFF);
+      }
+      raw.setRGB(4, y, 0xFF0000FF);
+    }
+    SpriteCache sprites = new SpriteCache(1 << 20, 0);
+
+    Sprite half = sprites.get(SOURCE, raw, 0.5, 0);
+    Assert.assertEquals(0.5, half.getFactor(), 0);
+    Assert.assertEquals(3, half.getImage().getWidth());
+    Assert.assertEquals(2, half.getImage().getHeight());
+    assertPixel(0x80FF0000, half.getImage().getRGB(0, 0));
+    assertPixel(0x00000000, half.getImage().getRGB(1, 0));
+    // Pixels beyond the edge count as transparent
+    assertPixel(0x800000FF, half.getImage().getRGB(2, 0));
+    assertPixel(0x40FF0000, half.getImage().getRGB(0, 1));
+    assertPixel(0x400000FF, half.getImage().getRGB(2, 1));
+
+    // The half is the smallest level, projections are never scaled much below it
+    Assert.assertSame(half, sprites.get(SOURCE, raw, ProjectionGenerator.SCALE_MIN_VALUE, 0));
+    Assert.assertSame(half, sprites.get(SOURCE, raw, 0.1, 0));
+  }
+
+  @Test
+  public void testMasksAreNotRotated() {
+    BufferedImage mask = new BufferedImage(10, 6, BufferedImage.TYPE_BYTE_GRAY);
+    SpriteCache sprites = new SpriteCache(1 << 20, 8);
+    Assert.assertTrue(sprites.get(SOURCE, mask, 1, 90).isOriginal());
+    Sprite half = sprites.get(SOURCE, mask, 0.4, 90);
+    Assert.assertEquals(0, half.getAngle(), 0);
+    Assert.assertEquals(0.5, half.getFactor(), 0);
+    Assert.assertEquals(BufferedImage.TYPE_BYTE_GRAY, half.getImage().getType());
+  }
+
+  @Test
+  public void testRotationsWrapToBuckets() {
+    BufferedImage raw = new BufferedImage(10, 6, BufferedImage.TYPE_INT_ARGB);
+    SpriteCache sprites = new SpriteCache(1 << 20, 8);
+    Assert.assertEquals(315, sprites.get(SOURCE, raw, 1, -45).getAngle(), 0);
+    Assert.assertEquals(45, sprites.get(SOURCE, raw, 1, 400).getAngle(), 0);
+    Assert.assertEquals(45, sprites.get(SOURCE, raw, 1, 23).getAngle(), 0);
+    Assert.assertEquals(270, sprites.get(SOURCE, raw, 1, -450).getAngle(), 0);
+    Assert.assertTrue(sprites.get(SOURCE, raw, 1, 22).isOriginal());
+    Assert.assertTrue(sprites.get(SOURCE, raw, 1, 359).isOriginal());
+    Assert.assertTrue(sprites.get(SOURCE, raw, 1, 382).isOriginal());
+    Assert.assertTrue(sprites.get(SOURCE, raw, 1, -360).isOriginal());
+  }
+
+  @Test
+  public void testRotatedSpriteKeepsCenterWithMargin() {
+    BufferedImage raw = new BufferedImage(10, 6, BufferedImage.TYPE_INT_ARGB);
+    for (int y = 0; y < 6; y++) {
+      for (int x = 0; x < 10; x++) {
+        raw.setRGB(x, y, 0xFF00FF00);
+      }
+    }
+    // Right below and to the right of the center of rotation
+    raw.setRGB(5, 3, 0xFFFF0000);
+    Sprite sprite = new SpriteCache(1 << 20, 4).get(SOURCE, raw, 1, 90);
+    BufferedImage image = sprite.getImage();
+
+    Assert.assertEquals(90, sprite.getAngle(), 0);
+    int opaque = 0;
+    for (int y = 0; y < image.getHeight(); y++) {
+      for (int x = 0; x < image.getWidth(); x++) {
+        int alpha = image.getRGB(x, y) >>> 24;
+        if (x == 0 || y == 0 || x == image.getWidth() - 1 || y == image.getHeight() - 1) {
+          Assert.assertEquals("Margin at " + x + ":" + y, 0, alpha);
+        } else if (alpha == 0xFF) {
+          opaque++;
+        }
+      }
+    }
+    // Nothing of the stamp is cut off
+    Assert.assertEquals(60, opaque);
+    // Turned clockwise to below and to the left of the center
+    assertPixel(0xFFFF0000, image.getRGB((int) sprite.getCenterX() - 1, (int) sprite.getCenterY()));
+  }
+
+  private static void assertPixel(int expected, int actual) {
+    Assert.assertTrue(String.format("Expected %08X, was %08X", expected, actual), ImageFixtures.maxChannelDifference(expected, actual) <= 1);
+  }
+
+  /**
+   * @return gray stamp that changes slowly from pixel to pixel, so filtering it doesn't change it much.
+   */
+  private static BufferedImage createSmoothStamp(int width, int height) {
+    BufferedImage stamp = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        double dx = (x - width / 2d) / width;
+        double dy = (y - height / 2d) / height;
+        int gray = (int) Math.min(255, Math.sqrt(dx * dx + dy * dy) * 360 + 40 * Math.sin(x / 9d) + 40);
+        stamp.setRGB(x, y, new Color(gray, gray, gray).getRGB());
+      }
+    }
+    return stamp;
+  }
+}
@@ -0,0 +1,87 @@
+package ee.joonasvali.stamps.tests;
+
+import ee.joonasvali.stamps.query.WeightedList;
+import ee.joonasvali.stamps.query.WeightedQuery;
+import ee.joonasvali.stamps.stamp.Stamp;
+import ee.joonasvali.stamps.stamp.StampGroupMetadata;
+import ee.joonasvali.stamps.stamp.StampIndex;
+import ee.joonasvali.stamps.stamp.Stamps;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class StampIndexTest {
+
+  @Test
+  public void testIndexIsReplacedWhenMetadataChanges() {
+    Random random = new Random(31);
+    Stamp a = new Stamp(ImageFixtures.createStamp(random, 20, 10));
+    Stamp b = new Stamp(ImageFixtures.createStamp(random, 30, 40));
+    Stamps stamps = new Stamps(Arrays.asList(a, b));
+
+    StampIndex before = stamps.getIndex();
+    Assert.assertSame(before, stamps.getIndex());
+    Assert.assertSame(before.getStamps(), stamps.getStamps());
+    Assert.assertArrayEquals(new int[]{a.size().x * a.size().y, b.size().x * b.size().y}, before.getAreas());
+
+    StampGroupMetadata rare = new StampGroupMetadata();
+    rare.setRarity(0.25);
+    stamps.setMetadata(rare);
+    StampIndex after = stamps.getIndex();
+    Assert.assertNotSame(before, after);
+    Assert.assertArrayEquals(new double[]{1, 1}, before.getRarities(), 0);
+    Assert.assertArrayEquals(new double[]{0.25, 0.25}, after.getRarities(), 0);
+  }
+
+  @Test
+  public void testJoinedIndexKeepsIds() {
+    Random random = new Random(32);
+    Stamp a = new Stamp(ImageFixtures.createStamp(random, 20, 10));
+    Stamp b = new Stamp(ImageFixtures.createStamp(random, 30, 40));
+    Stamp c = new Stamp(ImageFixtures.createStamp(random, 15, 15));
+    StampIndex first = new StampIndex(Arrays.asList(a, b));
+    StampIndex joined = first.with(new StampIndex(Arrays.asList(c)));
+
+    Assert.assertEquals(2, first.size());
+    Assert.assertEquals(3, joined.size());
+    Assert.assertSame(a, joined.get(0));
+    Assert.assertSame(b, joined.get(1));
+    Assert.assertSame(c, joined.get(2));
+    Assert.assertSame(first, first.with(StampIndex.EMPTY));
+  }
+
+  @Test
+  public void testPicksByWeightsOfTheIndex() {
+    Random random = new Random(34);
+    Stamp a = new Stamp(ImageFixtures.createStamp(random, 20, 10));
+    Stamp b = new Stamp(ImageFixtures.createStamp(random, 30, 40));
+    StampGroupMetadata rare = new StampGroupMetadata();
+    rare.setRarity(0.1);
+    a.setMetadata(rare);
+    StampIndex index = new StampIndex(Arrays.asList(a, b, a));
+    // Changed after the index was made, the index weighs the stamps as they were
+    rare.setRarity(1);
+
+    Assert.assertArrayEquals(new double[]{0.1, 1, 0.1}, index.getWeights(), 0);
+    WeightedList<Stamp> tail = ((WeightedList<Stamp>) index.getStamps()).subList(1, 3);
+    Assert.assertSame(a, tail.get(1));
+    Assert.assertEquals(0.1, tail.getWeight(1), 0);
+
+    WeightedQuery<Stamp> query = new WeightedQuery<>();
+    int picked = 0;
+    for (int i = 0; i < 10000; i++) {
+      if (query.get(index.getStamps(), random) == a) {
+        picked++;
+      }
+    }
+    // 0.2 of 1.2
+    Assert.assertEquals(1667, picked, 150);
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testStampsCantBeChanged() {
+    new StampIndex(Arrays.asList(new Stamp(ImageFixtures.createStamp(new Random(33), 5, 5)))).getStamps().clear();
+  }
+}
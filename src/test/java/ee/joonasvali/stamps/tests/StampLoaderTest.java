@@ -0,0 +1,211 @@
+package ee.joonasvali.stamps.tests;
+
+import ee.joonasvali.stamps.execution.ExecutionMode;
+import ee.joonasvali.stamps.execution.ExecutionPolicy;
+import ee.joonasvali.stamps.stamp.Stamp;
+import ee.joonasvali.stamps.stamp.StampLoader;
+import ee.joonasvali.stamps.stamp.StampSnapshot;
+import ee.joonasvali.stamps.stamp.Stamps;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class StampLoaderTest {
+  private static final long TIMEOUT_MILLIS = 30000;
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private File folder;
+  private File snapshotDir;
+  private ExecutionPolicy policy;
+
+  @Before
+  public void setUp() throws IOException {
+    folder = temp.newFolder("stamps").getCanonicalFile();
+    snapshotDir = temp.newFolder("snapshot");
+    policy = new ExecutionPolicy(ExecutionMode.PLATFORM, 2);
+  }
+
+  @After
+  public void tearDown() {
+    policy.shutdown();
+  }
+
+  @Test
+  public void testReloadKeepsOtherGroupsInSnapshot() throws IOException {
+    File first = createStamp("first", "stamp.png", 10, 10);
+    File second = createStamp("second", "stamp.png", 20, 10);
+
+    StampLoader loader = new StampLoader(folder, policy, new StampSnapshot(snapshotDir, folder));
+    awaitGroups(loader);
+    loader.clearCaches();
+
+    // A stamp of the first group changes size, the second group is left as it is
+    createStamp("first", "stamp.png", 30, 10);
+    loader.reload(Collections.singleton(first));
+    awaitGroups(loader);
+    loader.clearCaches();
+
+    // Trimming cuts off the last column and row
+    StampSnapshot snapshot = new StampSnapshot(snapshotDir, folder);
+    Assert.assertEquals(new Point(29, 9), snapshot.getSize(first));
+    Assert.assertEquals(new Point(19, 9), snapshot.getSize(second));
+  }
+
+  @Test
+  public void testWatcherReloadsChangedGroups() throws IOException, InterruptedException {
+    createStamp("changed", "stamp.png", 10, 10);
+    createStamp("added", "stamp.png", 10, 10);
+    createStamp("removed", "stamp.png", 10, 10);
+    File removed = createStamp("removed", "second.png", 10, 10);
+    createStamp("untouched", "stamp.png", 10, 10);
+
+    StampLoader loader = new StampLoader(folder, policy, new StampSnapshot(snapshotDir, folder));
+    loader.load();
+    Map<String, Stamps> before = awaitGroups(loader);
+    loader.watch();
+    try {
+      createStamp("changed", "stamp.png", 14, 12);
+      createStamp("added", "second.png", 10, 10);
+      Assert.assertTrue(removed.delete());
+
+      // Trimming cuts off the last column and row
+      Map<String, Stamps> after = awaitReload(loader, groups ->
+          groups.get("changed").size() == 1
+              && groups.get("changed").getStamps().get(0).size().equals(new Point(13, 11))
+              && groups.get("added").size() == 2
+              && groups.get("removed").size() == 1);
+
+      Assert.assertEquals(before.keySet(), after.keySet());
+      Assert.assertSame(before.get("untouched"), after.get("untouched"));
+      Assert.assertNotSame(before.get("changed"), after.get("changed"));
+      // Stamps that didn't change are shared by the old and the new group, files are in order of their names
+      Stamp kept = before.get("added").getStamps().get(0);
+      Assert.assertSame(kept, after.get("added").getStamps().get(1));
+    } finally {
+      loader.stopWatching();
+    }
+  }
+
+  @Test
+  public void testParallelLoadMatchesSerial() throws IOException {
+    Random random = new Random(5);
+    for (int group = 0; group < 6; group++) {
+      for (int stamp = 0; stamp < 5; stamp++) {
+        writeStamp(createNoise(random, 10 + random.nextInt(40), 10 + random.nextInt(40)), "group" + group, "stamp" + stamp + ".png");
+      }
+    }
+    // Nothing kept between the loads, each stamp is decoded by both
+    StampSnapshot none = new StampSnapshot(null, folder);
+
+    ExecutionPolicy parallel = new ExecutionPolicy(ExecutionMode.PLATFORM, 4);
+    List<Stamps> loaded;
+    try {
+      StampLoader loader = new StampLoader(folder, parallel, none);
+      loader.load();
+      loaded = loader.getGroups();
+      loaded.forEach(Stamps::size);
+    } finally {
+      parallel.shutdown();
+    }
+
+    Stamp.forget(folder);
+    File[] dirs = folder.listFiles(File::isDirectory);
+    Arrays.sort(dirs);
+    Assert.assertEquals(dirs.length, loaded.size());
+    for (int i = 0; i < dirs.length; i++) {
+      Stamps serial = new Stamps(dirs[i], Runnable::run, null, none);
+      Assert.assertEquals(dirs[i], loaded.get(i).getFolder());
+      List<Stamp> expected = serial.getStamps();
+      List<Stamp> actual = loaded.get(i).getStamps();
+      Assert.assertEquals(expected.size(), actual.size());
+      for (int k = 0; k < expected.size(); k++) {
+        Stamp want = expected.get(k);
+        Stamp got = actual.get(k);
+        Assert.assertNotSame(want, got);
+        Assert.assertEquals(want.getSeed(), got.getSeed());
+        Assert.assertEquals(want.size(), got.size());
+        Assert.assertEquals(0, ImageFixtures.countDifferentPixels(want.getImg(), got.getImg(), 255, 0));
+      }
+    }
+  }
+
+  private Map<String, Stamps> awaitReload(StampLoader loader, Condition condition) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    while (true) {
+      Map<String, Stamps> groups = awaitGroups(loader);
+      if (condition.holds(groups)) {
+        return groups;
+      }
+      if (System.currentTimeMillis() > deadline) {
+        Assert.fail("Stamps weren't reloaded in " + TIMEOUT_MILLIS + "ms");
+      }
+      Thread.sleep(100);
+    }
+  }
+
+  /**
+   * @return the groups of the loader by name, once their stamps are loaded.
+   */
+  private static Map<String, Stamps> awaitGroups(StampLoader loader) {
+    loader.load();
+    List<Stamps> groups = loader.getGroups();
+    Map<String, Stamps> byName = new HashMap<>();
+    for (Stamps group : groups) {
+      group.size();
+      byName.put(group.getFolder().getName(), group);
+    }
+    return byName;
+  }
+
+  private File createStamp(String group, String name, int width, int height) throws IOException {
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    Graphics2D g = image.createGraphics();
+    g.setColor(Color.BLACK);
+    g.fillRect(0, 0, width, height);
+    g.dispose();
+    return writeStamp(image, group, name);
+  }
+
+  private File writeStamp(BufferedImage image, String group, String name) throws IOException {
+    File dir = new File(folder, group);
+    dir.mkdirs();
+    File file = new File(dir, name);
+    ImageIO.write(image, "png", file);
+    return file;
+  }
+
+  /**
+   * @return an image of dark noise, none of it white so none of it gets trimmed.
+   */
+  private static BufferedImage createNoise(Random random, int width, int height) {
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        int gray = random.nextInt(200);
+        image.setRGB(x, y, new Color(gray, gray, gray).getRGB());
+      }
+    }
+    return image;
+  }
+
+  private interface Condition {
+    boolean holds(Map<String, Stamps> groups);
+  }
+}
@@ -0,0 +1,73 @@
+package ee.joonasvali.stamps.tests;
+
+import ee.joonasvali.stamps.AlphaMask;
+import ee.joonasvali.stamps.stamp.StampSnapshot;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+public class StampSnapshotTest {
+
+  @Test
+  public void testMasksReadBackUntilImageChanges() throws IOException {
+    File dir = Files.createTempDirectory("jartin-snapshot").toFile();
+    dir.deleteOnExit();
+    File image = new File(dir, "stamp.png");
+    Files.write(image.toPath(), new byte[]{1, 2, 3});
+    image.deleteOnExit();
+    BufferedImage mask = AlphaMask.create(ImageFixtures.createStamp(new Random(5), 37, 21));
+
+    StampSnapshot first = new StampSnapshot(dir, dir);
+    Assert.assertNull(first.get(image));
+    first.put(image, mask);
+    first.save();
+    for (File file : dir.listFiles()) {
+      file.deleteOnExit();
+    }
+
+    BufferedImage stored = new StampSnapshot(dir, dir).get(image);
+    Assert.assertNotNull(stored);
+    Assert.assertEquals(mask.getWidth(), stored.getWidth());
+    Assert.assertEquals(mask.getHeight(), stored.getHeight());
+    Assert.assertArrayEquals(AlphaMask.getData(mask), AlphaMask.getData(stored));
+
+    Files.write(image.toPath(), new byte[]{1, 2, 3, 4});
+    Assert.assertNull(new StampSnapshot(dir, dir).get(image));
+  }
+
+  @Test
+  public void testSavesKeepStampsOfEarlierSaves() throws IOException {
+    File dir = Files.createTempDirectory("jartin-snapshot").toFile();
+    dir.deleteOnExit();
+    File firstImage = new File(dir, "first.png");
+    File secondImage = new File(dir, "second.png");
+    Files.write(firstImage.toPath(), new byte[]{1, 2, 3});
+    Files.write(secondImage.toPath(), new byte[]{4, 5});
+    firstImage.deleteOnExit();
+    secondImage.deleteOnExit();
+    BufferedImage firstMask = AlphaMask.create(ImageFixtures.createStamp(new Random(5), 37, 21));
+    BufferedImage secondMask = AlphaMask.create(ImageFixtures.createStamp(new Random(6), 12, 40));
+
+    StampSnapshot snapshot = new StampSnapshot(dir, dir);
+    snapshot.put(firstImage, firstMask);
+    snapshot.save();
+    snapshot.put(secondImage, secondMask);
+    snapshot.save();
+    File[] files = dir.listFiles();
+    for (File file : files) {
+      file.deleteOnExit();
+    }
+    // The stamp images and the last save
+    Assert.assertEquals(3, files.length);
+
+    for (StampSnapshot read : new StampSnapshot[]{snapshot, new StampSnapshot(dir, dir)}) {
+      Assert.assertArrayEquals(AlphaMask.getData(firstMask), AlphaMask.getData(read.get(firstImage)));
+      Assert.assertArrayEquals(AlphaMask.getData(secondMask), AlphaMask.getData(read.get(secondImage)));
+    }
+  }
+}
@@ -0,0 +1,92 @@
+package ee.joonasvali.stamps.tests;
+
+import ee.joonasvali.stamps.stamp.Stamp;
+import ee.joonasvali.stamps.stamp.StampSnapshot;
+import ee.joonasvali.stamps.stamp.StampStore;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class StampStoreTest {
+  private static final int SIZE = 20;
+  // Trimming cuts off the last column and row
+  private static final long MASK_BYTES = (SIZE - 1) * (SIZE - 1);
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private File folder;
+  private StampSnapshot snapshot;
+
+  @Before
+  public void setUp() throws IOException {
+    folder = temp.newFolder("stamps").getCanonicalFile();
+    // Nothing kept, each load decodes the image
+    snapshot = new StampSnapshot(null, folder);
+  }
+
+  @Test
+  public void testSameStampIsLoadedOnce() throws Exception {
+    Stamp stamp = createStamp("shared.png", 1);
+    StampStore store = new StampStore(MASK_BYTES * 10);
+    CountDownLatch start = new CountDownLatch(1);
+    Callable<BufferedImage> get = () -> {
+      start.await();
+      return store.get(stamp);
+    };
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<BufferedImage> first = executor.submit(get);
+      Future<BufferedImage> second = executor.submit(get);
+      start.countDown();
+      Assert.assertSame(first.get(), second.get());
+    } finally {
+      executor.shutdown();
+    }
+    Assert.assertEquals(1, store.getLoads());
+  }
+
+  @Test
+  public void testStampsInUseSurviveOneOffs() throws IOException {
+    Stamp hot1 = createStamp("hot1.png", 1);
+    Stamp hot2 = createStamp("hot2.png", 2);
+    List<Stamp> once = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      once.add(createStamp("once" + i + ".png", 10 + i));
+    }
+    // Room for the two stamps in use and no more
+    StampStore store = new StampStore(MASK_BYTES * 2);
+    for (int round = 0; round < 5; round++) {
+      store.get(hot1);
+      store.get(hot2);
+    }
+    Assert.assertEquals(2, store.getLoads());
+
+    once.forEach(store::get);
+    Assert.assertEquals(22, store.getLoads());
+    store.get(hot1);
+    store.get(hot2);
+    Assert.assertEquals(22, store.getLoads());
+  }
+
+  private Stamp createStamp(String name, int seed) throws IOException {
+    File file = new File(folder, name);
+    ImageIO.write(ImageFixtures.createStamp(new Random(seed), SIZE, SIZE), "png", file);
+    return Stamp.getInstance(file, snapshot);
+  }
+}
@@ -0,0 +1,130 @@
+package ee.joonasvali.stamps.tests;
+
+import ee.joonasvali.stamps.DefaultProjection;
+import ee.joonasvali.stamps.DefaultProjectionFactory;
+import ee.joonasvali.stamps.Projection;
+import ee.joonasvali.stamps.SpriteCache;
+import ee.joonasvali.stamps.color.PlainColorModel;
+import ee.joonasvali.stamps.execution.ExecutionMode;
+import ee.joonasvali.stamps.execution.ExecutionPolicy;
+import ee.joonasvali.stamps.painting.IndexedSupplier;
+import ee.joonasvali.stamps.painting.Painting;
+import ee.joonasvali.stamps.painting.ProjectionRenderer;
+import ee.joonasvali.stamps.painting.StripPlan;
+import ee.joonasvali.stamps.ui.ProgressCounter;
+import ee.joonasvali.stamps.ui.ProgressListener;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Random;
+
+public class StripPlanTest {
+  private static final int WIDTH = 300;
+  private static final int HEIGHT = 250;
+  private static final int STRIP_HEIGHT = 64;
+  private static final int COUNT = 400;
+  private static final int STAMP_WIDTH = 60;
+  private static final int STAMP_HEIGHT = 40;
+
+  private ExecutionPolicy policy;
+
+  @Before
+  public void setUp() {
+    policy = new ExecutionPolicy(ExecutionMode.PLATFORM, 2);
+  }
+
+  @After
+  public void tearDown() {
+    policy.shutdown();
+  }
+
+  @Test
+  public void testStripsMatchWholePainting() throws InterruptedException, IOException {
+    BufferedImage stamp = ImageFixtures.createStamp(new Random(7), STAMP_WIDTH, STAMP_HEIGHT);
+    SpriteCache sprites = new SpriteCache(64L * 1024 * 1024, 16);
+    Placements placements = new Placements(new Random(11), COUNT);
+    // Painted with sprites, shrunk and pre-rotated, as the painting does
+    IndexedSupplier<Projection> projections = index -> {
+      Color color = placements.colors[index];
+      DefaultProjection projection = new DefaultProjection(DefaultProjectionFactory.getRawProjectionImage(stamp, color));
+      projection.setSpriteCache(sprites, new SpriteCache.Source(1, color));
+      projection.setX(placements.x[index]);
+      projection.setY(placements.y[index]);
+      projection.setScale(placements.scale[index]);
+      projection.setRotation(placements.rotation[index]);
+      return projection;
+    };
+
+    ProjectionRenderer whole = new ProjectionRenderer(policy);
+    whole.start(projections, COUNT, createCounter());
+    BufferedImage expected = createPainting(whole).paint(createCounter());
+
+    // Planned by the bounds of the stamp, the same way the painting plans by the stamps it picked
+    StripPlan plan = StripPlan.create(WIDTH, HEIGHT, STRIP_HEIGHT, COUNT, index -> DefaultProjection.getBounds(
+        STAMP_WIDTH, STAMP_HEIGHT, placements.x[index], placements.y[index], placements.scale[index], placements.rotation[index]));
+    Assert.assertTrue("Stamps should cross strip borders", plan.size() > COUNT);
+    ProjectionRenderer strips = new ProjectionRenderer(policy);
+    strips.start(position -> projections.get(plan.getIndex(position)), plan.size(), createCounter());
+    int[] actual = new int[WIDTH * HEIGHT];
+    int[] written = new int[1];
+    createPainting(strips).paintStrips(createCounter(), plan, (argb, rows) -> {
+      System.arraycopy(argb, 0, actual, written[0] * WIDTH, rows * WIDTH);
+      written[0] += rows;
+    });
+
+    Assert.assertEquals(HEIGHT, written[0]);
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        Assert.assertEquals("Pixel at " + x + ":" + y, expected.getRGB(x, y), actual[y * WIDTH + x]);
+      }
+    }
+  }
+
+  private static Painting createPainting(ProjectionRenderer renderer) {
+    return new Painting(WIDTH, HEIGHT, new PlainColorModel(Color.DARK_GRAY), renderer);
+  }
+
+  private static ProgressCounter createCounter() {
+    return new ProgressCounter(new ProgressListener() {
+      @Override
+      public void setValue(int value) {
+      }
+
+      @Override
+      public void setValue(String s) {
+      }
+    }, COUNT);
+  }
+
+  /**
+   * Where each projection goes, picked up front so both paintings place them the same.
+   */
+  private static class Placements {
+    private final Color[] colors;
+    private final int[] x;
+    private final int[] y;
+    private final double[] scale;
+    private final int[] rotation;
+
+    private Placements(Random random, int count) {
+      colors = new Color[count];
+      x = new int[count];
+      y = new int[count];
+      scale = new double[count];
+      rotation = new int[count];
+      for (int i = 0; i < count; i++) {
+        // A few colors, so sprites get shared like those of a stamp tinted the same
+        colors[i] = new Color(random.nextInt(4) * 60, 120, 200);
+        x[i] = random.nextInt(WIDTH + 60) - 60;
+        y[i] = random.nextInt(HEIGHT + 60) - 60;
+        scale[i] = 0.3 + random.nextDouble() * 1.2;
+        rotation[i] = random.nextInt(360);
+      }
+    }
+  }
+}
@@ -0,0 +1,56 @@
+package ee.joonasvali.stamps.tests;
+
+import ee.joonasvali.stamps.DefaultProjection;
+import ee.joonasvali.stamps.DefaultProjectionFactory;
+import ee.joonasvali.stamps.Projection;
+import ee.joonasvali.stamps.painting.SerialCompositor;
+import ee.joonasvali.stamps.painting.TileCompositor;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class TileCompositorTest {
+  @Test
+  public void testTilesMatchSerialPixelForPixel() throws InterruptedException {
+    List<Projection> projections = createProjections(new Random(42), 300);
+
+    BufferedImage serial = ImageFixtures.createCanvas();
+    new SerialCompositor().composite(projections, serial);
+
+    BufferedImage tiled = ImageFixtures.createCanvas();
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      TileCompositor compositor = new TileCompositor(64, pool);
+      // Several batches, the same way Painting feeds the compositor
+      for (int i = 0; i < projections.size(); i += 70) {
+        compositor.composite(projections.subList(i, Math.min(i + 70, projections.size())), tiled);
+      }
+    } finally {
+      pool.shutdown();
+    }
+
+    for (int y = 0; y < ImageFixtures.HEIGHT; y++) {
+      for (int x = 0; x < ImageFixtures.WIDTH; x++) {
+        Assert.assertEquals("Pixel at " + x + ":" + y, serial.getRGB(x, y), tiled.getRGB(x, y));
+      }
+    }
+  }
+
+  private static List<Projection> createProjections(Random random, int count) {
+    BufferedImage stamp = ImageFixtures.createStamp(random, 120, 90);
+    List<Projection> projections = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      Color color = new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256));
+      DefaultProjection projection = new DefaultProjection(DefaultProjectionFactory.getRawProjectionImage(stamp, color));
+      ImageFixtures.place(random, projection);
+      projections.add(projection);
+    }
+    return projections;
+  }
+}
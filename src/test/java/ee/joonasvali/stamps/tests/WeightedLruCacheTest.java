@@ -0,0 +1,89 @@
+package ee.joonasvali.stamps.tests;
+
+import ee.joonasvali.stamps.cache.WeightedLruCache;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class WeightedLruCacheTest {
+
+  @Test
+  public void testStaysWithinBudgetAndCounts() {
+    WeightedLruCache<Integer, String> cache = new WeightedLruCache<>(10, String::length);
+    AtomicInteger loads = new AtomicInteger();
+    for (int i = 0; i < 5; i++) {
+      cache.get(i, key -> {
+        loads.incrementAndGet();
+        return "abc";
+      });
+    }
+    Assert.assertEquals(5, loads.get());
+    Assert.assertEquals(3, cache.size());
+    Assert.assertEquals(9, cache.getWeight());
+    Assert.assertEquals(5, cache.getMisses());
+    Assert.assertEquals(2, cache.getEvictions());
+
+    // The most recent ones are kept
+    cache.get(4, key -> "never");
+    Assert.assertEquals(1, cache.getHits());
+    Assert.assertEquals(5, loads.get());
+  }
+
+  @Test
+  public void testHotValuesSurviveScan() {
+    WeightedLruCache<Integer, String> cache = new WeightedLruCache<>(4, String::length, 1024);
+    for (int round = 0; round < 5; round++) {
+      for (int hot = 0; hot < 4; hot++) {
+        cache.get(hot, key -> "x");
+      }
+    }
+    long hits = cache.getHits();
+    // Values asked for once don't push out the ones in steady use
+    for (int once = 100; once < 200; once++) {
+      cache.get(once, key -> "x");
+    }
+    for (int hot = 0; hot < 4; hot++) {
+      cache.get(hot, key -> "x");
+    }
+    Assert.assertEquals(hits + 4, cache.getHits());
+    Assert.assertEquals(100, cache.getRejections());
+    Assert.assertEquals(4, cache.getWeight());
+  }
+
+  @Test
+  public void testRejectedValuePushesNothingOut() {
+    WeightedLruCache<Integer, String> cache = new WeightedLruCache<>(4, String::length, 1024);
+    cache.get(0, key -> "x");
+    for (int round = 0; round < 5; round++) {
+      for (int hot = 1; hot < 4; hot++) {
+        cache.get(hot, key -> "x");
+      }
+    }
+    // Needs the room of the cold value and a hot one, asked for more often than the first but not the second
+    cache.get(10, key -> "yy");
+    cache.get(10, key -> "yy");
+    Assert.assertEquals(2, cache.getRejections());
+    Assert.assertEquals(0, cache.getEvictions());
+    Assert.assertEquals(4, cache.size());
+    long hits = cache.getHits();
+    Assert.assertEquals("x", cache.get(0, key -> "never"));
+    Assert.assertEquals(hits + 1, cache.getHits());
+  }
+
+  @Test
+  public void testRemovesMatchingKeys() {
+    WeightedLruCache<Integer, String> cache = new WeightedLruCache<>(100, String::length);
+    for (int i = 0; i < 6; i++) {
+      cache.get(i, key -> "value" + key);
+    }
+    List<String> removed = cache.removeIf(key -> key % 2 == 0);
+    Assert.assertEquals(Arrays.asList("value0", "value2", "value4"), removed);
+    Assert.assertEquals(3, cache.size());
+    Assert.assertEquals(18, cache.getWeight());
+    Assert.assertEquals("value1", cache.get(1, key -> "never"));
+    Assert.assertEquals("again", cache.get(2, key -> "again"));
+  }
+}